@@ -1,12 +1,17 @@
 package org.game_api;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Random;
+import java.util.TreeMap;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -17,7 +22,6 @@ import com.google.gwt.json.client.JSONBoolean;
 import com.google.gwt.json.client.JSONNull;
 import com.google.gwt.json.client.JSONNumber;
 import com.google.gwt.json.client.JSONObject;
-import com.google.gwt.json.client.JSONParser;
 import com.google.gwt.json.client.JSONString;
 import com.google.gwt.json.client.JSONValue;
 
@@ -106,9 +110,25 @@ public final class GameApi {
     private GameState lastGameState = null;
     private List<Operation> lastMove = null;
     private String lastMovePlayerId;
+    /** The snapshots the last UpdateUI reads, pinned until the game makes its next move. */
+    private List<GameState> updateUiPins = ImmutableList.of();
+    /** The snapshots each VerifyMove not answered yet reads, oldest first. */
+    private final List<List<GameState>> verifyMovePins = Lists.newLinkedList();
+
+    /**
+     * If true, a move is verified once against the full state and the verdict is used for
+     * every player, instead of sending one VerifyMove per player.
+     */
+    private final boolean verifyOnce;
+    private VerifyMoveDone lastVerifyMoveDone;
 
     public IteratingPlayerContainer(Game game, int numberOfPlayers) {
+      this(game, numberOfPlayers, false);
+    }
+
+    public IteratingPlayerContainer(Game game, int numberOfPlayers, boolean verifyOnce) {
       this.game = game;
+      this.verifyOnce = verifyOnce;
       List<String> playerIds = Lists.newArrayList();
       for (int i = 0; i < numberOfPlayers; i++) {
         String playerId = String.valueOf(42 + i);
@@ -128,117 +148,681 @@ public final class GameApi {
 
     public void updateUi(String yourPlayerId) {
       updateUiPlayerId = yourPlayerId;
+      unpin(updateUiPins);
+      // Pinned, as the game may read the message after the next move, e.g. on another thread
+      updateUiPins = pinMessageStates();
       game.sendUpdateUI(new UpdateUI(yourPlayerId, playersInfo,
-          gameState.getStateForPlayerId(yourPlayerId),
-          lastGameState == null ? null : lastGameState.getStateForPlayerId(yourPlayerId),
+          updateUiPins.get(0).getStateForPlayerId(yourPlayerId),
+          lastGameState == null ? null : updateUiPins.get(1).getStateForPlayerId(yourPlayerId),
           lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot()));
     }
 
+    /** Pins the current state and, if there was a move, the state before it. */
+    private List<GameState> pinMessageStates() {
+      return lastGameState == null
+          ? ImmutableList.of(gameState.pin())
+          : ImmutableList.of(gameState.pin(), lastGameState.pin());
+    }
+
+    private static void unpin(List<GameState> pins) {
+      for (GameState pin : pins) {
+        pin.unpin();
+      }
+    }
+
     @Override
     public void sendMakeMove(List<Operation> operations) {
       lastMovePlayerId = updateUiPlayerId;
       lastMove = ImmutableList.copyOf(operations);
-      lastGameState = gameState.copy();
+      // The game is done with the last update once it moves
+      unpin(updateUiPins);
+      updateUiPins = ImmutableList.of();
+      lastGameState = gameState.snapshot();
       gameState.makeMove(operations);
-      // Verify the move on all players
-      for (String playerId : playerIds) {
-        game.sendVerifyMove(new VerifyMove(playersInfo,
-            gameState.getStateForPlayerId(playerId),
-            lastGameState.getStateForPlayerId(playerId), lastMove, lastMovePlayerId,
-            gameState.getPlayerIdToNumberOfTokensInPot()));
+      // Only lastGameState, gameState and the pinned versions are ever read again.
+      gameState.discardHistoryBefore(lastGameState.getVersion());
+      if (!verifyOnce || !verifyMoveOnce()) {
+        // Verify the move on all players
+        for (String playerId : playerIds) {
+          List<GameState> pins = pinMessageStates();
+          verifyMovePins.add(pins);
+          game.sendVerifyMove(new VerifyMove(playersInfo,
+              pins.get(0).getStateForPlayerId(playerId),
+              pins.get(1).getStateForPlayerId(playerId), lastMove, lastMovePlayerId,
+              gameState.getPlayerIdToNumberOfTokensInPot()));
+        }
       }
       updateUi(updateUiPlayerId);
     }
 
+    /**
+     * Verifies lastMove once against the full state and uses that verdict for every player.
+     * The full state holds every key any player can see, hidden ones included, so no player's
+     * view could change the verdict. Returns false if the move must still be verified per
+     * player, because the game did not answer synchronously.
+     */
+    private boolean verifyMoveOnce() {
+      lastVerifyMoveDone = null;
+      List<GameState> pins = pinMessageStates();
+      verifyMovePins.add(pins);
+      game.sendVerifyMove(new VerifyMove(playersInfo,
+          pins.get(0).getState(), pins.get(1).getState(), lastMove, lastMovePlayerId,
+          gameState.getPlayerIdToNumberOfTokensInPot()));
+      return lastVerifyMoveDone != null;
+    }
+
     @Override
     public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
+      // The VerifyMoves are answered in the order they were sent
+      if (!verifyMovePins.isEmpty()) {
+        unpin(verifyMovePins.remove(0));
+      }
+      lastVerifyMoveDone = verifyMoveDone;
       if (verifyMoveDone.getHackerPlayerId() != null) {
         throw new RuntimeException("Found a hacker! verifyMoveDone=" + verifyMoveDone);
       }
     }
   }
 
+  /**
+   * The state keys a game declares up front, each with a dense id.
+   * A {@link GameState} created with a registry keeps the values of these keys in an array
+   * indexed by id; keys that weren't declared still work, but are given an id per state.
+   * A registry never changes, so it can be shared by all the states of a game.
+   */
+  public static final class StateKeyRegistry {
+    private final List<String> keys;
+    private final Map<String, Integer> ids = Maps.newHashMap();
+
+    public StateKeyRegistry(List<String> keys) {
+      this.keys = ImmutableList.copyOf(keys);
+      for (int i = 0; i < this.keys.size(); i++) {
+        if (ids.put(this.keys.get(i), i) != null) {
+          throw new IllegalArgumentException("Duplicate key " + this.keys.get(i));
+        }
+      }
+    }
+
+    /** Returns the id of key, or -1 if it wasn't declared. */
+    public int getId(String key) {
+      Integer id = ids.get(key);
+      return id == null ? -1 : id;
+    }
+
+    public String getKey(int id) {
+      return keys.get(id);
+    }
+
+    public List<String> getKeys() {
+      return keys;
+    }
+
+    public int size() {
+      return keys.size();
+    }
+  }
+
+  /**
+   * The state of a game, kept as a history of versions: every key has a chain of its values,
+   * newest first, and every move adds one version.
+   * {@link #snapshot()} is O(1) and returns a read-only GameState pinned to the current version;
+   * older versions stay readable with {@link #snapshotAt(int)} until
+   * {@link #discardHistoryBefore(int)} drops them, which it doesn't do to a version
+   * {@link #pin()} was called on until it is unpinned.
+   */
   public static class GameState {
-    private final Map<String, Object> state = Maps.newHashMap();
-    private final Map<String, Object> visibleTo = Maps.newHashMap();
-    private Map<String, Integer> playerIdToNumberOfTokensInPot = Maps.newHashMap();
+    /** Is told about every move made on a GameState, e.g. to keep statistics of the players. */
+    public interface MoveObserver {
+      /**
+       * Called after operations were applied to a state.
+       *
+       * @param lastState a snapshot of the state before the move
+       */
+      void moveMade(GameState lastState, List<Operation> operations);
+    }
+
+    /** Visibility mask of a key that is visible to all players. */
+    private static final int VISIBLE_TO_ALL = -1;
+
+    /** The value and visibility a key got in some version; deleted keys have a node too. */
+    private static final class KeyVersion {
+      private final int version;
+      private final Object value;
+      /** Bitmask of the indices (see {@link History#playerIndices}) of players who can see it. */
+      private final int visibilityMask;
+      private final boolean deleted;
+      /** The older version of this key, or null if it didn't exist or was discarded. */
+      private KeyVersion previous;
+
+      private KeyVersion(int version, Object value, int visibilityMask, boolean deleted,
+          KeyVersion previous) {
+        this.version = version;
+        this.value = value;
+        this.visibilityMask = visibilityMask;
+        this.deleted = deleted;
+        this.previous = previous;
+      }
+    }
 
+    /** The data shared by a GameState and all of its snapshots. */
+    private static final class History {
+      private final StateKeyRegistry registry;
+      /** The chain of every key, by id: the registry's ids, then those of undeclared keys. */
+      private KeyVersion[] keyVersions;
+      /** Ids of the keys that aren't in the registry. */
+      private final Map<String, Integer> undeclaredIds = Maps.newHashMap();
+      private final List<String> undeclaredKeys = Lists.newArrayList();
+      /** The bit index of every player that ever appeared in a visibility list. */
+      private final Map<String, Integer> playerIndices = Maps.newHashMap();
+      /** The versions of playerIdToNumberOfTokensInPot; the value of each node is the map. */
+      private KeyVersion tokens = new KeyVersion(0, ImmutableMap.<String, Integer>of(), 0, false,
+          null);
+      private int oldestVersion;
+      /** The number of snapshots from {@link GameState#pin()} of each version still in use. */
+      private final TreeMap<Integer, Integer> pins = Maps.newTreeMap();
+      /** Used by Shuffle and SetRandomInteger. */
+      private final Random random;
+
+      private History(StateKeyRegistry registry, Random random) {
+        this.registry = registry;
+        this.random = random;
+        keyVersions = new KeyVersion[registry.size()];
+      }
+
+      /** Returns the id of key, or -1 if it never had a value. */
+      private int getId(Object key) {
+        int id = registry.getId((String) key);
+        if (id < 0) {
+          Integer undeclaredId = undeclaredIds.get(key);
+          return undeclaredId == null ? -1 : undeclaredId;
+        }
+        return id;
+      }
+
+      private int getOrCreateId(String key) {
+        int id = getId(key);
+        if (id < 0) {
+          id = registry.size() + undeclaredKeys.size();
+          undeclaredIds.put(key, id);
+          undeclaredKeys.add(key);
+          if (id == keyVersions.length) {
+            KeyVersion[] newKeyVersions = new KeyVersion[Math.max(8, 2 * keyVersions.length)];
+            System.arraycopy(keyVersions, 0, newKeyVersions, 0, keyVersions.length);
+            keyVersions = newKeyVersions;
+          }
+        }
+        return id;
+      }
+
+      private KeyVersion get(Object key) {
+        int id = getId(key);
+        return id < 0 ? null : keyVersions[id];
+      }
+
+      private String getKey(int id) {
+        return id < registry.size()
+            ? registry.getKey(id) : undeclaredKeys.get(id - registry.size());
+      }
+
+      /** The number of ids given out; the ids are 0 to getIdCount() - 1. */
+      private int getIdCount() {
+        return registry.size() + undeclaredKeys.size();
+      }
+    }
+
+    private static final StateKeyRegistry NO_KEYS =
+        new StateKeyRegistry(ImmutableList.<String>of());
+
+    private final History history;
+    /** Number of moves applied to this state. */
+    private int version;
+    private final boolean readOnly;
+    /** True for a snapshot returned by {@link #pin()} and not unpinned yet. */
+    private boolean pinned;
+    private MoveObserver moveObserver;
+
+    public GameState() {
+      this(new Random());
+    }
+
+    /**
+     * Creates a state whose Shuffle and SetRandomInteger operations use random,
+     * so a seeded random replays the same moves to the same state.
+     */
+    public GameState(Random random) {
+      this(NO_KEYS, random);
+    }
+
+    /** Creates a state that keeps the keys of registry in an array, indexed by id. */
+    public GameState(StateKeyRegistry registry, Random random) {
+      this(new History(registry, random), 0, false);
+    }
+
+    private GameState(History history, int version, boolean readOnly) {
+      this.history = history;
+      this.version = version;
+      this.readOnly = readOnly;
+    }
+
+    /** Returns a new independent GameState with the current keys, visibility and tokens. */
     public GameState copy() {
-      GameState result = new GameState();
-      result.state.putAll(state);
-      result.visibleTo.putAll(visibleTo);
+      GameState result = new GameState(history.registry, new Random());
+      for (int id = 0; id < history.getIdCount(); id++) {
+        KeyVersion keyVersion = find(history.keyVersions[id]);
+        if (keyVersion != null && !keyVersion.deleted) {
+          int resultId = result.history.getOrCreateId(history.getKey(id));
+          result.history.keyVersions[resultId] =
+              new KeyVersion(version, keyVersion.value, keyVersion.visibilityMask, false, null);
+        }
+      }
+      result.history.playerIndices.putAll(history.playerIndices);
+      result.history.tokens = new KeyVersion(version, find(history.tokens).value, 0, false, null);
+      result.history.oldestVersion = version;
+      result.version = version;
+      return result;
+    }
+
+    /** Returns a read-only GameState pinned to the current version; this is O(1). */
+    public GameState snapshot() {
+      return new GameState(history, version, true);
+    }
+
+    /**
+     * Returns a snapshot of the current version that {@link #discardHistoryBefore(int)} keeps
+     * until {@link #unpin()} is called on it, e.g. for a message that may be read after the
+     * next moves. This is O(log(pinned versions)).
+     */
+    public GameState pin() {
+      Integer count = history.pins.get(version);
+      history.pins.put(version, count == null ? 1 : count + 1);
+      GameState result = snapshot();
+      result.pinned = true;
       return result;
     }
 
+    /** Lets the version of a snapshot returned by {@link #pin()} be discarded again. */
+    public void unpin() {
+      if (!pinned) {
+        throw new IllegalStateException("Not a pinned snapshot");
+      }
+      pinned = false;
+      int count = history.pins.get(version);
+      if (count == 1) {
+        history.pins.remove(version);
+      } else {
+        history.pins.put(version, count - 1);
+      }
+    }
+
+    /** Returns a read-only GameState pinned to an older version that wasn't discarded. */
+    public GameState snapshotAt(int version) {
+      if (version < history.oldestVersion || version > this.version) {
+        throw new IllegalArgumentException("Version " + version + " is not between "
+            + history.oldestVersion + " and " + this.version);
+      }
+      return new GameState(history, version, true);
+    }
+
+    /**
+     * Drops the history older than version, but for the versions of the snapshots that are
+     * still pinned; snapshots of the dropped versions can no longer be read.
+     */
+    public void discardHistoryBefore(int version) {
+      if (!history.pins.isEmpty()) {
+        version = Math.min(version, history.pins.firstKey());
+      }
+      if (version <= history.oldestVersion) {
+        return;
+      }
+      if (version > this.version) {
+        throw new IllegalArgumentException("Version " + version + " is in the future");
+      }
+      KeyVersion[] keyVersions = history.keyVersions;
+      for (int id = 0; id < history.getIdCount(); id++) {
+        KeyVersion head = keyVersions[id];
+        if (head == null) {
+          continue;
+        }
+        KeyVersion keyVersion = head;
+        while (keyVersion.version > version && keyVersion.previous != null) {
+          keyVersion = keyVersion.previous;
+        }
+        keyVersion.previous = null;
+        if (keyVersion == head && head.deleted) {
+          keyVersions[id] = null;
+        }
+      }
+      KeyVersion tokens = history.tokens;
+      while (tokens.version > version && tokens.previous != null) {
+        tokens = tokens.previous;
+      }
+      tokens.previous = null;
+      history.oldestVersion = version;
+    }
+
+    /**
+     * Undoes the moves made after version.
+     * Snapshots of the undone versions must not be used afterwards.
+     */
+    public void revertTo(int version) {
+      checkNotReadOnly();
+      if (version < history.oldestVersion || version > this.version) {
+        throw new IllegalArgumentException("Version " + version + " is not between "
+            + history.oldestVersion + " and " + this.version);
+      }
+      KeyVersion[] keyVersions = history.keyVersions;
+      for (int id = 0; id < history.getIdCount(); id++) {
+        KeyVersion keyVersion = keyVersions[id];
+        while (keyVersion != null && keyVersion.version > version) {
+          keyVersion = keyVersion.previous;
+        }
+        keyVersions[id] = keyVersion;
+      }
+      while (history.tokens.version > version && history.tokens.previous != null) {
+        history.tokens = history.tokens.previous;
+      }
+      this.version = version;
+    }
+
     public Map<String, Integer> getPlayerIdToNumberOfTokensInPot() {
-      return playerIdToNumberOfTokensInPot;
+      @SuppressWarnings("unchecked")
+      Map<String, Integer> tokens = (Map<String, Integer>) find(history.tokens).value;
+      return tokens;
     }
 
-    @SuppressWarnings("unchecked")
+    public int getVersion() {
+      return version;
+    }
+
+    /** Returns a read-only view of the whole state, ignoring visibility. */
+    public Map<String, Object> getState() {
+      return new StateView(VISIBLE_TO_ALL, true);
+    }
+
+    public boolean isVisibleToAll(String key) {
+      KeyVersion keyVersion = find(history.get(key));
+      return keyVersion == null || keyVersion.visibilityMask == VISIBLE_TO_ALL;
+    }
+
+    /**
+     * Returns a read-only view of the state as seen by playerId: it has all the keys,
+     * but the value of a key playerId can't see is null.
+     * The view of a snapshot doesn't change until its version is discarded; the view of a
+     * live state reads through to it, so it changes when a move is made. Messages that may be
+     * read after the next move, e.g. on another thread, should get the view of a snapshot
+     * from {@link #pin()}.
+     */
     public Map<String, Object> getStateForPlayerId(String playerId) {
-      Map<String, Object> result = Maps.newHashMap();
-      for (String key : state.keySet()) {
-        Object visibleToPlayers = visibleTo.get(key);
-        Object value = null;
-        if (visibleToPlayers.equals(ALL)
-            || ((List<String>) visibleToPlayers).contains(playerId)) {
-          value = state.get(key);
+      Integer index = history.playerIndices.get(playerId);
+      return new StateView(index == null ? 0 : 1 << index, false);
+    }
+
+    /** Returns the newest node of a chain that is visible in this version, or null. */
+    private KeyVersion find(KeyVersion keyVersion) {
+      // A live state sees everything, including the writes of a move that is being made.
+      if (readOnly) {
+        while (keyVersion != null && keyVersion.version > version) {
+          keyVersion = keyVersion.previous;
         }
-        result.put(key, value);
       }
-      return result;
+      return keyVersion;
+    }
+
+    private void put(String key, Object value, int visibilityMask, boolean deleted) {
+      put(history.getOrCreateId(key), value, visibilityMask, deleted);
+    }
+
+    private void put(int id, Object value, int visibilityMask, boolean deleted) {
+      int newVersion = version + 1;
+      KeyVersion previous = history.keyVersions[id];
+      if (previous != null && previous.version == newVersion) {
+        // Written twice in the same move, so only the last write is kept.
+        previous = previous.previous;
+      }
+      history.keyVersions[id] = new KeyVersion(newVersion, value, visibilityMask, deleted,
+          previous);
+    }
+
+    private int getVisibilityMask(Object visibleToPlayerIds) {
+      if (ALL.equals(visibleToPlayerIds)) {
+        return VISIBLE_TO_ALL;
+      }
+      int mask = 0;
+      for (Object playerId : (List<?>) visibleToPlayerIds) {
+        Integer index = history.playerIndices.get(playerId);
+        if (index == null) {
+          index = history.playerIndices.size();
+          if (index >= Integer.SIZE - 1) {
+            throw new IllegalStateException("Too many players! playerId=" + playerId);
+          }
+          history.playerIndices.put((String) playerId, index);
+        }
+        mask |= 1 << index;
+      }
+      return mask;
+    }
+
+    /** A view of the state in this version, filtering on access with the visibility masks. */
+    private final class StateView extends AbstractMap<String, Object> {
+      private final int playerMask;
+      private final boolean ignoreVisibility;
+
+      private StateView(int playerMask, boolean ignoreVisibility) {
+        this.playerMask = playerMask;
+        this.ignoreVisibility = ignoreVisibility;
+      }
+
+      private Object getVisibleValue(KeyVersion keyVersion) {
+        int mask = keyVersion.visibilityMask;
+        return ignoreVisibility || mask == VISIBLE_TO_ALL || (mask & playerMask) != 0
+            ? keyVersion.value : null;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        KeyVersion keyVersion = find(history.get(key));
+        return keyVersion != null && !keyVersion.deleted;
+      }
+
+      @Override
+      public Object get(Object key) {
+        KeyVersion keyVersion = find(history.get(key));
+        return keyVersion == null || keyVersion.deleted ? null : getVisibleValue(keyVersion);
+      }
+
+      @Override
+      public java.util.Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+          @Override
+          public int size() {
+            int size = 0;
+            for (int id = 0; id < history.getIdCount(); id++) {
+              KeyVersion keyVersion = find(history.keyVersions[id]);
+              if (keyVersion != null && !keyVersion.deleted) {
+                size++;
+              }
+            }
+            return size;
+          }
+
+          @Override
+          public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+              private int nextId;
+              private Map.Entry<String, Object> next = findNext();
+
+              private Map.Entry<String, Object> findNext() {
+                while (nextId < history.getIdCount()) {
+                  int id = nextId++;
+                  KeyVersion keyVersion = find(history.keyVersions[id]);
+                  if (keyVersion != null && !keyVersion.deleted) {
+                    return Maps.immutableEntry(history.getKey(id), getVisibleValue(keyVersion));
+                  }
+                }
+                return null;
+              }
+
+              @Override
+              public boolean hasNext() {
+                return next != null;
+              }
+
+              @Override
+              public Map.Entry<String, Object> next() {
+                if (next == null) {
+                  throw new NoSuchElementException();
+                }
+                Map.Entry<String, Object> result = next;
+                next = findNext();
+                return result;
+              }
+
+              @Override
+              public void remove() {
+                throw new UnsupportedOperationException();
+              }
+            };
+          }
+        };
+      }
+    }
+
+    /** Sets the observer told about the moves made from now on, or null for none. */
+    public void setMoveObserver(MoveObserver moveObserver) {
+      checkNotReadOnly();
+      this.moveObserver = moveObserver;
     }
 
     public void makeMove(List<Operation> operations) {
+      checkNotReadOnly();
+      GameState lastState = moveObserver == null ? null : snapshot();
       for (Operation operation : operations) {
-        makeMove(operation);
+        applyOperation(operation);
+      }
+      version++;
+      if (lastState != null) {
+        moveObserver.moveMade(lastState, operations);
       }
     }
 
     public void makeMove(Operation operation) {
+      checkNotReadOnly();
+      GameState lastState = moveObserver == null ? null : snapshot();
+      applyOperation(operation);
+      version++;
+      if (lastState != null) {
+        moveObserver.moveMade(lastState, ImmutableList.of(operation));
+      }
+    }
+
+    private void checkNotReadOnly() {
+      if (readOnly) {
+        throw new IllegalStateException("A snapshot of the state can't be changed");
+      }
+    }
+
+    private void applyOperation(Operation operation) {
       if (operation instanceof Set) {
         Set set = (Set) operation;
-        String key = set.getKey();
-        state.put(key, set.getValue());
-        visibleTo.put(key, set.getVisibleToPlayerIds());
+        put(set.getKey(), set.getValue(), getVisibilityMask(set.getVisibleToPlayerIds()), false);
       } else if (operation instanceof SetRandomInteger) {
         SetRandomInteger setRandomInteger = (SetRandomInteger) operation;
-        String key = setRandomInteger.getKey();
         int from = setRandomInteger.getFrom();
         int to = setRandomInteger.getTo();
-        int value = new Random().nextInt(to - from) + from;
-        state.put(key, value);
-        visibleTo.put(key, ALL);
+        int value = history.random.nextInt(to - from) + from;
+        put(setRandomInteger.getKey(), value, VISIBLE_TO_ALL, false);
       } else if (operation instanceof SetVisibility) {
         SetVisibility setVisibility = (SetVisibility) operation;
-        String key = setVisibility.getKey();
-        visibleTo.put(key, setVisibility.getVisibleToPlayerIds());
+        setVisibility(setVisibility.getKey(),
+            getVisibilityMask(setVisibility.getVisibleToPlayerIds()));
+      } else if (operation instanceof SetVisibilityForKeyRange) {
+        SetVisibilityForKeyRange setVisibility = (SetVisibilityForKeyRange) operation;
+        int mask = getVisibilityMask(setVisibility.getVisibleToPlayerIds());
+        for (int i = setVisibility.getFromIndex(); i < setVisibility.getToIndex(); i++) {
+          setVisibility(setVisibility.getKeyPrefix() + i, mask);
+        }
+      } else if (operation instanceof SetVisibilityPerPlayer) {
+        SetVisibilityPerPlayer setVisibility = (SetVisibilityPerPlayer) operation;
+        int index = setVisibility.getFromIndex();
+        for (String playerId : setVisibility.getPlayerIds()) {
+          int mask = getVisibilityMask(ImmutableList.of(playerId));
+          for (int i = 0; i < setVisibility.getKeysPerPlayer(); i++) {
+            setVisibility(setVisibility.getKeyPrefix() + index++, mask);
+          }
+        }
+      } else if (operation instanceof ShuffleKeyRange) {
+        ShuffleKeyRange shuffle = (ShuffleKeyRange) operation;
+        shuffleInPlace(shuffle.getKeyPrefix(), shuffle.getFromIndex(), shuffle.getToIndex());
       } else if (operation instanceof Delete) {
-        Delete delete = (Delete) operation;
-        String key = delete.getKey();
-        state.remove(key);
-        visibleTo.remove(key);
+        put(((Delete) operation).getKey(), null, 0, true);
       } else if (operation instanceof Shuffle) {
         Shuffle shuffle = (Shuffle) operation;
         List<String> keys = shuffle.getKeys();
         List<String> shuffledKeys = shuffle(Lists.newArrayList(keys));
-        Map<String, Object> oldState = ImmutableMap.copyOf(state);
-        Map<String, Object> oldVisibleTo = ImmutableMap.copyOf(visibleTo);
+        List<KeyVersion> oldKeyVersions = Lists.newArrayList();
+        for (String key : keys) {
+          oldKeyVersions.add(history.get(key));
+        }
         for (int i = 0; i < keys.size(); i++) {
-          String fromKey = keys.get(i);
-          String toKey = shuffledKeys.get(i);
-          state.put(toKey, oldState.get(fromKey));
-          visibleTo.put(toKey, oldVisibleTo.get(fromKey));
+          KeyVersion old = oldKeyVersions.get(i);
+          if (old == null) {
+            put(shuffledKeys.get(i), null, 0, true);
+          } else {
+            put(shuffledKeys.get(i), old.value, old.visibilityMask, old.deleted);
+          }
         }
       } else if (operation instanceof AttemptChangeTokens) {
-        playerIdToNumberOfTokensInPot =
+        Map<String, Integer> playerIdToNumberOfTokensInPot =
             ((AttemptChangeTokens) operation).getPlayerIdToNumberOfTokensInPot();
+        int newVersion = version + 1;
+        KeyVersion previous = history.tokens;
+        if (previous.version == newVersion) {
+          previous = previous.previous;
+        }
+        history.tokens = new KeyVersion(newVersion, playerIdToNumberOfTokensInPot, 0, false,
+            previous);
+      }
+    }
+
+    private void setVisibility(String key, int visibilityMask) {
+      KeyVersion keyVersion = history.get(key);
+      if (keyVersion != null && !keyVersion.deleted) {
+        put(key, keyVersion.value, visibilityMask, false);
+      }
+    }
+
+    /** Moves the values of a key range into a random permutation of the same keys. */
+    private void shuffleInPlace(String keyPrefix, int fromIndex, int toIndex) {
+      int size = toIndex - fromIndex;
+      int[] ids = new int[size];
+      KeyVersion[] oldKeyVersions = new KeyVersion[size];
+      for (int i = 0; i < size; i++) {
+        ids[i] = history.getOrCreateId(keyPrefix + (fromIndex + i));
+      }
+      for (int i = 0; i < size; i++) {
+        oldKeyVersions[i] = history.keyVersions[ids[i]];
+      }
+      // Fisher-Yates: the value of key i moves to key ids[i] after the swaps
+      Random random = history.random;
+      for (int i = size - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+      }
+      for (int i = 0; i < size; i++) {
+        KeyVersion old = oldKeyVersions[i];
+        if (old == null) {
+          put(ids[i], null, 0, true);
+        } else {
+          put(ids[i], old.value, old.visibilityMask, old.deleted);
+        }
       }
     }
 
     private List<String> shuffle(List<String> list) {
       List<String> listCopy = Lists.newArrayList(list);
-      Random rnd = new Random();
+      Random rnd = history.random;
       List<String> res = Lists.newArrayList();
       while (!listCopy.isEmpty()) {
         int index = rnd.nextInt(listCopy.size());
@@ -700,6 +1284,167 @@ public final class GameApi {
     }
   }
 
+  /** Returns the keys keyPrefix + fromIndex to keyPrefix + (toIndex - 1). */
+  static List<String> getKeyRange(String keyPrefix, int fromIndex, int toIndex) {
+    List<String> keys = Lists.newArrayListWithCapacity(toIndex - fromIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      keys.add(keyPrefix + i);
+    }
+    return keys;
+  }
+
+  /**
+   * Shuffles the keys keyPrefix + fromIndex to keyPrefix + (toIndex - 1), like a
+   * {@link Shuffle} of those keys, without listing them.
+   */
+  public static class ShuffleKeyRange extends Operation {
+    private final String keyPrefix;
+    private final int fromIndex;
+    private final int toIndex;
+
+    public ShuffleKeyRange(String keyPrefix, int fromIndex, int toIndex) {
+      this.keyPrefix = keyPrefix;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+    }
+
+    @Override
+    public String getMessageName() {
+      return "ShuffleKeyRange";
+    }
+
+    @Override
+    public List<Object> getFieldsNameAndValue() {
+      return Arrays.<Object>asList(
+          "keyPrefix", keyPrefix, "fromIndex", fromIndex, "toIndex", toIndex);
+    }
+
+    public String getKeyPrefix() {
+      return keyPrefix;
+    }
+
+    public int getFromIndex() {
+      return fromIndex;
+    }
+
+    public int getToIndex() {
+      return toIndex;
+    }
+
+    public List<String> getKeys() {
+      return getKeyRange(keyPrefix, fromIndex, toIndex);
+    }
+  }
+
+  /**
+   * Sets the visibility of the keys keyPrefix + fromIndex to keyPrefix + (toIndex - 1), like
+   * a {@link SetVisibility} of each of them.
+   */
+  public static class SetVisibilityForKeyRange extends Operation {
+    private final String keyPrefix;
+    private final int fromIndex;
+    private final int toIndex;
+    private final Object visibleToPlayerIds;
+
+    public SetVisibilityForKeyRange(String keyPrefix, int fromIndex, int toIndex) {
+      this(keyPrefix, fromIndex, toIndex, ALL);
+    }
+
+    public SetVisibilityForKeyRange(String keyPrefix, int fromIndex, int toIndex,
+        List<String> visibleToPlayerIds) {
+      this(keyPrefix, fromIndex, toIndex, (Object) visibleToPlayerIds);
+    }
+
+    private SetVisibilityForKeyRange(String keyPrefix, int fromIndex, int toIndex,
+        Object visibleToPlayerIds) {
+      this.keyPrefix = keyPrefix;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+      this.visibleToPlayerIds = checkHasJsonSupportedType(visibleToPlayerIds);
+    }
+
+    @Override
+    public String getMessageName() {
+      return "SetVisibilityForKeyRange";
+    }
+
+    @Override
+    public List<Object> getFieldsNameAndValue() {
+      return Arrays.<Object>asList("keyPrefix", keyPrefix, "fromIndex", fromIndex,
+          "toIndex", toIndex, "visibleToPlayerIds", visibleToPlayerIds);
+    }
+
+    public String getKeyPrefix() {
+      return keyPrefix;
+    }
+
+    public int getFromIndex() {
+      return fromIndex;
+    }
+
+    public int getToIndex() {
+      return toIndex;
+    }
+
+    public Object getVisibleToPlayerIds() {
+      return visibleToPlayerIds;
+    }
+
+    public List<String> getKeys() {
+      return getKeyRange(keyPrefix, fromIndex, toIndex);
+    }
+  }
+
+  /**
+   * Gives each player keysPerPlayer consecutive keys, visible only to that player: the i-th
+   * player gets keyPrefix + (fromIndex + i * keysPerPlayer) onwards (e.g. the hole cards).
+   */
+  public static class SetVisibilityPerPlayer extends Operation {
+    private final String keyPrefix;
+    private final int fromIndex;
+    private final int keysPerPlayer;
+    private final List<String> playerIds;
+
+    public SetVisibilityPerPlayer(String keyPrefix, int fromIndex, int keysPerPlayer,
+        List<String> playerIds) {
+      this.keyPrefix = keyPrefix;
+      this.fromIndex = fromIndex;
+      this.keysPerPlayer = keysPerPlayer;
+      this.playerIds = checkHasJsonSupportedType(playerIds);
+    }
+
+    @Override
+    public String getMessageName() {
+      return "SetVisibilityPerPlayer";
+    }
+
+    @Override
+    public List<Object> getFieldsNameAndValue() {
+      return Arrays.<Object>asList("keyPrefix", keyPrefix, "fromIndex", fromIndex,
+          "keysPerPlayer", keysPerPlayer, "playerIds", playerIds);
+    }
+
+    public String getKeyPrefix() {
+      return keyPrefix;
+    }
+
+    public int getFromIndex() {
+      return fromIndex;
+    }
+
+    public int getKeysPerPlayer() {
+      return keysPerPlayer;
+    }
+
+    public List<String> getPlayerIds() {
+      return playerIds;
+    }
+
+    public List<String> getKeys() {
+      return getKeyRange(keyPrefix, fromIndex, fromIndex + keysPerPlayer * playerIds.size());
+    }
+  }
+
   public static class GameReady extends Message {
     @Override
     public String getMessageName() {
@@ -935,6 +1680,23 @@ public final class GameApi {
         case "Shuffle":
           return new Shuffle((List<String>) message.get("keys"));
 
+        case "ShuffleKeyRange":
+          return new ShuffleKeyRange((String) message.get("keyPrefix"),
+              (Integer) message.get("fromIndex"),
+              (Integer) message.get("toIndex"));
+
+        case "SetVisibilityForKeyRange":
+          return new SetVisibilityForKeyRange((String) message.get("keyPrefix"),
+              (Integer) message.get("fromIndex"),
+              (Integer) message.get("toIndex"),
+              message.get("visibleToPlayerIds"));
+
+        case "SetVisibilityPerPlayer":
+          return new SetVisibilityPerPlayer((String) message.get("keyPrefix"),
+              (Integer) message.get("fromIndex"),
+              (Integer) message.get("keysPerPlayer"),
+              (List<String>) message.get("playerIds"));
+
         case "GameReady":
           return new GameReady();
 
@@ -976,7 +1738,7 @@ public final class GameApi {
 
   /**
    * Checks the object has a JSON-supported data type, i.e.,
-   * the object is either a primitive (String, Integer, Double, Boolean, null)
+   * the object is either a primitive (String, Integer, Long, Double, Boolean, null)
    * or the object is a List and every element in the list has a JSON-supported data type,
    * or the object is a Map and the keys are String and the values have JSON-supported data types.
    * @return the given object.
@@ -985,7 +1747,7 @@ public final class GameApi {
     if (object == null) {
       return object;
     }
-    if (object instanceof Integer || object instanceof Double
+    if (object instanceof Integer || object instanceof Long || object instanceof Double
         || object instanceof String || object instanceof Boolean) {
       return object;
     }
@@ -1012,16 +1774,358 @@ public final class GameApi {
         "The object doesn't have a JSON-supported data type! object=" + object);
   }
 
+  /**
+   * Writes messages as JSON straight from {@link Message#getFieldsNameAndValue()},
+   * without building a map or a JSON tree first.
+   * The buffer is reused between calls, so keep one writer per thread.
+   * Works both in GWT and on the JVM.
+   */
+  public static final class MessageJsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    public String write(Message message) {
+      buffer.setLength(0);
+      writeMessage(message);
+      return buffer.toString();
+    }
+
+    public String write(Map<String, Object> map) {
+      buffer.setLength(0);
+      writeValue(map);
+      return buffer.toString();
+    }
+
+    private void writeMessage(Message message) {
+      buffer.append("{\"type\":");
+      writeString(message.getMessageName());
+      List<Object> fieldsNameAndValue = message.getFieldsNameAndValue();
+      for (int i = 0; i < fieldsNameAndValue.size() / 2; i++) {
+        buffer.append(',');
+        writeString((String) fieldsNameAndValue.get(2 * i));
+        buffer.append(':');
+        writeValue(fieldsNameAndValue.get(2 * i + 1));
+      }
+      buffer.append('}');
+    }
+
+    private void writeValue(Object value) {
+      if (value == null) {
+        buffer.append("null");
+      } else if (value instanceof String) {
+        writeString((String) value);
+      } else if (value instanceof Integer || value instanceof Long || value instanceof Double
+          || value instanceof Boolean) {
+        buffer.append(value);
+      } else if (value instanceof Message) {
+        // Operations inside lastMove/operations
+        writeMessage((Message) value);
+      } else if (value instanceof List) {
+        buffer.append('[');
+        boolean first = true;
+        for (Object element : (List<?>) value) {
+          if (!first) {
+            buffer.append(',');
+          }
+          first = false;
+          writeValue(element);
+        }
+        buffer.append(']');
+      } else if (value instanceof Map) {
+        buffer.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          if (!first) {
+            buffer.append(',');
+          }
+          first = false;
+          writeString((String) entry.getKey());
+          buffer.append(':');
+          writeValue(entry.getValue());
+        }
+        buffer.append('}');
+      } else {
+        throw new IllegalStateException("Invalid object encountered: " + value);
+      }
+    }
+
+    private void writeString(String value) {
+      buffer.append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '"':
+            buffer.append("\\\"");
+            break;
+          case '\\':
+            buffer.append("\\\\");
+            break;
+          case '\n':
+            buffer.append("\\n");
+            break;
+          case '\r':
+            buffer.append("\\r");
+            break;
+          case '\t':
+            buffer.append("\\t");
+            break;
+          default:
+            if (c < 0x20) {
+              buffer.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+            } else {
+              buffer.append(c);
+            }
+        }
+      }
+      buffer.append('"');
+    }
+  }
+
+  /**
+   * Parses JSON in a single pass straight into maps, lists, Integer, Long, Double, String,
+   * Boolean and null, without an intermediate JSON tree. Whole numbers are Integer, or Long
+   * beyond the range of an int; only fractions are Double.
+   * Works both in GWT and on the JVM.
+   */
+  public static final class MessageJsonParser {
+    private final String json;
+    private int position;
+
+    private MessageJsonParser(String json) {
+      this.json = json;
+    }
+
+    public static Message parseMessage(String json) {
+      return Message.messageToHasEquality(parseMap(json));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseMap(String json) {
+      MessageJsonParser parser = new MessageJsonParser(json);
+      parser.skipWhitespace();
+      if (parser.peek() != '{') {
+        throw parser.error("JSONObject expected");
+      }
+      Object value = parser.readValue();
+      parser.skipWhitespace();
+      if (parser.position != json.length()) {
+        throw parser.error("Unexpected trailing characters");
+      }
+      return (Map<String, Object>) value;
+    }
+
+    private Object readValue() {
+      skipWhitespace();
+      char c = peek();
+      switch (c) {
+        case '{':
+          return readObject();
+        case '[':
+          return readArray();
+        case '"':
+          return readString();
+        case 't':
+          expect("true");
+          return Boolean.TRUE;
+        case 'f':
+          expect("false");
+          return Boolean.FALSE;
+        case 'n':
+          expect("null");
+          return null;
+        default:
+          if (c == '-' || (c >= '0' && c <= '9')) {
+            return readNumber();
+          }
+          throw error("Unexpected character '" + c + "'");
+      }
+    }
+
+    private Map<String, Object> readObject() {
+      Map<String, Object> map = new HashMap<>();
+      position++;
+      skipWhitespace();
+      if (peek() == '}') {
+        position++;
+        return map;
+      }
+      while (true) {
+        skipWhitespace();
+        if (peek() != '"') {
+          throw error("Key expected");
+        }
+        String key = readString();
+        skipWhitespace();
+        expect(":");
+        map.put(key, readValue());
+        skipWhitespace();
+        char c = next();
+        if (c == '}') {
+          return map;
+        }
+        if (c != ',') {
+          throw error("',' or '}' expected");
+        }
+      }
+    }
+
+    private List<Object> readArray() {
+      List<Object> list = new ArrayList<>();
+      position++;
+      skipWhitespace();
+      if (peek() == ']') {
+        position++;
+        return list;
+      }
+      while (true) {
+        list.add(readValue());
+        skipWhitespace();
+        char c = next();
+        if (c == ']') {
+          return list;
+        }
+        if (c != ',') {
+          throw error("',' or ']' expected");
+        }
+      }
+    }
+
+    private String readString() {
+      position++;
+      int start = position;
+      // Fast path: no escapes, so the string is a substring of the input.
+      while (position < json.length()) {
+        char c = json.charAt(position);
+        if (c == '"') {
+          return json.substring(start, position++);
+        }
+        if (c == '\\') {
+          break;
+        }
+        position++;
+      }
+      StringBuilder result = new StringBuilder(json.substring(start, position));
+      while (true) {
+        char c = next();
+        if (c == '"') {
+          return result.toString();
+        }
+        if (c != '\\') {
+          result.append(c);
+          continue;
+        }
+        c = next();
+        switch (c) {
+          case 'b':
+            result.append('\b');
+            break;
+          case 'f':
+            result.append('\f');
+            break;
+          case 'n':
+            result.append('\n');
+            break;
+          case 'r':
+            result.append('\r');
+            break;
+          case 't':
+            result.append('\t');
+            break;
+          case 'u':
+            String hex = position + 4 > json.length()
+                ? "" : json.substring(position, position + 4);
+            // parseInt would also take a sign
+            if (hex.isEmpty() || hex.charAt(0) == '+' || hex.charAt(0) == '-') {
+              throw error("Invalid unicode escape");
+            }
+            try {
+              result.append((char) Integer.parseInt(hex, 16));
+            } catch (NumberFormatException e) {
+              throw error("Invalid unicode escape");
+            }
+            position += 4;
+            break;
+          default:
+            result.append(c);
+        }
+      }
+    }
+
+    private Object readNumber() {
+      int start = position;
+      boolean integral = true;
+      while (position < json.length()) {
+        char c = json.charAt(position);
+        if (c == '.' || c == 'e' || c == 'E') {
+          integral = false;
+        } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+          break;
+        }
+        position++;
+      }
+      String number = json.substring(start, position);
+      try {
+        // Like the GWT JSON helpers, whole numbers come back as Integer; Long if they don't fit
+        if (integral) {
+          long value = Long.parseLong(number);
+          if (value == (int) value) {
+            return (int) value;
+          }
+          return value;
+        }
+        double value = Double.parseDouble(number);
+        if (value == (int) value) {
+          // e.g. 2.0 or 1e3
+          return (int) value;
+        }
+        return value;
+      } catch (NumberFormatException e) {
+        throw error("Invalid number " + number);
+      }
+    }
+
+    private void expect(String expected) {
+      if (!json.startsWith(expected, position)) {
+        throw error("'" + expected + "' expected");
+      }
+      position += expected.length();
+    }
+
+    private void skipWhitespace() {
+      while (position < json.length() && json.charAt(position) <= ' ') {
+        position++;
+      }
+    }
+
+    private char peek() {
+      if (position >= json.length()) {
+        throw error("Unexpected end of JSON");
+      }
+      return json.charAt(position);
+    }
+
+    private char next() {
+      char c = peek();
+      position++;
+      return c;
+    }
+
+    private IllegalStateException error(String message) {
+      return new IllegalStateException(message + " at position " + position);
+    }
+  }
+
   public static final class GameApiJsonHelper {
     private GameApiJsonHelper() { }
 
+    // A writer per call, as these are also called from server threads; its buffer is
+    // reused within the call
     public static String getJsonString(Message messageObject) {
-      Map<String, Object> messageMap = messageObject.toMessage();
-      return getJsonStringFromMap(messageMap);
+      return new MessageJsonWriter().write(messageObject);
     }
 
     public static String getJsonStringFromMap(Map<String, Object> map) {
-      return getJsonObject(map).toString();
+      return new MessageJsonWriter().write(map);
     }
 
     @SuppressWarnings("unchecked")
@@ -1082,16 +2186,11 @@ public final class GameApi {
     }
 
     public static Message getMessageObject(String jsonString) {
-      return Message.messageToHasEquality(getMapObject(jsonString));
+      return MessageJsonParser.parseMessage(jsonString);
     }
 
     public static Map<String, Object> getMapObject(String jsonString) {
-      JSONValue jsonVal = JSONParser.parseStrict(jsonString);
-      JSONObject jsonObj = jsonVal.isObject();
-      if (jsonObj == null) {
-        throw new IllegalStateException("JSONObject expected");
-      }
-      return getMapFromJsonObject(jsonObj);
+      return MessageJsonParser.parseMap(jsonString);
     }
 
     public static Map<String, Object> getMapFromJsonObject(JSONObject jsonObj) {
@@ -1,5 +1,11 @@
 package org.poker.client;
 
+import java.util.List;
+
+import org.game_api.GameApi.StateKeyRegistry;
+
+import com.google.common.collect.ImmutableList;
+
 public abstract class AbstractPokerLogicBase {
   
   public static final int SMALL_BLIND = 100;
@@ -24,5 +30,37 @@ public abstract class AbstractPokerLogicBase {
   protected static final String CHIPS = "chips";
   protected static final String CURRENT_POT_BET = "currentPotBet";
   protected static final String PLAYERS_IN_POT = "playersInPot";
+  /** Set once the flop is dealt, on raked tables only: no flop, no rake. */
+  protected static final String FLOP_DEALT = "flopDealt";
+  /** The chips raked at the end of the hand, if any. */
+  protected static final String RAKE = "rake";
+  /**
+   * In a session only: the indices in the player list of the players dealt in, from the
+   * button, so seat i of the hand is played by player SEATS[i].
+   */
+  protected static final String SEATS = "seats";
+  /** The big blind of the table, only set when it isn't BIG_BLIND: the smallest bet. */
+  protected static final String BIG_BLIND_KEY = "bigBlind";
+
+  /** The keys of the 52 cards: C0 to C51. */
+  public static final List<String> CARD_KEYS;
+  /** Every key of the game state (and of a pot), the 52 card keys first. */
+  public static final List<String> STATE_KEYS;
+  static {
+    ImmutableList.Builder<String> cardKeys = ImmutableList.builder();
+    for (int i = 0; i < 52; i++) {
+      cardKeys.add(C + i);
+    }
+    CARD_KEYS = cardKeys.build();
+    STATE_KEYS = ImmutableList.<String>builder().addAll(CARD_KEYS).add(PREVIOUS_MOVE,
+        PREVIOUS_MOVE_ALL_IN, NUMBER_OF_PLAYERS, WHOSE_MOVE, CURRENT_BETTER, CURRENT_ROUND,
+        PLAYERS_IN_HAND, BOARD, HOLE_CARDS, PLAYER_BETS, PLAYER_CHIPS, POTS, FLOP_DEALT,
+        RAKE, SEATS, BIG_BLIND_KEY).build();
+  }
+  /** The keys of a pot, other than PLAYER_BETS. */
+  public static final List<String> POT_KEYS =
+      ImmutableList.of(CHIPS, CURRENT_POT_BET, PLAYERS_IN_POT);
+  /** The registry of STATE_KEYS, for the GameStates of poker tables. */
+  public static final StateKeyRegistry STATE_KEY_REGISTRY = new StateKeyRegistry(STATE_KEYS);
 
 }
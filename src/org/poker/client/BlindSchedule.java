@@ -0,0 +1,57 @@
+package org.poker.client;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The blind levels of a tournament: the stakes go up to the next level every handsPerLevel
+ * hands, and stay at the last level once it is reached.<br>
+ * Levels are counted in hands rather than minutes, so a schedule plays the same whatever the
+ * speed of the players, and can be replayed.
+ */
+public final class BlindSchedule {
+
+  private final ImmutableList<TableConfig> levels;
+  private final int handsPerLevel;
+
+  public BlindSchedule(List<TableConfig> levels, int handsPerLevel) {
+    if (levels.isEmpty() || handsPerLevel <= 0) {
+      throw new IllegalArgumentException("A schedule needs levels that last at least a hand");
+    }
+    this.levels = ImmutableList.copyOf(levels);
+    this.handsPerLevel = handsPerLevel;
+  }
+
+  /**
+   * Returns a schedule of levelCount levels starting at first, where each level doubles the
+   * blinds and the ante of the one before.
+   */
+  public static BlindSchedule doubling(TableConfig first, int levelCount, int handsPerLevel) {
+    ImmutableList.Builder<TableConfig> levels = ImmutableList.builder();
+    for (int level = 0; level < levelCount; level++) {
+      int factor = 1 << level;
+      levels.add(first.withBlinds(first.getSmallBlind() * factor, first.getBigBlind() * factor,
+          first.getAnte() * factor));
+    }
+    return new BlindSchedule(levels.build(), handsPerLevel);
+  }
+
+  /** Returns the level of the hand, from 0; hands are numbered from 0. */
+  public int getLevel(int hand) {
+    return Math.min(hand / handsPerLevel, levels.size() - 1);
+  }
+
+  /** Returns the stakes the hand is played at. */
+  public TableConfig getConfig(int hand) {
+    return levels.get(getLevel(hand));
+  }
+
+  public List<TableConfig> getLevels() {
+    return levels;
+  }
+
+  public int getHandsPerLevel() {
+    return handsPerLevel;
+  }
+}
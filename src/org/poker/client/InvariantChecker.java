@@ -0,0 +1,339 @@
+package org.poker.client;
+
+import java.util.List;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Checks the invariants of the state after each applied move, independently of the checks
+ * {@link PokerLogic} makes while generating and verifying moves, so a bug in the rules shows
+ * up where it happened rather than hands later.
+ * <p>
+ * {@link Mode#CHEAP} only looks at the chips, the bets, the pots' players and the turn: a few
+ * passes over lists of at most 9 entries, cheap enough to stay on in production.
+ * {@link Mode#EXHAUSTIVE} also cross-checks the pots' bets and the cards.<br>
+ * Each invariant counts how often it was checked, how often it was violated and the time
+ * spent on it, as read from the {@link Ticker}.
+ * <p>
+ * A checker is not thread safe: use one per table, or per thread, and merge them with
+ * {@link #add(InvariantChecker)}.
+ */
+public final class InvariantChecker {
+
+  public enum Mode {
+    CHEAP, EXHAUSTIVE
+  }
+
+  public enum Invariant {
+    /** The stacks and the pots (or the rake, once paid out) add up to the chips the hand
+     *  started with. */
+    CHIP_CONSERVATION(false),
+    /** Every player in a pot is still in the hand, and after the pre-flop every player in
+     *  the hand is in a pot. */
+    POT_MEMBERSHIP(false),
+    /** Within a round the bets don't go down, and until the end the stacks don't go up. */
+    BET_MONOTONICITY(false),
+    /** While betting, the player to move is in the hand and has chips left. */
+    TURN_VALIDITY(false),
+    /** The bets in the pots add up to the players' bets, and no pot holds a bet above its
+     *  own; nothing is negative. */
+    POT_CONSISTENCY(true),
+    /** The hole cards and the board are distinct cards, and no two open cards are equal. */
+    CARD_CONSISTENCY(true);
+
+    private final boolean exhaustive;
+
+    private Invariant(boolean exhaustive) {
+      this.exhaustive = exhaustive;
+    }
+
+    /** True if the invariant is only checked in {@link Mode#EXHAUSTIVE}. */
+    public boolean isExhaustive() {
+      return exhaustive;
+    }
+  }
+
+  /** A violated invariant and what was wrong. */
+  public static final class Violation {
+    private final Invariant invariant;
+    private final String message;
+
+    Violation(Invariant invariant, String message) {
+      this.invariant = invariant;
+      this.message = message;
+    }
+
+    public Invariant getInvariant() {
+      return invariant;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return invariant + ": " + message;
+    }
+  }
+
+  private static final int INVARIANTS = Invariant.values().length;
+
+  private final Ticker ticker;
+  private Mode mode;
+  private final long[] checks = new long[INVARIANTS];
+  private final long[] violations = new long[INVARIANTS];
+  private final long[] nanos = new long[INVARIANTS];
+  /** The violations of the current check; null until one is found. */
+  private List<Violation> found;
+
+  public InvariantChecker(Mode mode) {
+    this(mode, Ticker.systemTicker());
+  }
+
+  public InvariantChecker(Mode mode, Ticker ticker) {
+    this.mode = mode;
+    this.ticker = ticker;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * Checks state, the state after a move, and returns the violations found, or an empty list.
+   *
+   * @param lastState the state before the move, or null if the move started the hand
+   * @param totalChips the chips of all the players when the hand started
+   */
+  public List<Violation> check(PokerState lastState, PokerState state, int totalChips) {
+    found = null;
+    long start = ticker.read();
+    checkChipConservation(state, totalChips);
+    start = stop(Invariant.CHIP_CONSERVATION, start);
+    checkPotMembership(state);
+    start = stop(Invariant.POT_MEMBERSHIP, start);
+    if (lastState != null) {
+      checkBetMonotonicity(lastState, state);
+      start = stop(Invariant.BET_MONOTONICITY, start);
+    }
+    checkTurnValidity(state);
+    start = stop(Invariant.TURN_VALIDITY, start);
+    if (mode == Mode.EXHAUSTIVE) {
+      checkPotConsistency(state);
+      start = stop(Invariant.POT_CONSISTENCY, start);
+      checkCardConsistency(state);
+      stop(Invariant.CARD_CONSISTENCY, start);
+    }
+    List<Violation> result = found == null ? ImmutableList.<Violation>of() : found;
+    found = null;
+    return result;
+  }
+
+  private long stop(Invariant invariant, long start) {
+    long end = ticker.read();
+    checks[invariant.ordinal()]++;
+    nanos[invariant.ordinal()] += end - start;
+    return end;
+  }
+
+  private void fail(Invariant invariant, String message) {
+    violations[invariant.ordinal()]++;
+    if (found == null) {
+      found = Lists.newArrayListWithCapacity(2);
+    }
+    found.add(new Violation(invariant, message));
+  }
+
+  private void checkChipConservation(PokerState state, int totalChips) {
+    int chips = 0;
+    for (int playerChips : state.getPlayerChips()) {
+      if (playerChips < 0) {
+        fail(Invariant.CHIP_CONSERVATION, "negative stack " + state.getPlayerChips());
+      }
+      chips += playerChips;
+    }
+    // At the end of the hand the pots have been paid out to the players, less the rake
+    if (state.getCurrentRound() != BettingRound.END_GAME) {
+      for (Pot pot : state.getPots()) {
+        chips += pot.getChips();
+      }
+    } else {
+      chips += state.getRake();
+    }
+    if (chips != totalChips) {
+      fail(Invariant.CHIP_CONSERVATION, chips + " chips instead of " + totalChips + " after "
+          + state.getPreviousMove() + " in " + state.getCurrentRound());
+    }
+  }
+
+  private void checkPotMembership(PokerState state) {
+    List<Player> playersInHand = state.getPlayersInHand();
+    List<Pot> pots = state.getPots();
+    for (int i = 0; i < pots.size(); i++) {
+      for (Player player : pots.get(i).getPlayersInPot()) {
+        if (!playersInHand.contains(player)) {
+          fail(Invariant.POT_MEMBERSHIP, player + " is in pot " + i + " but not in the hand "
+              + playersInHand);
+        }
+      }
+    }
+    // Players join the pots as they first put chips in, which they all have after the
+    // pre-flop; at the end of the hand the pots only hold their winners.
+    BettingRound round = state.getCurrentRound();
+    if (round == BettingRound.PRE_FLOP || round == BettingRound.END_GAME) {
+      return;
+    }
+    for (Player player : playersInHand) {
+      boolean inPot = false;
+      for (int i = 0; i < pots.size() && !inPot; i++) {
+        inPot = pots.get(i).getPlayersInPot().contains(player);
+      }
+      if (!inPot) {
+        fail(Invariant.POT_MEMBERSHIP, player + " is in the hand but in no pot");
+      }
+    }
+  }
+
+  private void checkBetMonotonicity(PokerState lastState, PokerState state) {
+    BettingRound round = state.getCurrentRound();
+    if (round == BettingRound.END_GAME || lastState.getCurrentRound() == BettingRound.END_GAME) {
+      return;
+    }
+    boolean sameRound = round == lastState.getCurrentRound();
+    for (int seat = 0; seat < state.getNumberOfPlayers(); seat++) {
+      if (sameRound && state.getPlayerBets().get(seat) < lastState.getPlayerBets().get(seat)) {
+        fail(Invariant.BET_MONOTONICITY, "the bet of " + Player.values()[seat] + " went from "
+            + lastState.getPlayerBets().get(seat) + " to " + state.getPlayerBets().get(seat)
+            + " in " + round);
+      }
+      if (state.getPlayerChips().get(seat) > lastState.getPlayerChips().get(seat)) {
+        fail(Invariant.BET_MONOTONICITY, "the stack of " + Player.values()[seat]
+            + " went from " + lastState.getPlayerChips().get(seat) + " to "
+            + state.getPlayerChips().get(seat) + " in " + round);
+      }
+    }
+  }
+
+  private void checkTurnValidity(PokerState state) {
+    if (state.getCurrentRound().ordinal() >= BettingRound.SHOWDOWN.ordinal()) {
+      return;
+    }
+    Player whoseMove = state.getWhoseMove();
+    if (!state.getPlayersInHand().contains(whoseMove)) {
+      fail(Invariant.TURN_VALIDITY, "the turn of " + whoseMove + " who is not in the hand "
+          + state.getPlayersInHand());
+    } else if (state.getPlayerChips().get(whoseMove.ordinal()) == 0) {
+      fail(Invariant.TURN_VALIDITY, "the turn of " + whoseMove + " who is all-in");
+    }
+  }
+
+  private void checkPotConsistency(PokerState state) {
+    int numberOfPlayers = state.getNumberOfPlayers();
+    List<Pot> pots = state.getPots();
+    for (int i = 0; i < pots.size(); i++) {
+      Pot pot = pots.get(i);
+      if (pot.getChips() < 0 || pot.getCurrentPotBet() < 0) {
+        fail(Invariant.POT_CONSISTENCY, "pot " + i + " holds " + pot.getChips()
+            + " chips with a bet of " + pot.getCurrentPotBet());
+      }
+      for (int bet : pot.getPlayerBets()) {
+        if (bet < 0 || bet > pot.getCurrentPotBet()) {
+          fail(Invariant.POT_CONSISTENCY, "pot " + i + " with a bet of "
+              + pot.getCurrentPotBet() + " holds the bets " + pot.getPlayerBets());
+          break;
+        }
+      }
+    }
+    if (state.getCurrentRound() == BettingRound.END_GAME) {
+      return;
+    }
+    for (int seat = 0; seat < numberOfPlayers; seat++) {
+      int betInPots = 0;
+      for (Pot pot : pots) {
+        betInPots += pot.getPlayerBets().get(seat);
+      }
+      if (betInPots != state.getPlayerBets().get(seat)) {
+        fail(Invariant.POT_CONSISTENCY, Player.values()[seat] + " bet "
+            + state.getPlayerBets().get(seat) + " but the pots hold " + betInPots);
+      }
+    }
+  }
+
+  private void checkCardConsistency(PokerState state) {
+    int cardCount = state.getCards().size();
+    // Every card index dealt, as a bit set; there are 52 cards at most
+    long dealt = 0;
+    List<Integer> indices = Lists.newArrayList(state.getBoard());
+    for (List<Integer> holeCards : state.getHoleCards()) {
+      indices.addAll(holeCards);
+    }
+    for (int index : indices) {
+      if (index < 0 || index >= cardCount || (dealt & 1L << index) != 0) {
+        fail(Invariant.CARD_CONSISTENCY, "card " + index + " is dealt twice or doesn't exist");
+        return;
+      }
+      dealt |= 1L << index;
+    }
+    // The cards the player sees: absent ones are hidden from them
+    long seen = 0;
+    for (Optional<Card> card : state.getCards()) {
+      if (card.isPresent()) {
+        long bit = 1L << (card.get().getSuit().ordinal() * 16 + card.get().getRank().ordinal());
+        if ((seen & bit) != 0) {
+          fail(Invariant.CARD_CONSISTENCY, card.get() + " is in the deck twice");
+          return;
+        }
+        seen |= bit;
+      }
+    }
+  }
+
+  /** Adds the counts of other to this checker's. */
+  public void add(InvariantChecker other) {
+    for (int i = 0; i < INVARIANTS; i++) {
+      checks[i] += other.checks[i];
+      violations[i] += other.violations[i];
+      nanos[i] += other.nanos[i];
+    }
+  }
+
+  public long getChecks(Invariant invariant) {
+    return checks[invariant.ordinal()];
+  }
+
+  public long getViolations(Invariant invariant) {
+    return violations[invariant.ordinal()];
+  }
+
+  /** The time spent checking invariant, in the ticker's nanoseconds. */
+  public long getNanos(Invariant invariant) {
+    return nanos[invariant.ordinal()];
+  }
+
+  /** One line per invariant checked: its checks, its violations and its mean time. */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (Invariant invariant : Invariant.values()) {
+      int i = invariant.ordinal();
+      if (checks[i] == 0) {
+        continue;
+      }
+      if (result.length() > 0) {
+        result.append('\n');
+      }
+      result.append(invariant).append(": ").append(checks[i]).append(" checks, ")
+          .append(violations[i]).append(" violations, ")
+          .append(nanos[i] / checks[i]).append(" ns/check");
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,182 @@
+package org.poker.client;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The moves the player whose turn it is can make, with the bounds of their amounts,
+ * computed from a {@link PokerState} in a single pass over the pots.<br>
+ * Amounts are <B>additional</B> amounts, the same as in
+ * {@link PokerPresenter#moveMade(PokerMove, int)}:
+ * <ul>
+ * <li>FOLD is always legal.
+ * <li>CHECK is legal when there is nothing to call.
+ * <li>CALL is legal when there is something to call; a player without enough chips
+ * calls all-in for less.
+ * <li>BET is legal when no one has bet in this round (and it isn't the pre-flop);
+ * it is at least the big blind, unless it is all-in.
+ * <li>RAISE is legal when someone has bet and the player has more chips than the call;
+ * it must at least double the bet, unless it is all-in.
+ * </ul>
+ * No one can bet or raise when all the other players in the hand are all-in, as no one could
+ * call it.
+ */
+public final class LegalActions {
+
+  private final int chips;
+  private final int requiredBet;
+  private final int playerBet;
+  private final int bigBlind;
+  /** Bit i is set if PokerMove.values()[i] is legal. */
+  private final int legalMoves;
+
+  private LegalActions(int chips, int requiredBet, int playerBet, int bigBlind,
+      BettingRound round, boolean opponentCanCall) {
+    this.chips = chips;
+    this.requiredBet = requiredBet;
+    this.playerBet = playerBet;
+    this.bigBlind = bigBlind;
+    int amountToCall = requiredBet - playerBet;
+    int moves = bit(PokerMove.FOLD);
+    if (amountToCall <= 0) {
+      moves |= bit(PokerMove.CHECK);
+    }
+    else if (chips > 0) {
+      moves |= bit(PokerMove.CALL);
+    }
+    if (requiredBet == 0 && round != BettingRound.PRE_FLOP && chips > 0 && opponentCanCall) {
+      moves |= bit(PokerMove.BET);
+    }
+    if (requiredBet > 0 && chips > amountToCall && opponentCanCall) {
+      moves |= bit(PokerMove.RAISE);
+    }
+    this.legalMoves = moves;
+  }
+
+  /**
+   * Returns the legal actions of the player whose turn it is.
+   *
+   * @param state
+   * @return
+   */
+  public static LegalActions of(PokerState state) {
+    int requiredBet = 0;
+    for (Pot pot : state.getPots()) {
+      requiredBet += pot.getCurrentPotBet();
+    }
+    Player whoseMove = state.getWhoseMove();
+    boolean opponentCanCall = false;
+    for (Player player : state.getPlayersInHand()) {
+      if (player != whoseMove && state.getPlayerChips().get(player.ordinal()) > 0) {
+        opponentCanCall = true;
+        break;
+      }
+    }
+    int playerIndex = whoseMove.ordinal();
+    return new LegalActions(state.getPlayerChips().get(playerIndex), requiredBet,
+        state.getPlayerBets().get(playerIndex), state.getBigBlind(), state.getCurrentRound(),
+        opponentCanCall);
+  }
+
+  private static int bit(PokerMove move) {
+    return 1 << move.ordinal();
+  }
+
+  public boolean isLegal(PokerMove move) {
+    return (legalMoves & bit(move)) != 0;
+  }
+
+  /**
+   * Returns true if move with the given additional amount is legal.
+   *
+   * @param move
+   * @param additionalAmount
+   * @return
+   */
+  public boolean isLegal(PokerMove move, int additionalAmount) {
+    if (!isLegal(move)) {
+      return false;
+    }
+    switch (move) {
+    case CALL:
+      return additionalAmount == getCallAmount();
+    case BET:
+      return additionalAmount >= getMinBet() && additionalAmount <= chips;
+    case RAISE:
+      return additionalAmount >= getMinRaise() && additionalAmount <= chips;
+    default:
+      return additionalAmount == 0;
+    }
+  }
+
+  /** The legal moves, in the order of {@link PokerMove}. */
+  public List<PokerMove> getMoves() {
+    ImmutableList.Builder<PokerMove> moves = ImmutableList.builder();
+    for (PokerMove move : PokerMove.values()) {
+      if (isLegal(move)) {
+        moves.add(move);
+      }
+    }
+    return moves.build();
+  }
+
+  /** The chips the player has left, which is the most any move can put in. */
+  public int getChips() {
+    return chips;
+  }
+
+  /** The total bet every player has to match in the current round. */
+  public int getRequiredBet() {
+    return requiredBet;
+  }
+
+  /** The amount needed to match the required bet, which may be more than the chips. */
+  public int getAmountToCall() {
+    return Math.max(requiredBet - playerBet, 0);
+  }
+
+  /** The additional amount of a call: the amount to call, or all the chips if less. */
+  public int getCallAmount() {
+    return Math.min(getAmountToCall(), chips);
+  }
+
+  /** The big blind of the table. */
+  public int getBigBlind() {
+    return bigBlind;
+  }
+
+  /** The smallest bet: the table's big blind, or all the chips if less. */
+  public int getMinBet() {
+    return Math.min(bigBlind, chips);
+  }
+
+  /** The smallest additional amount of a raise (it must double the bet), or all-in. */
+  public int getMinRaise() {
+    return Math.min(2 * requiredBet - playerBet, chips);
+  }
+
+  /** The largest bet or raise, which is all-in. */
+  public int getMaxAmount() {
+    return chips;
+  }
+
+  /**
+   * Returns the move that puts all the chips in: a bet if no one has bet,
+   * a raise if it is more than the call, and a call otherwise.
+   *
+   * @return
+   */
+  public PokerMove getAllInMove() {
+    if (requiredBet == 0) {
+      return PokerMove.BET;
+    }
+    return isLegal(PokerMove.RAISE) ? PokerMove.RAISE : PokerMove.CALL;
+  }
+
+  @Override
+  public String toString() {
+    return "LegalActions" + getMoves() + " call=" + getCallAmount() + " minBet=" + getMinBet()
+        + " minRaise=" + getMinRaise() + " max=" + chips;
+  }
+}
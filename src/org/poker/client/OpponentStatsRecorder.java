@@ -0,0 +1,150 @@
+package org.poker.client;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.poker.client.ai.OpponentStat;
+import org.poker.client.ai.OpponentStats;
+
+/**
+ * Counts the moves of a table into {@link OpponentStats}. It is fed every move of the table
+ * in order, with the state before it: by the presenter from each UpdateUI, or by a
+ * {@link GameState} it observes (see {@link #asMoveObserver(List)}).<br>
+ * What counts:
+ * <ul>
+ * <li>HANDS: every seat dealt in, counted at the deal, so a big blind who wins a walk
+ * without moving counts too.
+ * <li>VOLUNTARILY_PUT_IN and PRE_FLOP_RAISED: a call or raise, and a raise, before the flop;
+ * at most once per hand.
+ * <li>BETS_AND_RAISES and CALLS: after the flop.
+ * <li>FACED_BET and FOLDED_TO_BET: a move with chips to call, and a fold with chips to call;
+ * before the flop, only when someone raised the big blind.
+ * </ul>
+ * Only the public keys of the state are read, so the state may be the one seen by a player.
+ * In a session, the player of a seat is found through the state's SEATS, as
+ * {@link SeatMap#getPlayerIndex(int)} does.<br>
+ * A recorder keeps the hand's flags of the seats, so it serves one table.
+ */
+public class OpponentStatsRecorder extends AbstractPokerLogicBase {
+
+  private static final int PUT_IN = 1;
+  private static final int RAISED = 2;
+
+  private final OpponentStats stats;
+  /** What each seat has done in this hand before the flop. */
+  private final int[] seatFlags = new int[P.length];
+
+  public OpponentStatsRecorder(OpponentStats stats) {
+    this.stats = stats;
+  }
+
+  public OpponentStats getStats() {
+    return stats;
+  }
+
+  /** Returns an observer that records the moves made on a GameState of a table of playerIds. */
+  public GameState.MoveObserver asMoveObserver(final List<String> playerIds) {
+    return new GameState.MoveObserver() {
+      @Override
+      public void moveMade(GameState lastState, List<Operation> operations) {
+        recordMove(playerIds, lastState.getState(), operations);
+      }
+    };
+  }
+
+  /**
+   * Records a move.
+   *
+   * @param lastState the state before the move; empty or null for the initial move of a hand
+   * @param move the operations of the move
+   */
+  @SuppressWarnings("unchecked")
+  public void recordMove(List<String> playerIds, Map<String, Object> lastState,
+      List<Operation> move) {
+    // Only a deal sets the hole cards, the first of a session as well as the next ones
+    if (getSetValue(move, HOLE_CARDS) != null) {
+      Arrays.fill(seatFlags, 0);
+      List<Integer> seats = (List<Integer>) getSetValue(move, SEATS);
+      for (String player : (List<String>) getSetValue(move, PLAYERS_IN_HAND)) {
+        int seat = Player.valueOf(player).ordinal();
+        stats.add(getPlayerId(playerIds, seats, seat), OpponentStat.HANDS, 1);
+      }
+      return;
+    }
+    String whoseMove = lastState == null ? null : (String) lastState.get(WHOSE_MOVE);
+    String currentRound = lastState == null ? null : (String) lastState.get(CURRENT_ROUND);
+    if (whoseMove == null || currentRound == null) {
+      return;
+    }
+    BettingRound round = BettingRound.valueOf(currentRound);
+    PokerMove pokerMove = getPokerMove(move);
+    if (round.ordinal() > BettingRound.RIVER.ordinal() || pokerMove == null) {
+      return;
+    }
+    int seat = Player.valueOf(whoseMove).ordinal();
+    String playerId = getPlayerId(playerIds, (List<Integer>) lastState.get(SEATS), seat);
+    int requiredBet = 0;
+    for (Map<String, Object> pot : (List<Map<String, Object>>) lastState.get(POTS)) {
+      requiredBet += (Integer) pot.get(CURRENT_POT_BET);
+    }
+    int playerBet = ((List<Integer>) lastState.get(PLAYER_BETS)).get(seat);
+    Integer bigBlind = (Integer) lastState.get(BIG_BLIND_KEY);
+    boolean aggressive = pokerMove == PokerMove.BET || pokerMove == PokerMove.RAISE;
+
+    if (round == BettingRound.PRE_FLOP) {
+      int flags = seatFlags[seat];
+      if ((aggressive || pokerMove == PokerMove.CALL) && (flags & PUT_IN) == 0) {
+        stats.add(playerId, OpponentStat.VOLUNTARILY_PUT_IN, 1);
+        flags |= PUT_IN;
+      }
+      if (aggressive && (flags & RAISED) == 0) {
+        stats.add(playerId, OpponentStat.PRE_FLOP_RAISED, 1);
+        flags |= RAISED;
+      }
+      seatFlags[seat] = flags;
+    }
+    else if (aggressive) {
+      stats.add(playerId, OpponentStat.BETS_AND_RAISES, 1);
+    }
+    else if (pokerMove == PokerMove.CALL) {
+      stats.add(playerId, OpponentStat.CALLS, 1);
+    }
+
+    boolean facingBet = requiredBet > playerBet
+        && (round != BettingRound.PRE_FLOP || requiredBet > (bigBlind == null ? BIG_BLIND : bigBlind));
+    if (facingBet) {
+      stats.add(playerId, OpponentStat.facedBet(round), 1);
+      if (pokerMove == PokerMove.FOLD) {
+        stats.add(playerId, OpponentStat.foldedToBet(round), 1);
+      }
+    }
+  }
+
+  /** Returns the id of the player at seat, who is playerIds[seats[seat]] in a session. */
+  private static String getPlayerId(List<String> playerIds, List<Integer> seats, int seat) {
+    return playerIds.get(seats == null ? seat : seats.get(seat));
+  }
+
+  /** Returns the move the operations set as PREVIOUS_MOVE, or null for other moves. */
+  private static PokerMove getPokerMove(List<Operation> move) {
+    String pokerMove = (String) getSetValue(move, PREVIOUS_MOVE);
+    return pokerMove == null ? null : PokerMove.valueOf(pokerMove);
+  }
+
+  /** Returns the value the operations set key to, or null if they don't set it. */
+  private static Object getSetValue(List<Operation> move, String key) {
+    if (move == null) {
+      return null;
+    }
+    for (Operation operation : move) {
+      if (operation instanceof Set && key.equals(((Set) operation).getKey())) {
+        return ((Set) operation).getValue();
+      }
+    }
+    return null;
+  }
+}
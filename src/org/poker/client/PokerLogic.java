@@ -1,6 +1,7 @@
 package org.poker.client;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.game_api.GameApi.ALL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -8,12 +9,16 @@ import java.util.List;
 import java.util.Map;
 
 import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.Delete;
 import org.game_api.GameApi.EndGame;
 import org.game_api.GameApi.Operation;
 import org.game_api.GameApi.Set;
 import org.game_api.GameApi.SetTurn;
 import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.SetVisibilityForKeyRange;
+import org.game_api.GameApi.SetVisibilityPerPlayer;
 import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.ShuffleKeyRange;
 import org.game_api.GameApi.VerifyMove;
 import org.game_api.GameApi.VerifyMoveDone;
 import org.poker.client.Card.Rank;
@@ -26,6 +31,54 @@ import com.google.common.collect.Lists;
 public class PokerLogic extends AbstractPokerLogicBase {
 
   private PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  
+  private final boolean fastPathVerification;
+  
+  private final TableConfig tableConfig;
+  // The table config, resolved once so moves don't look it up
+  private final int smallBlind;
+  private final int bigBlind;
+  private final int ante;
+  private final boolean straddle;
+  private final int rakePerMille;
+  private final int rakeCap;
+  
+  public PokerLogic() {
+    this(false);
+  }
+  
+  /**
+   * @param fastPathVerification if true, {@link #verify(VerifyMove)} first checks a
+   *     betting move against cheap invariants and only reconstructs the complete
+   *     expected operation list when those checks cannot settle the move.
+   */
+  public PokerLogic(boolean fastPathVerification) {
+    this(TableConfig.DEFAULT, fastPathVerification);
+  }
+  
+  public PokerLogic(TableConfig tableConfig) {
+    this(tableConfig, false);
+  }
+  
+  /**
+   * @param tableConfig the stakes and rake of the table; every player's logic must use the
+   *     same config, or their moves won't verify
+   * @param fastPathVerification see {@link #PokerLogic(boolean)}
+   */
+  public PokerLogic(TableConfig tableConfig, boolean fastPathVerification) {
+    this.fastPathVerification = fastPathVerification;
+    this.tableConfig = tableConfig;
+    this.smallBlind = tableConfig.getSmallBlind();
+    this.bigBlind = tableConfig.getBigBlind();
+    this.ante = tableConfig.getAnte();
+    this.straddle = tableConfig.hasStraddle();
+    this.rakePerMille = tableConfig.getRakePerMille();
+    this.rakeCap = tableConfig.getRakeCap();
+  }
+  
+  public TableConfig getTableConfig() {
+    return tableConfig;
+  }
 
   public VerifyMoveDone verify(VerifyMove verifyMove) {
     try {
@@ -38,6 +91,9 @@ public class PokerLogic extends AbstractPokerLogicBase {
   }
   
   private void checkMoveIsLegal(VerifyMove verifyMove) {
+    if (fastPathVerification && isVerifiedByInvariants(verifyMove)) {
+      return;
+    }
     // Checking the operations are as expected.
     List<Operation> expectedOperations = getExpectedOperations(verifyMove);
     List<Operation> lastMove = verifyMove.getLastMove();
@@ -52,6 +108,196 @@ public class PokerLogic extends AbstractPokerLogicBase {
     }
   }
   
+  /**
+   * Fast path of {@link #verify(VerifyMove)}.<P>
+   * Accepts a betting move which neither ends the round nor goes all-in, made
+   * while there is a single pot, by checking turn order, visibility, bet legality
+   * and chip conservation directly against the last state. Every operation is
+   * pinned down by those checks, so an accepted move is exactly the one
+   * {@link #getExpectedOperations(VerifyMove)} would have built.<P>
+   * Returns false for anything it cannot settle (initial move, round transitions,
+   * all-ins, side pots, end game or an invariant violation); the caller then falls
+   * back to the full reconstruction, which also produces the hacker verdict.
+   * 
+   * @param verifyMove
+   * @return true if the move is legal; false if full verification is required
+   */
+  private boolean isVerifiedByInvariants(VerifyMove verifyMove) {
+    Map<String, Object> lastApiState = verifyMove.getLastState();
+    List<Operation> lastMove = verifyMove.getLastMove();
+    if (lastApiState.isEmpty() || lastMove.size() < 4 || !(lastMove.get(1) instanceof Set)) {
+      return false;
+    }
+    Set previousMoveSet = (Set) lastMove.get(1);
+    if (!PREVIOUS_MOVE.equals(previousMoveSet.getKey()) ||
+        !(previousMoveSet.getValue() instanceof String)) {
+      return false;
+    }
+    try {
+      PokerMove move = PokerMove.valueOf((String) previousMoveSet.getValue());
+      PokerState lastState = helper.gameApiStateToPokerState(lastApiState);
+      return isVerifiedByInvariants(lastState, move, lastMove,
+          getSeatedPlayerIds(lastState, verifyMove.getPlayerIds()));
+    } catch (RuntimeException e) {
+      // Malformed move or state; full verification will report it.
+      return false;
+    }
+  }
+  
+  private boolean isVerifiedByInvariants(PokerState lastState, PokerMove move,
+      List<Operation> lastMove, List<String> playerIds) {
+    BettingRound round = lastState.getCurrentRound();
+    if (round == BettingRound.SHOWDOWN || round == BettingRound.END_GAME ||
+        lastState.getPots().size() != 1) {
+      return false;
+    }
+    
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    int playerBet = lastState.getPlayerBets().get(playerIndex);
+    int playerChips = lastState.getPlayerChips().get(playerIndex);
+    int requiredBet = calculateLastRequiredBet(lastState);
+    Pot pot = lastState.getPots().get(0);
+    String playerName = P[playerIndex];
+    
+    // Turn order and visibility of the common prefix
+    int nextTurnIndex = getNextTurnIndex(lastState);
+    if (!lastMove.get(0).equals(new SetTurn(playerIds.get(nextTurnIndex))) ||
+        !isSetOperation(lastMove.get(1), PREVIOUS_MOVE, move.name()) ||
+        !isSetOperation(lastMove.get(2), PREVIOUS_MOVE_ALL_IN, Boolean.FALSE) ||
+        !isSetOperation(lastMove.get(3), WHOSE_MOVE, P[nextTurnIndex])) {
+      return false;
+    }
+    
+    switch (move) {
+    case FOLD: {
+      if (isNewRoundStarting(lastState, PokerMove.FOLD, 0)) {
+        return false;
+      }
+      int index = 4;
+      if (lastState.getCurrentBetter() == lastState.getWhoseMove()) {
+        if (!isSetOperation(lastMove, index++, CURRENT_BETTER, P[nextTurnIndex])) {
+          return false;
+        }
+      }
+      List<String> newPlayersInHand = removeFromList(
+          helper.getApiPlayerList(lastState.getPlayersInHand()), playerName);
+      if (!isSetOperation(lastMove, index++, PLAYERS_IN_HAND, newPlayersInHand)) {
+        return false;
+      }
+      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
+      if (playersInPot.contains(playerName)) {
+        // Folding moves no chips; only the pot membership changes
+        Map<String, Object> newPot = ImmutableMap.<String, Object>of(
+            CHIPS, pot.getChips(),
+            CURRENT_POT_BET, pot.getCurrentPotBet(),
+            PLAYERS_IN_POT, removeFromList(playersInPot, playerName),
+            PLAYER_BETS, pot.getPlayerBets());
+        if (!isSetOperation(lastMove, index++, POTS, ImmutableList.of(newPot))) {
+          return false;
+        }
+      }
+      return lastMove.size() == index;
+    }
+    case CHECK:
+      return lastMove.size() == 4 && playerBet == requiredBet &&
+          !isNewRoundStarting(lastState, PokerMove.CHECK, 0);
+    case CALL: {
+      int additionalAmount = requiredBet - playerBet;
+      if (lastMove.size() != 7 || additionalAmount >= playerChips ||
+          isNewRoundStarting(lastState, PokerMove.CALL, additionalAmount)) {
+        return false;
+      }
+      return isChipMovementVerified(lastState, lastMove, 4, requiredBet,
+          pot.getChips() + pot.getCurrentPotBet() - playerBet, pot.getCurrentPotBet());
+    }
+    case BET:
+    case RAISE: {
+      if (lastMove.size() != 8 ||
+          !isSetOperation(lastMove.get(4), CURRENT_BETTER, playerName) ||
+          !(lastMove.get(5) instanceof Set)) {
+        return false;
+      }
+      int newBet = (Integer) ((List<?>) ((Set) lastMove.get(5)).getValue()).get(playerIndex);
+      int additionalAmount = newBet - playerBet;
+      if (additionalAmount <= 0 || additionalAmount >= playerChips) {
+        return false;
+      }
+      if (move == PokerMove.BET) {
+        // Bet legality: opens the betting after the flop, at least a big blind
+        if (requiredBet != 0 || round == BettingRound.PRE_FLOP ||
+            newBet < bigBlind) {
+          return false;
+        }
+        return isChipMovementVerified(lastState, lastMove, 5, newBet,
+            pot.getChips() + newBet, newBet);
+      }
+      // Raise legality: raise by at least the existing bet
+      int raiseByAmount = newBet - requiredBet;
+      if (requiredBet == 0 || raiseByAmount < requiredBet) {
+        return false;
+      }
+      int existingPotBet = pot.getPlayerBets().get(playerIndex);
+      return isChipMovementVerified(lastState, lastMove, 5, newBet,
+          pot.getChips() + (pot.getCurrentPotBet() - existingPotBet) + raiseByAmount,
+          pot.getCurrentPotBet() + raiseByAmount);
+    }
+    default:
+      return false;
+    }
+  }
+  
+  /**
+   * Checks the PLAYER_BETS, PLAYER_CHIPS and POTS operations starting at
+   * {@code index} move chips only from the current player into the single pot,
+   * and that the chips leaving the stack equal the chips entering the pot.
+   * 
+   * @param lastState
+   * @param lastMove
+   * @param index position of the PLAYER_BETS operation
+   * @param newPlayerBet player's total bet in this round after the move
+   * @param newPotChips
+   * @param newPotBet
+   * @return
+   */
+  private boolean isChipMovementVerified(PokerState lastState, List<Operation> lastMove,
+      int index, int newPlayerBet, int newPotChips, int newPotBet) {
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    int additionalAmount = newPlayerBet - lastState.getPlayerBets().get(playerIndex);
+    int newPlayerChips = lastState.getPlayerChips().get(playerIndex) - additionalAmount;
+    Pot pot = lastState.getPots().get(0);
+    // Chip conservation
+    if (newPotChips - pot.getChips() != additionalAmount) {
+      return false;
+    }
+    Map<String, Object> newPot = ImmutableMap.<String, Object>of(
+        CHIPS, newPotChips,
+        CURRENT_POT_BET, newPotBet,
+        PLAYERS_IN_POT, addToList(helper.getApiPlayerList(pot.getPlayersInPot()), P[playerIndex]),
+        PLAYER_BETS, addOrReplaceInList(pot.getPlayerBets(), newPotBet, playerIndex));
+    return isSetOperation(lastMove, index, PLAYER_BETS,
+            addOrReplaceInList(lastState.getPlayerBets(), newPlayerBet, playerIndex)) &&
+        isSetOperation(lastMove, index + 1, PLAYER_CHIPS,
+            addOrReplaceInList(lastState.getPlayerChips(), newPlayerChips, playerIndex)) &&
+        isSetOperation(lastMove, index + 2, POTS, ImmutableList.of(newPot));
+  }
+  
+  private boolean isSetOperation(List<Operation> operations, int index, String key,
+      Object value) {
+    return index < operations.size() && isSetOperation(operations.get(index), key, value);
+  }
+  
+  /**
+   * Returns true if operation is a Set of the given key and value, visible to all.
+   */
+  private boolean isSetOperation(Operation operation, String key, Object value) {
+    if (!(operation instanceof Set)) {
+      return false;
+    }
+    Set set = (Set) operation;
+    return key.equals(set.getKey()) && ALL.equals(set.getVisibleToPlayerIds()) &&
+        value.equals(set.getValue());
+  }
+  
   private List<Operation> getExpectedOperations(VerifyMove verifyMove) {
     return getExpectedOperations(
         verifyMove.getLastState(),
@@ -73,14 +319,21 @@ public class PokerLogic extends AbstractPokerLogicBase {
         return getInitialBuyInMove(lastMovePlayerId, buyInAmount, playerIdToNumberOfTokensInPot);
       }
       else {
-        // Initial move performed by the dealer
-        return getInitialMove(playerIds, playerIdToNumberOfTokensInPot);
+        // Initial move performed by the dealer, in whichever form it was sent
+        return isSessionMove(lastMove)
+            ? getInitialSessionMove(playerIds, playerIdToNumberOfTokensInPot,
+                isBulkMove(lastMove))
+            : getInitialMove(playerIds, playerIdToNumberOfTokensInPot, isBulkMove(lastMove));
       }
     }
     
     PokerState lastState = helper.gameApiStateToPokerState(lastApiState);
     
-    boolean isEndGame = false;
+    // In a session, the move after the end of a hand deals the next one
+    if (lastState.getCurrentRound() == BettingRound.END_GAME) {
+      return getNextHandMove(lastState, playerIds, isBulkMove(lastMove));
+    }
+    boolean isEndGame = lastState.getCurrentRound() == BettingRound.SHOWDOWN;
     for(Operation operation : lastMove) {
       if(operation instanceof EndGame) {
         isEndGame = true;
@@ -121,6 +374,55 @@ public class PokerLogic extends AbstractPokerLogicBase {
     throw new IllegalStateException("No Expected move can be found");
   }
   
+  private boolean isBulkMove(List<Operation> move) {
+    for (Operation operation : move) {
+      if (operation instanceof ShuffleKeyRange) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isSessionMove(List<Operation> move) {
+    for (Operation operation : move) {
+      if (operation instanceof Set && SEATS.equals(((Set) operation).getKey())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if move ends a hand: the end game move, or the end of a hand of a session,
+   * which doesn't end the game.
+   */
+  public boolean isEndOfHand(List<Operation> move) {
+    for (Operation operation : move) {
+      if (isSetOperation(operation, CURRENT_ROUND, BettingRound.END_GAME.name())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the ids of the players of the hand by seat: playerIds itself, unless the hand is
+   * part of a session, where seat i is played by playerIds.get(SEATS[i]).<br>
+   * The moves take the ids of all the players and map them with this, so their callers
+   * don't need to know about sessions.
+   */
+  public List<String> getSeatedPlayerIds(PokerState state, List<String> playerIds) {
+    if (!state.isSession()) {
+      return playerIds;
+    }
+    SeatMap seatMap = SeatMap.of(state);
+    ImmutableList.Builder<String> seatedPlayerIds = ImmutableList.builder();
+    for (int seat = 0; seat < seatMap.getNumberOfPlayers(); seat++) {
+      seatedPlayerIds.add(playerIds.get(seatMap.getPlayerIndex(seat)));
+    }
+    return seatedPlayerIds.build();
+  }
+
   /**
    * Returns operation list for end game scenario.<Br>
    * Divides the money in all the pots amongst the 
@@ -130,7 +432,8 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param playerIds
    * @return
    */
-  List<Operation> doEndGameMove(PokerState lastState, List<String> playerIds) {
+  public List<Operation> doEndGameMove(PokerState lastState, List<String> allPlayerIds) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     List<List<String>> winnersForEachPot = helper.getWinners(lastState, playerIds);
     
@@ -141,9 +444,15 @@ public class PokerLogic extends AbstractPokerLogicBase {
     
     ImmutableMap.Builder<String, Integer> endGameMapBuilder = ImmutableMap.builder();
     
+    // The rake is taken from the main pot first
+    int rake = calculateRake(lastState);
+    int rakeLeft = rake;
     for (int potIndex = 0; potIndex < winnersForEachPot.size(); potIndex++) {
       List<String> winnersForPot = winnersForEachPot.get(potIndex);
       int potAmount = lastState.getPots().get(potIndex).getChips();
+      int potRake = Math.min(rakeLeft, potAmount);
+      potAmount -= potRake;
+      rakeLeft -= potRake;
       int numberOfWinners = winnersForPot.size();
       for(int winnerIndex = 0; winnerIndex < numberOfWinners; winnerIndex++) {
         int winningShare;
@@ -170,6 +479,10 @@ public class PokerLogic extends AbstractPokerLogicBase {
     
     
     
+    if (lastState.isSession()) {
+      return doEndHandMove(lastState, allPlayerIds, winnings, pots, rake);
+    }
+    
     ImmutableMap.Builder<String, Integer> playerIdToTokensBuilder = ImmutableMap.builder();
     ImmutableMap.Builder<String, Integer> playerIdToPotTokensBuilder = ImmutableMap.builder();
     for(int i = 0; i < winnings.size(); i++) {
@@ -177,14 +490,168 @@ public class PokerLogic extends AbstractPokerLogicBase {
       playerIdToPotTokensBuilder.put(playerIds.get(i), 0);
     }
     
-    return ImmutableList.<Operation>of(
+    ImmutableList.Builder<Operation> operations = ImmutableList.<Operation>builder().add(
         new AttemptChangeTokens(
             playerIdToTokensBuilder.build(),
             playerIdToPotTokensBuilder.build()),
         new Set(CURRENT_ROUND, BettingRound.END_GAME.name()),
         new Set(PLAYER_CHIPS, winnings),
-        new Set(POTS, pots),
-        new EndGame(endGameMapBuilder.build()));
+        new Set(POTS, pots));
+    if (rake > 0) {
+      operations.add(new Set(RAKE, rake));
+    }
+    return operations.add(new EndGame(endGameMapBuilder.build())).build();
+  }
+  
+  /**
+   * Ends a hand of a session. While two players or more have chips the session goes on: the
+   * turn goes to the player after the button, who deals the next hand with
+   * {@link #getNextHandMove}. Otherwise the session ends: the tokens are paid out by
+   * stack and the player left with the chips wins.
+   * 
+   * @param lastState
+   * @param playerIds the ids of all the players of the session
+   * @param winnings the stacks of the seats after the pots are paid out
+   * @param pots
+   * @param rake
+   * @return
+   */
+  private List<Operation> doEndHandMove(PokerState lastState, List<String> playerIds,
+      List<Integer> winnings, List<ImmutableMap<String, Object>> pots, int rake) {
+    int nextDealerSeat = getNextDealerSeat(winnings);
+    boolean isSessionOver = nextDealerSeat < 0;
+    List<Integer> stacks = isSessionOver
+        ? getSessionStacks(lastState.getSeats(), winnings, playerIds.size()) : null;
+    ImmutableList.Builder<Operation> operations = ImmutableList.builder();
+    if (!isSessionOver) {
+      operations.add(new SetTurn(playerIds.get(lastState.getSeats().get(nextDealerSeat))));
+    } else {
+      ImmutableMap.Builder<String, Integer> playerIdToTokensBuilder = ImmutableMap.builder();
+      ImmutableMap.Builder<String, Integer> playerIdToPotTokensBuilder = ImmutableMap.builder();
+      for (int i = 0; i < playerIds.size(); i++) {
+        playerIdToTokensBuilder.put(playerIds.get(i), stacks.get(i));
+        playerIdToPotTokensBuilder.put(playerIds.get(i), 0);
+      }
+      operations.add(new AttemptChangeTokens(
+          playerIdToTokensBuilder.build(), playerIdToPotTokensBuilder.build()));
+    }
+    operations.add(
+        new Set(CURRENT_ROUND, BettingRound.END_GAME.name()),
+        new Set(PLAYER_CHIPS, winnings),
+        new Set(POTS, pots));
+    if (rake > 0) {
+      operations.add(new Set(RAKE, rake));
+    }
+    if (isSessionOver) {
+      ImmutableMap.Builder<String, Integer> endGameMapBuilder = ImmutableMap.builder();
+      for (int i = 0; i < playerIds.size(); i++) {
+        endGameMapBuilder.put(playerIds.get(i), stacks.get(i) > 0 ? 1 : 0);
+      }
+      operations.add(new EndGame(endGameMapBuilder.build()));
+    }
+    return operations.build();
+  }
+  
+  /**
+   * Returns the seat of the next button: the first seat after the button with chips left,
+   * or -1 if fewer than two seats have chips and the session is over.
+   */
+  private int getNextDealerSeat(List<Integer> stacks) {
+    SeatMap seatMap = SeatMap.ofStacks(stacks);
+    // With two seats with chips, one of them is after the button
+    return seatMap.getActiveCount() >= 2 ? seatMap.getNextActive(SeatMap.BUTTON) : -1;
+  }
+  
+  /** Returns the stack of every player of the session from the stacks of the seats. */
+  private List<Integer> getSessionStacks(List<Integer> seats, List<Integer> seatStacks,
+      int numberOfPlayers) {
+    Integer[] stacks = new Integer[numberOfPlayers];
+    Arrays.fill(stacks, 0);
+    for (int seat = 0; seat < seats.size(); seat++) {
+      stacks[seats.get(seat)] = seatStacks.get(seat);
+    }
+    return Arrays.asList(stacks);
+  }
+  
+  /**
+   * Deals the next hand of a session, from the end of the last one: the button moves to the
+   * next player with chips, the stacks carry over and the players without chips sit out.
+   * The move is made by the new button, whose turn it is.
+   * 
+   * @param lastState the state at the end of the last hand
+   * @param playerIds the ids of all the players of the session
+   * @param bulkOperations as in {@link #getInitialMove(List, Map, boolean)}
+   * @return
+   */
+  public List<Operation> getNextHandMove(PokerState lastState, List<String> playerIds,
+      boolean bulkOperations) {
+    check(lastState.isSession() && lastState.getCurrentRound() == BettingRound.END_GAME,
+        "Not the end of a hand of a session");
+    List<Integer> lastSeats = lastState.getSeats();
+    int nextDealerSeat = getNextDealerSeat(lastState.getPlayerChips());
+    check(nextDealerSeat >= 0, "The session is over");
+    List<Integer> stacks =
+        getSessionStacks(lastSeats, lastState.getPlayerChips(), playerIds.size());
+    int dealer = lastSeats.get(nextDealerSeat);
+    ImmutableList.Builder<Integer> seats = ImmutableList.builder();
+    ImmutableList.Builder<String> seatedPlayerIds = ImmutableList.builder();
+    ImmutableMap.Builder<String, Integer> seatedChips = ImmutableMap.builder();
+    for (int i = 0; i < playerIds.size(); i++) {
+      int index = (dealer + i) % playerIds.size();
+      if (stacks.get(index) > 0) {
+        seats.add(index);
+        seatedPlayerIds.add(playerIds.get(index));
+        seatedChips.put(playerIds.get(index), stacks.get(index));
+      }
+    }
+    List<Operation> operations = getDealMove(seatedPlayerIds.build(), seatedChips.build(),
+        bulkOperations, seats.build());
+    // What only the last hand set
+    if (lastState.isFlopDealt()) {
+      operations.add(new Delete(FLOP_DEALT));
+    }
+    if (lastState.getRake() > 0) {
+      operations.add(new Delete(RAKE));
+    }
+    if (lastState.getBigBlind() != BIG_BLIND && bigBlind == BIG_BLIND) {
+      operations.add(new Delete(BIG_BLIND_KEY));
+    }
+    return operations;
+  }
+  
+  /**
+   * Returns the chips raked from the pots: the table's share of all the pots, up to the
+   * cap, if the flop was dealt.
+   * 
+   * @param lastState
+   * @return
+   */
+  private int calculateRake(PokerState lastState) {
+    if (rakePerMille == 0 || !lastState.isFlopDealt()) {
+      return 0;
+    }
+    long chips = 0;
+    for (Pot pot : lastState.getPots()) {
+      chips += pot.getChips();
+    }
+    int rake = (int) (chips * rakePerMille / 1000);
+    return rakeCap > 0 ? Math.min(rake, rakeCap) : rake;
+  }
+  
+  /**
+   * On a raked table, adds the operation recording the flop is dealt when a move ends
+   * the pre-flop with more than one player left.
+   * 
+   * @param operations
+   * @param lastState
+   * @param playersLeft
+   */
+  private void addFlopDealt(List<Operation> operations, PokerState lastState,
+      int playersLeft) {
+    if (rakePerMille > 0 && lastState.getCurrentRound() == BettingRound.PRE_FLOP &&
+        playersLeft > 1) {
+      operations.add(new Set(FLOP_DEALT, Boolean.TRUE));
+    }
   }
 
   
@@ -227,7 +694,8 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param playerIds
    * @return
    */
-  List<Operation> doFoldMove(PokerState lastState, List<String> playerIds) {
+  public List<Operation> doFoldMove(PokerState lastState, List<String> allPlayerIds) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     if (isNewRoundStarting(lastState, PokerMove.FOLD, 0)) {
       return doNewRoundAfterFoldMove(lastState, playerIds);
@@ -255,23 +723,9 @@ public class PokerLogic extends AbstractPokerLogicBase {
     operations.add(new Set(PLAYERS_IN_HAND, newPlayersInHand));
     
     // Remove player from all pots
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    boolean isNewPotsRequired = false;
-    for(Pot pot : pots) {
-      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
-      List<String> newPlayersInPot = removeFromList(playersInPot, lastState.getWhoseMove().name());
-      if(playersInPot.size() != newPlayersInPot.size()) {
-        isNewPotsRequired = true;
-      }
-      newPots.add(ImmutableMap.<String, Object>of(
-          CHIPS, pot.getChips(),
-          CURRENT_POT_BET, pot.getCurrentPotBet(),
-          PLAYERS_IN_POT, newPlayersInPot,
-          PLAYER_BETS, pot.getPlayerBets()));
-    }
-    if(isNewPotsRequired) {
-      operations.add(new Set(POTS, newPots));
+    PotManager potManager = new PotManager(lastState.getPots(), lastState.getNumberOfPlayers());
+    if (potManager.fold(lastState.getWhoseMove().ordinal())) {
+      operations.add(new Set(POTS, potManager.getApiPots()));
     }
     
     return operations;
@@ -285,7 +739,8 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param playerIds
    * @return
    */
-  List<Operation> doCheckMove(PokerState lastState, List<String> playerIds) {
+  public List<Operation> doCheckMove(PokerState lastState, List<String> allPlayerIds) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     if (isNewRoundStarting(lastState, PokerMove.CHECK, 0)) {
       return doNewRoundAfterCheckMove(lastState , playerIds);
@@ -312,7 +767,9 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param lastState
    * @return
    */
-  List<Operation> doCallMove(PokerState lastState, List<String> playerIds, int additionalAmount) {
+  public List<Operation> doCallMove(PokerState lastState, List<String> allPlayerIds,
+      int additionalAmount) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     if (isNewRoundStarting(lastState, PokerMove.CALL, additionalAmount)) {
       return doNewRoundAfterCallMove(lastState, playerIds, additionalAmount);
@@ -353,176 +810,37 @@ public class PokerLogic extends AbstractPokerLogicBase {
     operations.add(new Set(PLAYER_CHIPS, newPlayerChips));
     
     // Add call amount to all the pots
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    if(isAllIn) {
-      newPots.addAll(splitPotsForPartialCall(lastState, additionalAmount, false));
-    }
-    else {
-      for(Pot pot : pots) {
-        int existingBet = lastState.getPlayerBets().get(playerIndex);
-        List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
-        List<String> newPlayersInPot = addToList(playersInPot, lastState.getWhoseMove().name());
-        List<Integer> playerPotBets = pot.getPlayerBets();
-        List<Integer> newPlayerPotBets = addOrReplaceInList(playerPotBets,
-            Integer.valueOf(pot.getCurrentPotBet()), playerIndex);
-        newPots.add(ImmutableMap.<String, Object>of(
-            CHIPS, pot.getChips() + pot.getCurrentPotBet() - existingBet,
-            CURRENT_POT_BET, pot.getCurrentPotBet(),
-            PLAYERS_IN_POT, newPlayersInPot,
-            PLAYER_BETS, newPlayerPotBets));
-      }
-    }
-    operations.add(new Set(POTS, newPots));
+    operations.add(new Set(POTS, getPotsAfterCall(lastState, additionalAmount, isAllIn, false)));
     
     return operations;
   }
   
   /**
-   * Splits the pot for all-in call move, and resets the pots
-   * for a new round if required.
+   * Puts the call in the pots, splitting them for an all-in call, and resets the pots
+   * for a new round if required; see {@link PotManager}.
    * 
    * @param lastState
    * @param additionalAmount
+   * @param isAllIn
    * @param isNewRoundStarting
    * @return
    */
-  private List<Map<String, Object>> splitPotsForPartialCall(PokerState lastState, 
-      int additionalAmount, boolean isNewRoundStarting) {
-    
-    List<Map<String, Object>> pots = splitPotsForPartialCallHelper(lastState, additionalAmount);
-    
-    if(isNewRoundStarting){
-      List<Map<String, Object>> newPots = Lists.newArrayList();
-      for( Map<String, Object> pot : pots){
-        Map<String, Object> newPot = ImmutableMap.<String, Object>of(
-            CHIPS, pot.get(CHIPS),
-            CURRENT_POT_BET, 0,
-            PLAYERS_IN_POT, pot.get(PLAYERS_IN_POT),
-            PLAYER_BETS, createNewList(lastState.getNumberOfPlayers(), 0)
-            );
-       newPots.add(newPot); 
-      }
-      return newPots;
-    }
-    
-    return pots;
-  }
-  
-  /**
-   * Since player is going all in during call move, 
-   * one of the pots need to be split into 2 pots.
-   * 
-   * @param lastState
-   * @param additionalAmount
-   * @return
-   */
-  private List<Map<String, Object>> splitPotsForPartialCallHelper(PokerState lastState,
-      int additionalAmount) {
-    check(calculateLastRequiredBet(lastState) >= additionalAmount, "This is not an all-in call.");
+  private List<Map<String, Object>> getPotsAfterCall(PokerState lastState, 
+      int additionalAmount, boolean isAllIn, boolean isNewRoundStarting) {
+    PotManager potManager = new PotManager(lastState.getPots(), lastState.getNumberOfPlayers());
     int playerIndex = lastState.getWhoseMove().ordinal();
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    int remainingAmount = additionalAmount;
-    boolean potSplitDone = false;
-    for(int i=0; i<pots.size(); i++) {
-      Pot pot = pots.get(i);
-      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
-      int requiredPotBet = pot.getCurrentPotBet();
-      int existingPotBet = pot.getPlayerBets().get(playerIndex);
-      int remainingPotBet = requiredPotBet - existingPotBet;
-      
-      if(!potSplitDone && remainingAmount <= remainingPotBet) {
-        // Possibly need to split this pot.
-        boolean isSplitRequired = isSplitRequired(pots, i, remainingAmount, remainingPotBet);
-        
-        int lastRoundPotChips = pot.getChips();
-        for (int playerBet : pot.getPlayerBets()) {
-          lastRoundPotChips -= playerBet;
-        }
-        
-        int requiredPotBet1 = existingPotBet + remainingAmount;
-        int requiredPotBet2 = requiredPotBet - (remainingAmount + existingPotBet);
-        List<Integer> newPlayerBets1 = Lists.newArrayList();
-        List<Integer> newPlayerBets2 = Lists.newArrayList();
-        int chips1 = 0;
-        int chips2 = 0;
-        List<Integer> playerBets = addOrReplaceInList(
-            pot.getPlayerBets(), Integer.valueOf(existingPotBet + remainingAmount), playerIndex);
-        for(int playerBet : playerBets) {
-          int playerBet1 = playerBet > requiredPotBet1 ? requiredPotBet1 : playerBet;
-          int playerBet2 = playerBet > requiredPotBet1 ? (playerBet - requiredPotBet1) : 0;
-          newPlayerBets1.add(playerBet1);
-          newPlayerBets2.add(playerBet2);
-          chips1 += playerBet1;
-          chips2 += playerBet2;
-        }
-        check(pot.getChips() + remainingAmount == 
-            lastRoundPotChips + chips1 + chips2, "Invalid pot split.");
-        newPots.add(ImmutableMap.<String, Object>of(
-            CHIPS, lastRoundPotChips + chips1,
-            CURRENT_POT_BET, requiredPotBet1,
-            PLAYERS_IN_POT, playersInPot,
-            PLAYER_BETS, newPlayerBets1));
-        if (isSplitRequired) {
-          newPots.add(ImmutableMap.<String, Object>of(
-              CHIPS, chips2,
-              CURRENT_POT_BET, requiredPotBet2,
-              PLAYERS_IN_POT, removeFromList(playersInPot, P[playerIndex]),
-              PLAYER_BETS, newPlayerBets2));
-        }
-        potSplitDone = true;
-      }
-      else {
-        if (potSplitDone) {
-          newPots.add(ImmutableMap.<String, Object>of(
-              CHIPS, pot.getChips(),
-              CURRENT_POT_BET, pot.getCurrentPotBet(),
-              PLAYERS_IN_POT, removeFromList(playersInPot, P[playerIndex]),
-              PLAYER_BETS, pot.getPlayerBets()));
-        }
-        else {
-          newPots.add(ImmutableMap.<String, Object>of(
-              CHIPS, pot.getChips() + remainingPotBet,
-              CURRENT_POT_BET, requiredPotBet,
-              PLAYERS_IN_POT, playersInPot,
-              PLAYER_BETS, addOrReplaceInList(pot.getPlayerBets(),
-                  Integer.valueOf(requiredPotBet), playerIndex)));
-          remainingAmount -= remainingPotBet;
-        }
-      }
-    }
-    
-    return newPots;
-  }
-
-  /**
-   * Check if the current pot should be split
-   * 
-   * @param pots
-   * @param index
-   * @param remainingAmount
-   * @param remainingPotBet
-   * @return
-   */
-  private boolean isSplitRequired(
-      List<Pot> pots, int index, int remainingAmount, int remainingPotBet) {
-    
-    if (remainingAmount < remainingPotBet) {
-      return true;
-    }
-    else if (remainingAmount > remainingPotBet) {
-      return false;
+    if (isAllIn) {
+      check(calculateLastRequiredBet(lastState) >= additionalAmount,
+          "This is not an all-in call.");
+      potManager.callAllIn(playerIndex, additionalAmount);
     }
     else {
-      // Exact match with existing pot. Check if new pot is required.
-      if (pots.size() - 1 == index && pots.get(index).getChips() > 0) {
-        // This was the last pot, so we need a new empty pot (if not already empty)
-        return true;
-      }
-      // Not the last pot, so no point creating an empty pot here
-      return false;
+      potManager.call(playerIndex);
+    }
+    if (isNewRoundStarting) {
+      potManager.resetRoundBets();
     }
+    return potManager.getApiPots();
   }
 
   /**
@@ -534,7 +852,8 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param betAmount
    * @return
    */
-  List<Operation> doBetMove(PokerState lastState, List<String> playerIds, int betAmount) {
+  public List<Operation> doBetMove(PokerState lastState, List<String> allPlayerIds, int betAmount) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     // In Bet move existing bet should be zero, otherwise it'll be a raise
     check(calculateLastRequiredBet(lastState) == 0, "Bet Move: Non-zero existing bet");
@@ -568,32 +887,10 @@ public class PokerLogic extends AbstractPokerLogicBase {
         lastState.getPlayerChips().get(playerIndex) - betAmount, playerIndex);
     operations.add(new Set(PLAYER_CHIPS, newPlayerChips));
     
-    // Bet amount needs to be added to last pot only
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    for (int i = 0; i < pots.size() - 1; i++) {
-      newPots.add(getApiPot(pots.get(i)));
-    }
-    Pot finalPot = pots.get(pots.size() - 1);
-    List<String> playersInFinalPot = helper.getApiPlayerList(finalPot.getPlayersInPot());
-    List<Integer> playerBetsInFinalPot = finalPot.getPlayerBets();
-    List<Integer> newPlayerBetsInFinalPot = addOrReplaceInList(playerBetsInFinalPot,
-          Integer.valueOf(betAmount), playerIndex);
-    newPots.add(ImmutableMap.<String, Object>of(
-        CHIPS, finalPot.getChips() + betAmount,
-        CURRENT_POT_BET, betAmount,
-        PLAYERS_IN_POT, addToList(playersInFinalPot, P[playerIndex]),
-        PLAYER_BETS, newPlayerBetsInFinalPot));
-    if (isAllIn) {
-      Map<String, Object> finalApiPot = newPots.get(newPots.size() - 1);
-      newPots.add(ImmutableMap.<String, Object>of(
-          CHIPS, 0,
-          CURRENT_POT_BET, 0,
-          PLAYERS_IN_POT, removeFromList(
-              (List<String>)finalApiPot.get(PLAYERS_IN_POT), P[playerIndex]),
-          PLAYER_BETS, createNewList(playerIds.size(), Integer.valueOf(0))));
-    }
-    operations.add(new Set(POTS, newPots));
+    // Bet amount needs to be added to last pot only; see PotManager
+    PotManager potManager = new PotManager(lastState.getPots(), lastState.getNumberOfPlayers());
+    potManager.bet(playerIndex, betAmount, isAllIn);
+    operations.add(new Set(POTS, potManager.getApiPots()));
 
     return operations;
   }
@@ -607,8 +904,9 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param additionalAmount
    * @return
    */
-  List<Operation> doRaiseMove(PokerState lastState, List<String> playerIds,
+  public List<Operation> doRaiseMove(PokerState lastState, List<String> allPlayerIds,
       int additionalAmount) {
+    List<String> playerIds = getSeatedPlayerIds(lastState, allPlayerIds);
     
     int playerIndex = lastState.getWhoseMove().ordinal();
     int totalRequiredBet = calculateLastRequiredBet(lastState);
@@ -651,49 +949,10 @@ public class PokerLogic extends AbstractPokerLogicBase {
     
     // requiredBet amount should be distributed amongst all the pots
     // raiseByAmount should be added to final pot
-    // if its all-in move, create new final pot
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    for (int i = 0; i < pots.size(); i++) {
-      if(i != pots.size() - 1) {
-        Pot pot = pots.get(i);
-        int requiredPotBet = pot.getCurrentPotBet();
-        int existingPotBet = pot.getPlayerBets().get(playerIndex);
-        List<Integer> playerBetsInPot = pot.getPlayerBets();
-        List<Integer> newPlayerBetsInPot = addOrReplaceInList(playerBetsInPot,
-            Integer.valueOf(requiredPotBet), playerIndex);
-        newPots.add(ImmutableMap.<String, Object>of(
-            CHIPS, pot.getChips() + (requiredPotBet - existingPotBet),
-            CURRENT_POT_BET, pot.getCurrentPotBet(),
-            PLAYERS_IN_POT, addToList(helper.getApiPlayerList(pot.getPlayersInPot()), 
-                P[playerIndex]),
-            PLAYER_BETS, newPlayerBetsInPot));
-      }
-      else {
-        Pot finalPot = pots.get(i);
-        int requiredPotBet = finalPot.getCurrentPotBet();
-        int existingPotBet = finalPot.getPlayerBets().get(playerIndex);
-        List<Integer> playerBetsInFinalPot = finalPot.getPlayerBets();
-        List<Integer> newPlayerBetsInFinalPot = addOrReplaceInList(playerBetsInFinalPot,
-            Integer.valueOf(requiredPotBet + raiseByAmount), playerIndex);
-        newPots.add(ImmutableMap.<String, Object>of(
-            CHIPS, finalPot.getChips() + (requiredPotBet - existingPotBet) + raiseByAmount,
-            CURRENT_POT_BET, requiredPotBet + raiseByAmount,
-            PLAYERS_IN_POT, addToList(helper.getApiPlayerList(finalPot.getPlayersInPot()), P[playerIndex]),
-            PLAYER_BETS, newPlayerBetsInFinalPot));
-      
-        if(isAllIn) {
-          Map<String, Object> lastApiPot = newPots.get(newPots.size() - 1);
-          newPots.add(ImmutableMap.<String, Object>of(
-              CHIPS, 0,
-              CURRENT_POT_BET, 0,
-              PLAYERS_IN_POT, removeFromList(
-                  (List<String>)lastApiPot.get(PLAYERS_IN_POT), P[playerIndex]),
-              PLAYER_BETS, createNewList(playerIds.size(), Integer.valueOf(0))));
-        }
-      }
-    }
-    operations.add(new Set(POTS, newPots));
+    // if its all-in move, create new final pot; see PotManager
+    PotManager potManager = new PotManager(lastState.getPots(), lastState.getNumberOfPlayers());
+    potManager.raise(playerIndex, raiseByAmount, isAllIn);
+    operations.add(new Set(POTS, potManager.getApiPots()));
     
     return operations;
   }
@@ -721,32 +980,16 @@ public class PokerLogic extends AbstractPokerLogicBase {
       // Just 1 player left
       return true;
     } 
-    int playersLeft = 0;
-    Player lastPlayer = null;
-    int requiredBet = calculateLastRequiredBet(lastState);
-    for(Player player : playersInHand) {
-      boolean isCurrentPlayer = player == lastState.getWhoseMove();
-      int playerChipsLeft = lastState.getPlayerChips().get(player.ordinal());
-      if (isCurrentPlayer) {
-        playerChipsLeft -= additionalAmount;
-      }
-      if(isCurrentPlayer && move == PokerMove.FOLD) {
-        // Don't count because player folded
-        continue;
-      }
-      if(playerChipsLeft == 0) {
-        // This player is all-in, move on.
-        continue;
-      }
-      // Found another player who's not all-in and in the game
-      playersLeft++;
-      lastPlayer = player;
-      if (playersLeft > 1) {
-        return false;
-      }
+    // The players who can still act after the move: not folded and not all-in
+    SeatMap seatMap = getSeatMapAfterMove(lastState, move, additionalAmount);
+    int playersLeft = seatMap.getActiveCount();
+    if (playersLeft > 1) {
+      return false;
     }
-    // Check if player left has matched the current bet (this can't be current player).
-    if (playersLeft == 1 && lastState.getPlayerBets().get(lastPlayer.ordinal()) < requiredBet) {
+    int lastPlayerIndex = seatMap.getNextActive(SeatMap.BUTTON);
+    // Check if player left has matched the current bet; a current player who calls has.
+    if (playersLeft == 1 && lastPlayerIndex != lastState.getWhoseMove().ordinal()
+        && lastState.getPlayerBets().get(lastPlayerIndex) < calculateLastRequiredBet(lastState)) {
       // Last player left is still to act
       return false;
     }
@@ -771,7 +1014,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
     boolean isGameEnding = (nextRound == BettingRound.SHOWDOWN);
     // If game is ending, next turn will be set to the same player
     int nextTurnIndex = (isGameEnding || noPlayersLeft) ? playerIndex : getNewRoundNextTurnIndex(
-        lastState, PokerMove.FOLD);
+        lastState, PokerMove.FOLD, 0);
     if(noPlayersLeft) {
       nextRound = BettingRound.SHOWDOWN;
     }
@@ -806,19 +1049,10 @@ public class PokerLogic extends AbstractPokerLogicBase {
     operations.add(new Set(PLAYER_BETS, newPlayerBets));
     
     // Remove player from pots and set pot bets to 0
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    for(Pot pot : pots) {
-      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
-      List<String> newPlayersInPot = removeFromList(playersInPot, lastState.getWhoseMove().name());
-      newPots.add(ImmutableMap.<String, Object>of(
-          CHIPS, pot.getChips(),
-          CURRENT_POT_BET, 0,
-          PLAYERS_IN_POT, newPlayersInPot,
-          PLAYER_BETS, createNewList(numOfPlayers, 0)));
-    }
-    
-    operations.add(new Set(POTS, newPots));
+    PotManager potManager = new PotManager(lastState.getPots(), numOfPlayers);
+    potManager.fold(playerIndex);
+    potManager.resetRoundBets();
+    operations.add(new Set(POTS, potManager.getApiPots()));
     
     if(isGameEnding || noPlayersLeft){
       operations.addAll(makeHoleCardsVisible(lastState, PokerMove.FOLD));
@@ -835,6 +1069,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
         operations.addAll(openNextCommunityCards(currentRound, numberOfPlayers));
       }
     }
+    addFlopDealt(operations, lastState, newPlayerInHand.size());
     
     return operations;
   }
@@ -868,7 +1103,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
     boolean isGameEnding = (nextRound == BettingRound.SHOWDOWN);
     //If game is ending, next turn will be set to the same player
     int nextTurnIndex = (isGameEnding || noPlayersLeft) ? playerIndex : getNewRoundNextTurnIndex(
-        lastState, PokerMove.CHECK);
+        lastState, PokerMove.CHECK, 0);
     int numberOfPlayers = lastState.getNumberOfPlayers();
     if(noPlayersLeft) {
       nextRound = BettingRound.SHOWDOWN;
@@ -877,15 +1112,9 @@ public class PokerLogic extends AbstractPokerLogicBase {
     List<Operation> operations = Lists.newArrayList();
 
     //set pot bets to 0 and player bets in pot to 0
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    for(Pot pot: pots){
-      newPots.add(ImmutableMap.<String,Object>of(
-          CHIPS, pot.getChips(),
-          CURRENT_POT_BET, 0,
-          PLAYERS_IN_POT, helper.getApiPlayerList(pot.getPlayersInPot()),
-          PLAYER_BETS, createNewList(numberOfPlayers, Integer.valueOf(0))));
-    }
+    PotManager potManager = new PotManager(lastState.getPots(), numberOfPlayers);
+    potManager.resetRoundBets();
+    List<Map<String, Object>> newPots = potManager.getApiPots();
     
     operations.add(new SetTurn(playerIds.get(nextTurnIndex)));
     
@@ -916,6 +1145,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
         operations.addAll(openNextCommunityCards(currentRound, numberOfPlayers));
       }
     }
+    addFlopDealt(operations, lastState, lastState.getPlayersInHand().size());
     
     return operations;
   }
@@ -943,7 +1173,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
     boolean isGameEnding = (nextRound == BettingRound.SHOWDOWN);
     //If game is ending, next turn will be set to the same player
     int nextTurnIndex = (isGameEnding || noPlayersLeft) ? playerIndex : getNewRoundNextTurnIndex(
-        lastState, PokerMove.CALL);
+        lastState, PokerMove.CALL, additionalAmount);
     boolean isAllIn = (currentPlayerChips == additionalAmount);
     if(noPlayersLeft) {
       nextRound = BettingRound.SHOWDOWN;
@@ -986,25 +1216,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
     operations.add(new Set(PLAYER_CHIPS, newPlayerChips));
     
     // Set Pots
-    List<Pot> pots = lastState.getPots();
-    List<Map<String, Object>> newPots = Lists.newArrayList();
-    if(isAllIn) {
-      newPots.addAll(splitPotsForPartialCall(lastState, additionalAmount, true));
-    }
-    else {
-      for(Pot pot : pots) {
-        int existingBet = lastState.getPlayerBets().get(playerIndex);
-        List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
-        List<String> newPlayersInPot = addToList(playersInPot, lastState.getWhoseMove().name());
-        List<Integer> newPlayerPotBets = createNewList(numOfPlayers, 0);
-        newPots.add(ImmutableMap.<String, Object>of(
-            CHIPS, pot.getChips() + pot.getCurrentPotBet() - existingBet,
-            CURRENT_POT_BET, 0,
-            PLAYERS_IN_POT, newPlayersInPot,
-            PLAYER_BETS, newPlayerPotBets));
-      }
-    }
-    operations.add(new Set(POTS, newPots));
+    operations.add(new Set(POTS, getPotsAfterCall(lastState, additionalAmount, isAllIn, true)));
     
     if(isGameEnding || noPlayersLeft){
       operations.addAll(makeHoleCardsVisible(lastState, PokerMove.CALL));
@@ -1020,6 +1232,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
         operations.addAll(openNextCommunityCards(currentRound, numberOfPlayers));
       }
     }
+    addFlopDealt(operations, lastState, lastState.getPlayersInHand().size());
     return operations;
   }
 
@@ -1039,7 +1252,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
     
     // If its a big blind move in preflop and he checks, round ends
     if (lastState.getCurrentRound() == BettingRound.PRE_FLOP && 
-        calculateLastRequiredBet(lastState) == getBigBlindAmount() &&
+        calculateLastRequiredBet(lastState) == getLiveBlindAmount(lastState.getNumberOfPlayers()) &&
         isBigBlindMove(lastState) &&
         (previousMove == PokerMove.CHECK || previousMove == PokerMove.FOLD)) {
       return true;
@@ -1050,29 +1263,22 @@ public class PokerLogic extends AbstractPokerLogicBase {
       return true;
     }
     
-    boolean isNewRoundStarting = false;
-    List<Player> playersInHand = lastState.getPlayersInHand();
-    int currentBetterIndex = playersInHand.indexOf(lastState.getCurrentBetter());
-    int lastPlayerListIndex = playersInHand.indexOf(lastState.getWhoseMove());
-    for (int i = 1; i < playersInHand.size(); i++) {
-      int listIndex = (i + lastPlayerListIndex) % playersInHand.size();
-      int playerIndex = playersInHand.get(listIndex).ordinal();
-      if (listIndex == currentBetterIndex) {
-        // Reached the current better. The round will end unless its preflop bigblind bet.        
-        isNewRoundStarting = true;
-        break;
-      }
-      if (lastState.getPlayerChips().get(playerIndex) == 0) {
-        // This player is all-in. Continue to next player
-        continue;
-      }
-      break;
-    }
+    // The round ends if the turn would reach the current better before anyone else who can
+    // act: the all-in players are skipped. It doesn't when it's preflop bigblind bet.
+    SeatMap seatMap = SeatMap.of(lastState);
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    int currentBetterIndex = lastState.getCurrentBetter().ordinal();
+    int nextActiveIndex = seatMap.getNextActive(playerIndex);
+    boolean isNewRoundStarting = seatMap.isInHand(currentBetterIndex)
+        && currentBetterIndex != playerIndex
+        && (nextActiveIndex < 0 || nextActiveIndex == playerIndex
+            || seatMap.getDistance(playerIndex, currentBetterIndex)
+                <= seatMap.getDistance(playerIndex, nextActiveIndex));
     
     // Special case for pre-flop bigblind bet. The round goes on to big blind
     if (isNewRoundStarting) {
       if (lastState.getCurrentRound() == BettingRound.PRE_FLOP &&
-          calculateLastRequiredBet(lastState) == getBigBlindAmount()) {
+          calculateLastRequiredBet(lastState) == getLiveBlindAmount(lastState.getNumberOfPlayers())) {
          isNewRoundStarting = false;
       }
     }
@@ -1088,7 +1294,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param buyInAmount
    * @return
    */
-  List<Operation> getInitialBuyInMove(
+  public List<Operation> getInitialBuyInMove(
       String playerId, int buyInAmount, Map<String, Integer> playerIdToTokensInPot) {
     // Add new value
     ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
@@ -1114,27 +1320,102 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @param startingChips
    * @return
    */
-  List<Operation> getInitialMove(List<String> playerIds, Map<String, Integer> startingChips) {
+  public List<Operation> getInitialMove(List<String> playerIds,
+      Map<String, Integer> startingChips) {
+    return getInitialMove(playerIds, startingChips, false);
+  }
+  
+  /**
+   * Generates the initial move; with bulkOperations the deck is shuffled and
+   * its visibility set by three range operations ({@link ShuffleKeyRange},
+   * {@link SetVisibilityPerPlayer} and {@link SetVisibilityForKeyRange})
+   * instead of one Shuffle listing 52 keys and 52 SetVisibility operations.
+   * The container must support those operations.
+   * 
+   * @param playerIds
+   * @param startingChips
+   * @param bulkOperations
+   * @return
+   */
+  public List<Operation> getInitialMove(List<String> playerIds,
+      Map<String, Integer> startingChips, boolean bulkOperations) {
+    return getDealMove(playerIds, startingChips, bulkOperations, null);
+  }
+  
+  /**
+   * Generates the initial move of a session: a series of hands where the stacks carry over
+   * from hand to hand, the button moves round the table and the players who lose their
+   * chips sit out, until one player has them all. The first hand is dealt like
+   * {@link #getInitialMove(List, Map, boolean)}; once it ends, the next player deals the
+   * next one with {@link #getNextHandMove}.
+   * 
+   * @param playerIds
+   * @param startingChips
+   * @param bulkOperations
+   * @return
+   */
+  public List<Operation> getInitialSessionMove(List<String> playerIds,
+      Map<String, Integer> startingChips, boolean bulkOperations) {
+    ImmutableList.Builder<Integer> seats = ImmutableList.builder();
+    for (int i = 0; i < playerIds.size(); i++) {
+      seats.add(i);
+    }
+    return getDealMove(playerIds, startingChips, bulkOperations, seats.build());
+  }
+  
+  /**
+   * Deals a hand to playerIds, by seat.
+   * 
+   * @param seats the players' indices in a session, from the button; null for a single hand
+   */
+  private List<Operation> getDealMove(List<String> playerIds,
+      Map<String, Integer> startingChips, boolean bulkOperations, List<Integer> seats) {
     check(playerIds.size() >= 2 && playerIds.size() <= 9);
 
     int numberOfPlayers = playerIds.size();
-    boolean isHeadsUp = (numberOfPlayers == 2);
-    int smallBlindPos = isHeadsUp ? 0 : 1;
-    int bigBlindPos = isHeadsUp ? 1 : 2;
-    int utgPos = isHeadsUp ? 0 : 3 % numberOfPlayers;
+    int smallBlindPos = SeatMap.getSmallBlindSeat(numberOfPlayers);
+    int bigBlindPos = SeatMap.getBigBlindSeat(numberOfPlayers);
+    // The straddler, if any, is the last blind
+    int lastBlindPos = getLiveBlindIndex(numberOfPlayers);
+    int liveBlind = getLiveBlindAmount(numberOfPlayers);
+    
+    // Post the antes, then the blinds; a player short of chips posts all it has
+    List<Integer> playerBetList = Lists.newArrayList();
+    List<Integer> playerChipsList = Lists.newArrayList();
+    int[] antes = new int[numberOfPlayers];
+    int[] blinds = new int[numberOfPlayers];
+    int[] chipsLeft = new int[numberOfPlayers];
+    for (int i = 0; i < numberOfPlayers; i++) {
+      int chips = startingChips.get(playerIds.get(i));
+      int playerAnte = Math.min(ante, chips);
+      int blind = 0;
+      if (i == smallBlindPos) blind = smallBlind;
+      else if (i == bigBlindPos) blind = bigBlind;
+      else if (i == lastBlindPos) blind = liveBlind;
+      blind = Math.min(blind, chips - playerAnte);
+      playerBetList.add(blind);
+      playerChipsList.add(chips - playerAnte - blind);
+      antes[i] = playerAnte;
+      blinds[i] = blind;
+      chipsLeft[i] = chips - playerAnte - blind;
+    }
+    
+    // In heads-up match, P0(dealer) to act.
+    // Otherwise, player after the last blind to act, skipping players all-in from posting
+    int utgPos = SeatMap.getUnderTheGunSeat(numberOfPlayers, lastBlindPos);
+    for (int i = 0; i < numberOfPlayers && playerChipsList.get(utgPos) == 0; i++) {
+      utgPos = (utgPos + 1) % numberOfPlayers;
+    }
+    // If everyone went all-in posting, no one can act: the hand goes to the showdown
+    boolean allInFromPosting = playerChipsList.get(utgPos) == 0;
 
     List<Operation> operations = new ArrayList<Operation>();
 
-    // In heads-up match, P0(dealer) to act.
-    // Otherwise, player after big blind to act
     operations.add(new SetTurn(playerIds.get(utgPos)));
     
     operations.add(new Set(PREVIOUS_MOVE, PokerMove.RAISE.name()));
     
-    boolean bigBlindAllIn = false;
-    if(startingChips.get(playerIds.get(bigBlindPos)) == BIG_BLIND) {
-      bigBlindAllIn = true;
-    }
+    boolean bigBlindAllIn = playerChipsList.get(lastBlindPos) == 0;
     operations.add(new Set(PREVIOUS_MOVE_ALL_IN, bigBlindAllIn));
     
     //operations.add(new Set())
@@ -1144,14 +1425,15 @@ public class PokerLogic extends AbstractPokerLogicBase {
     // Otherwise, player after big blind to act
     operations.add(new Set(WHOSE_MOVE, P[utgPos]));
     
-    // Big blind will be the current better
-    operations.add(new Set(CURRENT_BETTER, P[bigBlindPos]));
+    // Big blind (or the straddler) will be the current better
+    operations.add(new Set(CURRENT_BETTER, P[lastBlindPos]));
 
-    operations.add(new Set(CURRENT_ROUND, BettingRound.PRE_FLOP.name()));
+    operations.add(new Set(CURRENT_ROUND, (allInFromPosting
+        ? BettingRound.SHOWDOWN : BettingRound.PRE_FLOP).name()));
 
     // Sets all the 52 cards as 2c, 2d, ... As, Ah
     for (int i = 0; i < 52; i++) {
-      operations.add(new Set(C + i, cardIdToString(i)));
+      operations.add(new Set(CARD_KEYS.get(i), cardIdToString(i)));
     }
 
     // Initially small blind and big blind will be in the hand
@@ -1174,52 +1456,91 @@ public class PokerLogic extends AbstractPokerLogicBase {
     // Assign next 5 cards as the board
     operations.add(new Set(BOARD, getIndicesInRange(numberOfPlayers * 2, numberOfPlayers * 2 + 4)));
     
-    // Post small and big blinds
-    List<Integer> playerBetList = Lists.newArrayList();
-    for (int i = 0; i < numberOfPlayers; i++) {
-      if (i == smallBlindPos) playerBetList.add(SMALL_BLIND);
-      else if (i == bigBlindPos) playerBetList.add(BIG_BLIND);
-      else playerBetList.add(0);
-    }
+    // Blinds and starting chips (minus antes and blinds)
     operations.add(new Set(PLAYER_BETS, playerBetList));
+    operations.add(new Set(PLAYER_CHIPS, playerChipsList));
     
-    // Assign starting chips (minus blinds)
-    List<Integer> playerChipsList = Lists.newArrayList();
+    // Create the main pot with the antes and blinds already in it, and a side pot above
+    // each player who went all-in posting them
+    int[] listedSeats = new int[numberOfPlayers];
+    int listedCount = 0;
+    listedSeats[listedCount++] = smallBlindPos;
+    listedSeats[listedCount++] = bigBlindPos;
+    if (lastBlindPos != bigBlindPos) {
+      listedSeats[listedCount++] = lastBlindPos;
+    }
     for (int i = 0; i < numberOfPlayers; i++) {
-      String playerId = playerIds.get(i);
-      if (i == smallBlindPos)
-        playerChipsList.add(startingChips.get(playerId) - SMALL_BLIND);
-      else if (i == bigBlindPos)
-        playerChipsList.add(startingChips.get(playerId) - BIG_BLIND);
-      else
-        playerChipsList.add(startingChips.get(playerId));
+      int playerPos = (smallBlindPos + i) % numberOfPlayers;
+      if (blinds[playerPos] == 0 && chipsLeft[playerPos] == 0
+          && playerPos != smallBlindPos && playerPos != bigBlindPos
+          && playerPos != lastBlindPos) {
+        listedSeats[listedCount++] = playerPos;
+      }
     }
-    operations.add(new Set(PLAYER_CHIPS, playerChipsList));
+    int[] postedSeats = new int[listedCount];
+    System.arraycopy(listedSeats, 0, postedSeats, 0, listedCount);
+    PotManager potManager =
+        PotManager.ofPostings(antes, blinds, chipsLeft, liveBlind, postedSeats);
+    operations.add(new Set(POTS, potManager.getApiPots()));
     
-    // Create the main pot with small and big blind already in it
-    Map<String, Object> mainPot = ImmutableMap.<String, Object>of(
-        CHIPS, SMALL_BLIND + BIG_BLIND, 
-        CURRENT_POT_BET, BIG_BLIND,
-        PLAYERS_IN_POT, ImmutableList.of(P[smallBlindPos], P[bigBlindPos]),
-        PLAYER_BETS, ImmutableList.copyOf(playerBetList));
-    operations.add(new Set(POTS, ImmutableList.of(mainPot)));
+    if (seats != null) {
+      operations.add(new Set(SEATS, seats));
+    }
+    if (bigBlind != BIG_BLIND) {
+      operations.add(new Set(BIG_BLIND_KEY, bigBlind));
+    }
+    if (allInFromPosting && rakePerMille > 0) {
+      operations.add(new Set(FLOP_DEALT, Boolean.TRUE));
+    }
+    
+    if (bulkOperations) {
+      operations.add(new ShuffleKeyRange(C, 0, 52));
+      operations.add(new SetVisibilityPerPlayer(C, 0, 2, playerIds));
+      operations.add(new SetVisibilityForKeyRange(C, 2 * numberOfPlayers, 52,
+          ImmutableList.<String>of()));
+      if (allInFromPosting) {
+        operations.addAll(openAllCardsAtTheDeal(numberOfPlayers));
+      }
+      return operations;
+    }
     
     // shuffle the cards
     operations.add(new Shuffle(getCardsInRange(0, 51)));
     
     // Make hole cards visible to players holding them
     for (int i = 0; i < numberOfPlayers; i++) {
-      operations.add(new SetVisibility(C + (i * 2), ImmutableList.of(playerIds.get(i))));
-      operations.add(new SetVisibility(C + (i * 2 + 1), ImmutableList.of(playerIds.get(i))));
+      operations.add(new SetVisibility(CARD_KEYS.get(i * 2),
+          ImmutableList.of(playerIds.get(i))));
+      operations.add(new SetVisibility(CARD_KEYS.get(i * 2 + 1),
+          ImmutableList.of(playerIds.get(i))));
     }
     // Make remaining cards not visible to anyone
     for (int i = 2 * numberOfPlayers; i < 52; i++) {
-      operations.add(new SetVisibility(C + i, ImmutableList.<String>of()));
+      operations.add(new SetVisibility(CARD_KEYS.get(i), ImmutableList.<String>of()));
+    }
+    if (allInFromPosting) {
+      operations.addAll(openAllCardsAtTheDeal(numberOfPlayers));
     }
     
     return operations;
   }
   
+  /**
+   * Returns the SetVisibility operations showing the hole cards and the board of a hand
+   * dealt straight to the showdown.
+   * 
+   * @param numberOfPlayers
+   * @return
+   */
+  private List<Operation> openAllCardsAtTheDeal(int numberOfPlayers) {
+    List<Operation> operations = Lists.newArrayList();
+    for (int i = 0; i < 2 * numberOfPlayers; i++) {
+      operations.add(new SetVisibility(CARD_KEYS.get(i)));
+    }
+    operations.addAll(openAllCommunityCards(BettingRound.PRE_FLOP, numberOfPlayers));
+    return operations;
+  }
+  
   private int calculateLastRequiredBet(PokerState lastState) {
     List<Pot> pots = lastState.getPots();
     int totalRequiredBet = 0;
@@ -1229,20 +1550,6 @@ public class PokerLogic extends AbstractPokerLogicBase {
     return totalRequiredBet;
   }
   
-  /**
-   * Returns the Pot object in JSON based format.
-   * 
-   * @param pot
-   * @return
-   */
-  private Map<String, Object> getApiPot(Pot pot) {
-    return ImmutableMap.<String, Object>of(
-        CHIPS, pot.getChips(),
-        CURRENT_POT_BET, pot.getCurrentPotBet(),
-        PLAYERS_IN_HAND, helper.getApiPlayerList(pot.getPlayersInPot()),
-        PLAYER_BETS, pot.getPlayerBets());
-  }
-  
   /**
    * Creates a new ImmutableList of given size where all elements
    * are initialized with the given default object.
@@ -1343,19 +1650,14 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * @return index of next player to act
    */
   private int getNextTurnIndex(PokerState lastState) {
-    List<Player> playersInHand = lastState.getPlayersInHand();
-    int lastPlayerListIndex = playersInHand.indexOf(lastState.getWhoseMove());
-    for(int i=1; i<playersInHand.size(); i++) {
-      int listIndex = (i + lastPlayerListIndex) % playersInHand.size();
-      int playerIndex = playersInHand.get(listIndex).ordinal();
-      if(lastState.getPlayerChips().get(playerIndex) == 0) {
-        // This player is all-in. Continue to next player
-        continue;
-      }
-      return playerIndex;
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    // All-in players are skipped
+    int nextTurnIndex = SeatMap.of(lastState).getNextActive(playerIndex);
+    if (nextTurnIndex < 0 || nextTurnIndex == playerIndex) {
+      // Code should never reach here if our assumption was correct
+      throw new IllegalStateException("Next turn not found");
     }
-    // Code should never reach here if our assumption was correct
-    throw new IllegalStateException("Next turn not found");
+    return nextTurnIndex;
   }
   
   /**
@@ -1364,47 +1666,70 @@ public class PokerLogic extends AbstractPokerLogicBase {
    * It assumes that at least one non-allIn player is in the hand.
    * 
    * @param state Last PokerState
+   * @param additionalAmount the chips the current player puts in with its move
    * @return index of next player to act
    */
-  private int getNewRoundNextTurnIndex(PokerState lastState, PokerMove move) {
+  private int getNewRoundNextTurnIndex(PokerState lastState, PokerMove move,
+      int additionalAmount) {
     
-    List<Player> playersInHand;
-    if(move == PokerMove.FOLD) {
-      playersInHand = removeFromList(lastState.getPlayersInHand(), lastState.getWhoseMove());
+    // Start from the player after the dealer, and end with the dealer
+    int nextTurnIndex = getSeatMapAfterMove(lastState, move, additionalAmount)
+        .getNextActive(SeatMap.BUTTON);
+    if (nextTurnIndex < 0) {
+      throw new IllegalStateException("Not all-in player in hand not found.");
     }
-    else {
-      playersInHand = lastState.getPlayersInHand();
+    return nextTurnIndex;
+  }
+  
+  /**
+   * Returns the seats of lastState after its player makes move, putting in additionalAmount.
+   */
+  private SeatMap getSeatMapAfterMove(PokerState lastState, PokerMove move,
+      int additionalAmount) {
+    SeatMap seatMap = SeatMap.of(lastState);
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    if (move == PokerMove.FOLD) {
+      return seatMap.fold(playerIndex);
     }
-    int numberOfPlayers = lastState.getNumberOfPlayers();
-    
-    // Start from P1, which is player after the dealer
-    for(int nextTurnIndex = 1; nextTurnIndex < numberOfPlayers; nextTurnIndex++) {
-      if(playersInHand.contains(Player.values()[nextTurnIndex])) {
-        if(lastState.getPlayerChips().get(nextTurnIndex) > 0) {
-          // Found not allIn player still in the hand
-          return nextTurnIndex;
-        }
-      }
+    if (lastState.getPlayerChips().get(playerIndex) == additionalAmount) {
+      return seatMap.allIn(playerIndex);
     }
-    throw new IllegalStateException("Not all-in player in hand not found.");
+    return seatMap;
   }
   
   /**
-   * Checks if next player to act was the big blind.
+   * Checks if next player to act was the big blind, or the straddler
+   * if there is a straddle: the last blind, who acts last in the pre-flop.
    * 
    * @param state
    * @return
    */
   private boolean isBigBlindMove(PokerState state) {
-    int numberOfPlayers = state.getNumberOfPlayers();
-    int bigBlindIndex = numberOfPlayers > 2 ? 2 : 1;
-    return state.getWhoseMove().ordinal() == bigBlindIndex;
+    return state.getWhoseMove().ordinal() == getLiveBlindIndex(state.getNumberOfPlayers());
   }
   
-  private int getBigBlindAmount() {
-    return BIG_BLIND;
+  private boolean isStraddled(int numberOfPlayers) {
+    return straddle && numberOfPlayers >= 4;
   }
   
+  /**
+   * Returns the index of the last blind: the straddler, else the big blind.
+   */
+  private int getLiveBlindIndex(int numberOfPlayers) {
+    if (isStraddled(numberOfPlayers)) {
+      return SeatMap.STRADDLE;
+    }
+    return SeatMap.getBigBlindSeat(numberOfPlayers);
+  }
+  
+  /**
+   * Returns the bet of the last blind: the straddle, else the big blind.
+   */
+  private int getLiveBlindAmount(int numberOfPlayers) {
+    return isStraddled(numberOfPlayers) ? 2 * bigBlind : bigBlind;
+  }
+
+  
   /**
    * Returns list of SetVisibility operations to open all the
    * remaining community cards
@@ -1439,15 +1764,15 @@ public class PokerLogic extends AbstractPokerLogicBase {
     switch(newRound) {
     case FLOP:
       return ImmutableList.<Operation>of(
-          new SetVisibility(C + (numberOfPlayers * 2)),
-          new SetVisibility(C + (numberOfPlayers * 2 + 1)),
-          new SetVisibility(C + (numberOfPlayers * 2 + 2)));
+          new SetVisibility(CARD_KEYS.get(numberOfPlayers * 2)),
+          new SetVisibility(CARD_KEYS.get(numberOfPlayers * 2 + 1)),
+          new SetVisibility(CARD_KEYS.get(numberOfPlayers * 2 + 2)));
     case TURN:
       return ImmutableList.<Operation>of(
-          new SetVisibility(C + (numberOfPlayers * 2 + 3)));
+          new SetVisibility(CARD_KEYS.get(numberOfPlayers * 2 + 3)));
     case RIVER:
       return ImmutableList.<Operation>of(
-          new SetVisibility(C + (numberOfPlayers * 2 + 4)));
+          new SetVisibility(CARD_KEYS.get(numberOfPlayers * 2 + 4)));
     case SHOWDOWN:
       return ImmutableList.<Operation>of();
     default:
@@ -1478,8 +1803,8 @@ public class PokerLogic extends AbstractPokerLogicBase {
     ImmutableList.Builder<Operation> builder = ImmutableList.<Operation>builder();
     for(Player player : playersInHand) {
       int index = player.ordinal();
-      builder.add(new SetVisibility(C + (index * 2)));
-      builder.add(new SetVisibility(C + (index * 2 + 1)));
+      builder.add(new SetVisibility(CARD_KEYS.get(index * 2)));
+      builder.add(new SetVisibility(CARD_KEYS.get(index * 2 + 1)));
     }
     return builder.build();
   }
@@ -1518,11 +1843,7 @@ public class PokerLogic extends AbstractPokerLogicBase {
   }
 
   private List<String> getCardsInRange(int fromInclusive, int toInclusive) {
-    List<String> keys = Lists.newArrayList();
-    for (int i = fromInclusive; i <= toInclusive; i++) {
-      keys.add(C + i);
-    }
-    return keys;
+    return CARD_KEYS.subList(fromInclusive, toInclusive + 1);
   }
 
   private String cardIdToString(int cardId) {
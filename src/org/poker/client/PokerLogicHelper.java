@@ -34,7 +34,7 @@ public class PokerLogicHelper extends AbstractPokerLogicBase {
    * @param gameApiState
    * @return
    */
-  PokerState gameApiStateToPokerState(Map<String, Object> gameApiState) {
+  public PokerState gameApiStateToPokerState(Map<String, Object> gameApiState) {
 
     PokerMove previousMove = PokerMove.valueOf((String)gameApiState.get(PREVIOUS_MOVE));
     boolean previousMoveAllIn = (Boolean)gameApiState.get(PREVIOUS_MOVE_ALL_IN);
@@ -47,7 +47,7 @@ public class PokerLogicHelper extends AbstractPokerLogicBase {
     ArrayList<Optional<Card>> cardList = new ArrayList();
     for (int i =0 ; i<52 ; i++) {
       Optional<Card> card;
-      String crd = (String)gameApiState.get("C"+i);
+      String crd = (String)gameApiState.get(CARD_KEYS.get(i));
       if (crd != null) {
         Rank rank = Rank.fromFirstLetter(crd.substring(0, crd.length() - 1));
         Suit suit = Suit.fromFirstLetterLowerCase(crd.substring(crd.length() - 1));
@@ -101,11 +101,26 @@ public class PokerLogicHelper extends AbstractPokerLogicBase {
 
     ImmutableList<Pot> pots = ImmutableList.copyOf(potlist);
 
+    // Only set on raked tables
+    boolean flopDealt = Boolean.TRUE.equals(gameApiState.get(FLOP_DEALT));
+    Integer rake = (Integer) gameApiState.get(RAKE);
+    // Only set in a session
+    ImmutableList.Builder<Integer> seats = ImmutableList.builder();
+    if (gameApiState.containsKey(SEATS)) {
+      for (Object seat : (List<?>) gameApiState.get(SEATS)) {
+        seats.add((Integer) seat);
+      }
+    }
+    // Only set at other stakes than the default ones
+    Integer bigBlind = (Integer) gameApiState.get(BIG_BLIND_KEY);
+
     return new PokerState(previousMove, 
         previousMoveAllIn, numberOfPlayers, 
         whoseMove, currentBetter, currentRound, 
         cards, board, playersInHand, holeCards, 
-        playerBets, playerChips, pots);
+        playerBets, playerChips, pots, flopDealt, rake == null ? 0 : rake,
+        seats.build(),
+        bigBlind == null ? BIG_BLIND : bigBlind);
   }
 
   /**
@@ -2,12 +2,23 @@ package org.poker.client;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.game_api.GameApi.Container;
 import org.game_api.GameApi.UpdateUI;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecision;
+import org.poker.client.ai.AnytimeDecisions;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.BotMove;
+import org.poker.client.ai.OpponentStats;
+import org.poker.client.ai.OpponentStatsTable;
+import org.poker.client.ai.SearchBot;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 
 
 /**
@@ -76,10 +87,23 @@ public class PokerPresenter {
     void doBuyIn();
   }
   
+  /** The chips the AI player buys in with. */
+  public static final int AI_BUY_IN = 10000;
+  /**
+   * The most an {@link AnytimeBot} thinks, however long the turn: it refines one step per
+   * slice of the UI thread's {@link Scheduler#scheduleIncremental}, so the page stays live.
+   */
+  public static final int MAX_AI_THINKING_MILLIS = 2000;
+  
   private final PokerLogic pokerLogic = new PokerLogic();
   private final PokerLogicHelper pokerLogicHelper = PokerLogicHelper.getInstance();
   private final View view;
   private final Container container;
+  private final Bot aiBot;
+  // Null for Scheduler.get(), which is only looked up once the AI thinks
+  private final Scheduler scheduler;
+  private final OpponentStatsRecorder statsRecorder =
+      new OpponentStatsRecorder(new OpponentStatsTable());
   
   // It's Optional because it can also be viewer
   private Optional<Player> myPlayer;
@@ -88,14 +112,37 @@ public class PokerPresenter {
   private Map<String, Integer> playerIdToTokensInPot;
   
   public PokerPresenter(View view, Container container) {
+    this(view, container, new SearchBot(new Random()));
+  }
+  
+  /**
+   * @param aiBot makes the moves when the presenter plays for the AI player
+   */
+  public PokerPresenter(View view, Container container, Bot aiBot) {
+    this(view, container, aiBot, null);
+  }
+  
+  /**
+   * @param aiBot makes the moves when the presenter plays for the AI player
+   * @param scheduler runs the decisions of an {@link AnytimeBot}; null for Scheduler.get()
+   */
+  PokerPresenter(View view, Container container, Bot aiBot, Scheduler scheduler) {
     this.view = view;
     this.container = container;
+    this.aiBot = aiBot;
+    this.scheduler = scheduler;
     view.setPresenter(this);
   }
   
+  /** The statistics of the players at the table, counted from the moves seen so far. */
+  public OpponentStats getOpponentStats() {
+    return statsRecorder.getStats();
+  }
+  
   /* Updates the presenter and view with the state in updateUI   */
   public void updateUI(UpdateUI updateUI) {
     playerIdList = updateUI.getPlayerIds();
+    statsRecorder.recordMove(playerIdList, updateUI.getLastState(), updateUI.getLastMove());
     int numOfPlayers = playerIdList.size();
     String playerId = updateUI.getYourPlayerId();
     int playerIndex = updateUI.getPlayerIndex(playerId);
@@ -116,7 +163,12 @@ public class PokerPresenter {
       if (myPlayer.isPresent()) {
         // If current player has not done the buy-in
         if (!buyInSuccessfullyDone()) {
-          view.doBuyIn();
+          if (updateUI.isAiPlayer()) {
+            buyInDone(AI_BUY_IN);
+          }
+          else {
+            view.doBuyIn();
+          }
         }
         // Check if everyone has done a buy-In and current player is the dealer
         else if (canGameStart() && isDealer()) {
@@ -155,7 +207,22 @@ public class PokerPresenter {
     }
     // Check if this is an AI player
     if(updateUI.isAiPlayer()) {
-      //TODO: to be done in a later HW
+      if (isMyTurn() && round == BettingRound.SHOWDOWN) {
+        container.sendMakeMove(pokerLogic.doEndGameMove(pokerState, playerIdList));
+      }
+      else if (isMyTurn() && round != BettingRound.END_GAME) {
+        if (aiBot instanceof AnytimeBot) {
+          long now = System.currentTimeMillis();
+          long deadlineMillis = Math.min(now + MAX_AI_THINKING_MILLIS,
+              AnytimeDecisions.getDeadlineMillis(updateUI.getLastMove(), now,
+                  SearchBot.DEFAULT_TIME_BUDGET_MILLIS));
+          decideIncrementally(((AnytimeBot) aiBot).startDecision(pokerState), deadlineMillis);
+        }
+        else {
+          BotMove botMove = aiBot.getMove(pokerState);
+          moveMade(botMove.getMove(), botMove.getAdditionalAmount());
+        }
+      }
       return;
     }
     
@@ -180,6 +247,25 @@ public class PokerPresenter {
     }
   }
 
+  /**
+   * Refines decision one step per slice of the UI thread until deadlineMillis or until it
+   * is final, then makes its best move from the last slice.
+   */
+  private void decideIncrementally(final AnytimeDecision decision, final long deadlineMillis) {
+    Scheduler uiScheduler = scheduler != null ? scheduler : Scheduler.get();
+    uiScheduler.scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        if (System.currentTimeMillis() < deadlineMillis && decision.refine()) {
+          return true;
+        }
+        BotMove botMove = decision.getBestMove();
+        moveMade(botMove.getMove(), botMove.getAdditionalAmount());
+        return false;
+      }
+    });
+  }
+
   /**
    * Checks if all players have successfully done a buy-in
    * 
@@ -239,6 +325,18 @@ public class PokerPresenter {
     return cards; 
   }
 
+  /**
+   * Returns the moves the player can make, or null if it isn't the player's turn.
+   * 
+   * @return
+   */
+  public LegalActions getLegalActions() {
+    if (pokerState == null || !isMyTurn()) {
+      return null;
+    }
+    return LegalActions.of(pokerState);
+  }
+  
   /**
    * Send the buy-in move to the container.
    * 
@@ -50,6 +50,27 @@ public class PokerState {
   
   private ImmutableList<Pot> pots;
 
+  /**
+   * True once the flop has been dealt; only tracked on raked tables.
+   */
+  private boolean flopDealt;
+
+  /**
+   * Chips raked from the pots at the end of the hand.
+   */
+  private int rake;
+
+  /**
+   * In a session, the indices in the player list of the players dealt in, from the button;
+   * empty for a single hand, where seat i is player i.
+   */
+  private ImmutableList<Integer> seats;
+
+  /**
+   * The big blind of the table, which is the smallest bet.
+   */
+  private int bigBlind;
+
   
   public PokerState(PokerMove previousMove, boolean previousMoveAllIn,
       int numberOfPlayers, Player whoseMove,
@@ -59,7 +80,8 @@ public class PokerState {
       ImmutableList<Player> playersInHand,
       ImmutableList<ImmutableList<Integer>> holeCards,
       ImmutableList<Integer> playerBets, ImmutableList<Integer> playerChips,
-      ImmutableList<Pot> pots) {
+      ImmutableList<Pot> pots, boolean flopDealt, int rake, ImmutableList<Integer> seats,
+      int bigBlind) {
     super();
     this.previousMove = previousMove;
     this.previousMoveAllIn = previousMoveAllIn;
@@ -74,6 +96,10 @@ public class PokerState {
     this.playerBets = playerBets;
     this.playerChips = playerChips;
     this.pots = pots;
+    this.flopDealt = flopDealt;
+    this.rake = rake;
+    this.seats = seats;
+    this.bigBlind = bigBlind;
   }
   
   public PokerMove getPreviousMove() {
@@ -138,4 +164,28 @@ public class PokerState {
     return pots;
   }
 
+
+  public boolean isFlopDealt() {
+    return flopDealt;
+  }
+
+
+  public int getRake() {
+    return rake;
+  }
+
+
+  public ImmutableList<Integer> getSeats() {
+    return seats;
+  }
+
+  public int getBigBlind() {
+    return bigBlind;
+  }
+
+  /** True if the hand is part of a session, which goes on after it ends. */
+  public boolean isSession() {
+    return !seats.isEmpty();
+  }
+
 }
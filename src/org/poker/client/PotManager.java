@@ -0,0 +1,419 @@
+package org.poker.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * The pots of a hand held in primitive arrays, for the moves that change them. The pots are
+ * the bet levels of the hand, lowest first: each holds the chips bet up to its level by the
+ * players who can win it, and a player's contribution to the round is the sum of its bets
+ * in the pots.<br>
+ * Every move is a single sweep over the levels: a call or raise tops up the player's bet
+ * in each pot to the pot's bet, and the chips above the last level go in the last pot.
+ * Only the arrays are allocated until the pots are turned back into state with
+ * {@link #getApiPots()}, which reuses the bets of the pots the move didn't change.
+ * <p>
+ * An all-in adds a level at the player's contribution:
+ * <ul>
+ * <li>An all-in call for less than the bet splits the pot where the caller's chips run out
+ * in two at the caller's bet: the lower part keeps the players, the upper part keeps the
+ * chips bet above it, without the caller. When the chips exactly cover a pot, only the last
+ * pot is split, into itself and an empty pot (unless it is empty already), so the players
+ * who can still bet have a pot to bet into.
+ * <li>An all-in bet or raise is the top of the last pot, so the chips bet above it go in a
+ * new empty pot, without the all-in player.
+ * <li>The pots of a new hand are derived from what each seat posted by
+ * {@link #ofPostings}: one level for each short stack that went all-in on the ante or on
+ * its blind.
+ * </ul>
+ */
+final class PotManager {
+
+  private final int numberOfPlayers;
+  private int potCount;
+  private int[] chips;
+  private int[] potBets;
+  /** The bets of the players in the round, numberOfPlayers per pot. */
+  private int[] playerBets;
+  /** The seats of the players in the pot in the order they joined, numberOfPlayers per pot. */
+  private int[] players;
+  private int[] playerCounts;
+  /** The bets of each pot as a List, while they are those it was created with; else null. */
+  private Object[] betLists;
+
+  PotManager(List<Pot> pots, int numberOfPlayers) {
+    this.numberOfPlayers = numberOfPlayers;
+    potCount = pots.size();
+    allocate(potCount + 1);
+    for (int pot = 0; pot < potCount; pot++) {
+      Pot source = pots.get(pot);
+      chips[pot] = source.getChips();
+      potBets[pot] = source.getCurrentPotBet();
+      List<Integer> bets = source.getPlayerBets();
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        playerBets[pot * numberOfPlayers + seat] = bets.get(seat);
+      }
+      List<Player> playersInPot = source.getPlayersInPot();
+      for (int i = 0; i < playersInPot.size(); i++) {
+        players[pot * numberOfPlayers + i] = playersInPot.get(i).ordinal();
+      }
+      playerCounts[pot] = playersInPot.size();
+      betLists[pot] = bets;
+    }
+  }
+
+  private PotManager(int numberOfPlayers, int capacity) {
+    this.numberOfPlayers = numberOfPlayers;
+    allocate(capacity);
+  }
+
+  /**
+   * Returns the pots once the antes and blinds are posted. The levels are the contributions
+   * of the players all-in from posting, sorted, and one sweep over them fills the pots:
+   * <ul>
+   * <li>The antes are dead money, so the antes of the players all-in on the ante make pots
+   * without a bet, below the blinds; the rest of the antes go in the first blind pot.
+   * <li>The blinds make a pot up to each short blind and one up to requiredBet, which everyone
+   * else has to call. A top pot no one can win is dropped, when everyone is all-in.
+   * </ul>
+   * The players in a pot are the posters in listedSeats who can win it; the other players
+   * join the pots when they call.
+   *
+   * @param chipsLeft the chips of each seat after posting
+   * @param listedSeats the blinds, in the order they are posted, then the players all-in on
+   *     the ante
+   */
+  static PotManager ofPostings(int[] antes, int[] blinds, int[] chipsLeft, int requiredBet,
+      int[] listedSeats) {
+    int numberOfPlayers = antes.length;
+    int[] anteLevels = new int[numberOfPlayers];
+    int anteLevelCount = 0;
+    int[] blindLevels = new int[numberOfPlayers + 1];
+    int blindLevelCount = 0;
+    for (int seat = 0; seat < numberOfPlayers; seat++) {
+      if (chipsLeft[seat] > 0) {
+        continue;
+      }
+      if (blinds[seat] == 0) {
+        if (antes[seat] > 0) {
+          anteLevels[anteLevelCount++] = antes[seat];
+        }
+      } else if (blinds[seat] < requiredBet) {
+        blindLevels[blindLevelCount++] = blinds[seat];
+      }
+    }
+    blindLevels[blindLevelCount++] = requiredBet;
+    anteLevelCount = sortDistinct(anteLevels, anteLevelCount);
+    blindLevelCount = sortDistinct(blindLevels, blindLevelCount);
+
+    PotManager potManager =
+        new PotManager(numberOfPlayers, anteLevelCount + blindLevelCount);
+    int previous = 0;
+    for (int level = 0; level < anteLevelCount; level++) {
+      int pot = potManager.potCount++;
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        potManager.chips[pot] += Math.min(antes[seat], anteLevels[level])
+            - Math.min(antes[seat], previous);
+      }
+      for (int seat : listedSeats) {
+        if (antes[seat] >= anteLevels[level]) {
+          potManager.players[pot * numberOfPlayers + potManager.playerCounts[pot]++] = seat;
+        }
+      }
+      previous = anteLevels[level];
+    }
+    int deadChips = 0;
+    for (int seat = 0; seat < numberOfPlayers; seat++) {
+      deadChips += antes[seat] - Math.min(antes[seat], previous);
+    }
+    previous = 0;
+    for (int level = 0; level < blindLevelCount; level++) {
+      int top = blindLevels[level];
+      boolean canBeWon = false;
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        canBeWon |= chipsLeft[seat] > 0 || blinds[seat] >= top;
+      }
+      if (!canBeWon) {
+        break;
+      }
+      int pot = potManager.potCount++;
+      int base = pot * numberOfPlayers;
+      potManager.chips[pot] = deadChips;
+      deadChips = 0;
+      potManager.potBets[pot] = top - previous;
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        int bet = Math.min(blinds[seat], top) - Math.min(blinds[seat], previous);
+        potManager.playerBets[base + seat] = bet;
+        potManager.chips[pot] += bet;
+      }
+      for (int seat : listedSeats) {
+        if (chipsLeft[seat] > 0 || blinds[seat] >= top) {
+          potManager.players[base + potManager.playerCounts[pot]++] = seat;
+        }
+      }
+      previous = top;
+    }
+    return potManager;
+  }
+
+  /** Sorts the first count values and removes the repeated ones; returns the new count. */
+  private static int sortDistinct(int[] values, int count) {
+    Arrays.sort(values, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || values[i] != values[distinct - 1]) {
+        values[distinct++] = values[i];
+      }
+    }
+    return distinct;
+  }
+
+  private void allocate(int capacity) {
+    chips = new int[capacity];
+    potBets = new int[capacity];
+    playerBets = new int[capacity * numberOfPlayers];
+    players = new int[capacity * numberOfPlayers];
+    playerCounts = new int[capacity];
+    betLists = new Object[capacity];
+  }
+
+  /**
+   * Puts additionalAmount of seat in the pots: all its chips, which are at most what it
+   * takes to call. The caller joins the pots up to its level.
+   */
+  void callAllIn(int seat, int additionalAmount) {
+    int remaining = additionalAmount;
+    int pot = 0;
+    // The sweep: the pots the chips cover take the call in full
+    for (; pot < potCount; pot++) {
+      int toCall = potBets[pot] - playerBets[pot * numberOfPlayers + seat];
+      if (remaining <= toCall) {
+        break;
+      }
+      chips[pot] += toCall;
+      playerBets[pot * numberOfPlayers + seat] = potBets[pot];
+      betLists[pot] = null;
+      addPlayer(pot, seat);
+      remaining -= toCall;
+    }
+    if (pot == potCount) {
+      return;
+    }
+    int base = pot * numberOfPlayers;
+    int toCall = potBets[pot] - playerBets[base + seat];
+    boolean split = remaining < toCall || (pot == potCount - 1 && chips[pot] > 0);
+    int lastRoundChips = chips[pot];
+    for (int i = 0; i < numberOfPlayers; i++) {
+      lastRoundChips -= playerBets[base + i];
+    }
+    int level = playerBets[base + seat] + remaining;
+    playerBets[base + seat] = level;
+    addPlayer(pot, seat);
+    int upperPotBet = potBets[pot] - level;
+    if (split) {
+      insertPotAfter(pot);
+    }
+    int lowerChips = lastRoundChips;
+    int upperChips = 0;
+    for (int i = 0; i < numberOfPlayers; i++) {
+      int bet = playerBets[base + i];
+      int lower = Math.min(bet, level);
+      playerBets[base + i] = lower;
+      lowerChips += lower;
+      if (split) {
+        playerBets[base + numberOfPlayers + i] = bet - lower;
+        upperChips += bet - lower;
+      }
+    }
+    chips[pot] = lowerChips;
+    potBets[pot] = level;
+    betLists[pot] = null;
+    if (split) {
+      pot++;
+      betLists[pot] = null;
+      chips[pot] = upperChips;
+      potBets[pot] = upperPotBet;
+      copyPlayersWithout(pot - 1, pot, seat);
+    }
+    // The caller can't win the chips bet above its own
+    for (pot++; pot < potCount; pot++) {
+      copyPlayersWithout(pot, pot, seat);
+    }
+  }
+
+  /** Puts the call of seat in the pots, which leaves it with chips. */
+  void call(int seat) {
+    for (int pot = 0; pot < potCount; pot++) {
+      callPot(pot, seat);
+    }
+  }
+
+  /**
+   * Puts the bet of seat in the last pot, the only one with a bet; allIn adds a level at
+   * the bet.
+   */
+  void bet(int seat, int amount, boolean allIn) {
+    raiseLastPot(seat, amount, allIn);
+  }
+
+  /**
+   * Puts the raise of seat in the pots: its call in each pot, and raiseBy, the chips above
+   * the call, in the last one; allIn adds a level at the raise.
+   */
+  void raise(int seat, int raiseBy, boolean allIn) {
+    for (int pot = 0; pot < potCount - 1; pot++) {
+      callPot(pot, seat);
+    }
+    raiseLastPot(seat, raiseBy, allIn);
+  }
+
+  /**
+   * Takes seat out of the pots; returns false if it was in none. A pot the folder was the
+   * last one able to win, such as the chips of a blind above a short big blind, goes to the
+   * pot below it.
+   */
+  boolean fold(int seat) {
+    boolean inPot = false;
+    for (int pot = 0; pot < potCount; pot++) {
+      int count = playerCounts[pot];
+      copyPlayersWithout(pot, pot, seat);
+      inPot |= playerCounts[pot] != count;
+    }
+    for (int pot = potCount - 1; pot > 0; pot--) {
+      if (playerCounts[pot] == 0 && chips[pot] > 0) {
+        chips[pot - 1] += chips[pot];
+        chips[pot] = 0;
+      }
+    }
+    return inPot;
+  }
+
+  /** Tops up the bet of seat in pot to the pot's bet. */
+  private void callPot(int pot, int seat) {
+    int index = pot * numberOfPlayers + seat;
+    chips[pot] += potBets[pot] - playerBets[index];
+    if (playerBets[index] != potBets[pot]) {
+      playerBets[index] = potBets[pot];
+      betLists[pot] = null;
+    }
+    addPlayer(pot, seat);
+  }
+
+  private void raiseLastPot(int seat, int raiseBy, boolean allIn) {
+    int pot = potCount - 1;
+    int index = pot * numberOfPlayers + seat;
+    chips[pot] += potBets[pot] - playerBets[index] + raiseBy;
+    potBets[pot] += raiseBy;
+    playerBets[index] = potBets[pot];
+    betLists[pot] = null;
+    addPlayer(pot, seat);
+    if (allIn) {
+      // The level of the all-in player: the chips bet above it go in a new pot
+      insertPotAfter(pot);
+      pot++;
+      chips[pot] = 0;
+      potBets[pot] = 0;
+      betLists[pot] = Collections.nCopies(numberOfPlayers, 0);
+      for (int i = 0; i < numberOfPlayers; i++) {
+        playerBets[pot * numberOfPlayers + i] = 0;
+      }
+      copyPlayersWithout(pot - 1, pot, seat);
+    }
+  }
+
+  /** Starts a new round: no one has bet in any pot. */
+  void resetRoundBets() {
+    List<Integer> noBets = Collections.nCopies(numberOfPlayers, 0);
+    for (int pot = 0; pot < potCount; pot++) {
+      potBets[pot] = 0;
+      betLists[pot] = noBets;
+    }
+    for (int i = 0; i < potCount * numberOfPlayers; i++) {
+      playerBets[i] = 0;
+    }
+  }
+
+  /** Returns the pots as they are kept in the game state. */
+  List<Map<String, Object>> getApiPots() {
+    List<Map<String, Object>> apiPots = Lists.newArrayListWithCapacity(potCount);
+    for (int pot = 0; pot < potCount; pot++) {
+      int base = pot * numberOfPlayers;
+      String[] playersInPot = new String[playerCounts[pot]];
+      for (int i = 0; i < playersInPot.length; i++) {
+        playersInPot[i] = AbstractPokerLogicBase.P[players[base + i]];
+      }
+      Object bets = betLists[pot];
+      if (bets == null) {
+        Integer[] boxedBets = new Integer[numberOfPlayers];
+        for (int seat = 0; seat < numberOfPlayers; seat++) {
+          boxedBets[seat] = playerBets[base + seat];
+        }
+        bets = ImmutableList.copyOf(boxedBets);
+      }
+      apiPots.add(ImmutableMap.<String, Object>of(
+          AbstractPokerLogicBase.CHIPS, chips[pot],
+          AbstractPokerLogicBase.CURRENT_POT_BET, potBets[pot],
+          AbstractPokerLogicBase.PLAYERS_IN_POT, ImmutableList.copyOf(playersInPot),
+          AbstractPokerLogicBase.PLAYER_BETS, bets));
+    }
+    return apiPots;
+  }
+
+  /** Makes room for a pot after pot, moving the pots above it up. */
+  private void insertPotAfter(int pot) {
+    if (potCount == chips.length) {
+      int[] oldChips = chips;
+      int[] oldPotBets = potBets;
+      int[] oldPlayerBets = playerBets;
+      int[] oldPlayers = players;
+      int[] oldPlayerCounts = playerCounts;
+      Object[] oldBetLists = betLists;
+      allocate(2 * potCount);
+      System.arraycopy(oldChips, 0, chips, 0, potCount);
+      System.arraycopy(oldPotBets, 0, potBets, 0, potCount);
+      System.arraycopy(oldPlayerBets, 0, playerBets, 0, potCount * numberOfPlayers);
+      System.arraycopy(oldPlayers, 0, players, 0, potCount * numberOfPlayers);
+      System.arraycopy(oldPlayerCounts, 0, playerCounts, 0, potCount);
+      System.arraycopy(oldBetLists, 0, betLists, 0, potCount);
+    }
+    int moved = potCount - pot - 1;
+    System.arraycopy(chips, pot + 1, chips, pot + 2, moved);
+    System.arraycopy(potBets, pot + 1, potBets, pot + 2, moved);
+    System.arraycopy(playerCounts, pot + 1, playerCounts, pot + 2, moved);
+    System.arraycopy(betLists, pot + 1, betLists, pot + 2, moved);
+    System.arraycopy(playerBets, (pot + 1) * numberOfPlayers, playerBets,
+        (pot + 2) * numberOfPlayers, moved * numberOfPlayers);
+    System.arraycopy(players, (pot + 1) * numberOfPlayers, players,
+        (pot + 2) * numberOfPlayers, moved * numberOfPlayers);
+    potCount++;
+  }
+
+  /** Adds seat at the end of the players of pot, unless it is in the pot. */
+  private void addPlayer(int pot, int seat) {
+    int base = pot * numberOfPlayers;
+    for (int i = 0; i < playerCounts[pot]; i++) {
+      if (players[base + i] == seat) {
+        return;
+      }
+    }
+    players[base + playerCounts[pot]++] = seat;
+  }
+
+  /** Sets the players of pot to to those of from, but seat. */
+  private void copyPlayersWithout(int from, int to, int seat) {
+    int count = 0;
+    for (int i = 0; i < playerCounts[from]; i++) {
+      int player = players[from * numberOfPlayers + i];
+      if (player != seat) {
+        players[to * numberOfPlayers + count++] = player;
+      }
+    }
+    playerCounts[to] = count;
+  }
+}
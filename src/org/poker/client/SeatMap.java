@@ -0,0 +1,137 @@
+package org.poker.client;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The seats of a hand, as bit sets: bit i stands for the seat of {@code Player.values()[i]}.
+ * <p>
+ * Seats are numbered from the button, so the positions (button, blinds, straddle) are fixed
+ * seats that only depend on the number of players. In a session, the players of the container
+ * sit at the seats in the order of {@link PokerState#getSeats()}, which rotates from one hand
+ * to the next; {@link #getPlayerIndex(int)} maps a seat to its player.<br>
+ * The next seat in the hand, or the next with chips left, is found with a mask and a
+ * trailing-zeros count rather than by scanning the list of players in the hand.
+ */
+public final class SeatMap {
+
+  public static final int BUTTON = AbstractPokerLogicBase.DEALER_INDEX;
+  /** The straddler's seat, after the big blind; there is no straddle with under 4 players. */
+  public static final int STRADDLE = 3;
+
+  private final int numberOfPlayers;
+  /** The seats of the players still in the hand. */
+  private final int inHand;
+  /** The seats of the players in the hand with chips left, who can still act. */
+  private final int active;
+  /** The player index of each seat in a session, else empty. */
+  private final List<Integer> seats;
+
+  private SeatMap(int numberOfPlayers, int inHand, int active, List<Integer> seats) {
+    this.numberOfPlayers = numberOfPlayers;
+    this.inHand = inHand;
+    this.active = active;
+    this.seats = seats;
+  }
+
+  public static SeatMap of(PokerState state) {
+    int inHand = 0;
+    int active = 0;
+    List<Integer> playerChips = state.getPlayerChips();
+    for (Player player : state.getPlayersInHand()) {
+      int bit = 1 << player.ordinal();
+      inHand |= bit;
+      if (playerChips.get(player.ordinal()) > 0) {
+        active |= bit;
+      }
+    }
+    return new SeatMap(state.getNumberOfPlayers(), inHand, active, state.getSeats());
+  }
+
+  /** Returns the seats of a table where everyone with chips is in the hand. */
+  public static SeatMap ofStacks(List<Integer> stacks) {
+    int active = 0;
+    for (int seat = 0; seat < stacks.size(); seat++) {
+      if (stacks.get(seat) > 0) {
+        active |= 1 << seat;
+      }
+    }
+    return new SeatMap(stacks.size(), active, active, ImmutableList.<Integer>of());
+  }
+
+  public static int getSmallBlindSeat(int numberOfPlayers) {
+    return numberOfPlayers > 2 ? 1 : 0;
+  }
+
+  public static int getBigBlindSeat(int numberOfPlayers) {
+    return numberOfPlayers > 2 ? 2 : 1;
+  }
+
+  /** The first to act in the pre-flop: the dealer heads-up, else the seat after lastBlind. */
+  public static int getUnderTheGunSeat(int numberOfPlayers, int lastBlindSeat) {
+    return numberOfPlayers == 2 ? BUTTON : (lastBlindSeat + 1) % numberOfPlayers;
+  }
+
+  public int getNumberOfPlayers() {
+    return numberOfPlayers;
+  }
+
+  public boolean isInHand(int seat) {
+    return (inHand & 1 << seat) != 0;
+  }
+
+  public boolean isActive(int seat) {
+    return (active & 1 << seat) != 0;
+  }
+
+  public int getActiveCount() {
+    return Integer.bitCount(active);
+  }
+
+  /** Returns this seat map after the player at seat folds. */
+  public SeatMap fold(int seat) {
+    int bit = ~(1 << seat);
+    return new SeatMap(numberOfPlayers, inHand & bit, active & bit, seats);
+  }
+
+  /** Returns this seat map after the player at seat goes all-in. */
+  public SeatMap allIn(int seat) {
+    return new SeatMap(numberOfPlayers, inHand, active & ~(1 << seat), seats);
+  }
+
+  /**
+   * Returns the first seat in the hand after seat, going round the table and back to seat
+   * itself, or -1 if no one is in the hand.
+   */
+  public int getNextInHand(int seat) {
+    return getNext(inHand, seat);
+  }
+
+  /**
+   * Returns the first seat with a player who can act after seat, going round the table and
+   * back to seat itself, or -1 if everyone in the hand is all-in.
+   */
+  public int getNextActive(int seat) {
+    return getNext(active, seat);
+  }
+
+  private static int getNext(int mask, int seat) {
+    // The seats after seat, then the ones up to it
+    int after = mask & -(2 << seat);
+    if (after != 0) {
+      return Integer.numberOfTrailingZeros(after);
+    }
+    return mask == 0 ? -1 : Integer.numberOfTrailingZeros(mask);
+  }
+
+  /** Returns how many seats from is before to, going round the table; 0 if they are equal. */
+  public int getDistance(int from, int to) {
+    return (to - from + numberOfPlayers) % numberOfPlayers;
+  }
+
+  /** Returns the index in the container's player list of the player at seat. */
+  public int getPlayerIndex(int seat) {
+    return seats.isEmpty() ? seat : seats.get(seat);
+  }
+}
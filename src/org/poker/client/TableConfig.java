@@ -0,0 +1,114 @@
+package org.poker.client;
+
+/**
+ * The stakes and the rake of a table: blinds, an optional ante posted by every player, an
+ * optional straddle and the rake.<br>
+ * A {@link PokerLogic} copies its config into primitive fields when it is created, so a table
+ * changes stakes, e.g. at a new level of a {@link BlindSchedule}, by using a new PokerLogic
+ * for the hands that follow.
+ * <ul>
+ * <li>The ante is dead money: it goes to the pot but doesn't count as a bet.
+ * <li>The straddle is a third blind of twice the big blind, posted by the player after the big
+ * blind, who then acts last before the flop. It needs at least 4 players and is ignored at
+ * smaller tables.
+ * <li>The rake is a share of the pots, up to a cap, taken at the end of the hand. No flop, no
+ * rake: a hand that ends before the flop is dealt is not raked.
+ * </ul>
+ * A player who can't cover the ante and the blind posts all it has.
+ */
+public final class TableConfig {
+
+  /** The stakes every table had before they could be configured. */
+  public static final TableConfig DEFAULT = new TableConfig(
+      AbstractPokerLogicBase.SMALL_BLIND, AbstractPokerLogicBase.BIG_BLIND);
+
+  private final int smallBlind;
+  private final int bigBlind;
+  private final int ante;
+  private final boolean straddle;
+  private final int rakePerMille;
+  private final int rakeCap;
+
+  public TableConfig(int smallBlind, int bigBlind) {
+    this(smallBlind, bigBlind, 0, false, 0, 0);
+  }
+
+  /**
+   * @param rakePerMille the share of the pots raked, in thousandths: 50 rakes 5%
+   * @param rakeCap the most chips raked from a hand; 0 for no cap
+   */
+  public TableConfig(int smallBlind, int bigBlind, int ante, boolean straddle,
+      int rakePerMille, int rakeCap) {
+    if (smallBlind <= 0 || bigBlind < smallBlind || ante < 0) {
+      throw new IllegalArgumentException("Bad blinds " + smallBlind + "/" + bigBlind
+          + " ante " + ante);
+    }
+    if (rakePerMille < 0 || rakePerMille > 1000 || rakeCap < 0) {
+      throw new IllegalArgumentException("Bad rake " + rakePerMille + " cap " + rakeCap);
+    }
+    this.smallBlind = smallBlind;
+    this.bigBlind = bigBlind;
+    this.ante = ante;
+    this.straddle = straddle;
+    this.rakePerMille = rakePerMille;
+    this.rakeCap = rakeCap;
+  }
+
+  /** Returns this config with other blinds and ante, e.g. for the next level of a schedule. */
+  public TableConfig withBlinds(int smallBlind, int bigBlind, int ante) {
+    return new TableConfig(smallBlind, bigBlind, ante, straddle, rakePerMille, rakeCap);
+  }
+
+  public int getSmallBlind() {
+    return smallBlind;
+  }
+
+  public int getBigBlind() {
+    return bigBlind;
+  }
+
+  public int getAnte() {
+    return ante;
+  }
+
+  public boolean hasStraddle() {
+    return straddle;
+  }
+
+  public int getRakePerMille() {
+    return rakePerMille;
+  }
+
+  /** The most chips raked from a hand; 0 for no cap. */
+  public int getRakeCap() {
+    return rakeCap;
+  }
+
+  public boolean isRaked() {
+    return rakePerMille > 0;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof TableConfig)) {
+      return false;
+    }
+    TableConfig other = (TableConfig) obj;
+    return smallBlind == other.smallBlind && bigBlind == other.bigBlind && ante == other.ante
+        && straddle == other.straddle && rakePerMille == other.rakePerMille
+        && rakeCap == other.rakeCap;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((((smallBlind * 31 + bigBlind) * 31 + ante) * 31 + (straddle ? 1 : 0)) * 31
+        + rakePerMille) * 31 + rakeCap;
+  }
+
+  @Override
+  public String toString() {
+    return "blinds " + smallBlind + "/" + bigBlind + (ante > 0 ? " ante " + ante : "")
+        + (straddle ? " straddle" : "")
+        + (rakePerMille > 0 ? " rake " + rakePerMille + "/1000 cap " + rakeCap : "");
+  }
+}
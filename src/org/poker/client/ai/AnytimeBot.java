@@ -0,0 +1,17 @@
+package org.poker.client.ai;
+
+import org.poker.client.PokerState;
+
+/**
+ * A {@link Bot} that can refine its move for as long as the turn allows, see
+ * {@link AnytimeDecisions}. Its {@link #getMove(PokerState)} decides within a budget of its
+ * own.
+ */
+public interface AnytimeBot extends Bot {
+
+  /**
+   * Starts deciding the move of the player whose turn it is in state; this is quick, and
+   * the decision has a move right away.
+   */
+  AnytimeDecision startDecision(PokerState state);
+}
@@ -0,0 +1,22 @@
+package org.poker.client.ai;
+
+/**
+ * A decision of an {@link AnytimeBot} in progress: it has a move from the start, and each
+ * call to {@link #refine()} may replace it with a better one. Whoever runs it stops refining
+ * at the deadline of the turn and plays {@link #getBestMove()}.<br>
+ * refine() is called by one thread at a time, but getBestMove() may be called from another
+ * thread while it runs, so the best move must be safely published (e.g. volatile).
+ */
+public interface AnytimeDecision {
+
+  /**
+   * Does a short, bounded step of work, a few milliseconds at most, so the deadline is
+   * never overshot by much.
+   *
+   * @return false if the move can't be refined any further
+   */
+  boolean refine();
+
+  /** Returns the best move found so far. */
+  BotMove getBestMove();
+}
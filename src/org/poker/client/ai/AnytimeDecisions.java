@@ -0,0 +1,49 @@
+package org.poker.client.ai;
+
+import java.util.List;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+
+/**
+ * Times {@link AnytimeDecision}s against the time limit of a turn.<br>
+ * The limit is the numberOfSecondsForTurn of the {@link SetTurn} that gave the turn, less a
+ * safety margin for sending the move, so a slow machine still answers in time while a fast
+ * one spends the rest of the turn refining.
+ */
+public final class AnytimeDecisions {
+
+  /** The least time kept for sending the move. */
+  public static final int SAFETY_MARGIN_MILLIS = 250;
+  /** The share of the turn kept for sending the move, if more than SAFETY_MARGIN_MILLIS. */
+  public static final double SAFETY_MARGIN_SHARE = 0.1;
+
+  private AnytimeDecisions() {
+  }
+
+  /**
+   * Returns the {@link System#currentTimeMillis()} by which to have decided the move.
+   *
+   * @param lastMove the move that gave the turn, whose SetTurn sets the time limit; may be
+   *     null
+   * @param nowMillis when the move was received
+   * @param defaultBudgetMillis the budget when the SetTurn has no time limit (0 seconds)
+   */
+  public static long getDeadlineMillis(List<Operation> lastMove, long nowMillis,
+      int defaultBudgetMillis) {
+    int seconds = 0;
+    if (lastMove != null) {
+      for (Operation operation : lastMove) {
+        if (operation instanceof SetTurn) {
+          seconds = ((SetTurn) operation).getNumberOfSecondsForTurn();
+        }
+      }
+    }
+    if (seconds <= 0) {
+      return nowMillis + defaultBudgetMillis;
+    }
+    long turnMillis = seconds * 1000L;
+    long margin = Math.max(SAFETY_MARGIN_MILLIS, (long) (turnMillis * SAFETY_MARGIN_SHARE));
+    return nowMillis + Math.max(0, turnMillis - margin);
+  }
+}
@@ -0,0 +1,15 @@
+package org.poker.client.ai;
+
+import org.poker.client.PokerState;
+
+/**
+ * A computer player.
+ */
+public interface Bot {
+
+  /**
+   * Returns the move of the player whose turn it is in state.
+   * The state is the one seen by that player, so other players' hole cards are absent.
+   */
+  BotMove getMove(PokerState state);
+}
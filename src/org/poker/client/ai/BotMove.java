@@ -0,0 +1,83 @@
+package org.poker.client.ai;
+
+import java.util.List;
+
+import org.game_api.GameApi.Operation;
+import org.poker.client.LegalActions;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+
+/**
+ * A move chosen by a {@link Bot}.
+ * The amount is the <B>additional</B> amount put in the pot by the move,
+ * the same as in {@link org.poker.client.PokerPresenter#moveMade(PokerMove, int)}.
+ */
+public final class BotMove {
+
+  private final PokerMove move;
+  private final int additionalAmount;
+
+  private BotMove(PokerMove move, int additionalAmount) {
+    this.move = move;
+    this.additionalAmount = additionalAmount;
+  }
+
+  public static BotMove fold() {
+    return new BotMove(PokerMove.FOLD, 0);
+  }
+
+  public static BotMove check() {
+    return new BotMove(PokerMove.CHECK, 0);
+  }
+
+  public static BotMove call(int additionalAmount) {
+    return new BotMove(PokerMove.CALL, additionalAmount);
+  }
+
+  public static BotMove bet(int additionalAmount) {
+    return new BotMove(PokerMove.BET, additionalAmount);
+  }
+
+  public static BotMove raise(int additionalAmount) {
+    return new BotMove(PokerMove.RAISE, additionalAmount);
+  }
+
+  /** Calls, or checks if there is nothing to call. */
+  public static BotMove checkOrCall(LegalActions legalActions) {
+    return legalActions.isLegal(PokerMove.CHECK)
+        ? check() : call(legalActions.getCallAmount());
+  }
+
+  public PokerMove getMove() {
+    return move;
+  }
+
+  public int getAdditionalAmount() {
+    return additionalAmount;
+  }
+
+  /** Returns the operations of this move, made by the player whose turn it is in state. */
+  public List<Operation> getOperations(PokerLogic pokerLogic, PokerState state,
+      List<String> playerIds) {
+    switch (move) {
+      case FOLD:
+        return pokerLogic.doFoldMove(state, playerIds);
+      case CHECK:
+        return pokerLogic.doCheckMove(state, playerIds);
+      case CALL:
+        return pokerLogic.doCallMove(state, playerIds, additionalAmount);
+      case BET:
+        return pokerLogic.doBetMove(state, playerIds, additionalAmount);
+      case RAISE:
+        return pokerLogic.doRaiseMove(state, playerIds, additionalAmount);
+      default:
+        throw new IllegalStateException("Unknown move " + move);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return move + "(" + additionalAmount + ")";
+  }
+}
@@ -0,0 +1,63 @@
+package org.poker.client.ai;
+
+import org.poker.client.BettingRound;
+import org.poker.client.util.HandIndexer;
+
+/**
+ * A {@link CardAbstraction} read from precomputed tables: the bucket of every distinct hand
+ * of a round, one byte per {@link HandIndexer} index, so a lookup is an index computation and
+ * an array read, and allocates nothing.<br>
+ * A round without a table is left to the fallback abstraction, e.g. the river, whose table
+ * is the largest (123,156,254 entries), can be left to a {@link HandStrengthAbstraction}.
+ */
+public class BucketTable implements CardAbstraction {
+
+  /** Indexed by round ordinal; null for the rounds left to the fallback. */
+  private final byte[][] buckets;
+  private final int[] bucketCounts;
+  private final CardAbstraction fallback;
+
+  /**
+   * @param buckets the buckets of each round, from PRE_FLOP to RIVER, each entry from 0
+   *     to bucketCounts[round] - 1; null for the rounds left to fallback
+   * @param bucketCounts at most 256 per round
+   */
+  public BucketTable(byte[][] buckets, int[] bucketCounts, CardAbstraction fallback) {
+    if (buckets.length != 4 || bucketCounts.length != 4) {
+      throw new IllegalArgumentException("One table per round from PRE_FLOP to RIVER");
+    }
+    for (int round = 0; round < buckets.length; round++) {
+      if (buckets[round] != null && (bucketCounts[round] > 256
+          || buckets[round].length != HandIndexer.of(BettingRound.values()[round]).getSize())) {
+        throw new IllegalArgumentException("Bad table for " + BettingRound.values()[round]);
+      }
+    }
+    this.buckets = buckets;
+    this.bucketCounts = bucketCounts;
+    this.fallback = fallback;
+  }
+
+  /** Returns true if round has a table rather than using the fallback. */
+  public boolean hasTable(BettingRound round) {
+    return buckets[round.ordinal()] != null;
+  }
+
+  /** Returns the table of round, or null; it is not copied, so must not be modified. */
+  public byte[] getTable(BettingRound round) {
+    return buckets[round.ordinal()];
+  }
+
+  @Override
+  public int getBucketCount(BettingRound round) {
+    return hasTable(round) ? bucketCounts[round.ordinal()] : fallback.getBucketCount(round);
+  }
+
+  @Override
+  public int getBucket(BettingRound round, int[] holeCards, int[] board) {
+    byte[] table = buckets[round.ordinal()];
+    if (table == null) {
+      return fallback.getBucket(round, holeCards, board);
+    }
+    return table[HandIndexer.of(round).index(holeCards, board)] & 0xFF;
+  }
+}
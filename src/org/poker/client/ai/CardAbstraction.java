@@ -0,0 +1,23 @@
+package org.poker.client.ai;
+
+import org.poker.client.BettingRound;
+
+/**
+ * Groups the cards a player can see into a small number of buckets per betting round, so a
+ * strategy can be stored per bucket instead of per hand.<br>
+ * Cards are card ids, see {@link org.poker.client.util.HandEvaluator}.
+ */
+public interface CardAbstraction {
+
+  /** Returns the number of buckets of round, from PRE_FLOP to RIVER. */
+  int getBucketCount(BettingRound round);
+
+  /**
+   * Returns the bucket of a hand, from 0 to getBucketCount(round) - 1.
+   *
+   * @param holeCards the 2 hole cards
+   * @param board holds at least the board cards open in round (3 on the flop, 4 on the turn,
+   *     5 on the river); the cards after those are ignored
+   */
+  int getBucket(BettingRound round, int[] holeCards, int[] board);
+}
@@ -0,0 +1,21 @@
+package org.poker.client.ai;
+
+/**
+ * Estimates the equity of a hand: the share of the pot it wins on average at showdown
+ * against opponents holding random hands, ties being split.<br>
+ * Cards are card ids, see {@link org.poker.client.util.HandEvaluator}.
+ */
+public interface EquityEstimator {
+
+  /**
+   * Returns the equity of holeCards, between 0 and 1.
+   *
+   * @param holeCards the 2 hole cards of the player
+   * @param board the 0 to 5 board cards already open
+   * @param opponents the number of opponents still in the hand, at least 1
+   * @param deadlineMillis the {@link System#currentTimeMillis()} by which to return;
+   *     the estimate is less accurate the sooner it is; one that has passed asks for the
+   *     least work the estimator does, e.g. a single batch of samples
+   */
+  double getEquity(int[] holeCards, int[] board, int opponents, long deadlineMillis);
+}
@@ -0,0 +1,61 @@
+package org.poker.client.ai;
+
+import org.poker.client.BettingRound;
+import org.poker.client.util.HandEvaluator;
+
+/**
+ * A {@link CardAbstraction} that needs no precomputed tables: before the flop a bucket is
+ * one of the 169 starting hands (a pair, or two ranks suited or offsuit), and after it the
+ * category of the best made hand split by the rank of its highest card.
+ */
+public class HandStrengthAbstraction implements CardAbstraction {
+
+  public static final int PRE_FLOP_BUCKETS = 169;
+  /** The number of high card ranges each made hand category is split into. */
+  static final int RANK_LEVELS = 4;
+  public static final int POST_FLOP_BUCKETS = (HandEvaluator.STRAIGHT_FLUSH + 1) * RANK_LEVELS;
+
+  @Override
+  public int getBucketCount(BettingRound round) {
+    return round == BettingRound.PRE_FLOP ? PRE_FLOP_BUCKETS : POST_FLOP_BUCKETS;
+  }
+
+  @Override
+  public int getBucket(BettingRound round, int[] holeCards, int[] board) {
+    if (round == BettingRound.PRE_FLOP) {
+      return getStartingHand(holeCards);
+    }
+    int score = HandEvaluator.evaluate(holeCards, board, getBoardCount(round));
+    int highRank = (score >> 16) & 0xF;
+    return HandEvaluator.getCategory(score) * RANK_LEVELS + highRank * RANK_LEVELS / 13;
+  }
+
+  /**
+   * Returns the index of the starting hand: the 13 pairs, then the 78 suited hands, then
+   * the 78 offsuit hands.
+   */
+  public static int getStartingHand(int[] holeCards) {
+    int high = Math.max(holeCards[0] >> 2, holeCards[1] >> 2);
+    int low = Math.min(holeCards[0] >> 2, holeCards[1] >> 2);
+    if (high == low) {
+      return high;
+    }
+    int pairIndex = high * (high - 1) / 2 + low;
+    boolean suited = (holeCards[0] & 3) == (holeCards[1] & 3);
+    return 13 + (suited ? 0 : 78) + pairIndex;
+  }
+
+  /** Returns the number of board cards open in round. */
+  public static int getBoardCount(BettingRound round) {
+    switch (round) {
+      case PRE_FLOP:
+        return 0;
+      case FLOP:
+        return 3;
+      case TURN:
+        return 4;
+      default:
+        return 5;
+    }
+  }
+}
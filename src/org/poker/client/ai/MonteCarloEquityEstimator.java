@@ -0,0 +1,98 @@
+package org.poker.client.ai;
+
+import java.util.Random;
+
+import org.poker.client.util.HandEvaluator;
+
+/**
+ * Estimates equity by dealing the rest of the board and the opponents' hole cards at random
+ * and scoring the showdowns with {@link HandEvaluator}.<br>
+ * It samples in batches until the deadline or maxSamples, whichever comes first, and always
+ * does at least one batch.
+ */
+public class MonteCarloEquityEstimator implements EquityEstimator {
+
+  /** Samples between two looks at the clock. */
+  static final int BATCH_SIZE = 64;
+
+  private final Random random;
+  private final int maxSamples;
+
+  public MonteCarloEquityEstimator(Random random, int maxSamples) {
+    this.random = random;
+    this.maxSamples = maxSamples;
+  }
+
+  @Override
+  public double getEquity(int[] holeCards, int[] board, int opponents, long deadlineMillis) {
+    double wins = 0;
+    int samples = 0;
+    do {
+      int batch = Math.min(BATCH_SIZE, maxSamples - samples);
+      wins += simulate(holeCards, board, opponents, batch, random);
+      samples += batch;
+    } while (samples < maxSamples && System.currentTimeMillis() < deadlineMillis);
+    return wins / samples;
+  }
+
+  /**
+   * Plays samples random showdowns and returns the sum of the shares of the pot won by
+   * holeCards, so the equity is the result divided by samples.
+   * Only the deck is allocated, once per call.
+   */
+  public static double simulate(int[] holeCards, int[] board, int opponents, int samples,
+      Random random) {
+    long known = 0;
+    for (int card : holeCards) {
+      known |= 1L << card;
+    }
+    for (int card : board) {
+      known |= 1L << card;
+    }
+    int[] deck = new int[52 - Long.bitCount(known)];
+    for (int card = 0, i = 0; card < 52; card++) {
+      if ((known & 1L << card) == 0) {
+        deck[i++] = card;
+      }
+    }
+    int missingBoard = 5 - board.length;
+    int draws = missingBoard + 2 * opponents;
+    if (draws > deck.length) {
+      throw new IllegalArgumentException("Not enough cards for " + opponents + " opponents");
+    }
+
+    // hand holds two hole cards followed by the full board
+    int[] hand = new int[7];
+    System.arraycopy(board, 0, hand, 2, board.length);
+    double wins = 0;
+    for (int sample = 0; sample < samples; sample++) {
+      // Partial Fisher-Yates: the first draws cards of the deck are a random deal
+      for (int i = 0; i < draws; i++) {
+        int j = i + random.nextInt(deck.length - i);
+        int card = deck[j];
+        deck[j] = deck[i];
+        deck[i] = card;
+      }
+      System.arraycopy(deck, 0, hand, 2 + board.length, missingBoard);
+      hand[0] = holeCards[0];
+      hand[1] = holeCards[1];
+      int score = HandEvaluator.evaluate(hand, 7);
+      int ties = 0;
+      boolean lost = false;
+      for (int opponent = 0; opponent < opponents && !lost; opponent++) {
+        hand[0] = deck[missingBoard + 2 * opponent];
+        hand[1] = deck[missingBoard + 2 * opponent + 1];
+        int opponentScore = HandEvaluator.evaluate(hand, 7);
+        if (opponentScore > score) {
+          lost = true;
+        } else if (opponentScore == score) {
+          ties++;
+        }
+      }
+      if (!lost) {
+        wins += 1.0 / (ties + 1);
+      }
+    }
+    return wins;
+  }
+}
@@ -0,0 +1,37 @@
+package org.poker.client.ai;
+
+import org.poker.client.BettingRound;
+
+/**
+ * The counters kept per player by {@link OpponentStats}, see
+ * {@link org.poker.client.OpponentStatsRecorder} for when each one is counted.
+ */
+public enum OpponentStat {
+
+  /** Hands the player acted in before the flop. */
+  HANDS,
+  /** Hands the player called or raised in before the flop. */
+  VOLUNTARILY_PUT_IN,
+  /** Hands the player raised in before the flop. */
+  PRE_FLOP_RAISED,
+  /** Bets and raises after the flop. */
+  BETS_AND_RAISES,
+  /** Calls after the flop. */
+  CALLS,
+  /** Moves made facing a bet, by round; before the flop, facing more than the big blind. */
+  FACED_BET_PRE_FLOP, FACED_BET_FLOP, FACED_BET_TURN, FACED_BET_RIVER,
+  /** Folds facing a bet, by round. */
+  FOLDED_TO_BET_PRE_FLOP, FOLDED_TO_BET_FLOP, FOLDED_TO_BET_TURN, FOLDED_TO_BET_RIVER;
+
+  private static final OpponentStat[] VALUES = values();
+
+  /** Returns the FACED_BET counter of round, from PRE_FLOP to RIVER. */
+  public static OpponentStat facedBet(BettingRound round) {
+    return VALUES[FACED_BET_PRE_FLOP.ordinal() + round.ordinal()];
+  }
+
+  /** Returns the FOLDED_TO_BET counter of round, from PRE_FLOP to RIVER. */
+  public static OpponentStat foldedToBet(BettingRound round) {
+    return VALUES[FOLDED_TO_BET_PRE_FLOP.ordinal() + round.ordinal()];
+  }
+}
@@ -0,0 +1,52 @@
+package org.poker.client.ai;
+
+import org.poker.client.BettingRound;
+
+/**
+ * Counts what each player did, by player id, so a bot can tell a loose or aggressive
+ * opponent from a tight or passive one. The frequencies are computed from the counters on
+ * every call and allocate nothing, so a bot may query them inside its search.<br>
+ * A frequency of a player without the hands to compute it is 0; use
+ * {@link #getHands(String)} to tell how much it can be trusted.
+ */
+public abstract class OpponentStats {
+
+  /** Adds count to a counter of playerId. */
+  public abstract void add(String playerId, OpponentStat stat, long count);
+
+  /** Returns a counter of playerId, 0 for an unknown player. */
+  public abstract long getCount(String playerId, OpponentStat stat);
+
+  public long getHands(String playerId) {
+    return getCount(playerId, OpponentStat.HANDS);
+  }
+
+  /** The share of hands the player voluntarily put chips in before the flop. */
+  public double getVpip(String playerId) {
+    return ratio(getCount(playerId, OpponentStat.VOLUNTARILY_PUT_IN), getHands(playerId));
+  }
+
+  /** The share of hands the player raised before the flop. */
+  public double getPfr(String playerId) {
+    return ratio(getCount(playerId, OpponentStat.PRE_FLOP_RAISED), getHands(playerId));
+  }
+
+  /**
+   * Bets and raises per call after the flop; a player who never called counts as one call,
+   * so it stays finite.
+   */
+  public double getAggressionFactor(String playerId) {
+    return (double) getCount(playerId, OpponentStat.BETS_AND_RAISES)
+        / Math.max(getCount(playerId, OpponentStat.CALLS), 1);
+  }
+
+  /** The share of the bets the player folded to in round, from PRE_FLOP to RIVER. */
+  public double getFoldToBet(String playerId, BettingRound round) {
+    return ratio(getCount(playerId, OpponentStat.foldedToBet(round)),
+        getCount(playerId, OpponentStat.facedBet(round)));
+  }
+
+  private static double ratio(long count, long total) {
+    return total == 0 ? 0 : (double) count / total;
+  }
+}
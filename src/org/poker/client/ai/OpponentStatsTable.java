@@ -0,0 +1,32 @@
+package org.poker.client.ai;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * {@link OpponentStats} for a single thread, e.g. the presenter of a client: a row of
+ * counters per player id.
+ */
+public class OpponentStatsTable extends OpponentStats {
+
+  private static final int STATS = OpponentStat.values().length;
+
+  private final Map<String, long[]> counters = Maps.newHashMap();
+
+  @Override
+  public void add(String playerId, OpponentStat stat, long count) {
+    long[] row = counters.get(playerId);
+    if (row == null) {
+      row = new long[STATS];
+      counters.put(playerId, row);
+    }
+    row[stat.ordinal()] += count;
+  }
+
+  @Override
+  public long getCount(String playerId, OpponentStat stat) {
+    long[] row = counters.get(playerId);
+    return row == null ? 0 : row[stat.ordinal()];
+  }
+}
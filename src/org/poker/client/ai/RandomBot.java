@@ -0,0 +1,43 @@
+package org.poker.client.ai;
+
+import java.util.Random;
+
+import org.poker.client.LegalActions;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+
+/**
+ * A bot that picks a random legal move: it folds to a bet 15% of the time,
+ * bets or raises 25% of the time (half of those all-in) and otherwise checks or calls.
+ */
+public class RandomBot implements Bot {
+
+  private final Random random;
+
+  public RandomBot(Random random) {
+    this.random = random;
+  }
+
+  @Override
+  public BotMove getMove(PokerState state) {
+    LegalActions legalActions = LegalActions.of(state);
+    int roll = random.nextInt(100);
+    if (roll < 15 && legalActions.isLegal(PokerMove.CALL)) {
+      return BotMove.fold();
+    }
+    if (roll >= 75) {
+      int chips = legalActions.getMaxAmount();
+      if (legalActions.isLegal(PokerMove.BET)) {
+        return BotMove.bet(pickAmount(legalActions.getMinBet(), chips));
+      }
+      if (legalActions.isLegal(PokerMove.RAISE)) {
+        return BotMove.raise(pickAmount(legalActions.getMinRaise(), chips));
+      }
+    }
+    return BotMove.checkOrCall(legalActions);
+  }
+
+  private int pickAmount(int min, int max) {
+    return random.nextBoolean() ? max : min + random.nextInt(max - min + 1);
+  }
+}
@@ -0,0 +1,48 @@
+package org.poker.client.ai;
+
+import java.util.List;
+
+import org.poker.client.LegalActions;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A bot that plays a fixed sequence of moves, starting over when it runs out.
+ * Bets and raises are the minimum amount; a move that isn't legal is replaced
+ * by a check or a call.
+ */
+public class ScriptedBot implements Bot {
+
+  private final List<PokerMove> script;
+  private int next;
+
+  public ScriptedBot(List<PokerMove> script) {
+    this.script = ImmutableList.copyOf(script);
+  }
+
+  @Override
+  public BotMove getMove(PokerState state) {
+    PokerMove move = script.get(next);
+    next = (next + 1) % script.size();
+    LegalActions legalActions = LegalActions.of(state);
+    switch (move) {
+      case FOLD:
+        return BotMove.fold();
+      case BET:
+        if (legalActions.isLegal(PokerMove.BET)) {
+          return BotMove.bet(legalActions.getMinBet());
+        }
+        break;
+      case RAISE:
+        if (legalActions.isLegal(PokerMove.RAISE)) {
+          return BotMove.raise(legalActions.getMinRaise());
+        }
+        break;
+      default:
+        break;
+    }
+    return BotMove.checkOrCall(legalActions);
+  }
+}
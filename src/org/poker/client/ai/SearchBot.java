@@ -0,0 +1,223 @@
+package org.poker.client.ai;
+
+import java.util.List;
+import java.util.Random;
+
+import org.poker.client.Card;
+import org.poker.client.LegalActions;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+import org.poker.client.Pot;
+import org.poker.client.util.HandEvaluator;
+
+import com.google.common.base.Optional;
+
+/**
+ * A bot that estimates the equity of its hand and then searches its moves two plies deep:
+ * its own move, then the opponents' answer to it, each leaf being valued with the equity.
+ * <ul>
+ * <li>A fold is worth 0, since the chips already in the pot are gone either way.
+ * <li>A check or call is worth its share of the pot at showdown less the call.
+ * <li>A bet or raise is answered by every opponent folding with the probability that
+ * makes the bet break even as a bluff (the bet over the pot it is made into), in which case
+ * the bot takes the pot; otherwise it is called and goes to showdown.
+ * </ul>
+ * The candidate amounts are the minimum, half the pot, the pot and all-in.<br>
+ * The equity is estimated within the time budget by the {@link EquityEstimator}; when the
+ * budget is too small to sample, it comes from a cheap heuristic on the hand instead.<br>
+ * As an {@link AnytimeBot}, it starts from the heuristic, and each refinement asks the
+ * estimator for one batch of samples, averages it with the previous ones and searches again.
+ */
+public class SearchBot implements AnytimeBot {
+
+  public static final int DEFAULT_TIME_BUDGET_MILLIS = 200;
+  public static final int DEFAULT_MAX_SAMPLES = 20000;
+  /** Below this budget the equity comes from {@link #getHeuristicEquity}. */
+  static final int MIN_SAMPLING_MILLIS = 5;
+  /** The estimates an anytime decision averages at most. */
+  static final int MAX_REFINEMENTS = 1000;
+
+  /** The strength of the best made hand of each category, for the heuristic. */
+  private static final double[] CATEGORY_STRENGTH =
+      {0.3, 0.55, 0.72, 0.8, 0.86, 0.9, 0.95, 0.99, 1.0};
+
+  private final EquityEstimator equityEstimator;
+  private final int timeBudgetMillis;
+
+  public SearchBot(EquityEstimator equityEstimator, int timeBudgetMillis) {
+    this.equityEstimator = equityEstimator;
+    this.timeBudgetMillis = timeBudgetMillis;
+  }
+
+  public SearchBot(Random random) {
+    this(new MonteCarloEquityEstimator(random, DEFAULT_MAX_SAMPLES), DEFAULT_TIME_BUDGET_MILLIS);
+  }
+
+  @Override
+  public BotMove getMove(PokerState state) {
+    long deadlineMillis = System.currentTimeMillis() + timeBudgetMillis;
+    SearchDecision decision = new SearchDecision(state);
+    if (decision.holeCards != null && timeBudgetMillis >= MIN_SAMPLING_MILLIS) {
+      decision.addEstimate(equityEstimator.getEquity(decision.holeCards, decision.board,
+          decision.opponents, deadlineMillis));
+    }
+    return decision.getBestMove();
+  }
+
+  @Override
+  public AnytimeDecision startDecision(PokerState state) {
+    return new SearchDecision(state);
+  }
+
+  /** The search of one move, with the equity estimates averaged so far. */
+  private final class SearchDecision implements AnytimeDecision {
+    private final LegalActions legalActions;
+    /** Null if the player can't see its own cards. */
+    private final int[] holeCards;
+    private final int[] board;
+    private final int opponents;
+    private final int pot;
+    private double equitySum;
+    private int estimates;
+    private volatile BotMove bestMove;
+
+    private SearchDecision(PokerState state) {
+      legalActions = LegalActions.of(state);
+      int[] openHoleCards =
+          getOpenCards(state, state.getHoleCards().get(state.getWhoseMove().ordinal()));
+      board = getOpenCards(state, state.getBoard());
+      opponents = Math.max(state.getPlayersInHand().size() - 1, 1);
+      int chips = 0;
+      for (Pot sidePot : state.getPots()) {
+        chips += sidePot.getChips();
+      }
+      pot = chips;
+      if (openHoleCards.length < 2) {
+        // Can't see our own cards, so don't put anything more in
+        holeCards = null;
+        bestMove = legalActions.isLegal(PokerMove.CHECK) ? BotMove.check() : BotMove.fold();
+      } else {
+        holeCards = openHoleCards;
+        bestMove = search(legalActions, pot, getHeuristicEquity(holeCards, board, opponents),
+            opponents);
+      }
+    }
+
+    private void addEstimate(double equity) {
+      equitySum += equity;
+      estimates++;
+      bestMove = search(legalActions, pot, equitySum / estimates, opponents);
+    }
+
+    @Override
+    public boolean refine() {
+      if (holeCards == null || estimates >= MAX_REFINEMENTS) {
+        return false;
+      }
+      // A deadline that has passed asks for a single batch
+      addEstimate(equityEstimator.getEquity(holeCards, board, opponents, 0));
+      return estimates < MAX_REFINEMENTS;
+    }
+
+    @Override
+    public BotMove getBestMove() {
+      return bestMove;
+    }
+  }
+
+  /**
+   * Returns the move with the highest expected value, preferring the more passive move
+   * on a tie.
+   */
+  static BotMove search(LegalActions legalActions, int pot, double equity, int opponents) {
+    BotMove best = BotMove.checkOrCall(legalActions);
+    int callAmount = legalActions.getCallAmount();
+    double bestValue = equity * (pot + callAmount) - callAmount;
+    if (legalActions.isLegal(PokerMove.CALL) && bestValue < 0) {
+      best = BotMove.fold();
+      bestValue = 0;
+    }
+    PokerMove aggressiveMove = legalActions.isLegal(PokerMove.BET) ? PokerMove.BET
+        : legalActions.isLegal(PokerMove.RAISE) ? PokerMove.RAISE : null;
+    if (aggressiveMove == null) {
+      return best;
+    }
+    int minAmount = aggressiveMove == PokerMove.BET
+        ? legalActions.getMinBet() : legalActions.getMinRaise();
+    // The pot after calling, which is what a pot-sized raise is measured against
+    int calledPot = pot + callAmount;
+    int[] amounts = {minAmount, callAmount + calledPot / 2, callAmount + calledPot,
+        legalActions.getMaxAmount()};
+    for (int amount : amounts) {
+      amount = Math.min(Math.max(amount, minAmount), legalActions.getMaxAmount());
+      double value = getAggressiveValue(pot, callAmount, amount, equity, opponents);
+      if (value > bestValue) {
+        best = aggressiveMove == PokerMove.BET ? BotMove.bet(amount) : BotMove.raise(amount);
+        bestValue = value;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * The expected value of putting amount in a pot where callAmount is to call:
+   * the opponents have to put in the raise on top of the call.
+   */
+  private static double getAggressiveValue(int pot, int callAmount, int amount, double equity,
+      int opponents) {
+    int raise = amount - callAmount;
+    double foldProbability = raise / (double) (pot + amount);
+    double everyoneFolds = Math.pow(foldProbability, opponents);
+    double called = equity * (pot + amount + raise) - amount;
+    return everyoneFolds * pot + (1 - everyoneFolds) * called;
+  }
+
+  /**
+   * A quick guess of the equity: the strength of the best made hand once the flop is open,
+   * and of the starting hand before that, against each of the opponents.
+   */
+  static double getHeuristicEquity(int[] holeCards, int[] board, int opponents) {
+    double strength;
+    if (board.length >= 3) {
+      int[] cards = new int[2 + board.length];
+      System.arraycopy(holeCards, 0, cards, 0, 2);
+      System.arraycopy(board, 0, cards, 2, board.length);
+      int score = HandEvaluator.evaluate(cards, cards.length);
+      int category = HandEvaluator.getCategory(score);
+      double lower = category == 0 ? 0.05 : CATEGORY_STRENGTH[category - 1];
+      // The rank of the hand within its category, from its highest card
+      int highRank = (score >> 16) & 0xF;
+      strength = lower + (CATEGORY_STRENGTH[category] - lower) * highRank / 12;
+    } else {
+      int high = Math.max(holeCards[0] >> 2, holeCards[1] >> 2);
+      int low = Math.min(holeCards[0] >> 2, holeCards[1] >> 2);
+      if (high == low) {
+        strength = 0.6 + 0.4 * high / 12;
+      } else {
+        strength = 0.25 + 0.35 * (high + low) / 23;
+        if ((holeCards[0] & 3) == (holeCards[1] & 3)) {
+          strength += 0.04;
+        }
+        if (high - low == 1) {
+          strength += 0.03;
+        }
+      }
+    }
+    return Math.pow(strength, opponents);
+  }
+
+  /** Returns the ids of the cards at cardIndices that the player can see. */
+  private static int[] getOpenCards(PokerState state, List<Integer> cardIndices) {
+    int[] cards = new int[cardIndices.size()];
+    int count = 0;
+    for (int cardIndex : cardIndices) {
+      Optional<Card> card = state.getCards().get(cardIndex);
+      if (card.isPresent()) {
+        cards[count++] = HandEvaluator.getCardId(card.get());
+      }
+    }
+    int[] openCards = new int[count];
+    System.arraycopy(cards, 0, openCards, 0, count);
+    return openCards;
+  }
+}
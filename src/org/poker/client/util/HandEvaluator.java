@@ -0,0 +1,178 @@
+package org.poker.client.util;
+
+import org.poker.client.Card;
+import org.poker.client.Card.Rank;
+import org.poker.client.Card.Suit;
+
+/**
+ * Evaluates the best 5 card hand out of 5 to 7 cards, without allocating.<br>
+ * Cards are ids from 0 to 51: rank ordinal * 4 + suit ordinal, the same order as the
+ * card keys of {@link org.poker.client.PokerLogic}. A hand is scored as an int, and a higher
+ * score is a better hand: the category in the high bits, then the ranks that break ties
+ * within it, 4 bits each. Unlike {@link BestHandFinder} it doesn't build a {@link PokerHand}
+ * for each combination of 5 cards, so it is cheap enough to run in a simulation loop.
+ */
+public final class HandEvaluator {
+
+  public static final int HIGH_CARD = 0;
+  public static final int ONE_PAIR = 1;
+  public static final int TWO_PAIR = 2;
+  public static final int THREE_OF_A_KIND = 3;
+  public static final int STRAIGHT = 4;
+  public static final int FLUSH = 5;
+  public static final int FULL_HOUSE = 6;
+  public static final int FOUR_OF_A_KIND = 7;
+  public static final int STRAIGHT_FLUSH = 8;
+
+  private static final int CATEGORY_SHIFT = 20;
+
+  private HandEvaluator() { }
+
+  public static int getCardId(Card card) {
+    return card.getRank().ordinal() * 4 + card.getSuit().ordinal();
+  }
+
+  public static Card getCard(int cardId) {
+    return new Card(Suit.values()[cardId % 4], Rank.values()[cardId / 4]);
+  }
+
+  /** Returns the category of a score, from HIGH_CARD to STRAIGHT_FLUSH. */
+  public static int getCategory(int score) {
+    return score >>> CATEGORY_SHIFT;
+  }
+
+  /**
+   * Scores the best hand made of the first count cards.
+   *
+   * @param cards card ids
+   * @param count between 5 and 7
+   * @return the score; higher is better
+   */
+  public static int evaluate(int[] cards, int count) {
+    return evaluate(cards, count, cards, 0);
+  }
+
+  /**
+   * Scores the best hand made of the 2 hole cards and the first boardCount board cards,
+   * without copying them into one array.
+   *
+   * @param boardCount between 3 and 5
+   */
+  public static int evaluate(int[] holeCards, int[] board, int boardCount) {
+    return evaluate(holeCards, 2, board, boardCount);
+  }
+
+  private static int evaluate(int[] first, int firstCount, int[] second, int secondCount) {
+    int count = firstCount + secondCount;
+    int rankMask = 0;
+    int pairs = 0;
+    int trips = 0;
+    int quads = 0;
+    int clubs = 0;
+    int diamonds = 0;
+    int hearts = 0;
+    int spades = 0;
+    for (int i = 0; i < count; i++) {
+      int card = i < firstCount ? first[i] : second[i - firstCount];
+      int rankBit = 1 << (card >> 2);
+      // A rank's bit is in pairs when seen twice, in trips three times, in quads four times
+      if ((rankMask & rankBit) == 0) {
+        rankMask |= rankBit;
+      } else if ((pairs & rankBit) == 0) {
+        pairs |= rankBit;
+      } else if ((trips & rankBit) == 0) {
+        trips |= rankBit;
+      } else {
+        quads |= rankBit;
+      }
+      switch (card & 3) {
+        case 0:
+          clubs |= rankBit;
+          break;
+        case 1:
+          diamonds |= rankBit;
+          break;
+        case 2:
+          hearts |= rankBit;
+          break;
+        default:
+          spades |= rankBit;
+          break;
+      }
+    }
+
+    int flushMask = Integer.bitCount(clubs) >= 5 ? clubs
+        : Integer.bitCount(diamonds) >= 5 ? diamonds
+        : Integer.bitCount(hearts) >= 5 ? hearts
+        : Integer.bitCount(spades) >= 5 ? spades : 0;
+    if (flushMask != 0) {
+      int straightFlush = getStraightHighRank(flushMask);
+      if (straightFlush >= 0) {
+        return score(STRAIGHT_FLUSH, straightFlush << 16);
+      }
+    }
+    if (quads != 0) {
+      int quadsRank = highestRank(quads);
+      return score(FOUR_OF_A_KIND,
+          quadsRank << 16 | kickers(rankMask & ~(1 << quadsRank), 1, 12));
+    }
+    if (trips != 0) {
+      int tripsRank = highestRank(trips);
+      int fullHousePairs = pairs & ~(1 << tripsRank);
+      if (fullHousePairs != 0) {
+        return score(FULL_HOUSE, tripsRank << 16 | highestRank(fullHousePairs) << 12);
+      }
+    }
+    if (flushMask != 0) {
+      return score(FLUSH, kickers(flushMask, 5, 16));
+    }
+    int straight = getStraightHighRank(rankMask);
+    if (straight >= 0) {
+      return score(STRAIGHT, straight << 16);
+    }
+    if (trips != 0) {
+      int tripsRank = highestRank(trips);
+      return score(THREE_OF_A_KIND,
+          tripsRank << 16 | kickers(rankMask & ~(1 << tripsRank), 2, 12));
+    }
+    if (Integer.bitCount(pairs) >= 2) {
+      int highPair = highestRank(pairs);
+      int lowPair = highestRank(pairs & ~(1 << highPair));
+      return score(TWO_PAIR, highPair << 16 | lowPair << 12
+          | kickers(rankMask & ~(1 << highPair) & ~(1 << lowPair), 1, 8));
+    }
+    if (pairs != 0) {
+      int pairRank = highestRank(pairs);
+      return score(ONE_PAIR, pairRank << 16 | kickers(rankMask & ~(1 << pairRank), 3, 12));
+    }
+    return score(HIGH_CARD, kickers(rankMask, 5, 16));
+  }
+
+  private static int score(int category, int ranks) {
+    return category << CATEGORY_SHIFT | ranks;
+  }
+
+  private static int highestRank(int mask) {
+    return 31 - Integer.numberOfLeadingZeros(mask);
+  }
+
+  /** Packs the n highest ranks of mask, 4 bits each, the highest at bit shift. */
+  private static int kickers(int mask, int n, int shift) {
+    int result = 0;
+    for (int i = 0; i < n && mask != 0; i++) {
+      int rank = highestRank(mask);
+      mask &= ~(1 << rank);
+      result |= rank << (shift - 4 * i);
+    }
+    return result;
+  }
+
+  /** Returns the rank of the highest card of the best straight, or -1 if there is none. */
+  private static int getStraightHighRank(int mask) {
+    // Bit 0 is a low ace, so bit i + 1 is the rank of ordinal i
+    int withLowAce = mask << 1 | (mask >>> Rank.ACE.ordinal() & 1);
+    int runs = withLowAce & withLowAce >>> 1 & withLowAce >>> 2 & withLowAce >>> 3
+        & withLowAce >>> 4;
+    return runs == 0 ? -1 : highestRank(runs) + 3;
+  }
+}
@@ -0,0 +1,246 @@
+package org.poker.client.util;
+
+import org.poker.client.BettingRound;
+
+/**
+ * Maps the cards a player sees in a round, the 2 hole cards and the open board cards, to a
+ * dense index that is the same for hands equal up to renaming the suits (Ah Kh on 2h 7c 9d
+ * plays exactly like As Ks on 2s 7d 9c), so a table indexed by it has one entry per
+ * strategically distinct hand: 169 before the flop, 1,286,792 on the flop.<br>
+ * The board is taken as a set, so the order the cards were opened in doesn't matter.
+ * <p>
+ * How it works: each suit holds some hole ranks and some board ranks. Its <i>code</i> is the
+ * pair of their counts, and its <i>local index</i> numbers the possible rank sets with those
+ * counts. Sorting the suits by (code, local index) makes the hand canonical. The sorted codes
+ * select a configuration, whose hands get a contiguous range of indices; within it, suits
+ * with the same code are an unordered multiset of local indices, and are numbered as such.
+ * <p>
+ * Indexing allocates nothing and is O(1): a handful of bit operations per suit.
+ * Cards are card ids, see {@link HandEvaluator}.
+ */
+public final class HandIndexer {
+
+  private static final int RANKS = 13;
+  private static final int SUITS = 4;
+  /** A suit's code is its hole card count * CODE_BASE + its board card count. */
+  private static final int CODE_BASE = 6;
+  private static final int CODES = 3 * CODE_BASE;
+  private static final int LOCAL_BITS = 16;
+  private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+
+  private static final HandIndexer[] INDEXERS =
+      {new HandIndexer(0), new HandIndexer(3), new HandIndexer(4), new HandIndexer(5)};
+
+  private final int boardCount;
+  /** The first index of each configuration by its key, or -1 if it can't happen. */
+  private final int[] configOffsets = new int[CODES * CODES * CODES * CODES];
+  private final int size;
+
+  private HandIndexer(int boardCount) {
+    this.boardCount = boardCount;
+    for (int i = 0; i < configOffsets.length; i++) {
+      configOffsets[i] = -1;
+    }
+    long offset = 0;
+    for (int c0 = 0; c0 < CODES; c0++) {
+      for (int c1 = 0; c1 <= c0; c1++) {
+        for (int c2 = 0; c2 <= c1; c2++) {
+          for (int c3 = 0; c3 <= c2; c3++) {
+            if (isPossible(c0, c1, c2, c3)) {
+              configOffsets[getConfigKey(c0, c1, c2, c3)] = (int) offset;
+              offset += getConfigSize(c0, c1, c2, c3);
+            }
+          }
+        }
+      }
+    }
+    this.size = (int) offset;
+  }
+
+  /** Returns the indexer of round, from PRE_FLOP to RIVER. */
+  public static HandIndexer of(BettingRound round) {
+    if (round.ordinal() >= INDEXERS.length) {
+      throw new IllegalArgumentException("No cards are dealt in " + round);
+    }
+    return INDEXERS[round.ordinal()];
+  }
+
+  public int getBoardCount() {
+    return boardCount;
+  }
+
+  /** The number of distinct indices. */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the index of a hand, from 0 to getSize() - 1.
+   *
+   * @param board holds at least getBoardCount() cards; the cards after those are ignored
+   */
+  public int index(int[] holeCards, int[] board) {
+    long holeMasks = getRankMasks(holeCards, 2);
+    long boardMasks = getRankMasks(board, boardCount);
+    int k0 = getSuitKey(holeMasks, boardMasks, 0);
+    int k1 = getSuitKey(holeMasks, boardMasks, 1);
+    int k2 = getSuitKey(holeMasks, boardMasks, 2);
+    int k3 = getSuitKey(holeMasks, boardMasks, 3);
+    // A sorting network, largest key first
+    int swap;
+    if (k0 < k1) {
+      swap = k0;
+      k0 = k1;
+      k1 = swap;
+    }
+    if (k2 < k3) {
+      swap = k2;
+      k2 = k3;
+      k3 = swap;
+    }
+    if (k0 < k2) {
+      swap = k0;
+      k0 = k2;
+      k2 = swap;
+    }
+    if (k1 < k3) {
+      swap = k1;
+      k1 = k3;
+      k3 = swap;
+    }
+    if (k1 < k2) {
+      swap = k1;
+      k1 = k2;
+      k2 = swap;
+    }
+
+    long index = 0;
+    for (int start = 0; start < SUITS; ) {
+      int code = getKey(start, k0, k1, k2, k3) >>> LOCAL_BITS;
+      int end = start + 1;
+      while (end < SUITS && getKey(end, k0, k1, k2, k3) >>> LOCAL_BITS == code) {
+        end++;
+      }
+      // The multiset of the local indices of the suits with this code, smallest first
+      int count = end - start;
+      long rank = 0;
+      for (int i = 0; i < count; i++) {
+        int local = getKey(end - 1 - i, k0, k1, k2, k3) & LOCAL_MASK;
+        rank += choose(local + i, i + 1);
+      }
+      index = index * getMultisetCount(getLocalCount(code), count) + rank;
+      start = end;
+    }
+    return configOffsets[getConfigKey(k0 >>> LOCAL_BITS, k1 >>> LOCAL_BITS,
+        k2 >>> LOCAL_BITS, k3 >>> LOCAL_BITS)] + (int) index;
+  }
+
+  /**
+   * Returns the number of hands with this hand's index: 24 suit renamings, less those that
+   * give back the same hand.
+   */
+  public int getMultiplicity(int[] holeCards, int[] board) {
+    long holeMasks = getRankMasks(holeCards, 2);
+    long boardMasks = getRankMasks(board, boardCount);
+    int symmetries = 1;
+    for (int suit = 0; suit < SUITS; suit++) {
+      int key = getSuitKey(holeMasks, boardMasks, suit);
+      int same = 0;
+      for (int other = 0; other < suit; other++) {
+        if (getSuitKey(holeMasks, boardMasks, other) == key) {
+          same++;
+        }
+      }
+      // Suits with equal keys can be permuted: multiply by same + 1 for each, i.e. count!
+      symmetries *= same + 1;
+    }
+    return 24 / symmetries;
+  }
+
+  /** Returns the ranks of each suit's cards, 16 bits per suit. */
+  private static long getRankMasks(int[] cards, int count) {
+    long masks = 0;
+    for (int i = 0; i < count; i++) {
+      masks |= 1L << ((cards[i] & 3) * 16 + (cards[i] >> 2));
+    }
+    return masks;
+  }
+
+  /** Returns the key of a suit: its code, then its local index. */
+  private static int getSuitKey(long holeMasks, long boardMasks, int suit) {
+    int holeRanks = (int) (holeMasks >>> (suit * 16)) & 0xFFFF;
+    int boardRanks = (int) (boardMasks >>> (suit * 16)) & 0xFFFF;
+    int holeSize = Integer.bitCount(holeRanks);
+    int boardSize = Integer.bitCount(boardRanks);
+    // Number the board ranks among the ranks the hole cards left free in the suit
+    int freeBoardRanks = 0;
+    for (int ranks = boardRanks; ranks != 0; ranks &= ranks - 1) {
+      int rank = Integer.numberOfTrailingZeros(ranks);
+      freeBoardRanks |= 1 << (rank - Integer.bitCount(holeRanks & ((1 << rank) - 1)));
+    }
+    int local = getColex(holeRanks) * (int) choose(RANKS - holeSize, boardSize)
+        + getColex(freeBoardRanks);
+    return (holeSize * CODE_BASE + boardSize) << LOCAL_BITS | local;
+  }
+
+  private static int getKey(int i, int k0, int k1, int k2, int k3) {
+    return i == 0 ? k0 : i == 1 ? k1 : i == 2 ? k2 : k3;
+  }
+
+  private static int getConfigKey(int c0, int c1, int c2, int c3) {
+    return ((c0 * CODES + c1) * CODES + c2) * CODES + c3;
+  }
+
+  private boolean isPossible(int c0, int c1, int c2, int c3) {
+    int holeSize = c0 / CODE_BASE + c1 / CODE_BASE + c2 / CODE_BASE + c3 / CODE_BASE;
+    int boardSize = c0 % CODE_BASE + c1 % CODE_BASE + c2 % CODE_BASE + c3 % CODE_BASE;
+    return holeSize == 2 && boardSize == boardCount;
+  }
+
+  private static long getConfigSize(int c0, int c1, int c2, int c3) {
+    long size = 1;
+    int[] codes = {c0, c1, c2, c3};
+    for (int start = 0; start < SUITS; ) {
+      int end = start + 1;
+      while (end < SUITS && codes[end] == codes[start]) {
+        end++;
+      }
+      size *= getMultisetCount(getLocalCount(codes[start]), end - start);
+      start = end;
+    }
+    return size;
+  }
+
+  /** The number of rank sets a suit with this code can hold. */
+  private static long getLocalCount(int code) {
+    int holeSize = code / CODE_BASE;
+    return choose(RANKS, holeSize) * choose(RANKS - holeSize, code % CODE_BASE);
+  }
+
+  /** The number of multisets of count elements out of n. */
+  private static long getMultisetCount(long n, int count) {
+    return choose(n + count - 1, count);
+  }
+
+  /** Numbers the sets of the same size in colexicographic order, from 0. */
+  private static int getColex(int mask) {
+    int colex = 0;
+    int i = 1;
+    for (int bits = mask; bits != 0; bits &= bits - 1, i++) {
+      colex += choose(Integer.numberOfTrailingZeros(bits), i);
+    }
+    return colex;
+  }
+
+  /** n choose k, for the small k used here. */
+  private static long choose(long n, int k) {
+    if (k < 0 || n < k) {
+      return 0;
+    }
+    long result = 1;
+    for (int i = 0; i < k; i++) {
+      result = result * (n - i) / (i + 1);
+    }
+    return result;
+  }
+}
@@ -4,8 +4,8 @@ import java.util.List;
 
 import org.poker.client.BettingRound;
 import org.poker.client.Card;
+import org.poker.client.LegalActions;
 import org.poker.client.Player;
-import org.poker.client.PokerLogic;
 import org.poker.client.PokerMove;
 import org.poker.client.PokerPresenter;
 import org.poker.client.Pot;
@@ -123,10 +123,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
   private PokerPresenter presenter;
   private final CardImageSupplier cardImageSupplier;
   
-  private int currentBet;
-  private int myCurrentBet;
-  private int myChips;
-  
   private PopupEnterValue buyInPopup = null;
   
   public PokerGraphics() {
@@ -224,10 +220,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       List<Player> playersInHand, List<List<Optional<Card>>> holeCards,
       List<Optional<Card>> board) {
     
-    currentBet = 0;
-    myChips = 0;
-    myCurrentBet = 0;
-    
     for (int i = 0; i < numOfPlayers; i++) {
       placeCards(holeCardPanelArr[i], createCardImages(holeCards.get(i)));
       infoPanelArr[i].clear();
@@ -254,7 +246,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       potInfoPanel.add(new Label("Pot" + (i + 1) +
           " -- Chips: " + pot.getChips() +
           " | Bet: " + pot.getCurrentPotBet()));
-      currentBet += pot.getCurrentPotBet();
     }
     disableButtons();
     
@@ -267,9 +258,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       List<Integer> playerBets, List<Pot> pots, List<Integer> playerChips,
       List<Player> playersInHand, List<List<Optional<Card>>> holeCards,
       List<Optional<Card>> board) {
-    currentBet = 0;
-    myChips = playerChips.get(myIndex);
-    myCurrentBet = playerBets.get(myIndex);
     hideBuyInPopup();
     
     for (int i = 0; i < numOfPlayers; i++) {
@@ -296,7 +284,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       potInfoPanel.add(new Label("Pot" + (i + 1) +
           " -- Chips: " + pot.getChips() +
           " | Bet: " + pot.getCurrentPotBet()));
-      currentBet += pot.getCurrentPotBet();
     }
     disableButtons();
     //TODO: handle remaining state
@@ -307,9 +294,6 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       List<Pot> pots, List<Integer> playerChips, List<Player> playersInHand,
       List<List<Optional<Card>>> holeCards, List<Optional<Card>> board) {
     
-    currentBet = 0;
-    myChips = 0;
-    myCurrentBet = 0;
     hideBuyInPopup();
     
     for (int i = 0; i < numOfPlayers; i++) {
@@ -355,7 +339,7 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
   @UiHandler("btnCheck")
   void onClickCheckBtn(ClickEvent e) {
     //disableClicks();
-    if (currentBet - myCurrentBet != 0) {
+    if (!presenter.getLegalActions().isLegal(PokerMove.CHECK)) {
       Window.alert("Current bet is not 0");
       return;
     }
@@ -365,16 +349,12 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
   @UiHandler("btnCall")
   void onClickCallBtn(ClickEvent e) {
     //disableClicks();
-    int callAmount = currentBet - myCurrentBet;
-    if (myChips < callAmount) {
-      Window.alert("Insufficient chips to Call");
-      return;
-    }
-    if (callAmount == 0) {
+    LegalActions legalActions = presenter.getLegalActions();
+    if (!legalActions.isLegal(PokerMove.CALL)) {
       Window.alert("Can't call 0 amount");
       return;
     }
-    presenter.moveMade(PokerMove.CALL, callAmount);
+    presenter.moveMade(PokerMove.CALL, legalActions.getCallAmount());
   }
   
   @UiHandler("btnBet")
@@ -389,19 +369,20 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
       return;
     }
     
-    if (amount > myChips) {
+    LegalActions legalActions = presenter.getLegalActions();
+    if (amount > legalActions.getMaxAmount()) {
       Window.alert("Insufficient chips");
       return;
     }
     
-    if (currentBet == 0) {
-      if (amount < PokerLogic.BIG_BLIND) {
-        Window.alert("Bet cannot be less than big blind (" + PokerLogic.BIG_BLIND + ")");
+    if (legalActions.isLegal(PokerMove.BET)) {
+      if (!legalActions.isLegal(PokerMove.BET, amount)) {
+        Window.alert("Bet cannot be less than big blind (" + legalActions.getBigBlind() + ")");
         return;
       }
       presenter.moveMade(PokerMove.BET, amount);
     }
-    else if (myCurrentBet + amount >= 2 * currentBet) {
+    else if (legalActions.isLegal(PokerMove.RAISE, amount)) {
       presenter.moveMade(PokerMove.RAISE, amount);
     }
     else {
@@ -411,26 +392,20 @@ public class PokerGraphics extends Composite implements PokerPresenter.View {
   
   @UiHandler("btnAllIn")
   void onClickAllInBtn(ClickEvent e) {
-    int amount = myChips;
-    if (currentBet == 0) {
-      presenter.moveMade(PokerMove.BET, amount);
-    }
-    else if (amount + myCurrentBet <= currentBet) {
-      presenter.moveMade(PokerMove.CALL, amount);
-    }
-    else {
-      presenter.moveMade(PokerMove.RAISE, amount);
-    }
+    LegalActions legalActions = presenter.getLegalActions();
+    presenter.moveMade(legalActions.getAllInMove(), legalActions.getMaxAmount());
   }
   
   @Override
   public void makeYourMove() {
+    LegalActions legalActions = presenter.getLegalActions();
     btnFold.setEnabled(true);
-    btnCheck.setEnabled(currentBet - myCurrentBet == 0);
-    btnCall.setEnabled(myChips >= currentBet - myCurrentBet);
-    btnBet.setEnabled(true);
-    txtAmount.setEnabled(true);
-    btnAllIn.setEnabled(true);
+    btnCheck.setEnabled(legalActions.isLegal(PokerMove.CHECK));
+    btnCall.setEnabled(legalActions.isLegal(PokerMove.CALL));
+    btnBet.setEnabled(legalActions.isLegal(PokerMove.BET)
+        || legalActions.isLegal(PokerMove.RAISE));
+    txtAmount.setEnabled(btnBet.isEnabled());
+    btnAllIn.setEnabled(legalActions.getMaxAmount() > 0);
   }
   
   private void disableButtons() {
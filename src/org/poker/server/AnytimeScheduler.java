@@ -0,0 +1,136 @@
+package org.poker.server;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.poker.client.PokerState;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecision;
+import org.poker.client.ai.BotMove;
+
+/**
+ * Runs the decisions of {@link AnytimeBot}s on the threads of an executor and cancels them
+ * at their deadline, so a bot answers in time however slow its refinements are: the caller
+ * gets the best move found by then, even if a refinement is still running.<br>
+ * {@link #decide(AnytimeBot, PokerState, long, MoveCallback)} doesn't block the caller: the
+ * move is handed to a callback, on one of the executor's threads.
+ */
+public class AnytimeScheduler {
+
+  /** Receives the move of a decision made without blocking. */
+  public interface MoveCallback {
+    void onMove(BotMove move);
+  }
+
+  private final ScheduledExecutorService executor;
+
+  /**
+   * @param executor runs the refinements and the deadlines; it is not shut down by this class
+   */
+  public AnytimeScheduler(ScheduledExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Refines the decision of bot until deadlineMillis (see
+   * {@link org.poker.client.ai.AnytimeDecisions#getDeadlineMillis}) or until it is final,
+   * and returns its best move.
+   */
+  public BotMove decide(AnytimeBot bot, PokerState state, long deadlineMillis) {
+    final AnytimeDecision decision = bot.startDecision(state);
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    Future<?> future = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        while (!cancelled.get() && !Thread.currentThread().isInterrupted()
+            && decision.refine()) {
+          // Keep refining
+        }
+      }
+    });
+    try {
+      future.get(Math.max(0, deadlineMillis - System.currentTimeMillis()),
+          TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // The deadline came first: play the best move so far
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A decision failed", e.getCause());
+    } finally {
+      cancelled.set(true);
+      future.cancel(true);
+    }
+    return decision.getBestMove();
+  }
+
+  /**
+   * Refines the decision of bot until deadlineMillis or until it is final, like
+   * {@link #decide(AnytimeBot, PokerState, long)}, but returns at once: the best move is
+   * passed to callback, exactly once, on one of the executor's threads.<br>
+   * A refinement that throws ends the decision early with the best move so far.
+   */
+  public void decide(AnytimeBot bot, PokerState state, long deadlineMillis,
+      MoveCallback callback) {
+    final AsyncDecision asyncDecision =
+        new AsyncDecision(bot.startDecision(state), deadlineMillis, callback);
+    asyncDecision.refining = executor.submit(asyncDecision);
+    asyncDecision.deadline = executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        asyncDecision.finish(true);
+      }
+    }, Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    if (asyncDecision.done.get()) {
+      // The decision was over before its deadline was scheduled
+      asyncDecision.deadline.cancel(false);
+    }
+  }
+
+  /** A decision refined on the executor until whichever comes first: its end or deadline. */
+  private static final class AsyncDecision implements Runnable {
+    private final AnytimeDecision decision;
+    private final long deadlineMillis;
+    private final MoveCallback callback;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Future<?> refining;
+    private volatile Future<?> deadline;
+
+    private AsyncDecision(AnytimeDecision decision, long deadlineMillis,
+        MoveCallback callback) {
+      this.decision = decision;
+      this.deadlineMillis = deadlineMillis;
+      this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+      try {
+        // The loop checks the clock too, in case the deadline waits for a free thread
+        while (!done.get() && !Thread.currentThread().isInterrupted()
+            && System.currentTimeMillis() < deadlineMillis && decision.refine()) {
+          // Keep refining
+        }
+      } finally {
+        finish(false);
+      }
+    }
+
+    /** Hands the best move to the callback, unless it already has it. */
+    private void finish(boolean atDeadline) {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      Future<?> other = atDeadline ? refining : deadline;
+      if (other != null) {
+        // Only interrupt a refinement still running at the deadline
+        other.cancel(atDeadline);
+      }
+      callback.onMove(decision.getBestMove());
+    }
+  }
+}
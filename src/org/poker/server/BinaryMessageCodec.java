@@ -0,0 +1,425 @@
+package org.poker.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Message;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.Card.Rank;
+import org.poker.client.Card.Suit;
+import org.poker.client.Player;
+import org.poker.client.PokerMove;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A compact binary encoding of GameApi messages for server-to-server traffic and storage.<br>
+ * Every value starts with a one byte tag:
+ * <ul>
+ * <li>a GameApi message is a single byte for its type, followed by its field values in the
+ * order of {@link Message#getFieldsNameAndValue()}; any other message is written with its
+ * type and field names,
+ * <li>a string in the dictionary (the game's keys and common values) is a single byte,
+ * <li>any other string is written in full the first time it appears in a message, and as a
+ * small integer after that,
+ * <li>integers and longs are zigzag varints.
+ * </ul>
+ * A message is decoded with {@link Message#messageToHasEquality(Map)}, so it round-trips like
+ * the JSON format does. Both ends must use the same dictionary.<br>
+ * Not thread safe: the buffers are reused between calls, so keep one codec per thread.
+ */
+public class BinaryMessageCodec {
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INTEGER = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING = 5;
+  private static final byte STRING_REFERENCE = 6;
+  private static final byte LIST = 7;
+  private static final byte MAP = 8;
+  private static final byte MESSAGE = 9;
+  /** Taken from the end of the tags of the added messages, which must stay below it. */
+  private static final byte LONG = 15;
+  /**
+   * The tag of the i-th message in MESSAGE_FIELDS is FIRST_MESSAGE + i for the messages the
+   * codec started with, and FIRST_ADDED_MESSAGE + i for the ones added since, so the tags
+   * of the hand histories already written never change.
+   */
+  private static final int FIRST_MESSAGE = 16;
+  private static final int FIRST_ADDED_MESSAGE = 10;
+  /** The number of messages of the first version, tagged from FIRST_MESSAGE. */
+  private static final int FIRST_MESSAGES = 16;
+  /** The tag of the i-th dictionary string, for the first 224. */
+  private static final int FIRST_STRING = 32;
+  private static final int ONE_BYTE_STRINGS = 256 - FIRST_STRING;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** The field names of every GameApi message, by type. */
+  private static final Map<String, List<String>> MESSAGE_FIELDS =
+      ImmutableMap.<String, List<String>>builder()
+          .put("VerifyMove", ImmutableList.of("playersInfo", "state", "lastState", "lastMove",
+              "lastMovePlayerId", "playerIdToNumberOfTokensInPot"))
+          .put("UpdateUI", ImmutableList.of("yourPlayerId", "playersInfo", "state", "lastState",
+              "lastMove", "lastMovePlayerId", "playerIdToNumberOfTokensInPot"))
+          .put("EndGame", ImmutableList.of("playerIdToScore"))
+          .put("Set", ImmutableList.of("key", "value", "visibleToPlayerIds"))
+          .put("SetRandomInteger", ImmutableList.of("key", "from", "to"))
+          .put("SetVisibility", ImmutableList.of("key", "visibleToPlayerIds"))
+          .put("SetTurn", ImmutableList.of("playerId", "numberOfSecondsForTurn"))
+          .put("Delete", ImmutableList.of("key"))
+          .put("AttemptChangeTokens", ImmutableList.of("playerIdToTokenChange",
+              "playerIdToNumberOfTokensInPot"))
+          .put("Shuffle", ImmutableList.of("keys"))
+          .put("GameReady", ImmutableList.<String>of())
+          .put("MakeMove", ImmutableList.of("operations"))
+          .put("VerifyMoveDone", ImmutableList.of("hackerPlayerId", "message"))
+          .put("RequestManipulator", ImmutableList.<String>of())
+          .put("ManipulateState", ImmutableList.of("state"))
+          .put("ManipulationDone", ImmutableList.of("operations"))
+          // Added since: only append, up to LONG - FIRST_ADDED_MESSAGE of them
+          .put("ShuffleKeyRange", ImmutableList.of("keyPrefix", "fromIndex", "toIndex"))
+          .put("SetVisibilityForKeyRange", ImmutableList.of("keyPrefix", "fromIndex",
+              "toIndex", "visibleToPlayerIds"))
+          .put("SetVisibilityPerPlayer", ImmutableList.of("keyPrefix", "fromIndex",
+              "keysPerPlayer", "playerIds"))
+          .build();
+  private static final List<String> MESSAGE_TYPES =
+      ImmutableList.copyOf(MESSAGE_FIELDS.keySet());
+
+  /** Strings common to every game. */
+  private static final List<String> GAME_API_STRINGS = ImmutableList.of(
+      "ALL", "playerId", "playerName", "playerTokens", "playerProfilePicUrl");
+
+  private final List<String> dictionary;
+  private final Map<String, Integer> dictionaryIds = Maps.newHashMap();
+
+  // Reused by every call
+  private byte[] output = new byte[1024];
+  private int outputSize;
+  private final Map<String, Integer> outputStrings = Maps.newHashMap();
+  private final List<String> inputStrings = Lists.newArrayList();
+
+  /**
+   * Creates a codec whose dictionary has a few GameApi names followed by gameStrings; the first
+   * {@value #ONE_BYTE_STRINGS} are written as a single byte, so put the common ones first.
+   */
+  public BinaryMessageCodec(List<String> gameStrings) {
+    dictionary = ImmutableList.<String>builder()
+        .addAll(GAME_API_STRINGS).addAll(gameStrings).build();
+    for (int i = 0; i < dictionary.size(); i++) {
+      if (!dictionaryIds.containsKey(dictionary.get(i))) {
+        dictionaryIds.put(dictionary.get(i), i);
+      }
+    }
+  }
+
+  /**
+   * A codec whose dictionary also has the poker state keys, cards, players, moves and rounds.
+   * The state keys added after the pots are appended last, so the ids of the dictionary the
+   * hand histories were first written with never change.
+   */
+  public static BinaryMessageCodec forPoker() {
+    List<String> stateKeys = AbstractPokerLogicBase.STATE_KEYS;
+    int firstAddedKey = stateKeys.indexOf("pots") + 1;
+    ImmutableList.Builder<String> strings = ImmutableList.builder();
+    strings.addAll(stateKeys.subList(0, firstAddedKey));
+    strings.addAll(AbstractPokerLogicBase.POT_KEYS);
+    for (Rank rank : Rank.values()) {
+      for (Suit suit : Suit.values()) {
+        strings.add(rank.getFirstLetter() + suit.getFirstLetterLowerCase());
+      }
+    }
+    for (Player player : Player.values()) {
+      strings.add(player.name());
+    }
+    for (PokerMove move : PokerMove.values()) {
+      strings.add(move.name());
+    }
+    for (BettingRound round : BettingRound.values()) {
+      strings.add(round.name());
+    }
+    strings.addAll(stateKeys.subList(firstAddedKey, stateKeys.size()));
+    return new BinaryMessageCodec(strings.build());
+  }
+
+  public byte[] encode(Message message) {
+    outputSize = 0;
+    outputStrings.clear();
+    writeMessage(message);
+    return Arrays.copyOf(output, outputSize);
+  }
+
+  public Message decode(byte[] bytes) {
+    return decode(ByteBuffer.wrap(bytes));
+  }
+
+  /** Decodes the message at the buffer's position, and moves the position past it. */
+  @SuppressWarnings("unchecked")
+  public Message decode(ByteBuffer input) {
+    inputStrings.clear();
+    Object value = readValue(input);
+    if (!(value instanceof Map)) {
+      throw new IllegalStateException("Message expected");
+    }
+    return Message.messageToHasEquality((Map<String, Object>) value);
+  }
+
+  private void writeMessage(Message message) {
+    List<Object> fieldsNameAndValue = message.getFieldsNameAndValue();
+    int fields = fieldsNameAndValue.size() / 2;
+    List<String> fieldNames = MESSAGE_FIELDS.get(message.getMessageName());
+    if (fieldNames != null && hasFields(fieldsNameAndValue, fieldNames)) {
+      writeByte((byte) getMessageTag(MESSAGE_TYPES.indexOf(message.getMessageName())));
+      for (int i = 0; i < fields; i++) {
+        writeValue(fieldsNameAndValue.get(2 * i + 1));
+      }
+      return;
+    }
+    writeByte(MESSAGE);
+    writeString(message.getMessageName());
+    writeVarint(fields);
+    for (int i = 0; i < fields; i++) {
+      writeString((String) fieldsNameAndValue.get(2 * i));
+      writeValue(fieldsNameAndValue.get(2 * i + 1));
+    }
+  }
+
+  private static boolean hasFields(List<Object> fieldsNameAndValue, List<String> fieldNames) {
+    if (fieldsNameAndValue.size() != 2 * fieldNames.size()) {
+      return false;
+    }
+    for (int i = 0; i < fieldNames.size(); i++) {
+      if (!fieldNames.get(i).equals(fieldsNameAndValue.get(2 * i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeValue(Object value) {
+    if (value == null) {
+      writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Integer) {
+      writeByte(INTEGER);
+      int i = (Integer) value;
+      writeVarint((i << 1) ^ (i >> 31));
+    } else if (value instanceof Long) {
+      writeByte(LONG);
+      long l = (Long) value;
+      writeVarlong((l << 1) ^ (l >> 63));
+    } else if (value instanceof Double) {
+      writeByte(DOUBLE);
+      long bits = Double.doubleToLongBits((Double) value);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        writeByte((byte) (bits >>> shift));
+      }
+    } else if (value instanceof String) {
+      writeString((String) value);
+    } else if (value instanceof Message) {
+      writeMessage((Message) value);
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      writeByte(LIST);
+      writeVarint(list.size());
+      for (Object element : list) {
+        writeValue(element);
+      }
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      writeByte(MAP);
+      writeVarint(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString((String) entry.getKey());
+        writeValue(entry.getValue());
+      }
+    } else {
+      throw new IllegalStateException("Invalid object encountered: " + value);
+    }
+  }
+
+  private void writeString(String value) {
+    Integer id = dictionaryIds.get(value);
+    if (id != null && id < ONE_BYTE_STRINGS) {
+      writeByte((byte) (FIRST_STRING + id));
+      return;
+    }
+    if (id == null) {
+      id = outputStrings.get(value);
+      if (id != null) {
+        id += dictionary.size();
+      }
+    }
+    if (id != null) {
+      writeByte(STRING_REFERENCE);
+      writeVarint(id);
+      return;
+    }
+    outputStrings.put(value, outputStrings.size());
+    byte[] bytes = value.getBytes(UTF_8);
+    writeByte(STRING);
+    writeVarint(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, output, outputSize, bytes.length);
+    outputSize += bytes.length;
+  }
+
+  private void writeVarint(int value) {
+    ensureCapacity(5);
+    while ((value & ~0x7F) != 0) {
+      output[outputSize++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output[outputSize++] = (byte) value;
+  }
+
+  private void writeVarlong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      output[outputSize++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output[outputSize++] = (byte) value;
+  }
+
+  private void writeByte(byte value) {
+    ensureCapacity(1);
+    output[outputSize++] = value;
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (outputSize + bytes > output.length) {
+      output = Arrays.copyOf(output, Math.max(2 * output.length, outputSize + bytes));
+    }
+  }
+
+  private static int getMessageTag(int messageIndex) {
+    return messageIndex < FIRST_MESSAGES
+        ? FIRST_MESSAGE + messageIndex : FIRST_ADDED_MESSAGE + messageIndex - FIRST_MESSAGES;
+  }
+
+  /** Returns the index in MESSAGE_TYPES of the message tagged tag, or -1. */
+  private static int getMessageIndex(int tag) {
+    if (tag >= FIRST_MESSAGE && tag < FIRST_MESSAGE + FIRST_MESSAGES) {
+      return tag - FIRST_MESSAGE;
+    }
+    int addedMessages = MESSAGE_TYPES.size() - FIRST_MESSAGES;
+    if (tag >= FIRST_ADDED_MESSAGE && tag < FIRST_ADDED_MESSAGE + addedMessages) {
+      return FIRST_MESSAGES + tag - FIRST_ADDED_MESSAGE;
+    }
+    return -1;
+  }
+
+  private Object readValue(ByteBuffer input) {
+    byte tag = input.get();
+    if ((tag & 0xFF) >= FIRST_STRING) {
+      return dictionary.get((tag & 0xFF) - FIRST_STRING);
+    }
+    int messageIndex = getMessageIndex(tag);
+    if (messageIndex >= 0) {
+      String type = MESSAGE_TYPES.get(messageIndex);
+      Map<String, Object> message = Maps.newHashMap();
+      message.put("type", type);
+      for (String field : MESSAGE_FIELDS.get(type)) {
+        message.put(field, readValue(input));
+      }
+      return message;
+    }
+    switch (tag) {
+      case NULL:
+        return null;
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case INTEGER:
+        int zigzag = readVarint(input);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      case LONG:
+        long longZigzag = readVarlong(input);
+        return (longZigzag >>> 1) ^ -(longZigzag & 1);
+      case DOUBLE:
+        return Double.longBitsToDouble(input.getLong());
+      case STRING:
+      case STRING_REFERENCE:
+        return readString(tag, input);
+      case LIST:
+        int size = readVarint(input);
+        List<Object> list = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readValue(input));
+        }
+        return list;
+      case MAP:
+        return readFields(readVarint(input), input, Maps.<String, Object>newHashMap());
+      case MESSAGE:
+        Map<String, Object> message = Maps.newHashMap();
+        message.put("type", readString(input.get(), input));
+        return readFields(readVarint(input), input, message);
+      default:
+        throw new IllegalStateException("Unknown tag " + tag + " at " + (input.position() - 1));
+    }
+  }
+
+  private Map<String, Object> readFields(int fields, ByteBuffer input, Map<String, Object> map) {
+    for (int i = 0; i < fields; i++) {
+      String key = readString(input.get(), input);
+      map.put(key, readValue(input));
+    }
+    return map;
+  }
+
+  private String readString(byte tag, ByteBuffer input) {
+    if ((tag & 0xFF) >= FIRST_STRING) {
+      return dictionary.get((tag & 0xFF) - FIRST_STRING);
+    }
+    if (tag == STRING_REFERENCE) {
+      int id = readVarint(input);
+      return id < dictionary.size()
+          ? dictionary.get(id) : inputStrings.get(id - dictionary.size());
+    }
+    if (tag != STRING) {
+      throw new IllegalStateException("String expected at " + (input.position() - 1));
+    }
+    byte[] bytes = new byte[readVarint(input)];
+    input.get(bytes);
+    String value = new String(bytes, UTF_8);
+    inputStrings.add(value);
+    return value;
+  }
+
+  private int readVarint(ByteBuffer input) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = input.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed varint at " + input.position());
+  }
+
+  private long readVarlong(ByteBuffer input) {
+    long value = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      byte b = input.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed varint at " + input.position());
+  }
+}
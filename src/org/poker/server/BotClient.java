@@ -0,0 +1,120 @@
+package org.poker.server;
+
+import java.util.List;
+
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.poker.client.BettingRound;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecisions;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.BotMove;
+
+/**
+ * A headless player: it plays the moves of a {@link Bot} whenever an {@link UpdateUI} says
+ * it is its turn, and sends the end game move at showdown like
+ * {@link org.poker.client.PokerPresenter} does. In a session it deals the next hand when the
+ * button passes to it.<br>
+ * Given an {@link AnytimeScheduler}, an {@link AnytimeBot} refines its move until the
+ * deadline set by the turn's SetTurn. The decision doesn't hold up the thread that delivered
+ * the UpdateUI, e.g. a table's shard: the move is sent from the scheduler's thread once it is
+ * made, so the container must accept moves from any thread.
+ */
+public class BotClient implements Game {
+
+  /** The time an anytime bot gets when the SetTurn has no time limit. */
+  public static final int DEFAULT_TURN_MILLIS = 1000;
+
+  private final Bot bot;
+  private final AnytimeScheduler scheduler;
+  private final PokerLogic pokerLogic = new PokerLogic();
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  private Container container;
+
+  public BotClient(Bot bot) {
+    this(bot, null);
+  }
+
+  /**
+   * @param scheduler runs the decisions of an {@link AnytimeBot}; null to use
+   *     {@link Bot#getMove} whatever the bot
+   */
+  public BotClient(Bot bot, AnytimeScheduler scheduler) {
+    this.bot = bot;
+    this.scheduler = scheduler;
+  }
+
+  public void setContainer(Container container) {
+    this.container = container;
+  }
+
+  @Override
+  public void sendVerifyMove(VerifyMove verifyMove) {
+    // Moves are verified by the server
+  }
+
+  @Override
+  public void sendUpdateUI(UpdateUI updateUI) {
+    long receivedMillis = System.currentTimeMillis();
+    if (updateUI.getState().isEmpty() || !isMyTurn(updateUI)) {
+      return;
+    }
+    PokerState state = helper.gameApiStateToPokerState(updateUI.getState());
+    List<String> playerIds = updateUI.getPlayerIds();
+    BettingRound round = state.getCurrentRound();
+    if (round == BettingRound.END_GAME) {
+      // The end of a hand of a session sets the turn of the next button
+      if (state.isSession()) {
+        container.sendMakeMove(pokerLogic.getNextHandMove(state, playerIds, true));
+      }
+      return;
+    }
+    String seatPlayerId =
+        pokerLogic.getSeatedPlayerIds(state, playerIds).get(state.getWhoseMove().ordinal());
+    if (!seatPlayerId.equals(updateUI.getYourPlayerId())) {
+      return;
+    }
+    List<Operation> move;
+    if (round == BettingRound.SHOWDOWN) {
+      move = pokerLogic.doEndGameMove(state, playerIds);
+    } else if (scheduler != null && bot instanceof AnytimeBot) {
+      long deadlineMillis = AnytimeDecisions.getDeadlineMillis(updateUI.getLastMove(),
+          receivedMillis, DEFAULT_TURN_MILLIS);
+      decide((AnytimeBot) bot, state, playerIds, deadlineMillis);
+      return;
+    } else {
+      move = bot.getMove(state).getOperations(pokerLogic, state, playerIds);
+    }
+    container.sendMakeMove(move);
+  }
+
+  private void decide(AnytimeBot anytimeBot, final PokerState state,
+      final List<String> playerIds, long deadlineMillis) {
+    scheduler.decide(anytimeBot, state, deadlineMillis, new AnytimeScheduler.MoveCallback() {
+      @Override
+      public void onMove(BotMove botMove) {
+        container.sendMakeMove(botMove.getOperations(pokerLogic, state, playerIds));
+      }
+    });
+  }
+
+  /**
+   * Every move but the end game move sets the turn, so this skips parsing the state
+   * for the updates of the players who are not to act.
+   */
+  private boolean isMyTurn(UpdateUI updateUI) {
+    for (Operation operation : updateUI.getLastMove()) {
+      if (operation instanceof SetTurn) {
+        return updateUI.getYourPlayerId().equals(((SetTurn) operation).getPlayerId());
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,209 @@
+package org.poker.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.MonteCarloEquityEstimator;
+import org.poker.client.ai.RandomBot;
+import org.poker.client.ai.ScriptedBot;
+import org.poker.client.ai.SearchBot;
+import org.poker.server.HandSimulator.BotFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Plays a bot against an opponent heads-up through {@link PokerLogic}, without GWT, many
+ * matches in parallel, and measures the bot's win rate; see {@link MatchResult}.<br>
+ * Every hand starts with fresh chips, so hands are independent samples. The cards of a deal
+ * come from a seeded shuffle: in duplicate mode each deal is played twice, the second time
+ * with the seats swapped, so the luck of the cards cancels out and far fewer hands are
+ * needed for the same confidence. Otherwise the bots swap seats every deal.<br>
+ * A run is reproducible for bots whose moves depend only on their Random.
+ */
+public class BotMatchHarness {
+
+  /** A hand that hasn't ended after this many moves is reported as an error. */
+  private static final int MAX_MOVES_PER_HAND = 1000;
+  private static final List<String> PLAYER_IDS = ImmutableList.of("42", "43");
+
+  private final BotFactory botFactory;
+  private final BotFactory opponentFactory;
+  private final int startingChips;
+  private final boolean duplicate;
+  private final long seed;
+
+  /**
+   * @param botFactory creates the bot measured, with seat 0; a bot plays both seats
+   * @param opponentFactory creates its opponent, with seat 1
+   * @param duplicate if true, each deal is also played with the seats swapped
+   * @param seed the seed of the deals and the bots' random generators (match i uses seed + i)
+   */
+  public BotMatchHarness(BotFactory botFactory, BotFactory opponentFactory, int startingChips,
+      boolean duplicate, long seed) {
+    this.botFactory = botFactory;
+    this.opponentFactory = opponentFactory;
+    this.startingChips = startingChips;
+    this.duplicate = duplicate;
+    this.seed = seed;
+  }
+
+  /** Plays dealsPerMatch deals in each of the matches using a pool of threads. */
+  public MatchResult run(int matches, int dealsPerMatch, int threads)
+      throws InterruptedException {
+    // The helper is a lazily created singleton, so create it before the threads race for it.
+    PokerLogicHelper.getInstance();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long start = System.nanoTime();
+      List<Future<MatchResult>> futures = Lists.newArrayList();
+      for (int i = 0; i < matches; i++) {
+        futures.add(executor.submit(new Match(i, dealsPerMatch)));
+      }
+      MatchResult result = new MatchResult();
+      for (Future<MatchResult> future : futures) {
+        result.add(future.get());
+      }
+      result.setElapsedNanos(System.nanoTime() - start);
+      return result;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A match failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Plays the deals of one match on the calling thread. */
+  private final class Match implements Callable<MatchResult> {
+    private final int deals;
+    private final PokerLogic pokerLogic = new PokerLogic();
+    private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+    private final Map<String, Integer> startingChipsMap =
+        ImmutableMap.of(PLAYER_IDS.get(0), startingChips, PLAYER_IDS.get(1), startingChips);
+    private final Random dealSeeds;
+    private final Bot bot;
+    private final Bot opponent;
+    private final MatchResult result = new MatchResult();
+
+    private Match(int matchIndex, int deals) {
+      this.deals = deals;
+      Random random = new Random(seed + matchIndex);
+      dealSeeds = new Random(random.nextLong());
+      bot = botFactory.createBot(0, random);
+      opponent = opponentFactory.createBot(1, random);
+    }
+
+    @Override
+    public MatchResult call() {
+      for (int deal = 0; deal < deals; deal++) {
+        long dealSeed = dealSeeds.nextLong();
+        try {
+          if (duplicate) {
+            int won = playHand(bot, opponent, dealSeed) - playHand(opponent, bot, dealSeed);
+            result.recordSample(won / 2.0 / AbstractPokerLogicBase.BIG_BLIND, 2);
+          } else {
+            int won = deal % 2 == 0
+                ? playHand(bot, opponent, dealSeed) : -playHand(opponent, bot, dealSeed);
+            result.recordSample((double) won / AbstractPokerLogicBase.BIG_BLIND, 1);
+          }
+        } catch (RuntimeException e) {
+          result.recordError("deal " + deal + ": " + e);
+        }
+      }
+      return result;
+    }
+
+    /** Plays a hand dealt from dealSeed and returns the chips won by seat 0. */
+    private int playHand(Bot seat0, Bot seat1, long dealSeed) {
+      GameState gameState =
+          new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY, new Random(dealSeed));
+      List<Operation> move = pokerLogic.getInitialMove(PLAYER_IDS, startingChipsMap, true);
+      gameState.makeMove(move);
+      String turnPlayerId = getTurnPlayerId(move);
+      for (int moves = 1; moves < MAX_MOVES_PER_HAND; moves++) {
+        PokerState state =
+            helper.gameApiStateToPokerState(gameState.getStateForPlayerId(turnPlayerId));
+        BettingRound round = state.getCurrentRound();
+        if (round == BettingRound.END_GAME) {
+          return state.getPlayerChips().get(0) - startingChips;
+        }
+        if (round == BettingRound.SHOWDOWN) {
+          move = pokerLogic.doEndGameMove(state, PLAYER_IDS);
+        } else {
+          Bot bot = state.getWhoseMove().ordinal() == 0 ? seat0 : seat1;
+          move = bot.getMove(state).getOperations(pokerLogic, state, PLAYER_IDS);
+          turnPlayerId = getTurnPlayerId(move);
+        }
+        gameState.makeMove(move);
+      }
+      throw new IllegalStateException("Hand didn't end after " + MAX_MOVES_PER_HAND + " moves");
+    }
+
+    private String getTurnPlayerId(List<Operation> move) {
+      for (Operation operation : move) {
+        if (operation instanceof SetTurn) {
+          return ((SetTurn) operation).getPlayerId();
+        }
+      }
+      throw new IllegalStateException("Move without SetTurn: " + move);
+    }
+  }
+
+  /** Returns the factory of a bot by name: random, call, raise or search. */
+  static BotFactory getBotFactory(final String name) {
+    return new BotFactory() {
+      @Override
+      public Bot createBot(int seat, Random random) {
+        switch (name) {
+          case "random":
+            return new RandomBot(random);
+          case "call":
+            return new ScriptedBot(ImmutableList.of(PokerMove.CALL));
+          case "raise":
+            return new ScriptedBot(ImmutableList.of(PokerMove.RAISE));
+          case "search":
+            return new SearchBot(new MonteCarloEquityEstimator(random, 2000),
+                SearchBot.DEFAULT_TIME_BUDGET_MILLIS);
+          default:
+            throw new IllegalArgumentException("Unknown bot " + name);
+        }
+      }
+    };
+  }
+
+  /**
+   * Plays two bots against each other and prints the first one's win rate.
+   * Usage: BotMatchHarness [bot [opponent [deals [matches [threads [duplicate]]]]]]
+   * where a bot is random, call, raise or search.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    String bot = args.length > 0 ? args[0] : "search";
+    String opponent = args.length > 1 ? args[1] : "random";
+    int deals = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int matches = args.length > 3 ? Integer.parseInt(args[3]) : 4 * threads;
+    threads = args.length > 4 ? Integer.parseInt(args[4]) : threads;
+    boolean duplicate = args.length <= 5 || Boolean.parseBoolean(args[5]);
+    BotMatchHarness harness = new BotMatchHarness(getBotFactory(bot),
+        getBotFactory(opponent), 100 * AbstractPokerLogicBase.BIG_BLIND, duplicate, 42);
+    System.out.println(bot + " vs " + opponent + ": "
+        + harness.run(matches, Math.max(1, deals / matches), threads));
+  }
+}
@@ -0,0 +1,489 @@
+package org.poker.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.poker.client.BettingRound;
+import org.poker.client.ai.BucketTable;
+import org.poker.client.ai.CardAbstraction;
+import org.poker.client.ai.HandStrengthAbstraction;
+import org.poker.client.util.HandEvaluator;
+import org.poker.client.util.HandIndexer;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Computes the tables of a {@link BucketTable} offline, one round at a time:
+ * <ol>
+ * <li>Every distinct hand of the round ({@link HandIndexer}) gets a feature: the histogram
+ * of its equity against a random hand over random run-outs of the board, or on the river,
+ * where there is nothing left to deal, the equity itself.
+ * <li>The features are clustered with k-means (k-means++ seeding, Euclidean distance),
+ * each hand weighted by the number of deals it stands for.
+ * <li>The clusters are numbered by their mean equity, so bucket 0 is the weakest.
+ * </ol>
+ * The features and the k-means assignment steps are computed in parallel. The features take
+ * 4 bytes per bin per hand, so the flop needs about 50MB with 10 bins and the turn about
+ * 550MB; the tables take 1 byte per hand.<br>
+ * Features are estimated by sampling, so a table is reproducible for a seed up to which
+ * thread reaches a hand first.
+ */
+public class BucketBuilder {
+
+  static final int MAGIC = 0x504b4254; // "PKBT"
+  static final int FORMAT_VERSION = 1;
+  private static final int ROUNDS = 4;
+  private static final int KMEANS_ITERATIONS = 30;
+
+  private final int threads;
+  private final int histogramBins;
+  private final int rollouts;
+  private final int opponentSamples;
+  private final long seed;
+
+  /**
+   * @param histogramBins the bins of the equity histograms
+   * @param rollouts the run-outs of the board sampled per hand
+   * @param opponentSamples the opponent hands sampled per run-out
+   */
+  public BucketBuilder(int threads, int histogramBins, int rollouts, int opponentSamples,
+      long seed) {
+    this.threads = threads;
+    this.histogramBins = histogramBins;
+    this.rollouts = rollouts;
+    this.opponentSamples = opponentSamples;
+    this.seed = seed;
+  }
+
+  /** Returns the bucket of every hand of round, from 0 (weakest) to bucketCount - 1. */
+  public byte[] build(BettingRound round, int bucketCount) throws InterruptedException {
+    if (bucketCount < 1 || bucketCount > 256) {
+      throw new IllegalArgumentException("A bucket must fit in a byte");
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      HandIndexer indexer = HandIndexer.of(round);
+      int dimensions = getDimensions(round);
+      float[] features = new float[indexer.getSize() * dimensions];
+      float[] weights = new float[indexer.getSize()];
+      computeFeatures(executor, round, features, weights);
+      return cluster(executor, features, dimensions, weights, bucketCount);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A bucketing task failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private int getDimensions(BettingRound round) {
+    return round == BettingRound.RIVER ? 1 : histogramBins;
+  }
+
+  /**
+   * Fills in the feature and weight of every hand of round. There is a task per starting
+   * hand, enumerating its boards; a hand is computed by the first task to claim its index.
+   */
+  private void computeFeatures(ExecutorService executor, final BettingRound round,
+      final float[] features, final float[] weights)
+      throws InterruptedException, ExecutionException {
+    final HandIndexer indexer = HandIndexer.of(round);
+    final AtomicLongArray claimed = new AtomicLongArray((indexer.getSize() + 63) / 64);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (final int[] holeCards : getStartingHands()) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          FeatureWorker worker = new FeatureWorker(round, holeCards);
+          int[] board = new int[5];
+          enumerateBoards(worker, board, 0, 0, indexer, claimed, features, weights);
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+  }
+
+  private void enumerateBoards(FeatureWorker worker, int[] board, int depth, int from,
+      HandIndexer indexer, AtomicLongArray claimed, float[] features, float[] weights) {
+    if (depth == indexer.getBoardCount()) {
+      int index = indexer.index(worker.holeCards, board);
+      if (claim(claimed, index)) {
+        weights[index] = indexer.getMultiplicity(worker.holeCards, board);
+        worker.computeFeature(board, index, features, index * getDimensions(worker.round));
+      }
+      return;
+    }
+    for (int card = from; card < 52; card++) {
+      if (card != worker.holeCards[0] && card != worker.holeCards[1]) {
+        board[depth] = card;
+        enumerateBoards(worker, board, depth + 1, card + 1, indexer, claimed, features,
+            weights);
+      }
+    }
+  }
+
+  private static boolean claim(AtomicLongArray claimed, int index) {
+    int word = index >>> 6;
+    long bit = 1L << index;
+    while (true) {
+      long bits = claimed.get(word);
+      if ((bits & bit) != 0) {
+        return false;
+      }
+      if (claimed.compareAndSet(word, bits, bits | bit)) {
+        return true;
+      }
+    }
+  }
+
+  /** One pair of hole cards for each of the 169 starting hands. */
+  static List<int[]> getStartingHands() {
+    HandIndexer indexer = HandIndexer.of(BettingRound.PRE_FLOP);
+    boolean[] found = new boolean[indexer.getSize()];
+    List<int[]> startingHands = Lists.newArrayList();
+    for (int first = 0; first < 52; first++) {
+      for (int second = first + 1; second < 52; second++) {
+        int[] holeCards = {first, second};
+        int index = indexer.index(holeCards, holeCards);
+        if (!found[index]) {
+          found[index] = true;
+          startingHands.add(holeCards);
+        }
+      }
+    }
+    return startingHands;
+  }
+
+  /** Samples the features of the hands with some hole cards; used by one thread. */
+  private final class FeatureWorker {
+
+    final BettingRound round;
+    final int[] holeCards;
+    private final Random random = new Random();
+    /** The cards other than the hole cards. */
+    private final int[] deck = new int[50];
+    private final int[] fullBoard = new int[5];
+    private final int[] opponentCards = new int[2];
+
+    FeatureWorker(BettingRound round, int[] holeCards) {
+      this.round = round;
+      this.holeCards = holeCards;
+      for (int card = 0, i = 0; card < 52; card++) {
+        if (card != holeCards[0] && card != holeCards[1]) {
+          deck[i++] = card;
+        }
+      }
+    }
+
+    void computeFeature(int[] board, int index, float[] features, int at) {
+      random.setSeed(seed ^ index * 0x9E3779B97F4A7C15L);
+      int boardCount = HandStrengthAbstraction.getBoardCount(round);
+      // Move the board cards to the end of the deck, out of the way of the sampling
+      int available = deck.length;
+      for (int i = 0; i < boardCount; i++) {
+        for (int j = 0; j < available; j++) {
+          if (deck[j] == board[i]) {
+            swap(j, --available);
+            break;
+          }
+        }
+        fullBoard[i] = board[i];
+      }
+      if (round == BettingRound.RIVER) {
+        features[at] = sampleEquity(available, 0);
+        return;
+      }
+      for (int rollout = 0; rollout < rollouts; rollout++) {
+        for (int i = boardCount; i < 5; i++) {
+          swap(i - boardCount, i - boardCount + random.nextInt(available - i + boardCount));
+          fullBoard[i] = deck[i - boardCount];
+        }
+        float equity = sampleEquity(available, 5 - boardCount);
+        int bin = Math.min((int) (equity * histogramBins), histogramBins - 1);
+        features[at + bin] += 1f / rollouts;
+      }
+    }
+
+    /** The equity of the hole cards on fullBoard, the first dealt cards of the deck used. */
+    private float sampleEquity(int available, int dealt) {
+      int score = HandEvaluator.evaluate(holeCards, fullBoard, 5);
+      float wins = 0;
+      for (int sample = 0; sample < opponentSamples; sample++) {
+        for (int i = 0; i < 2; i++) {
+          swap(dealt + i, dealt + i + random.nextInt(available - dealt - i));
+          opponentCards[i] = deck[dealt + i];
+        }
+        int opponentScore = HandEvaluator.evaluate(opponentCards, fullBoard, 5);
+        wins += score > opponentScore ? 1 : score == opponentScore ? 0.5f : 0;
+      }
+      return wins / opponentSamples;
+    }
+
+    private void swap(int i, int j) {
+      int card = deck[i];
+      deck[i] = deck[j];
+      deck[j] = card;
+    }
+  }
+
+  /**
+   * Clusters the points (dimensions floats each) into at most k clusters with weighted
+   * k-means, and returns the cluster of every point, numbered by mean equity.
+   */
+  byte[] cluster(ExecutorService executor, final float[] features, final int dimensions,
+      float[] weights, int k) throws InterruptedException, ExecutionException {
+    final int points = weights.length;
+    k = Math.min(k, points);
+    final float[] centroids = seedCentroids(features, dimensions, weights, k);
+    final byte[] assignments = new byte[points];
+    final int chunk = (points + threads - 1) / threads;
+    for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+      final int clusters = k;
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int start = 0; start < points; start += chunk) {
+        final int from = start;
+        final int to = Math.min(start + chunk, points);
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            int changed = 0;
+            for (int point = from; point < to; point++) {
+              byte nearest = (byte) getNearest(features, point * dimensions, centroids,
+                  clusters, dimensions);
+              if (nearest != assignments[point]) {
+                changed++;
+              }
+              assignments[point] = nearest;
+            }
+            return changed;
+          }
+        }));
+      }
+      int changed = 0;
+      for (Future<Integer> future : futures) {
+        changed += future.get();
+      }
+      updateCentroids(features, dimensions, weights, assignments, centroids, k);
+      // Every point starts in cluster 0, so the first pass can't tell if it converged
+      if (changed == 0 && iteration > 0) {
+        break;
+      }
+    }
+    return numberByEquity(assignments, centroids, dimensions, k);
+  }
+
+  /** k-means++: each next centroid is a point picked with weight times squared distance. */
+  private float[] seedCentroids(float[] features, int dimensions, float[] weights, int k) {
+    Random random = new Random(seed);
+    int points = weights.length;
+    float[] centroids = new float[k * dimensions];
+    double[] distances = new double[points];
+    int first = pick(weights, null, random);
+    System.arraycopy(features, first * dimensions, centroids, 0, dimensions);
+    for (int point = 0; point < points; point++) {
+      distances[point] = getDistance(features, point * dimensions, centroids, 0, dimensions);
+    }
+    for (int cluster = 1; cluster < k; cluster++) {
+      int next = pick(weights, distances, random);
+      System.arraycopy(features, next * dimensions, centroids, cluster * dimensions,
+          dimensions);
+      for (int point = 0; point < points; point++) {
+        distances[point] = Math.min(distances[point], getDistance(features, point * dimensions,
+            centroids, cluster * dimensions, dimensions));
+      }
+    }
+    return centroids;
+  }
+
+  /** Picks a point with probability proportional to weight (times distance, if given). */
+  private static int pick(float[] weights, double[] distances, Random random) {
+    double total = 0;
+    for (int point = 0; point < weights.length; point++) {
+      total += weights[point] * (distances == null ? 1 : distances[point]);
+    }
+    double roll = random.nextDouble() * total;
+    for (int point = 0; point < weights.length; point++) {
+      roll -= weights[point] * (distances == null ? 1 : distances[point]);
+      if (roll < 0) {
+        return point;
+      }
+    }
+    // Every point is already a centroid, or rounding left the roll over
+    return random.nextInt(weights.length);
+  }
+
+  private static int getNearest(float[] features, int at, float[] centroids, int k,
+      int dimensions) {
+    int nearest = 0;
+    double nearestDistance = Double.MAX_VALUE;
+    for (int cluster = 0; cluster < k; cluster++) {
+      double distance = getDistance(features, at, centroids, cluster * dimensions, dimensions);
+      if (distance < nearestDistance) {
+        nearest = cluster;
+        nearestDistance = distance;
+      }
+    }
+    return nearest;
+  }
+
+  private static double getDistance(float[] features, int at, float[] centroids,
+      int centroidAt, int dimensions) {
+    double distance = 0;
+    for (int i = 0; i < dimensions; i++) {
+      double difference = features[at + i] - centroids[centroidAt + i];
+      distance += difference * difference;
+    }
+    return distance;
+  }
+
+  /** Moves each centroid to the weighted mean of its points; an empty one stays put. */
+  private static void updateCentroids(float[] features, int dimensions, float[] weights,
+      byte[] assignments, float[] centroids, int k) {
+    double[] sums = new double[k * dimensions];
+    double[] totals = new double[k];
+    for (int point = 0; point < weights.length; point++) {
+      int cluster = assignments[point] & 0xFF;
+      totals[cluster] += weights[point];
+      for (int i = 0; i < dimensions; i++) {
+        sums[cluster * dimensions + i] += weights[point] * features[point * dimensions + i];
+      }
+    }
+    for (int cluster = 0; cluster < k; cluster++) {
+      for (int i = 0; i < dimensions && totals[cluster] > 0; i++) {
+        centroids[cluster * dimensions + i] =
+            (float) (sums[cluster * dimensions + i] / totals[cluster]);
+      }
+    }
+  }
+
+  /** Renumbers the clusters so that 0 has the lowest mean equity. */
+  private static byte[] numberByEquity(byte[] assignments, float[] centroids, int dimensions,
+      int k) {
+    final double[] equities = new double[k];
+    Integer[] order = new Integer[k];
+    for (int cluster = 0; cluster < k; cluster++) {
+      order[cluster] = cluster;
+      for (int i = 0; i < dimensions; i++) {
+        // A histogram's bin i holds equities around (i + 0.5) / dimensions
+        equities[cluster] += dimensions == 1 ? centroids[cluster]
+            : centroids[cluster * dimensions + i] * (i + 0.5) / dimensions;
+      }
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer first, Integer second) {
+        return Double.compare(equities[first], equities[second]);
+      }
+    });
+    byte[] numbers = new byte[k];
+    for (int number = 0; number < k; number++) {
+      numbers[order[number]] = (byte) number;
+    }
+    for (int point = 0; point < assignments.length; point++) {
+      assignments[point] = numbers[assignments[point] & 0xFF];
+    }
+    return assignments;
+  }
+
+  /**
+   * Writes a table file: MAGIC, FORMAT_VERSION, then for each round from PRE_FLOP to RIVER
+   * its bucket count and size (both 0 if it has no table), then the tables.
+   */
+  public static void save(BucketTable table, File file) throws IOException {
+    try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+      output.setLength(0);
+      FileChannel channel = output.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(8 + 8 * ROUNDS);
+      header.putInt(MAGIC).putInt(FORMAT_VERSION);
+      for (int round = 0; round < ROUNDS; round++) {
+        BettingRound bettingRound = BettingRound.values()[round];
+        byte[] buckets = table.getTable(bettingRound);
+        header.putInt(buckets == null ? 0 : table.getBucketCount(bettingRound));
+        header.putInt(buckets == null ? 0 : buckets.length);
+      }
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      for (int round = 0; round < ROUNDS; round++) {
+        byte[] buckets = table.getTable(BettingRound.values()[round]);
+        if (buckets != null) {
+          ByteBuffer body = ByteBuffer.wrap(buckets);
+          while (body.hasRemaining()) {
+            channel.write(body);
+          }
+        }
+      }
+    }
+  }
+
+  /** Reads a table file written by {@link #save}; rounds without a table use fallback. */
+  public static BucketTable load(File file, CardAbstraction fallback) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 8 + 8 * ROUNDS || buffer.getInt() != MAGIC
+          || buffer.getInt() != FORMAT_VERSION) {
+        throw new IOException(file + " is not a bucket table");
+      }
+      int[] bucketCounts = new int[ROUNDS];
+      int[] sizes = new int[ROUNDS];
+      for (int round = 0; round < ROUNDS; round++) {
+        bucketCounts[round] = buffer.getInt();
+        sizes[round] = buffer.getInt();
+      }
+      byte[][] buckets = new byte[ROUNDS][];
+      for (int round = 0; round < ROUNDS; round++) {
+        if (sizes[round] > 0) {
+          if (buffer.remaining() < sizes[round]) {
+            throw new IOException(file + " is truncated");
+          }
+          buckets[round] = new byte[sizes[round]];
+          buffer.get(buckets[round]);
+        }
+      }
+      try {
+        return new BucketTable(buckets, bucketCounts, fallback);
+      } catch (IllegalArgumentException e) {
+        throw new IOException(file + " doesn't match the hand indexer", e);
+      }
+    }
+  }
+
+  /**
+   * Builds the tables of the rounds with a positive bucket count and saves them.
+   * Usage: BucketBuilder file preFlopBuckets flopBuckets turnBuckets riverBuckets
+   */
+  public static void main(String[] args) throws InterruptedException, IOException {
+    BucketBuilder builder = new BucketBuilder(Runtime.getRuntime().availableProcessors(),
+        10, 64, 64, 42);
+    byte[][] buckets = new byte[ROUNDS][];
+    int[] bucketCounts = new int[ROUNDS];
+    for (int round = 0; round < ROUNDS; round++) {
+      bucketCounts[round] = Integer.parseInt(args[round + 1]);
+      if (bucketCounts[round] > 0) {
+        long start = System.nanoTime();
+        buckets[round] = builder.build(BettingRound.values()[round], bucketCounts[round]);
+        System.out.println(BettingRound.values()[round] + ": "
+            + (System.nanoTime() - start) / 1000000 + "ms");
+      }
+    }
+    save(new BucketTable(buckets, bucketCounts, new HandStrengthAbstraction()),
+        new File(args[0]));
+  }
+}
@@ -0,0 +1,136 @@
+package org.poker.server;
+
+import java.util.Random;
+
+import org.poker.client.BettingRound;
+import org.poker.client.Card;
+import org.poker.client.LegalActions;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+import org.poker.client.Pot;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.BotMove;
+import org.poker.client.ai.CardAbstraction;
+import org.poker.client.util.HandEvaluator;
+
+import com.google.common.base.Optional;
+
+/**
+ * A heads-up bot that plays a {@link CfrStrategy}. The state is mapped to the abstract game
+ * of {@link CfrTrainer}: the number of raises in the round is inferred from the bets, and the
+ * abstract move is played as the nearest legal move. Hands with more than 2 players are left
+ * to another bot.
+ */
+public class CfrBot implements Bot {
+
+  private final CfrStrategy strategy;
+  private final CardAbstraction abstraction;
+  private final Random random;
+  private final Bot fallbackBot;
+
+  public CfrBot(CfrStrategy strategy, CardAbstraction abstraction, Random random,
+      Bot fallbackBot) {
+    this.strategy = strategy;
+    this.abstraction = abstraction;
+    this.random = random;
+    this.fallbackBot = fallbackBot;
+  }
+
+  @Override
+  public BotMove getMove(PokerState state) {
+    BettingRound round = state.getCurrentRound();
+    if (state.getNumberOfPlayers() != 2 || round.ordinal() >= CfrTrainer.ROUNDS.length) {
+      return fallbackBot.getMove(state);
+    }
+    int seat = state.getWhoseMove().ordinal();
+    int[] holeCards = new int[2];
+    int[] board = new int[5];
+    if (!getCards(state, state.getHoleCards().get(seat), holeCards)) {
+      return fallbackBot.getMove(state);
+    }
+    getCards(state, state.getBoard(), board);
+
+    LegalActions legalActions = LegalActions.of(state);
+    int pot = 0;
+    for (Pot sidePot : state.getPots()) {
+      pot += sidePot.getChips();
+    }
+    int raises = getRaises(round, legalActions, state.getPlayerBets().get(seat));
+    int legal = CfrTrainer.getLegalActions(legalActions.getAmountToCall(),
+        legalActions.getChips(), raises, pot);
+    if (!legalActions.isLegal(PokerMove.BET) && !legalActions.isLegal(PokerMove.RAISE)) {
+      legal &= ~(1 << CfrTrainer.RAISE | 1 << CfrTrainer.ALL_IN);
+    }
+    int situation = CfrTrainer.getSituation(round.ordinal(), seat, raises);
+    int bucket = abstraction.getBucket(round, holeCards, board);
+
+    int totalWeight = 0;
+    for (int action = 0; action < CfrTrainer.NUM_ACTIONS; action++) {
+      if ((legal & 1 << action) != 0) {
+        totalWeight += strategy.getWeight(situation, bucket, action);
+      }
+    }
+    int action = CfrTrainer.CALL;
+    if (totalWeight > 0) {
+      int roll = random.nextInt(totalWeight);
+      for (action = 0; action < CfrTrainer.NUM_ACTIONS; action++) {
+        if ((legal & 1 << action) != 0) {
+          roll -= strategy.getWeight(situation, bucket, action);
+          if (roll < 0) {
+            break;
+          }
+        }
+      }
+    }
+    return toBotMove(action, legalActions, pot);
+  }
+
+  /**
+   * Infers the number of bets and raises so far in the round, which the state doesn't keep:
+   * 0 if there is nothing to call (or only the big blind), 1 if the player hasn't put chips
+   * in yet this round (beyond the blinds), and the most the abstract game allows otherwise.
+   */
+  static int getRaises(BettingRound round, LegalActions legalActions, int playerBet) {
+    int blind = round == BettingRound.PRE_FLOP ? legalActions.getBigBlind() : 0;
+    if (legalActions.getRequiredBet() <= blind) {
+      return 0;
+    }
+    return playerBet <= blind ? 1 : CfrTrainer.MAX_RAISES;
+  }
+
+  private static BotMove toBotMove(int action, LegalActions legalActions, int pot) {
+    switch (action) {
+      case CfrTrainer.FOLD:
+        return BotMove.fold();
+      case CfrTrainer.RAISE:
+        int amount = CfrTrainer.getPotRaise(legalActions.getCallAmount(), pot);
+        return aggressive(legalActions, amount);
+      case CfrTrainer.ALL_IN:
+        return aggressive(legalActions, legalActions.getMaxAmount());
+      default:
+        return BotMove.checkOrCall(legalActions);
+    }
+  }
+
+  private static BotMove aggressive(LegalActions legalActions, int amount) {
+    if (legalActions.isLegal(PokerMove.BET)) {
+      return BotMove.bet(Math.max(Math.min(amount, legalActions.getMaxAmount()),
+          legalActions.getMinBet()));
+    }
+    return BotMove.raise(Math.max(Math.min(amount, legalActions.getMaxAmount()),
+        legalActions.getMinRaise()));
+  }
+
+  /** Puts the ids of the open cards at cardIndices into cards; returns false if any is hidden. */
+  private static boolean getCards(PokerState state, Iterable<Integer> cardIndices, int[] cards) {
+    int count = 0;
+    for (int cardIndex : cardIndices) {
+      Optional<Card> card = state.getCards().get(cardIndex);
+      if (!card.isPresent()) {
+        return false;
+      }
+      cards[count++] = HandEvaluator.getCardId(card.get());
+    }
+    return true;
+  }
+}
@@ -0,0 +1,59 @@
+package org.poker.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A strategy exported by {@link CfrTrainer#exportStrategy(File)}, memory-mapped read-only.
+ * The file is not copied onto the heap, so many bots, on many threads, can share one
+ * instance.
+ */
+public class CfrStrategy {
+
+  private final ByteBuffer strategy;
+  private final int[] bucketCounts;
+  private final int[] offsets;
+
+  private CfrStrategy(ByteBuffer strategy, int[] bucketCounts) {
+    this.strategy = strategy;
+    this.bucketCounts = bucketCounts;
+    this.offsets = CfrTrainer.getOffsets(bucketCounts);
+  }
+
+  public static CfrStrategy open(File file) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      // The mapping stays valid after the channel is closed
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < CfrTrainer.getStrategyHeaderSize()
+          || buffer.getInt() != CfrTrainer.STRATEGY_MAGIC
+          || buffer.getInt() != CfrTrainer.FORMAT_VERSION) {
+        throw new IOException(file + " is not a strategy file");
+      }
+      int[] bucketCounts = new int[CfrTrainer.ROUNDS.length];
+      for (int round = 0; round < bucketCounts.length; round++) {
+        bucketCounts[round] = buffer.getInt();
+      }
+      ByteBuffer strategy = buffer.slice();
+      if (strategy.remaining() != CfrTrainer.getOffsets(bucketCounts)[CfrTrainer.SITUATIONS]) {
+        throw new IOException(file + " is truncated");
+      }
+      return new CfrStrategy(strategy, bucketCounts);
+    }
+  }
+
+  public int getBucketCount(int round) {
+    return bucketCounts[round];
+  }
+
+  /**
+   * Returns the weight of a move in an information set, from 0 to 255 (about 255 over all
+   * the moves), or 0 for every move if the information set was never reached in training.
+   */
+  public int getWeight(int situation, int bucket, int action) {
+    return strategy.get(offsets[situation] + bucket * CfrTrainer.NUM_ACTIONS + action) & 0xFF;
+  }
+}
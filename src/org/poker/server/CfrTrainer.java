@@ -0,0 +1,518 @@
+package org.poker.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.ai.CardAbstraction;
+import org.poker.client.ai.HandStrengthAbstraction;
+import org.poker.client.util.HandEvaluator;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Trains a heads-up strategy with external sampling Monte Carlo counterfactual regret
+ * minimization (MCCFR) over an abstraction of the game.
+ * <ul>
+ * <li>Seat 0 is the dealer and small blind, and acts first before the flop; seat 1 is the
+ * big blind, and acts first after it, as {@link org.poker.client.PokerLogic} plays heads-up.
+ * <li>Both players start every hand with the same stack.
+ * <li>The moves are abstracted to FOLD, CALL (which is a check when there is nothing to call),
+ * a pot-sized RAISE (a bet when no one has bet) and ALL_IN, with at most MAX_RAISES bets
+ * and raises per round.
+ * <li>An information set is a situation, which is the round, the seat to act and the number
+ * of raises so far in the round, and the bucket of the cards from the
+ * {@link CardAbstraction}. The earlier rounds' betting is not remembered.
+ * </ul>
+ * The regrets and strategy sums are kept in two float arrays indexed by information set and
+ * move, see {@link #getOffsets(int[])}. Worker threads update them without locks (the
+ * "Hogwild" scheme): a lost update only adds a little noise to the sampling, so throughput
+ * scales with the cores.<br>
+ * {@link #saveCheckpoint(File)} and {@link #loadCheckpoint(File)} let training be resumed,
+ * and {@link #exportStrategy(File)} writes the average strategy in the compact form read by
+ * {@link CfrStrategy}.
+ */
+public class CfrTrainer {
+
+  public static final int FOLD = 0;
+  public static final int CALL = 1;
+  public static final int RAISE = 2;
+  public static final int ALL_IN = 3;
+  public static final int NUM_ACTIONS = 4;
+  public static final int MAX_RAISES = 2;
+  public static final BettingRound[] ROUNDS =
+      {BettingRound.PRE_FLOP, BettingRound.FLOP, BettingRound.TURN, BettingRound.RIVER};
+  public static final int SITUATIONS = ROUNDS.length * 2 * (MAX_RAISES + 1);
+
+  static final int CHECKPOINT_MAGIC = 0x504b4346; // "PKCF"
+  static final int STRATEGY_MAGIC = 0x504b4353; // "PKCS"
+  static final int FORMAT_VERSION = 1;
+  /** Deep enough for every betting sequence: at most 4 moves per round. */
+  private static final int MAX_DEPTH = 32;
+
+  private final CardAbstraction abstraction;
+  private final int stack;
+  private final int[] bucketCounts;
+  private final int[] offsets;
+  private final float[] regrets;
+  private final float[] strategySums;
+  private final Random seeds;
+  private long iterations;
+
+  /**
+   * @param stack the chips each player starts a hand with, more than the big blind
+   * @param seed the seed of the workers' seeds
+   */
+  public CfrTrainer(CardAbstraction abstraction, int stack, long seed) {
+    if (stack <= AbstractPokerLogicBase.BIG_BLIND) {
+      throw new IllegalArgumentException("The stack must be more than the big blind");
+    }
+    this.abstraction = abstraction;
+    this.stack = stack;
+    this.bucketCounts = getBucketCounts(abstraction);
+    this.offsets = getOffsets(bucketCounts);
+    this.regrets = new float[offsets[SITUATIONS]];
+    this.strategySums = new float[offsets[SITUATIONS]];
+    this.seeds = new Random(seed);
+  }
+
+  public static int getSituation(int round, int seat, int raises) {
+    return (round * 2 + seat) * (MAX_RAISES + 1) + raises;
+  }
+
+  static int getRound(int situation) {
+    return situation / (2 * (MAX_RAISES + 1));
+  }
+
+  static int[] getBucketCounts(CardAbstraction abstraction) {
+    int[] bucketCounts = new int[ROUNDS.length];
+    for (int round = 0; round < ROUNDS.length; round++) {
+      bucketCounts[round] = abstraction.getBucketCount(ROUNDS[round]);
+    }
+    return bucketCounts;
+  }
+
+  /**
+   * Returns where the entries of each situation start in a table with NUM_ACTIONS entries
+   * per bucket; the extra last element is the size of the table.
+   * The entry of a move is at offsets[situation] + bucket * NUM_ACTIONS + move.
+   */
+  static int[] getOffsets(int[] bucketCounts) {
+    int[] offsets = new int[SITUATIONS + 1];
+    for (int situation = 0; situation < SITUATIONS; situation++) {
+      offsets[situation + 1] =
+          offsets[situation] + bucketCounts[getRound(situation)] * NUM_ACTIONS;
+    }
+    return offsets;
+  }
+
+  /**
+   * Returns the moves allowed in the abstract game as a bit mask, CALL always being one.
+   *
+   * @param toCall the chips needed to call
+   * @param remaining the chips left in the player's stack
+   * @param pot the chips in the pot
+   */
+  public static int getLegalActions(int toCall, int remaining, int raises, int pot) {
+    int legal = 1 << CALL;
+    if (toCall > 0) {
+      legal |= 1 << FOLD;
+    }
+    if (raises < MAX_RAISES && remaining > toCall) {
+      legal |= 1 << ALL_IN;
+      if (getPotRaise(toCall, pot) < remaining) {
+        legal |= 1 << RAISE;
+      }
+    }
+    return legal;
+  }
+
+  /** The chips a pot-sized raise puts in: the call, then the pot after the call. */
+  public static int getPotRaise(int toCall, int pot) {
+    return toCall + pot + toCall;
+  }
+
+  public synchronized long getIterations() {
+    return iterations;
+  }
+
+  public int getStack() {
+    return stack;
+  }
+
+  /** Runs iterations of training split over threads, each iteration one deal. */
+  public void train(long iterations, int threads) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Long>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        final long workerIterations = iterations / threads + (i < iterations % threads ? 1 : 0);
+        final Worker worker;
+        synchronized (this) {
+          worker = new Worker(new Random(seeds.nextLong()));
+        }
+        futures.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() {
+            for (long i = 0; i < workerIterations; i++) {
+              worker.iterate();
+            }
+            return workerIterations;
+          }
+        }));
+      }
+      for (Future<Long> future : futures) {
+        long done = future.get();
+        synchronized (this) {
+          this.iterations += done;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A training worker failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the average strategy of an information set: the probability of each move,
+   * all zero if it was never reached.
+   */
+  public float[] getAverageStrategy(int situation, int bucket) {
+    float[] strategy = new float[NUM_ACTIONS];
+    int base = offsets[situation] + bucket * NUM_ACTIONS;
+    float sum = 0;
+    for (int action = 0; action < NUM_ACTIONS; action++) {
+      sum += strategySums[base + action];
+    }
+    for (int action = 0; action < NUM_ACTIONS && sum > 0; action++) {
+      strategy[action] = strategySums[base + action] / sum;
+    }
+    return strategy;
+  }
+
+  /**
+   * Writes the regrets and strategy sums, so a trainer with the same abstraction and stack
+   * can go on from here. Not to be called while training.
+   */
+  public synchronized void saveCheckpoint(File file) throws IOException {
+    try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+      output.setLength(0);
+      FileChannel channel = output.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(getCheckpointHeaderSize());
+      header.putInt(CHECKPOINT_MAGIC).putInt(FORMAT_VERSION).putInt(stack);
+      for (int bucketCount : bucketCounts) {
+        header.putInt(bucketCount);
+      }
+      header.putLong(iterations).putInt(regrets.length);
+      header.flip();
+      writeFully(channel, header);
+      writeFloats(channel, regrets);
+      writeFloats(channel, strategySums);
+      channel.force(false);
+    }
+  }
+
+  /** Replaces the tables with those of a checkpoint. Not to be called while training. */
+  public synchronized void loadCheckpoint(File file) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(getCheckpointHeaderSize());
+      readFully(channel, header);
+      header.flip();
+      if (header.getInt() != CHECKPOINT_MAGIC || header.getInt() != FORMAT_VERSION) {
+        throw new IOException(file + " is not a checkpoint");
+      }
+      boolean matches = header.getInt() == stack;
+      for (int bucketCount : bucketCounts) {
+        matches &= header.getInt() == bucketCount;
+      }
+      long checkpointIterations = header.getLong();
+      matches &= header.getInt() == regrets.length;
+      if (!matches) {
+        throw new IOException(file + " was written with another stack or abstraction");
+      }
+      readFloats(channel, regrets);
+      readFloats(channel, strategySums);
+      iterations = checkpointIterations;
+    }
+  }
+
+  /**
+   * Writes the average strategy for {@link CfrStrategy}: a header, MAGIC, FORMAT_VERSION and
+   * the bucket count of each round, then one byte per move of every information set in the
+   * order of {@link #getOffsets(int[])}, the probability scaled to 0..255.
+   */
+  public synchronized void exportStrategy(File file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(getStrategyHeaderSize() + strategySums.length);
+    buffer.putInt(STRATEGY_MAGIC).putInt(FORMAT_VERSION);
+    for (int bucketCount : bucketCounts) {
+      buffer.putInt(bucketCount);
+    }
+    for (int base = 0; base < strategySums.length; base += NUM_ACTIONS) {
+      float sum = 0;
+      for (int action = 0; action < NUM_ACTIONS; action++) {
+        sum += strategySums[base + action];
+      }
+      for (int action = 0; action < NUM_ACTIONS; action++) {
+        buffer.put((byte) (sum > 0 ? Math.round(strategySums[base + action] / sum * 255) : 0));
+      }
+    }
+    buffer.flip();
+    try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+      output.setLength(0);
+      writeFully(output.getChannel(), buffer);
+    }
+  }
+
+  static int getStrategyHeaderSize() {
+    return 8 + 4 * ROUNDS.length;
+  }
+
+  private static int getCheckpointHeaderSize() {
+    return 12 + 4 * ROUNDS.length + 12;
+  }
+
+  private static void writeFloats(FileChannel channel, float[] values) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    for (int i = 0; i < values.length; ) {
+      int count = Math.min(buffer.capacity() / 4, values.length - i);
+      buffer.clear();
+      buffer.asFloatBuffer().put(values, i, count);
+      buffer.limit(count * 4);
+      writeFully(channel, buffer);
+      i += count;
+    }
+  }
+
+  private static void readFloats(FileChannel channel, float[] values) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    for (int i = 0; i < values.length; ) {
+      int count = Math.min(buffer.capacity() / 4, values.length - i);
+      buffer.clear();
+      buffer.limit(count * 4);
+      readFully(channel, buffer);
+      buffer.flip();
+      buffer.asFloatBuffer().get(values, i, count);
+      i += count;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  /**
+   * Plays the training deals of one thread. Everything a traversal needs is preallocated,
+   * so an iteration allocates nothing.
+   */
+  private final class Worker {
+
+    private final Random random;
+    private final int[] deck = new int[52];
+    private final int[][] holeCards = new int[2][2];
+    private final int[] board = new int[5];
+    /** The bucket of each seat in each round. */
+    private final int[][] buckets = new int[2][ROUNDS.length];
+    /** 1 if seat 0 wins the showdown, -1 if seat 1 does, 0 on a tie. */
+    private int showdown;
+    private final float[] strategies = new float[MAX_DEPTH * NUM_ACTIONS];
+    private final float[] utilities = new float[MAX_DEPTH * NUM_ACTIONS];
+
+    Worker(Random random) {
+      this.random = random;
+      for (int i = 0; i < deck.length; i++) {
+        deck[i] = i;
+      }
+    }
+
+    void iterate() {
+      deal();
+      for (int traverser = 0; traverser < 2; traverser++) {
+        traverse(traverser, 0, 0, 0, 0,
+            AbstractPokerLogicBase.SMALL_BLIND, AbstractPokerLogicBase.BIG_BLIND, 0);
+      }
+    }
+
+    private void deal() {
+      for (int i = 0; i < 9; i++) {
+        int j = i + random.nextInt(deck.length - i);
+        int card = deck[j];
+        deck[j] = deck[i];
+        deck[i] = card;
+      }
+      holeCards[0][0] = deck[0];
+      holeCards[0][1] = deck[1];
+      holeCards[1][0] = deck[2];
+      holeCards[1][1] = deck[3];
+      System.arraycopy(deck, 4, board, 0, 5);
+      for (int seat = 0; seat < 2; seat++) {
+        for (int round = 0; round < ROUNDS.length; round++) {
+          buckets[seat][round] = abstraction.getBucket(ROUNDS[round], holeCards[seat], board);
+        }
+      }
+      showdown = Integer.signum(Integer.compare(
+          HandEvaluator.evaluate(holeCards[0], board, 5),
+          HandEvaluator.evaluate(holeCards[1], board, 5)));
+    }
+
+    /**
+     * Returns the expected chips won by traverser from a decision of seat; the
+     * contributions are the chips each seat has put in the pot so far.
+     */
+    private float traverse(int traverser, int round, int seat, int raises, int moves,
+        int contribution0, int contribution1, int depth) {
+      int contribution = seat == 0 ? contribution0 : contribution1;
+      int toCall = (seat == 0 ? contribution1 : contribution0) - contribution;
+      int legal = getLegalActions(toCall, stack - contribution, raises,
+          contribution0 + contribution1);
+      int base = offsets[getSituation(round, seat, raises)]
+          + buckets[seat][round] * NUM_ACTIONS;
+      int at = depth * NUM_ACTIONS;
+      matchRegrets(base, legal, at);
+
+      if (seat == traverser) {
+        float nodeUtility = 0;
+        for (int action = 0; action < NUM_ACTIONS; action++) {
+          if ((legal & 1 << action) != 0) {
+            utilities[at + action] = play(traverser, action, round, seat, raises, moves,
+                contribution0, contribution1, depth);
+            nodeUtility += strategies[at + action] * utilities[at + action];
+          }
+        }
+        for (int action = 0; action < NUM_ACTIONS; action++) {
+          if ((legal & 1 << action) != 0) {
+            regrets[base + action] += utilities[at + action] - nodeUtility;
+          }
+        }
+        return nodeUtility;
+      }
+      // The opponent's node: add to its average strategy, then sample one move, the one
+      // at which the roll drops below 0
+      float roll = random.nextFloat();
+      int sampled = CALL;
+      for (int action = 0; action < NUM_ACTIONS; action++) {
+        if ((legal & 1 << action) != 0) {
+          strategySums[base + action] += strategies[at + action];
+          if (roll >= 0) {
+            sampled = action;
+            roll -= strategies[at + action];
+          }
+        }
+      }
+      return play(traverser, sampled, round, seat, raises, moves, contribution0,
+          contribution1, depth);
+    }
+
+    /** Sets the current strategy at strategies[at...]: positive regrets, normalized. */
+    private void matchRegrets(int base, int legal, int at) {
+      float sum = 0;
+      for (int action = 0; action < NUM_ACTIONS; action++) {
+        float regret = (legal & 1 << action) != 0 ? Math.max(regrets[base + action], 0) : 0;
+        strategies[at + action] = regret;
+        sum += regret;
+      }
+      float uniform = 1f / Integer.bitCount(legal);
+      for (int action = 0; action < NUM_ACTIONS; action++) {
+        if ((legal & 1 << action) != 0) {
+          strategies[at + action] = sum > 0 ? strategies[at + action] / sum : uniform;
+        }
+      }
+    }
+
+    private float play(int traverser, int action, int round, int seat, int raises, int moves,
+        int contribution0, int contribution1, int depth) {
+      int contribution = seat == 0 ? contribution0 : contribution1;
+      int toCall = (seat == 0 ? contribution1 : contribution0) - contribution;
+      int newContribution;
+      switch (action) {
+        case FOLD:
+          // The folding seat loses what it put in
+          return seat == traverser ? -contribution : contribution;
+        case CALL:
+          newContribution = Math.min(contribution + toCall, stack);
+          boolean roundOver = toCall > 0
+              // The small blind completing before the flop still gives the big blind a move
+              ? round > 0 || moves > 0
+              // A check ends the round unless it is the first move
+              : moves > 0;
+          if (roundOver) {
+            return endRound(traverser, round,
+                seat == 0 ? newContribution : contribution0,
+                seat == 1 ? newContribution : contribution1, depth);
+          }
+          return traverse(traverser, round, 1 - seat, raises, moves + 1,
+              seat == 0 ? newContribution : contribution0,
+              seat == 1 ? newContribution : contribution1, depth + 1);
+        case RAISE:
+          newContribution =
+              contribution + getPotRaise(toCall, contribution0 + contribution1);
+          break;
+        default:
+          newContribution = stack;
+          break;
+      }
+      return traverse(traverser, round, 1 - seat, raises + 1, moves + 1,
+          seat == 0 ? newContribution : contribution0,
+          seat == 1 ? newContribution : contribution1, depth + 1);
+    }
+
+    private float endRound(int traverser, int round, int contribution0, int contribution1,
+        int depth) {
+      if (round == ROUNDS.length - 1 || contribution0 == stack || contribution1 == stack) {
+        // Showdown; the contributions are equal after a call
+        int winner = showdown > 0 ? 0 : showdown < 0 ? 1 : -1;
+        if (winner < 0) {
+          return 0;
+        }
+        return winner == traverser ? contribution0 : -contribution0;
+      }
+      // After the flop the big blind acts first
+      return traverse(traverser, round + 1, 1, 0, 0, contribution0, contribution1, depth + 1);
+    }
+  }
+
+  /**
+   * Trains with 1 thread and then with every core, printing the throughput of each, e.g.
+   * to check that it scales; then exports the strategy if a file is given.
+   * Usage: CfrTrainer [iterations [strategyFile]]
+   */
+  public static void main(String[] args) throws InterruptedException, IOException {
+    long iterations = args.length > 0 ? Long.parseLong(args[0]) : 200000;
+    int cores = Runtime.getRuntime().availableProcessors();
+    CfrTrainer trainer = new CfrTrainer(new HandStrengthAbstraction(),
+        100 * AbstractPokerLogicBase.BIG_BLIND, 42);
+    // Warm up the JIT before measuring
+    trainer.train(iterations / 10, cores);
+    for (int threads : new int[] {1, cores}) {
+      long start = System.nanoTime();
+      trainer.train(iterations, threads);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%d threads: %.0f iterations/sec%n", threads, iterations / seconds);
+    }
+    if (args.length > 1) {
+      trainer.exportStrategy(new File(args[1]));
+    }
+  }
+}
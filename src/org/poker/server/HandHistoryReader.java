@@ -0,0 +1,256 @@
+package org.poker.server;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.MessageJsonParser;
+import org.game_api.GameApi.Operation;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads the hands written by {@link HandHistoryWriter}. Segments are memory-mapped and their
+ * indexes are loaded when the reader is opened, so any hand is found by a binary search;
+ * hands written after that are not seen. A segment without an index (e.g. after a crash) is
+ * indexed by scanning it, and a truncated last record is ignored.<br>
+ * Not thread safe, as moves are decoded by a shared {@link BinaryMessageCodec}.
+ */
+public class HandHistoryReader {
+
+  /** Called for every hand by {@link HandHistoryReader#forEachHand}. */
+  public interface HandVisitor {
+    void visit(HandRecord hand);
+  }
+
+  private final List<Segment> segments = Lists.newArrayList();
+  private final BinaryMessageCodec codec = BinaryMessageCodec.forPoker();
+
+  public HandHistoryReader(File directory) throws IOException {
+    for (File file : listSegments(directory)) {
+      segments.add(new Segment(file));
+    }
+  }
+
+  public int getHandCount() {
+    int count = 0;
+    for (Segment segment : segments) {
+      count += segment.handIds.length;
+    }
+    return count;
+  }
+
+  /** Returns the hand, or null if there is no hand with that id. */
+  public HandRecord readHand(long handId) throws IOException {
+    for (Segment segment : segments) {
+      int position = Arrays.binarySearch(segment.handIds, handId);
+      if (position >= 0) {
+        return segment.readRecord(segment.offsets[position], codec);
+      }
+    }
+    return null;
+  }
+
+  /** Replays the hand and returns its final state, or null if there is no such hand. */
+  public GameState replay(long handId) throws IOException {
+    HandRecord hand = readHand(handId);
+    return hand == null ? null : hand.replay();
+  }
+
+  /** Visits every hand in the order they were written. */
+  public void forEachHand(HandVisitor visitor) throws IOException {
+    for (Segment segment : segments) {
+      for (int offset : segment.offsetsInFileOrder) {
+        visitor.visit(segment.readRecord(offset, codec));
+      }
+    }
+  }
+
+  /** Replays every hand and returns the number of operations applied. */
+  public long replayAll() throws IOException {
+    final long[] operations = new long[1];
+    forEachHand(new HandVisitor() {
+      @Override
+      public void visit(HandRecord hand) {
+        GameState gameState = hand.createGameState();
+        for (int i = 0; i < hand.getMoveCount(); i++) {
+          List<Operation> move = hand.getMove(i);
+          gameState.makeMove(move);
+          operations[0] += move.size();
+        }
+      }
+    });
+    return operations[0];
+  }
+
+  static List<File> listSegments(File directory) {
+    File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(HandHistoryWriter.SEGMENT_SUFFIX);
+      }
+    });
+    List<File> segments = Lists.newArrayList(files == null ? new File[0] : files);
+    Collections.sort(segments);
+    return segments;
+  }
+
+  static String getSegmentName(int segmentNumber) {
+    return String.format("hands-%08d", segmentNumber);
+  }
+
+  static int getSegmentNumber(File segment) {
+    String name = segment.getName();
+    int end = name.length() - HandHistoryWriter.SEGMENT_SUFFIX.length();
+    return Integer.parseInt(name.substring("hands-".length(), end));
+  }
+
+  private static final class Segment {
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int formatVersion;
+    /** Sorted, with offsets in the same order. */
+    private final long[] handIds;
+    private final int[] offsets;
+    private final int[] offsetsInFileOrder;
+
+    private Segment(File file) throws IOException {
+      this.file = file;
+      try (FileInputStream input = new FileInputStream(file)) {
+        FileChannel channel = input.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buffer.limit() < HandHistoryWriter.HEADER_SIZE
+          || buffer.getInt(0) != HandHistoryWriter.MAGIC) {
+        throw new IOException("Not a hand history segment: " + file);
+      }
+      formatVersion = buffer.getInt(4);
+      if (formatVersion != HandHistoryWriter.FORMAT_VERSION
+          && formatVersion != HandHistoryWriter.JSON_FORMAT_VERSION) {
+        throw new IOException("Unsupported format version " + formatVersion + ": " + file);
+      }
+      List<long[]> entries = readIndex();
+      offsetsInFileOrder = new int[entries.size()];
+      for (int i = 0; i < entries.size(); i++) {
+        offsetsInFileOrder[i] = (int) entries.get(i)[1];
+      }
+      Collections.sort(entries, new Comparator<long[]>() {
+        @Override
+        public int compare(long[] entry1, long[] entry2) {
+          return Long.compare(entry1[0], entry2[0]);
+        }
+      });
+      handIds = new long[entries.size()];
+      offsets = new int[entries.size()];
+      for (int i = 0; i < entries.size(); i++) {
+        handIds[i] = entries.get(i)[0];
+        offsets[i] = (int) entries.get(i)[1];
+      }
+    }
+
+    /** Returns (handId, offset) of every complete record, from the index or by scanning. */
+    private List<long[]> readIndex() throws IOException {
+      List<long[]> entries = Lists.newArrayList();
+      String path = file.getPath();
+      File indexFile = new File(path.substring(0,
+          path.length() - HandHistoryWriter.SEGMENT_SUFFIX.length())
+          + HandHistoryWriter.INDEX_SUFFIX);
+      if (indexFile.exists()) {
+        try (FileInputStream input = new FileInputStream(indexFile)) {
+          FileChannel channel = input.getChannel();
+          ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          while (index.remaining() >= HandHistoryWriter.INDEX_ENTRY_SIZE) {
+            long handId = index.getLong();
+            long offset = index.getLong();
+            if (isCompleteRecord(offset)) {
+              entries.add(new long[] {handId, offset});
+            }
+          }
+        }
+        return entries;
+      }
+      int offset = HandHistoryWriter.HEADER_SIZE;
+      while (isCompleteRecord(offset)) {
+        entries.add(new long[] {buffer.getLong(offset + 4), offset});
+        offset += 4 + buffer.getInt(offset);
+      }
+      return entries;
+    }
+
+    private boolean isCompleteRecord(long offset) {
+      return offset + 4 <= buffer.limit() && buffer.getInt((int) offset) >= 0
+          && offset + 4 + buffer.getInt((int) offset) <= buffer.limit();
+    }
+
+    private HandRecord readRecord(int offset, BinaryMessageCodec codec) throws IOException {
+      ByteBuffer recordBuffer = buffer.duplicate();
+      recordBuffer.position(offset);
+      int length = recordBuffer.getInt();
+      recordBuffer.limit(offset + 4 + length);
+      DataInputStream record = new DataInputStream(new ByteBufferInputStream(recordBuffer));
+      long handId = record.readLong();
+      long seed = record.readLong();
+      int players = record.readShort();
+      List<String> playerIds = Lists.newArrayListWithCapacity(players);
+      List<Integer> stacks = Lists.newArrayListWithCapacity(players);
+      for (int i = 0; i < players; i++) {
+        playerIds.add(record.readUTF());
+        stacks.add(record.readInt());
+      }
+      HandRecord hand = new HandRecord(handId, seed, playerIds, stacks);
+      int moves = record.readInt();
+      for (int i = 0; i < moves; i++) {
+        String moverId = record.readUTF();
+        hand.addMove(moverId, readMove(record, codec));
+      }
+      return hand;
+    }
+
+    private List<Operation> readMove(DataInputStream record, BinaryMessageCodec codec)
+        throws IOException {
+      byte[] bytes = new byte[record.readInt()];
+      record.readFully(bytes);
+      if (formatVersion == HandHistoryWriter.JSON_FORMAT_VERSION) {
+        return ((MakeMove) MessageJsonParser.parseMessage(
+            new String(bytes, HandHistoryWriter.UTF_8))).getOperations();
+      }
+      return ((MakeMove) codec.decode(bytes)).getOperations();
+    }
+  }
+
+  /** Reads a buffer without copying it. */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      length = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, length);
+      return length;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package org.poker.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.Operation;
+
+/**
+ * Appends hands to segment files in a directory; see {@link HandHistoryReader}.<br>
+ * A segment is a header followed by one record per hand:
+ * <pre>
+ * segment: MAGIC, FORMAT_VERSION, record*
+ * record:  length, handId, seed, players, (playerId, stack)*, moves, (moverId, move)*
+ * </pre>
+ * where a move is its {@link MakeMove} message encoded by
+ * {@link BinaryMessageCodec#forPoker()}, prefixed with its length (version 1 segments held
+ * the JSON instead, and can still be read).
+ * Next to every segment an index file holds a (handId, offset) pair per record.
+ * When a segment reaches the maximum size a new one is started; segments are never
+ * rewritten, and a new writer always starts a new segment.<br>
+ * Thread safe: every hand is appended as a whole under a lock.
+ */
+public class HandHistoryWriter implements Closeable {
+
+  static final int MAGIC = 0x504b4848; // "PKHH"
+  static final int FORMAT_VERSION = 2;
+  static final int JSON_FORMAT_VERSION = 1;
+  static final int HEADER_SIZE = 8;
+  static final int INDEX_ENTRY_SIZE = 16;
+  static final String SEGMENT_SUFFIX = ".seg";
+  static final String INDEX_SUFFIX = ".idx";
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File directory;
+  private final long maxSegmentBytes;
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(4096);
+  private final DataOutputStream record = new DataOutputStream(recordBytes);
+  private final BinaryMessageCodec codec = BinaryMessageCodec.forPoker();
+  private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+  private int segmentNumber;
+  private FileChannel segment;
+  private FileChannel index;
+
+  /**
+   * @param maxSegmentBytes a segment is rolled once it is this big; a single hand is never
+   *     split, so a segment can exceed it by one record
+   */
+  public HandHistoryWriter(File directory, long maxSegmentBytes) throws IOException {
+    if (maxSegmentBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Segments are memory-mapped, so must be under 2GB");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Can't create " + directory);
+    }
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    for (File file : HandHistoryReader.listSegments(directory)) {
+      segmentNumber = Math.max(segmentNumber, HandHistoryReader.getSegmentNumber(file) + 1);
+    }
+  }
+
+  public synchronized void write(HandRecord hand) throws IOException {
+    recordBytes.reset();
+    record.writeInt(0); // The length, filled in below
+    record.writeLong(hand.getHandId());
+    record.writeLong(hand.getSeed());
+    List<String> playerIds = hand.getPlayerIds();
+    record.writeShort(playerIds.size());
+    for (int i = 0; i < playerIds.size(); i++) {
+      record.writeUTF(playerIds.get(i));
+      record.writeInt(hand.getStartingStacks().get(i));
+    }
+    record.writeInt(hand.getMoveCount());
+    for (int i = 0; i < hand.getMoveCount(); i++) {
+      record.writeUTF(hand.getMoverId(i));
+      writeMove(hand.getMove(i));
+    }
+    record.flush();
+    ByteBuffer buffer = ByteBuffer.wrap(recordBytes.toByteArray());
+    buffer.putInt(0, buffer.limit() - 4);
+
+    if (segment == null || segment.size() >= maxSegmentBytes) {
+      rollSegment();
+    }
+    long offset = segment.size();
+    writeFully(segment, buffer);
+    indexEntry.clear();
+    indexEntry.putLong(hand.getHandId()).putLong(offset).flip();
+    writeFully(index, indexEntry);
+  }
+
+  private void writeMove(List<Operation> move) throws IOException {
+    byte[] bytes = codec.encode(new MakeMove(move));
+    record.writeInt(bytes.length);
+    record.write(bytes);
+  }
+
+  private void rollSegment() throws IOException {
+    closeSegment();
+    String name = HandHistoryReader.getSegmentName(segmentNumber++);
+    segment = new FileOutputStream(new File(directory, name + SEGMENT_SUFFIX)).getChannel();
+    index = new FileOutputStream(new File(directory, name + INDEX_SUFFIX)).getChannel();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+    writeFully(segment, header);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /** Forces the written hands to the disk. */
+  public synchronized void sync() throws IOException {
+    if (segment != null) {
+      segment.force(false);
+      index.force(false);
+    }
+  }
+
+  private void closeSegment() throws IOException {
+    if (segment != null) {
+      segment.close();
+      index.close();
+      segment = null;
+      index = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeSegment();
+  }
+}
@@ -0,0 +1,80 @@
+package org.poker.server;
+
+import java.util.List;
+import java.util.Random;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.poker.client.AbstractPokerLogicBase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Everything needed to replay a hand: the seed of the {@link GameState}'s random generator,
+ * the players with their starting stacks, and every move with the player who made it.
+ */
+public class HandRecord {
+
+  private final long handId;
+  private final long seed;
+  private final List<String> playerIds;
+  private final List<Integer> startingStacks;
+  private final List<String> moverIds = Lists.newArrayList();
+  private final List<List<Operation>> moves = Lists.newArrayList();
+
+  public HandRecord(long handId, long seed, List<String> playerIds,
+      List<Integer> startingStacks) {
+    this.handId = handId;
+    this.seed = seed;
+    this.playerIds = ImmutableList.copyOf(playerIds);
+    this.startingStacks = ImmutableList.copyOf(startingStacks);
+  }
+
+  public void addMove(String moverId, List<Operation> move) {
+    moverIds.add(moverId);
+    moves.add(move);
+  }
+
+  public long getHandId() {
+    return handId;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public List<String> getPlayerIds() {
+    return playerIds;
+  }
+
+  public List<Integer> getStartingStacks() {
+    return startingStacks;
+  }
+
+  public int getMoveCount() {
+    return moves.size();
+  }
+
+  public String getMoverId(int move) {
+    return moverIds.get(move);
+  }
+
+  public List<Operation> getMove(int move) {
+    return moves.get(move);
+  }
+
+  /** Returns a new GameState with the random generator the hand was played with. */
+  public GameState createGameState() {
+    return new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY, new Random(seed));
+  }
+
+  /** Replays every move and returns the state at the end of the hand. */
+  public GameState replay() {
+    GameState gameState = createGameState();
+    for (List<Operation> move : moves) {
+      gameState.makeMove(move);
+    }
+    return gameState;
+  }
+}
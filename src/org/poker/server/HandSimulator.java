@@ -0,0 +1,296 @@
+package org.poker.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.GameState.MoveObserver;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.InvariantChecker;
+import org.poker.client.InvariantChecker.Violation;
+import org.poker.client.OpponentStatsRecorder;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.TableConfig;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.BotMove;
+import org.poker.client.ai.OpponentStats;
+import org.poker.client.ai.RandomBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Plays complete hands through {@link PokerLogic} without GWT or a container, many tables in
+ * parallel, to load-test the rules engine.<br>
+ * Every hand starts with fresh chips. Each move is generated the way {@link
+ * org.poker.client.PokerPresenter} does it, from the state seen by the player to move, and is
+ * applied to a {@link GameState}. The simulator reports hands/sec, per-move latency
+ * percentiles (parsing the state, generating and applying the move, and verifying it if
+ * enabled; bot decisions are not included) and allocation. Every state is checked with an
+ * {@link InvariantChecker}, exhaustively if moves are verified, and each violation is
+ * reported.
+ */
+public class HandSimulator {
+
+  /** Creates the bots of a table; each table gets its own bots, used by a single thread. */
+  public interface BotFactory {
+    Bot createBot(int seat, Random random);
+  }
+
+  /** A hand that hasn't ended after this many moves is reported as an error. */
+  private static final int MAX_MOVES_PER_HAND = 1000;
+
+  private final int numberOfPlayers;
+  private final int startingChips;
+  private final BotFactory botFactory;
+  private final boolean verifyMoves;
+  private final long seed;
+  private OpponentStats opponentStats;
+  private TableConfig tableConfig = TableConfig.DEFAULT;
+
+  /**
+   * @param verifyMoves if true, every move is also checked with {@link PokerLogic#verify},
+   *     and every state with {@link InvariantChecker.Mode#EXHAUSTIVE}
+   * @param seed the seed of each table's random generator (table i uses seed + i), which
+   *     the bots use and which seeds the shuffle of every hand, so a seed replays the same
+   *     hands
+   */
+  public HandSimulator(int numberOfPlayers, int startingChips, BotFactory botFactory,
+      boolean verifyMoves, long seed) {
+    this.numberOfPlayers = numberOfPlayers;
+    this.startingChips = startingChips;
+    this.botFactory = botFactory;
+    this.verifyMoves = verifyMoves;
+    this.seed = seed;
+  }
+
+  /**
+   * Counts the moves of every table into opponentStats, which must be thread safe when the
+   * tables run on more than one thread, e.g. a {@link StripedOpponentStats}; null for none.
+   */
+  public void setOpponentStats(OpponentStats opponentStats) {
+    this.opponentStats = opponentStats;
+  }
+
+  /** Plays the hands at the stakes of tableConfig, {@link TableConfig#DEFAULT} if unset. */
+  public void setTableConfig(TableConfig tableConfig) {
+    this.tableConfig = tableConfig;
+  }
+
+  /**
+   * Plays handsPerTable hands on each of the tables using a pool of threads,
+   * and returns the merged result.
+   */
+  public SimulationResult run(int tables, int handsPerTable, int threads)
+      throws InterruptedException {
+    // The helper is a lazily created singleton, so create it before the threads race for it.
+    PokerLogicHelper.getInstance();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long start = System.nanoTime();
+      List<Future<SimulationResult>> futures = Lists.newArrayList();
+      for (int i = 0; i < tables; i++) {
+        futures.add(executor.submit(new Table(i, handsPerTable)));
+      }
+      SimulationResult result = new SimulationResult();
+      for (Future<SimulationResult> future : futures) {
+        result.add(future.get());
+      }
+      result.setElapsedNanos(System.nanoTime() - start);
+      return result;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A table failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Plays the hands of one table on the calling thread. */
+  private final class Table implements Callable<SimulationResult> {
+    private final int handsToPlay;
+    private final PokerLogic pokerLogic = new PokerLogic(tableConfig);
+    private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+    private final List<String> playerIds;
+    private final List<Map<String, Object>> playersInfo;
+    private final Map<String, Integer> startingChipsMap;
+    private final int totalChips = numberOfPlayers * startingChips;
+    private final Bot[] bots = new Bot[numberOfPlayers];
+    // Shared by the bots and the shuffles, so the table is replayed from its seed
+    private final Random random;
+    private final SimulationResult result = new SimulationResult();
+    private final MoveObserver statsObserver;
+    private final InvariantChecker invariantChecker = new InvariantChecker(
+        verifyMoves ? InvariantChecker.Mode.EXHAUSTIVE : InvariantChecker.Mode.CHEAP);
+
+    private Table(int tableIndex, int handsToPlay) {
+      this.handsToPlay = handsToPlay;
+      random = new Random(seed + tableIndex);
+      ImmutableList.Builder<String> playerIdsBuilder = ImmutableList.builder();
+      ImmutableList.Builder<Map<String, Object>> playersInfoBuilder = ImmutableList.builder();
+      ImmutableMap.Builder<String, Integer> startingChipsBuilder = ImmutableMap.builder();
+      for (int i = 0; i < numberOfPlayers; i++) {
+        String playerId = String.valueOf(42 + i);
+        playerIdsBuilder.add(playerId);
+        playersInfoBuilder.add(ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, playerId));
+        startingChipsBuilder.put(playerId, startingChips);
+        bots[i] = botFactory.createBot(i, random);
+      }
+      playerIds = playerIdsBuilder.build();
+      playersInfo = playersInfoBuilder.build();
+      startingChipsMap = startingChipsBuilder.build();
+      statsObserver = opponentStats == null
+          ? null : new OpponentStatsRecorder(opponentStats).asMoveObserver(playerIds);
+    }
+
+    @Override
+    public SimulationResult call() {
+      long allocatedBefore = getAllocatedBytes();
+      for (int hand = 0; hand < handsToPlay; hand++) {
+        try {
+          playHand(hand);
+        } catch (RuntimeException e) {
+          result.recordError("hand " + hand + ": " + e);
+        }
+      }
+      long allocatedAfter = getAllocatedBytes();
+      result.addAllocatedBytes(
+          allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+      result.getInvariantStats().add(invariantChecker);
+      return result;
+    }
+
+    private void playHand(int hand) {
+      LatencyHistogram latency = result.getMoveLatencyHistogram();
+      GameState gameState = new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY,
+          new Random(random.nextLong()));
+      gameState.setMoveObserver(statsObserver);
+      long start = System.nanoTime();
+      String moverId = playerIds.get(AbstractPokerLogicBase.DEALER_INDEX);
+      List<Operation> move = pokerLogic.getInitialMove(playerIds, startingChipsMap, true);
+      makeMove(gameState, move, moverId, hand);
+      latency.record(System.nanoTime() - start);
+      int moves = 1;
+      String turnPlayerId = getTurnPlayerId(move);
+      PokerState lastState = null;
+      while (true) {
+        start = System.nanoTime();
+        PokerState state =
+            helper.gameApiStateToPokerState(gameState.getStateForPlayerId(turnPlayerId));
+        long parsed = System.nanoTime();
+        BettingRound round = state.getCurrentRound();
+        checkInvariants(lastState, state, hand, moves);
+        lastState = state;
+        if (round == BettingRound.END_GAME) {
+          break;
+        }
+        if (moves >= MAX_MOVES_PER_HAND) {
+          result.recordError("hand " + hand + " didn't end after " + moves + " moves");
+          return;
+        }
+        moverId = turnPlayerId;
+        long decided = parsed;
+        if (round == BettingRound.SHOWDOWN) {
+          move = pokerLogic.doEndGameMove(state, playerIds);
+        } else {
+          BotMove botMove = bots[state.getWhoseMove().ordinal()].getMove(state);
+          decided = System.nanoTime();
+          move = botMove.getOperations(pokerLogic, state, playerIds);
+          turnPlayerId = getTurnPlayerId(move);
+        }
+        makeMove(gameState, move, moverId, hand);
+        latency.record(System.nanoTime() - decided + parsed - start);
+        moves++;
+      }
+      result.recordHand(moves);
+    }
+
+    private String getTurnPlayerId(List<Operation> move) {
+      for (Operation operation : move) {
+        if (operation instanceof SetTurn) {
+          return ((SetTurn) operation).getPlayerId();
+        }
+      }
+      throw new IllegalStateException("Move without SetTurn: " + move);
+    }
+
+    private void makeMove(GameState gameState, List<Operation> move, String moverId, int hand) {
+      if (!verifyMoves) {
+        gameState.makeMove(move);
+        return;
+      }
+      GameState lastGameState = gameState.snapshot();
+      gameState.makeMove(move);
+      VerifyMoveDone verifyMoveDone = pokerLogic.verify(new VerifyMove(playersInfo,
+          gameState.getState(), lastGameState.getState(), move, moverId, startingChipsMap));
+      if (verifyMoveDone.getHackerPlayerId() != null) {
+        result.recordVerificationFailure("hand " + hand + ": " + verifyMoveDone.getMessage()
+            + " move=" + move);
+      }
+    }
+
+    private void checkInvariants(PokerState lastState, PokerState state, int hand,
+        int moves) {
+      for (Violation violation : invariantChecker.check(lastState, state, totalChips)) {
+        String description = "hand " + hand + " after move " + moves + ": " + violation;
+        if (violation.getInvariant() == InvariantChecker.Invariant.CHIP_CONSERVATION) {
+          result.recordChipConservationViolation(description);
+        } else {
+          result.recordInvariantViolation(description);
+        }
+      }
+    }
+  }
+
+  /** Returns the bytes allocated by the current thread, or -1 if the JVM can't tell. */
+  private static long getAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadMXBean =
+          (com.sun.management.ThreadMXBean) threadMXBean;
+      if (sunThreadMXBean.isThreadAllocatedMemorySupported()
+          && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Usage: HandSimulator [players [tables [handsPerTable [threads [verify]]]]]
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int players = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    int tables = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int handsPerTable = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+    int threads = args.length > 3
+        ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    boolean verify = args.length > 4 && Boolean.parseBoolean(args[4]);
+    HandSimulator simulator = new HandSimulator(players, 100 * AbstractPokerLogicBase.BIG_BLIND,
+        new BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new RandomBot(random);
+          }
+        }, verify, 42);
+    // Warm up the JIT before measuring
+    simulator.run(threads, Math.max(1, handsPerTable / 10), threads);
+    System.out.println(simulator.run(tables, handsPerTable, threads));
+  }
+}
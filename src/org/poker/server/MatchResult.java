@@ -0,0 +1,111 @@
+package org.poker.server;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * What a {@link BotMatchHarness} run measured: the win rate of the bot against the opponent
+ * in big blinds per 100 hands, with its confidence interval.<br>
+ * A sample is the bot's result in big blinds per hand of one deal: the average of both
+ * seatings of a duplicate deal, or the single hand otherwise.
+ */
+public class MatchResult {
+
+  /** At most this many problem descriptions are kept. */
+  private static final int MAX_PROBLEMS = 20;
+  /** The normal quantile of a two-sided 95% confidence interval. */
+  private static final double Z_95 = 1.959964;
+
+  private long hands;
+  private long samples;
+  private double sum;
+  private double sumOfSquares;
+  private long errors;
+  private long elapsedNanos;
+  private final List<String> problems = Lists.newArrayList();
+
+  void recordSample(double bigBlindsPerHand, int handsInSample) {
+    hands += handsInSample;
+    samples++;
+    sum += bigBlindsPerHand;
+    sumOfSquares += bigBlindsPerHand * bigBlindsPerHand;
+  }
+
+  void recordError(String description) {
+    errors++;
+    if (problems.size() < MAX_PROBLEMS) {
+      problems.add(description);
+    }
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  void add(MatchResult other) {
+    hands += other.hands;
+    samples += other.samples;
+    sum += other.sum;
+    sumOfSquares += other.sumOfSquares;
+    errors += other.errors;
+    for (String problem : other.problems) {
+      if (problems.size() < MAX_PROBLEMS) {
+        problems.add(problem);
+      }
+    }
+  }
+
+  public long getHands() {
+    return hands;
+  }
+
+  public long getSamples() {
+    return samples;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /** The bot's win rate in big blinds per 100 hands; the opponent's is the opposite. */
+  public double getBigBlindsPer100() {
+    return samples == 0 ? 0 : 100 * sum / samples;
+  }
+
+  /**
+   * The half width of the 95% confidence interval of {@link #getBigBlindsPer100()}, from the
+   * variance of the samples; infinite with fewer than 2 samples.
+   */
+  public double getConfidenceInterval95() {
+    if (samples < 2) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double mean = sum / samples;
+    double variance = Math.max(0, (sumOfSquares - samples * mean * mean) / (samples - 1));
+    return 100 * Z_95 * Math.sqrt(variance / samples);
+  }
+
+  /** Descriptions of the first problems found. */
+  public List<String> getProblems() {
+    return ImmutableList.copyOf(problems);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(hands).append(" hands in ").append(elapsedNanos / 1000000).append("ms: ")
+        .append(Math.round(getBigBlindsPer100() * 100) / 100.0).append(" +/- ")
+        .append(Math.round(getConfidenceInterval95() * 100) / 100.0)
+        .append(" bb/100 (95%), errors: ").append(errors);
+    for (String problem : problems) {
+      result.append("\n  ").append(problem);
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,84 @@
+package org.poker.server;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.poker.client.ai.EquityEstimator;
+import org.poker.client.ai.MonteCarloEquityEstimator;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An {@link EquityEstimator} for the server that splits the Monte Carlo samples of
+ * {@link MonteCarloEquityEstimator} over the threads of an executor. Each task has its own
+ * {@link Random} and deck, so the tasks share nothing until their counts are added up.<br>
+ * It is thread safe, so one instance can serve the bots of every table.
+ */
+public class ParallelEquityEstimator implements EquityEstimator {
+
+  /** Samples a task runs between two looks at the clock. */
+  private static final int BATCH_SIZE = 256;
+
+  private final ExecutorService executor;
+  private final int tasks;
+  private final int maxSamples;
+  private final AtomicLong seeds;
+
+  /**
+   * @param executor runs the tasks; it is not shut down by this class
+   * @param tasks the number of tasks each estimate is split into, usually the thread count
+   * @param maxSamples the most samples of an estimate, over all its tasks
+   * @param seed the seed the tasks' seeds are drawn from
+   */
+  public ParallelEquityEstimator(ExecutorService executor, int tasks, int maxSamples,
+      long seed) {
+    this.executor = executor;
+    this.tasks = tasks;
+    this.maxSamples = maxSamples;
+    this.seeds = new AtomicLong(seed);
+  }
+
+  @Override
+  public double getEquity(final int[] holeCards, final int[] board, final int opponents,
+      final long deadlineMillis) {
+    final int samplesPerTask = Math.max(maxSamples / tasks, 1);
+    List<Future<double[]>> futures = Lists.newArrayList();
+    for (int i = 0; i < tasks; i++) {
+      final Random random = new Random(seeds.getAndAdd(0x9E3779B97F4A7C15L));
+      futures.add(executor.submit(new Callable<double[]>() {
+        @Override
+        public double[] call() {
+          double wins = 0;
+          int samples = 0;
+          do {
+            int batch = Math.min(BATCH_SIZE, samplesPerTask - samples);
+            wins += MonteCarloEquityEstimator.simulate(holeCards, board, opponents, batch,
+                random);
+            samples += batch;
+          } while (samples < samplesPerTask && System.currentTimeMillis() < deadlineMillis);
+          return new double[] {wins, samples};
+        }
+      }));
+    }
+    double wins = 0;
+    double samples = 0;
+    try {
+      for (Future<double[]> future : futures) {
+        double[] result = future.get();
+        wins += result[0];
+        samples += result[1];
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while estimating equity", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("An equity task failed", e.getCause());
+    }
+    return wins / samples;
+  }
+}
@@ -0,0 +1,184 @@
+package org.poker.server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+
+/**
+ * Runs the work of many tables on a fixed set of shards, each a single thread with its own
+ * queue. A table always maps to the same shard, so the tasks of a table run one at a time and
+ * in the order they were submitted, while tables on different shards run in parallel and
+ * never contend on a shared queue.<br>
+ * {@link #wrap(int, Game)} dispatches a game's {@link Game#sendVerifyMove} and
+ * {@link Game#sendUpdateUI} calls this way, so it can be handed to any container, e.g.
+ * {@code new IteratingPlayerContainer(scheduler.wrap(tableId, game), numberOfPlayers)}.
+ * Note that the container then gets the game's answers asynchronously, on the shard's thread.
+ * <p>
+ * A task that throws doesn't stop its shard: the exception, e.g. the hacker found by a
+ * container's sendVerifyMoveDone, is counted in the shard's {@link ShardStats}, which also
+ * keep the last one.
+ */
+public class ShardedScheduler {
+
+  private final Shard[] shards;
+
+  public ShardedScheduler(int shardCount) {
+    shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i);
+    }
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  public int getShard(int tableId) {
+    // Spread consecutive ids, then map to a shard without the sign bit.
+    int hash = tableId * 0x9E3779B9;
+    return (hash >>> 1) % shards.length;
+  }
+
+  /** Runs task on the shard of tableId, after the tasks already submitted for that table. */
+  public void execute(int tableId, final Runnable task) {
+    final Shard shard = shards[getShard(tableId)];
+    final long submittedNanos = System.nanoTime();
+    shard.executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          // The message first, so whoever sees the count go up also sees it
+          shard.lastFailure = e;
+          shard.failedTasks++;
+        } finally {
+          shard.latency.record(System.nanoTime() - submittedNanos);
+          shard.completedTasks++;
+        }
+      }
+    });
+  }
+
+  /** Returns a game whose calls run on the shard of tableId. */
+  public Game wrap(final int tableId, final Game game) {
+    return new Game() {
+      @Override
+      public void sendVerifyMove(final VerifyMove verifyMove) {
+        execute(tableId, new Runnable() {
+          @Override
+          public void run() {
+            game.sendVerifyMove(verifyMove);
+          }
+        });
+      }
+
+      @Override
+      public void sendUpdateUI(final UpdateUI updateUI) {
+        execute(tableId, new Runnable() {
+          @Override
+          public void run() {
+            game.sendUpdateUI(updateUI);
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Returns the metrics of a shard. They are read while the shard keeps running,
+   * so they are approximate until it is idle.
+   */
+  public ShardStats getShardStats(int shard) {
+    Shard s = shards[shard];
+    LatencyHistogram latency = new LatencyHistogram();
+    latency.add(s.latency);
+    return new ShardStats(s.executor.getQueue().size(), s.completedTasks, latency,
+        s.failedTasks, s.lastFailure);
+  }
+
+  public void shutdown() throws InterruptedException {
+    for (Shard shard : shards) {
+      shard.executor.shutdown();
+    }
+    for (Shard shard : shards) {
+      shard.executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static final class Shard {
+    private final ThreadPoolExecutor executor;
+    /** Time from submitting a task to the end of its run; only written by the shard's thread. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile long completedTasks;
+    private volatile long failedTasks;
+    private volatile RuntimeException lastFailure;
+
+    private Shard(final int index) {
+      executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "shard-" + index);
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+  }
+
+  /** The metrics of one shard. */
+  public static final class ShardStats {
+    private final int queueDepth;
+    private final long completedTasks;
+    private final LatencyHistogram latency;
+    private final long failedTasks;
+    private final RuntimeException lastFailure;
+
+    private ShardStats(int queueDepth, long completedTasks, LatencyHistogram latency,
+        long failedTasks, RuntimeException lastFailure) {
+      this.queueDepth = queueDepth;
+      this.completedTasks = completedTasks;
+      this.latency = latency;
+      this.failedTasks = failedTasks;
+      this.lastFailure = lastFailure;
+    }
+
+    /** Tasks waiting to run. */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    public long getCompletedTasks() {
+      return completedTasks;
+    }
+
+    /** Time from submitting a task to the end of its run. */
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+
+    /** Tasks that threw; they count as completed too. */
+    public long getFailedTasks() {
+      return failedTasks;
+    }
+
+    /** The exception of the last task that threw, or null. */
+    public RuntimeException getLastFailure() {
+      return lastFailure;
+    }
+
+    @Override
+    public String toString() {
+      return "queueDepth=" + queueDepth + " completed=" + completedTasks
+          + " p50=" + latency.getPercentile(50) / 1000 + "us"
+          + " p99=" + latency.getPercentile(99) / 1000 + "us"
+          + (failedTasks == 0 ? "" : " failed=" + failedTasks + " last=" + lastFailure);
+    }
+  }
+}
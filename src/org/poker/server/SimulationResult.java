@@ -0,0 +1,176 @@
+package org.poker.server;
+
+import java.util.List;
+
+import org.poker.client.InvariantChecker;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * What a {@link HandSimulator} run measured and the problems it found.
+ */
+public class SimulationResult {
+
+  /** At most this many problem descriptions are kept. */
+  private static final int MAX_PROBLEMS = 20;
+
+  private long hands;
+  private long moves;
+  private long elapsedNanos;
+  /** -1 if the JVM can't measure allocation. */
+  private long allocatedBytes;
+  private long chipConservationViolations;
+  /** Violations of the invariants other than chip conservation. */
+  private long invariantViolations;
+  private long verificationFailures;
+  private long errors;
+  private final LatencyHistogram moveLatency = new LatencyHistogram();
+  /** Only holds counts; its mode is not used. */
+  private final InvariantChecker invariantStats =
+      new InvariantChecker(InvariantChecker.Mode.CHEAP);
+  private final List<String> problems = Lists.newArrayList();
+
+  void recordHand(int movesInHand) {
+    hands++;
+    moves += movesInHand;
+  }
+
+  void recordChipConservationViolation(String description) {
+    chipConservationViolations++;
+    recordProblem(description);
+  }
+
+  void recordInvariantViolation(String description) {
+    invariantViolations++;
+    recordProblem(description);
+  }
+
+  void recordVerificationFailure(String description) {
+    verificationFailures++;
+    recordProblem(description);
+  }
+
+  void recordError(String description) {
+    errors++;
+    recordProblem(description);
+  }
+
+  private void recordProblem(String description) {
+    if (problems.size() < MAX_PROBLEMS) {
+      problems.add(description);
+    }
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  void addAllocatedBytes(long bytes) {
+    if (allocatedBytes >= 0) {
+      allocatedBytes = bytes < 0 ? -1 : allocatedBytes + bytes;
+    }
+  }
+
+  LatencyHistogram getMoveLatencyHistogram() {
+    return moveLatency;
+  }
+
+  /** The checks, violations and time of each invariant. */
+  public InvariantChecker getInvariantStats() {
+    return invariantStats;
+  }
+
+  void add(SimulationResult other) {
+    hands += other.hands;
+    moves += other.moves;
+    addAllocatedBytes(other.allocatedBytes);
+    chipConservationViolations += other.chipConservationViolations;
+    invariantViolations += other.invariantViolations;
+    verificationFailures += other.verificationFailures;
+    errors += other.errors;
+    moveLatency.add(other.moveLatency);
+    invariantStats.add(other.invariantStats);
+    for (String problem : other.problems) {
+      recordProblem(problem);
+    }
+  }
+
+  public long getHands() {
+    return hands;
+  }
+
+  public long getMoves() {
+    return moves;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public double getHandsPerSecond() {
+    return elapsedNanos == 0 ? 0 : hands * 1e9 / elapsedNanos;
+  }
+
+  /** Returns the per-move latency in nanoseconds at percentile (between 0 and 100). */
+  public long getMoveLatencyPercentile(double percentile) {
+    return moveLatency.getPercentile(percentile);
+  }
+
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long getChipConservationViolations() {
+    return chipConservationViolations;
+  }
+
+  public long getInvariantViolations() {
+    return invariantViolations;
+  }
+
+  public long getVerificationFailures() {
+    return verificationFailures;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  /** Descriptions of the first problems found. */
+  public List<String> getProblems() {
+    return ImmutableList.copyOf(problems);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(hands).append(" hands, ").append(moves).append(" moves in ")
+        .append(elapsedNanos / 1000000).append("ms: ")
+        .append((long) getHandsPerSecond()).append(" hands/sec\n");
+    result.append("move latency (us): p50=").append(micros(50))
+        .append(" p90=").append(micros(90))
+        .append(" p99=").append(micros(99))
+        .append(" p99.9=").append(micros(99.9))
+        .append(" max=").append(moveLatency.getMax() / 1000).append('\n');
+    if (allocatedBytes >= 0 && hands > 0) {
+      result.append("allocated: ").append(allocatedBytes / hands).append(" bytes/hand\n");
+    }
+    String invariants = invariantStats.toString();
+    if (!invariants.isEmpty()) {
+      result.append(invariants).append('\n');
+    }
+    result.append("chip conservation violations: ").append(chipConservationViolations)
+        .append(", invariant violations: ").append(invariantViolations)
+        .append(", verification failures: ").append(verificationFailures)
+        .append(", errors: ").append(errors);
+    for (String problem : problems) {
+      result.append("\n  ").append(problem);
+    }
+    return result.toString();
+  }
+
+  private long micros(double percentile) {
+    return moveLatency.getPercentile(percentile) / 1000;
+  }
+}
@@ -0,0 +1,180 @@
+package org.poker.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.poker.client.ai.OpponentStat;
+import org.poker.client.ai.OpponentStats;
+
+import com.google.common.collect.Lists;
+
+/**
+ * {@link OpponentStats} shared by the tables of a server, updated by many threads at once
+ * without locks.<br>
+ * The counters are striped: each stripe is an {@link AtomicLongArray} holding a row per
+ * player, and a thread adds to the stripe picked by its id, so threads of a pool rarely
+ * contend for a counter. A read adds the stripes up; it allocates nothing, but may miss the
+ * adds in flight.<br>
+ * A player gets a row the first time it is counted, up to the capacity given.
+ * <p>
+ * Snapshot file: MAGIC, FORMAT_VERSION, stat count, player count, then per player its id
+ * (UTF) and its counters (longs). It is written to a temporary file, then moved over the
+ * old one, so a crash leaves the previous snapshot intact.
+ */
+public class StripedOpponentStats extends OpponentStats {
+
+  static final int MAGIC = 0x504b4f53; // "PKOS"
+  static final int FORMAT_VERSION = 1;
+
+  private static final OpponentStat[] STATS = OpponentStat.values();
+
+  private final int capacity;
+  private final AtomicLongArray[] stripes;
+  private final ConcurrentMap<String, Integer> rows = new ConcurrentHashMap<>();
+  /** The ids of the players in row order; guarded by itself. */
+  private final List<String> playerIds = Lists.newArrayList();
+  private volatile IOException lastSnapshotError;
+
+  /**
+   * @param capacity the most players that can be counted
+   * @param stripes the number of stripes, usually the number of threads updating the stats
+   */
+  public StripedOpponentStats(int capacity, int stripes) {
+    this.capacity = capacity;
+    this.stripes = new AtomicLongArray[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new AtomicLongArray(capacity * STATS.length);
+    }
+  }
+
+  @Override
+  public void add(String playerId, OpponentStat stat, long count) {
+    int index = getOrCreateRow(playerId) * STATS.length + stat.ordinal();
+    getStripe().addAndGet(index, count);
+  }
+
+  @Override
+  public long getCount(String playerId, OpponentStat stat) {
+    Integer row = rows.get(playerId);
+    if (row == null) {
+      return 0;
+    }
+    int index = row * STATS.length + stat.ordinal();
+    long count = 0;
+    for (AtomicLongArray stripe : stripes) {
+      count += stripe.get(index);
+    }
+    return count;
+  }
+
+  /** Returns the number of players counted. */
+  public int getPlayerCount() {
+    return rows.size();
+  }
+
+  private AtomicLongArray getStripe() {
+    return stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+  }
+
+  private int getOrCreateRow(String playerId) {
+    Integer row = rows.get(playerId);
+    if (row != null) {
+      return row;
+    }
+    synchronized (playerIds) {
+      row = rows.get(playerId);
+      if (row == null) {
+        if (playerIds.size() == capacity) {
+          throw new IllegalStateException("More than " + capacity + " players");
+        }
+        row = playerIds.size();
+        playerIds.add(playerId);
+        rows.put(playerId, row);
+      }
+      return row;
+    }
+  }
+
+  /** Writes the counters to file; the tables may go on adding meanwhile. */
+  public void snapshot(File file) throws IOException {
+    List<String> ids;
+    synchronized (playerIds) {
+      ids = Lists.newArrayList(playerIds);
+    }
+    File temporaryFile = new File(file.getPath() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(STATS.length);
+      output.writeInt(ids.size());
+      for (String playerId : ids) {
+        output.writeUTF(playerId);
+        for (OpponentStat stat : STATS) {
+          output.writeLong(getCount(playerId, stat));
+        }
+      }
+    }
+    Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Adds the counters of a snapshot to these. */
+  public void load(File file) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+        throw new IOException(file + " is not an opponent stats snapshot");
+      }
+      if (input.readInt() != STATS.length) {
+        throw new IOException(file + " has other stats");
+      }
+      int players = input.readInt();
+      for (int i = 0; i < players; i++) {
+        String playerId = input.readUTF();
+        for (OpponentStat stat : STATS) {
+          add(playerId, stat, input.readLong());
+        }
+      }
+    }
+  }
+
+  /**
+   * Snapshots the counters to file every period, on executor, until the returned future is
+   * cancelled. A failed snapshot is kept in {@link #getLastSnapshotError()}, and the next
+   * one tried in time.
+   */
+  public ScheduledFuture<?> scheduleSnapshots(ScheduledExecutorService executor,
+      final File file, long period, TimeUnit unit) {
+    return executor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          snapshot(file);
+        } catch (IOException e) {
+          lastSnapshotError = e;
+        }
+      }
+    }, period, period, unit);
+  }
+
+  /** The error of the last scheduled snapshot that failed, or null. */
+  public IOException getLastSnapshotError() {
+    return lastSnapshotError;
+  }
+}
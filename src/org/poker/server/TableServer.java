@@ -0,0 +1,564 @@
+package org.poker.server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.InvariantChecker;
+import org.poker.client.InvariantChecker.Violation;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.TableConfig;
+import org.poker.client.ai.RandomBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Hosts many independent poker tables in one JVM.<br>
+ * Tables are sharded onto the single-threaded shards of a {@link ShardedScheduler}, so the
+ * moves of a table are processed one at a time and in order, and an idle table costs no
+ * thread. Moves are verified with {@link PokerLogic}, applied to the
+ * table's {@link GameState} and every connected player then gets an {@link UpdateUI}, on the
+ * table's thread. With {@link #setInvariantMode} every state is also checked with an
+ * {@link InvariantChecker}.<br>
+ * Players connect in-process with {@link Table#connect(int, Game)}, which returns the
+ * {@link Container} they send their moves to; {@link BotClient} is such a player.<br>
+ * A table plays single hands, each a new game with fresh chips, or sessions, where the hands
+ * follow each other in the same game state until a player has all the chips.
+ */
+public class TableServer {
+
+  /** Moves waiting for a table beyond this are refused. */
+  static final int MAILBOX_CAPACITY = 32;
+
+  private final ShardedScheduler scheduler;
+  private final PokerLogic pokerLogic = new PokerLogic(true);
+  private final Map<Integer, Table> tables = new ConcurrentHashMap<>();
+  private final AtomicInteger nextTableId = new AtomicInteger();
+  private final AtomicLong nextHandId = new AtomicLong();
+  private volatile HandHistoryWriter handHistoryWriter;
+  private final List<LatencyHistogram> threadMoveLatencies = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<LatencyHistogram> moveLatency = new ThreadLocal<LatencyHistogram>() {
+    @Override
+    protected LatencyHistogram initialValue() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      threadMoveLatencies.add(histogram);
+      return histogram;
+    }
+  };
+  private volatile InvariantChecker.Mode invariantMode;
+  private final List<InvariantChecker> threadInvariantCheckers = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<InvariantChecker> invariantChecker =
+      new ThreadLocal<InvariantChecker>() {
+        @Override
+        protected InvariantChecker initialValue() {
+          InvariantChecker checker = new InvariantChecker(InvariantChecker.Mode.CHEAP);
+          threadInvariantCheckers.add(checker);
+          return checker;
+        }
+      };
+
+  public TableServer(int shards) {
+    this(new ShardedScheduler(shards));
+  }
+
+  public TableServer(ShardedScheduler scheduler) {
+    // The helper is a lazily created singleton, so create it before the threads race for it.
+    PokerLogicHelper.getInstance();
+    this.scheduler = scheduler;
+  }
+
+  public ShardedScheduler getScheduler() {
+    return scheduler;
+  }
+
+  /** Every hand that ends from now on is appended to writer. */
+  public void setHandHistoryWriter(HandHistoryWriter writer) {
+    this.handHistoryWriter = writer;
+  }
+
+  /**
+   * Checks the state after every move applied from now on with mode; null, the default, turns
+   * the checks off. A violation doesn't stop the hand, it is counted by the table.
+   */
+  public void setInvariantMode(InvariantChecker.Mode mode) {
+    this.invariantMode = mode;
+  }
+
+  public Table createTable(int numberOfPlayers, int startingChips) {
+    return createTable(numberOfPlayers, startingChips, TableConfig.DEFAULT);
+  }
+
+  /** Creates a table with its own stakes and rake. */
+  public Table createTable(int numberOfPlayers, int startingChips, TableConfig tableConfig) {
+    PokerLogic tablePokerLogic = tableConfig.equals(TableConfig.DEFAULT)
+        ? pokerLogic : new PokerLogic(tableConfig, true);
+    Table table = new Table(nextTableId.getAndIncrement(), numberOfPlayers, startingChips,
+        tablePokerLogic);
+    tables.put(table.getTableId(), table);
+    return table;
+  }
+
+  public void closeTable(Table table) {
+    tables.remove(table.getTableId());
+  }
+
+  public int getTableCount() {
+    return tables.size();
+  }
+
+  /**
+   * Returns the latency of the moves applied so far, from the time a move was sent to the time
+   * all players were updated. The counts are read while tables keep running, so they are
+   * approximate until the server is idle.
+   */
+  public LatencyHistogram getMoveLatency() {
+    LatencyHistogram result = new LatencyHistogram();
+    for (LatencyHistogram histogram : threadMoveLatencies) {
+      result.add(histogram);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the checks, violations and time of each invariant so far. Like
+   * {@link #getMoveLatency()}, it is approximate until the server is idle.
+   */
+  public InvariantChecker getInvariantStats() {
+    InvariantChecker result = new InvariantChecker(InvariantChecker.Mode.CHEAP);
+    for (InvariantChecker checker : threadInvariantCheckers) {
+      result.add(checker);
+    }
+    return result;
+  }
+
+  public void shutdown() throws InterruptedException {
+    scheduler.shutdown();
+  }
+
+  /** A move waiting in a table's mailbox; a null move starts a new hand or session. */
+  private static final class Command {
+    private final String playerId;
+    private final List<Operation> move;
+    private final boolean session;
+    private final long sentNanos = System.nanoTime();
+
+    private Command(String playerId, List<Operation> move) {
+      this(playerId, move, false);
+    }
+
+    private Command(String playerId, List<Operation> move, boolean session) {
+      this.playerId = playerId;
+      this.move = move;
+      this.session = session;
+    }
+  }
+
+  /**
+   * A table with a fixed number of seats. Its memory is bounded: the mailbox has a fixed
+   * capacity and the game state only keeps the versions the players' updates may still read,
+   * which are at most those of a hand.
+   */
+  public final class Table {
+    private final int tableId;
+    private final List<String> playerIds;
+    private final List<Map<String, Object>> playersInfo;
+    private final ImmutableMap<String, Integer> startingChips;
+    private final int totalChips;
+    private final PokerLogic pokerLogic;
+    private final AtomicReferenceArray<Game> players;
+    /** Moves sent to the table and not processed yet. */
+    private final AtomicInteger pendingMoves = new AtomicInteger();
+
+    // Only used by the thread running the table
+    private final Random seeds = new Random();
+    private GameState gameState =
+        new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY, new Random());
+    private HandRecord handRecord;
+    /**
+     * By seat, the pinned snapshots the player's updates read, oldest first: the players may
+     * read an update after later moves. They are unpinned once the player moves, or the hand
+     * ends; the newest is also the last state of the player's next update.
+     */
+    private final List<ArrayDeque<GameState>> pinnedStates;
+    private List<Operation> lastMove;
+    private String lastMovePlayerId;
+    private String turnPlayerId;
+    /** The state after the last move, if it was checked for invariants; else null. */
+    private PokerState lastCheckedState;
+    /** The chips in play in the current hand: less than totalChips once a session is raked. */
+    private int handChips;
+
+    // Written by the thread running the table, read by anyone
+    private volatile boolean handInProgress;
+    private volatile int handsPlayed;
+    private volatile long movesApplied;
+    private volatile long movesRejected;
+    private volatile String lastRejection;
+    private volatile long invariantViolations;
+    private volatile String lastInvariantViolation;
+    private volatile IOException lastHandHistoryError;
+    /** A permit for each game, a hand or a session, that ended. */
+    private final Semaphore gamesOver = new Semaphore(0);
+
+    private Table(int tableId, int numberOfPlayers, int startingChips, PokerLogic pokerLogic) {
+      this.tableId = tableId;
+      this.pokerLogic = pokerLogic;
+      ImmutableList.Builder<String> playerIdsBuilder = ImmutableList.builder();
+      ImmutableList.Builder<Map<String, Object>> playersInfoBuilder = ImmutableList.builder();
+      ImmutableMap.Builder<String, Integer> startingChipsBuilder = ImmutableMap.builder();
+      for (int i = 0; i < numberOfPlayers; i++) {
+        String playerId = String.valueOf(42 + i);
+        playerIdsBuilder.add(playerId);
+        playersInfoBuilder.add(ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, playerId));
+        startingChipsBuilder.put(playerId, startingChips);
+      }
+      this.playerIds = playerIdsBuilder.build();
+      this.playersInfo = playersInfoBuilder.build();
+      this.startingChips = startingChipsBuilder.build();
+      this.totalChips = numberOfPlayers * startingChips;
+      this.players = new AtomicReferenceArray<>(numberOfPlayers);
+      this.pinnedStates = new ArrayList<>(numberOfPlayers);
+      for (int i = 0; i < numberOfPlayers; i++) {
+        pinnedStates.add(new ArrayDeque<GameState>());
+      }
+    }
+
+    public int getTableId() {
+      return tableId;
+    }
+
+    public List<String> getPlayerIds() {
+      return playerIds;
+    }
+
+    /**
+     * Seats player; it gets an {@link UpdateUI} after every move and sends its moves to the
+     * returned container.
+     */
+    public Container connect(int seat, Game player) {
+      players.set(seat, player);
+      final String playerId = playerIds.get(seat);
+      return new Container() {
+        @Override
+        public void sendGameReady() {
+        }
+
+        @Override
+        public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
+        }
+
+        @Override
+        public void sendMakeMove(List<Operation> operations) {
+          send(new Command(playerId, ImmutableList.copyOf(operations)));
+        }
+      };
+    }
+
+    /** Deals a new hand with every player starting with the same chips. */
+    public void startHand() {
+      send(new Command(playerIds.get(AbstractPokerLogicBase.DEALER_INDEX), null));
+    }
+
+    /**
+     * Starts a session with every player starting with the same chips: after each hand the
+     * next button deals the next one, until a player has all the chips. Hands of a session
+     * are not written to the hand history, as they are not dealt from a seed of their own.
+     */
+    public void startSession() {
+      send(new Command(playerIds.get(AbstractPokerLogicBase.DEALER_INDEX), null, true));
+    }
+
+    /** True while a hand, or a session, is being played. */
+    public boolean isHandInProgress() {
+      return handInProgress;
+    }
+
+    /**
+     * Waits for a game, a hand or a session, to end, and for everything it changed to be
+     * visible; each end is waited for once. Returns false if none ended in time.
+     */
+    public boolean awaitGameOver(long timeout, TimeUnit unit) throws InterruptedException {
+      return gamesOver.tryAcquire(timeout, unit);
+    }
+
+    /** The hands played so far, counting each hand of a session. */
+    public int getHandsPlayed() {
+      return handsPlayed;
+    }
+
+    public long getMovesApplied() {
+      return movesApplied;
+    }
+
+    public long getMovesRejected() {
+      return movesRejected;
+    }
+
+    /** Why the last move was rejected, or null. */
+    public String getLastRejection() {
+      return lastRejection;
+    }
+
+    public long getInvariantViolations() {
+      return invariantViolations;
+    }
+
+    /** The last invariant violated, or null. */
+    public String getLastInvariantViolation() {
+      return lastInvariantViolation;
+    }
+
+    /** The last error writing a hand to the history, or null. */
+    public IOException getLastHandHistoryError() {
+      return lastHandHistoryError;
+    }
+
+    private void send(final Command command) {
+      if (pendingMoves.incrementAndGet() > MAILBOX_CAPACITY) {
+        pendingMoves.decrementAndGet();
+        throw new IllegalStateException("The mailbox of table " + tableId + " is full");
+      }
+      scheduler.execute(tableId, new Runnable() {
+        @Override
+        public void run() {
+          pendingMoves.decrementAndGet();
+          try {
+            process(command);
+          } catch (RuntimeException e) {
+            reject(command, e.toString());
+          }
+        }
+      });
+    }
+
+    private void process(Command command) {
+      if (command.move == null) {
+        if (handInProgress) {
+          reject(command, "A hand is already in progress");
+          return;
+        }
+        long seed = seeds.nextLong();
+        gameState = new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY, new Random(seed));
+        handRecord = handHistoryWriter == null || command.session ? null : new HandRecord(
+            nextHandId.getAndIncrement(), seed, playerIds, startingChips.values().asList());
+        lastCheckedState = null;
+        handChips = totalChips;
+        for (ArrayDeque<GameState> pins : pinnedStates) {
+          // The snapshots of the last game's state are dropped with it
+          pins.clear();
+          pins.add(gameState.pin());
+        }
+        List<Operation> move = command.session
+            ? pokerLogic.getInitialSessionMove(playerIds, startingChips, true)
+            : pokerLogic.getInitialMove(playerIds, startingChips, true);
+        // Before the move, so whoever sees it applied also sees the hand in progress
+        handInProgress = true;
+        int lastVersion = gameState.getVersion();
+        gameState.makeMove(move);
+        apply(command, move, lastVersion);
+        return;
+      }
+      if (!handInProgress || !command.playerId.equals(turnPlayerId)) {
+        reject(command, "Not the turn of " + command.playerId);
+        return;
+      }
+      GameState before = gameState.snapshot();
+      // Made once: verified as made, and kept unless rejected
+      gameState.makeMove(command.move);
+      VerifyMoveDone verifyMoveDone = pokerLogic.verify(new VerifyMove(playersInfo,
+          gameState.getState(), before.getState(), command.move, command.playerId,
+          startingChips));
+      if (verifyMoveDone.getHackerPlayerId() != null) {
+        gameState.revertTo(before.getVersion());
+        reject(command, verifyMoveDone.getMessage());
+        return;
+      }
+      // The player is done with its updates once it moves
+      unpinStates(playerIds.indexOf(command.playerId), 1);
+      apply(command, command.move, before.getVersion());
+    }
+
+    /** Sends the updates of move, already made on gameState from lastVersion. */
+    private void apply(Command command, List<Operation> move, int lastVersion) {
+      gameState.discardHistoryBefore(lastVersion);
+      lastMove = move;
+      lastMovePlayerId = command.playerId;
+      if (handRecord != null) {
+        handRecord.addMove(command.playerId, move);
+      }
+      boolean gameOver = false;
+      for (Operation operation : move) {
+        if (operation instanceof SetTurn) {
+          turnPlayerId = ((SetTurn) operation).getPlayerId();
+        } else if (operation instanceof EndGame) {
+          gameOver = true;
+        }
+      }
+      boolean handOver = pokerLogic.isEndOfHand(move);
+      movesApplied++;
+      InvariantChecker.Mode mode = invariantMode;
+      if (mode != null) {
+        checkInvariants(mode);
+      } else {
+        lastCheckedState = null;
+      }
+      for (int i = 0; i < players.length(); i++) {
+        ArrayDeque<GameState> pins = pinnedStates.get(i);
+        GameState lastState = pins.getLast();
+        GameState state = gameState.pin();
+        pins.add(state);
+        Game player = players.get(i);
+        if (player != null) {
+          String playerId = playerIds.get(i);
+          player.sendUpdateUI(new UpdateUI(playerId, playersInfo,
+              state.getStateForPlayerId(playerId), lastState.getStateForPlayerId(playerId),
+              lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot()));
+        } else {
+          unpinStates(i, 1);
+        }
+      }
+      if (handOver) {
+        // Only the update just sent can still be read, by a player who doesn't move again
+        for (int i = 0; i < players.length(); i++) {
+          unpinStates(i, 2);
+        }
+      }
+      moveLatency.get().record(System.nanoTime() - command.sentNanos);
+      if (gameOver) {
+        writeHandRecord();
+        // Last, so whoever sees the hand is over also sees all of the above
+        handInProgress = false;
+      }
+      if (handOver) {
+        handsPlayed++;
+      }
+      if (gameOver) {
+        gamesOver.release();
+      }
+    }
+
+    /** Unpins the oldest snapshots of seat, but for the newest keep of them. */
+    private void unpinStates(int seat, int keep) {
+      ArrayDeque<GameState> pins = pinnedStates.get(seat);
+      while (pins.size() > keep) {
+        pins.removeFirst().unpin();
+      }
+    }
+
+    private void checkInvariants(InvariantChecker.Mode mode) {
+      InvariantChecker checker = invariantChecker.get();
+      checker.setMode(mode);
+      PokerState state =
+          PokerLogicHelper.getInstance().gameApiStateToPokerState(gameState.getState());
+      for (Violation violation : checker.check(lastCheckedState, state, handChips)) {
+        // The message first, so whoever sees the count go up also sees it
+        lastInvariantViolation = "Move of " + lastMovePlayerId + " on table " + tableId
+            + " violated " + violation;
+        invariantViolations++;
+      }
+      if (state.getCurrentRound() == BettingRound.END_GAME) {
+        // The next hand of a session is played without the rake
+        handChips -= state.getRake();
+      }
+      lastCheckedState = state;
+    }
+
+    private void writeHandRecord() {
+      HandHistoryWriter writer = handHistoryWriter;
+      if (handRecord != null && writer != null) {
+        try {
+          writer.write(handRecord);
+        } catch (IOException e) {
+          lastHandHistoryError = e;
+        }
+      }
+      handRecord = null;
+    }
+
+    private void reject(Command command, String reason) {
+      // The reason first, so whoever sees the count go up also sees it
+      lastRejection = "Move of " + command.playerId + " rejected: " + reason;
+      movesRejected++;
+    }
+  }
+
+  /**
+   * Plays hands of random bots on many tables at once and prints the move latency and memory.
+   * Usage: TableServer [tables [players [handsPerTable [shards]]]]
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int tableCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int players = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+    int hands = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    int shards = args.length > 3
+        ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    TableServer server = new TableServer(shards);
+    Random random = new Random(42);
+    List<Table> tables = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < tableCount; i++) {
+      Table table = server.createTable(players, 100 * AbstractPokerLogicBase.BIG_BLIND);
+      for (int seat = 0; seat < players; seat++) {
+        BotClient botClient = new BotClient(new RandomBot(new Random(random.nextLong())));
+        botClient.setContainer(table.connect(seat, botClient));
+      }
+      tables.add(table);
+    }
+    long start = System.nanoTime();
+    long moves = 0;
+    for (int hand = 0; hand < hands; hand++) {
+      for (Table table : tables) {
+        table.startHand();
+      }
+      for (Table table : tables) {
+        while (table.isHandInProgress() || table.getHandsPlayed() <= hand) {
+          if (table.getMovesRejected() > 0) {
+            throw new IllegalStateException(table.getLastRejection());
+          }
+          Thread.sleep(1);
+        }
+      }
+    }
+    for (Table table : tables) {
+      moves += table.getMovesApplied();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long usedBytes = runtime.totalMemory() - runtime.freeMemory();
+    LatencyHistogram latency = server.getMoveLatency();
+    System.out.println(tableCount + " tables, " + moves + " moves in " + elapsedNanos / 1000000
+        + "ms: " + (long) (moves * 1e9 / elapsedNanos) + " moves/sec");
+    System.out.println("move latency (us): p50=" + latency.getPercentile(50) / 1000
+        + " p99=" + latency.getPercentile(99) / 1000 + " max=" + latency.getMax() / 1000);
+    System.out.println("heap: " + usedBytes / tableCount + " bytes/table");
+    for (int shard = 0; shard < shards; shard++) {
+      System.out.println("shard " + shard + ": " + server.getScheduler().getShardStats(shard));
+    }
+    server.shutdown();
+  }
+}
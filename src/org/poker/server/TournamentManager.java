@@ -0,0 +1,542 @@
+package org.poker.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.BlindSchedule;
+import org.poker.client.InvariantChecker;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.TableConfig;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.RandomBot;
+import org.poker.server.HandSimulator.BotFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs a multi-table tournament of bots: the players are seated at tables of at most maxSeats,
+ * every table is a game of {@link PokerLogic}, and the stacks carry over from hand to hand
+ * until one player has all the chips.<br>
+ * The tournament is played in rounds: in a round every table plays one hand, in parallel, and
+ * then the busted players are removed, tables are broken and players moved so that there are
+ * as few tables as possible and their sizes differ by at most one. The blinds go up with the
+ * {@link BlindSchedule}, whose levels are counted in rounds.
+ * <p>
+ * Balancing doesn't look at every table: the tables are kept in buckets by number of players,
+ * so the shortest and the fullest table are found in at most maxSeats steps, and each bust
+ * or move only relinks the tables it touches. The cost of a round beyond its hands depends on
+ * the players busted and moved, not on the size of the field.
+ * <p>
+ * Every state a table reaches is checked with an {@link InvariantChecker}, and with {@link
+ * #setVerifyMoves(boolean)} every move is also verified by the level's {@link PokerLogic}: a
+ * move that breaks the rules, e.g. a bet below the big blind of the level, fails the round.
+ * <p>
+ * A tournament is reproducible: each table deals from its own seeded generator and each player
+ * has its own bot, so the result doesn't depend on the number of threads.
+ */
+public class TournamentManager {
+
+  /** A hand that hasn't ended after this many moves fails the tournament. */
+  private static final int MAX_MOVES_PER_HAND = 1000;
+
+  private final int maxSeats;
+  private final BlindSchedule blindSchedule;
+  private final PokerLogic[] pokerLogics;
+  private final List<String> playerIds;
+  private final Bot[] bots;
+  private final int[] stacks;
+  /** The stacks at the start of the last hand, to rank the players busted by it. */
+  private final int[] handStartStacks;
+  /** The finishing place of each player, from 1; 0 while still playing. */
+  private final int[] places;
+  private final List<Table> tables = Lists.newArrayList();
+  /** The tables by number of players, each a linked list through its tables. */
+  private final Table[] tablesBySize;
+  private boolean verifyMoves;
+  private int playersLeft;
+  private int rounds;
+  private long playersMoved;
+  private long tablesBroken;
+  private long balancingNanos;
+  private long maxBalancingNanos;
+
+  /**
+   * @param maxSeats the seats of a table, from 3 to 9; 2 would leave a player alone at a table
+   * @param blindSchedule the stakes by round; its levels must not be raked
+   * @param seed the seed of the seating, the deals and the bots' random generators
+   */
+  public TournamentManager(int numberOfPlayers, int startingChips, int maxSeats,
+      BlindSchedule blindSchedule, BotFactory botFactory, long seed) {
+    if (numberOfPlayers < 2 || startingChips <= 0 || maxSeats < 3 || maxSeats > 9) {
+      throw new IllegalArgumentException("Can't seat " + numberOfPlayers + " players with "
+          + startingChips + " chips at tables of " + maxSeats);
+    }
+    this.maxSeats = maxSeats;
+    this.blindSchedule = blindSchedule;
+    List<TableConfig> levels = blindSchedule.getLevels();
+    pokerLogics = new PokerLogic[levels.size()];
+    for (int level = 0; level < levels.size(); level++) {
+      if (levels.get(level).isRaked()) {
+        throw new IllegalArgumentException("Tournament level " + level + " is raked");
+      }
+      pokerLogics[level] = new PokerLogic(levels.get(level));
+    }
+    Random random = new Random(seed);
+    ImmutableList.Builder<String> playerIdsBuilder = ImmutableList.builder();
+    bots = new Bot[numberOfPlayers];
+    stacks = new int[numberOfPlayers];
+    for (int player = 0; player < numberOfPlayers; player++) {
+      playerIdsBuilder.add(String.valueOf(player));
+      bots[player] = botFactory.createBot(player, new Random(random.nextLong()));
+      stacks[player] = startingChips;
+    }
+    playerIds = playerIdsBuilder.build();
+    handStartStacks = new int[numberOfPlayers];
+    places = new int[numberOfPlayers];
+    playersLeft = numberOfPlayers;
+    tablesBySize = new Table[maxSeats + 1];
+    // Seats are drawn at random and dealt round the tables, so they start balanced
+    List<Integer> draw = Lists.newArrayListWithCapacity(numberOfPlayers);
+    for (int player = 0; player < numberOfPlayers; player++) {
+      draw.add(player);
+    }
+    Collections.shuffle(draw, random);
+    int tableCount = getTablesNeeded(numberOfPlayers);
+    for (int i = 0; i < tableCount; i++) {
+      tables.add(new Table(i, random.nextLong()));
+    }
+    for (int i = 0; i < numberOfPlayers; i++) {
+      tables.get(i % tableCount).seats[tables.get(i % tableCount).size++] = draw.get(i);
+    }
+    for (Table table : tables) {
+      link(table);
+    }
+  }
+
+  /**
+   * If true, every move is also checked with {@link PokerLogic#verify}, and every state with
+   * {@link InvariantChecker.Mode#EXHAUSTIVE} rather than {@link InvariantChecker.Mode#CHEAP}.
+   */
+  public void setVerifyMoves(boolean verifyMoves) {
+    this.verifyMoves = verifyMoves;
+  }
+
+  private int getTablesNeeded(int players) {
+    return (players + maxSeats - 1) / maxSeats;
+  }
+
+  /** Plays rounds using a pool of threads until a player has all the chips. */
+  public void run(int threads) throws InterruptedException {
+    // The helper is a lazily created singleton, so create it before the threads race for it.
+    PokerLogicHelper.getInstance();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      while (!isFinished()) {
+        playRound(executor);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Plays a hand on every table with executor, then removes the busted players and balances
+   * the tables.
+   */
+  public void playRound(ExecutorService executor) throws InterruptedException {
+    if (isFinished()) {
+      throw new IllegalStateException("The tournament is over");
+    }
+    final PokerLogic pokerLogic = pokerLogics[getLevel()];
+    List<Future<Table>> futures = Lists.newArrayListWithCapacity(tables.size());
+    for (final Table table : tables) {
+      futures.add(executor.submit(new Callable<Table>() {
+        @Override
+        public Table call() {
+          table.playHand(pokerLogic);
+          return table;
+        }
+      }));
+    }
+    List<Table> tablesWithBusts = Lists.newArrayList();
+    try {
+      for (Future<Table> future : futures) {
+        Table table = future.get();
+        if (table.busted > 0) {
+          tablesWithBusts.add(table);
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A table failed in round " + rounds, e.getCause());
+    }
+    rounds++;
+    long start = System.nanoTime();
+    removeBustedPlayers(tablesWithBusts);
+    breakTables();
+    balanceTables();
+    long elapsed = System.nanoTime() - start;
+    balancingNanos += elapsed;
+    maxBalancingNanos = Math.max(maxBalancingNanos, elapsed);
+  }
+
+  /**
+   * Removes the players who lost their chips in the last round from their tables. Players
+   * busted in the same round finish in the order of their stacks before the hand, the biggest
+   * stack higher.
+   */
+  private void removeBustedPlayers(List<Table> tablesWithBusts) {
+    List<Integer> busted = Lists.newArrayList();
+    for (Table table : tablesWithBusts) {
+      unlink(table);
+      int size = 0;
+      for (int i = 0; i < table.size; i++) {
+        int player = table.seats[i];
+        if (stacks[player] == 0) {
+          busted.add(player);
+        } else {
+          table.seats[size++] = player;
+        }
+      }
+      table.size = size;
+      table.busted = 0;
+      link(table);
+    }
+    // Sorted by stack before the hand, smallest first, so the first finishes last
+    Collections.sort(busted, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer player, Integer other) {
+        int byStack = Integer.compare(handStartStacks[player], handStartStacks[other]);
+        return byStack != 0 ? byStack : Integer.compare(player, other);
+      }
+    });
+    for (int player : busted) {
+      places[player] = playersLeft--;
+    }
+    if (playersLeft == 1) {
+      // The winner busted the last players at its table
+      for (Table table : tablesWithBusts) {
+        if (table.size == 1) {
+          places[table.seats[0]] = 1;
+        }
+      }
+    }
+  }
+
+  /** Breaks the shortest tables while the players left fit on fewer tables. */
+  private void breakTables() {
+    while (tables.size() > getTablesNeeded(playersLeft)) {
+      Table broken = getShortestTable();
+      unlink(broken);
+      removeTable(broken);
+      tablesBroken++;
+      for (int i = 0; i < broken.size; i++) {
+        seat(getShortestTable(), broken.seats[i]);
+      }
+      broken.size = 0;
+    }
+  }
+
+  /** Moves players from the fullest to the shortest table until the sizes differ by one. */
+  private void balanceTables() {
+    while (true) {
+      Table fullest = getFullestTable();
+      Table shortest = getShortestTable();
+      if (fullest.size - shortest.size <= 1) {
+        return;
+      }
+      unlink(fullest);
+      int player = fullest.seats[--fullest.size];
+      link(fullest);
+      seat(shortest, player);
+    }
+  }
+
+  /** Seats a player moved from another table in the last seat, the last to get the button. */
+  private void seat(Table table, int player) {
+    unlink(table);
+    table.seats[table.size++] = player;
+    link(table);
+    playersMoved++;
+  }
+
+  private void removeTable(Table table) {
+    // Swaps the last table into its place, so removing is O(1)
+    Table last = tables.remove(tables.size() - 1);
+    if (last != table) {
+      tables.set(table.index, last);
+      last.index = table.index;
+    }
+  }
+
+  private Table getShortestTable() {
+    for (int size = 0; size <= maxSeats; size++) {
+      if (tablesBySize[size] != null) {
+        return tablesBySize[size];
+      }
+    }
+    throw new IllegalStateException("No tables");
+  }
+
+  private Table getFullestTable() {
+    for (int size = maxSeats; size >= 0; size--) {
+      if (tablesBySize[size] != null) {
+        return tablesBySize[size];
+      }
+    }
+    throw new IllegalStateException("No tables");
+  }
+
+  private void link(Table table) {
+    Table head = tablesBySize[table.size];
+    table.previous = null;
+    table.next = head;
+    if (head != null) {
+      head.previous = table;
+    }
+    tablesBySize[table.size] = table;
+  }
+
+  private void unlink(Table table) {
+    if (table.previous != null) {
+      table.previous.next = table.next;
+    } else {
+      tablesBySize[table.size] = table.next;
+    }
+    if (table.next != null) {
+      table.next.previous = table.previous;
+    }
+    table.previous = null;
+    table.next = null;
+  }
+
+  public boolean isFinished() {
+    return playersLeft == 1;
+  }
+
+  /** The blind level of the next round, from 0. */
+  public int getLevel() {
+    return blindSchedule.getLevel(rounds);
+  }
+
+  public int getRounds() {
+    return rounds;
+  }
+
+  public int getPlayersLeft() {
+    return playersLeft;
+  }
+
+  public int getTableCount() {
+    return tables.size();
+  }
+
+  /** The number of players at each table, in no particular order. */
+  public List<Integer> getTableSizes() {
+    ImmutableList.Builder<Integer> sizes = ImmutableList.builder();
+    for (Table table : tables) {
+      sizes.add(table.size);
+    }
+    return sizes.build();
+  }
+
+  public int getStack(int player) {
+    return stacks[player];
+  }
+
+  /** The finishing place of player, 1 for the winner, or 0 while it is still playing. */
+  public int getPlace(int player) {
+    return places[player];
+  }
+
+  /** The players moved to another table, either to balance the tables or to break one. */
+  public long getPlayersMoved() {
+    return playersMoved;
+  }
+
+  public long getTablesBroken() {
+    return tablesBroken;
+  }
+
+  /** The time spent removing busted players and balancing, over all the rounds. */
+  public long getBalancingNanos() {
+    return balancingNanos;
+  }
+
+  public long getMaxBalancingNanos() {
+    return maxBalancingNanos;
+  }
+
+  /**
+   * A table and its players, in the order of the seats: seat 0 has the button. Only the
+   * thread playing its hand touches it during a round, and only the tournament's between
+   * rounds.
+   */
+  private final class Table {
+    private final int tableId;
+    private final Random dealSeeds;
+    private final int[] seats = new int[maxSeats];
+    private int size;
+    /** The index of the table in tables. */
+    private int index;
+    /** The players busted by the last hand. */
+    private int busted;
+    /** The neighbours of the table in its bucket of tablesBySize. */
+    private Table previous;
+    private Table next;
+
+    private Table(int tableId, long seed) {
+      this.tableId = tableId;
+      this.index = tableId;
+      this.dealSeeds = new Random(seed);
+    }
+
+    /** Plays a hand, updates the stacks of its players and passes the button on. */
+    private void playHand(PokerLogic pokerLogic) {
+      PokerLogicHelper helper = PokerLogicHelper.getInstance();
+      ImmutableList.Builder<String> idsBuilder = ImmutableList.builder();
+      ImmutableMap.Builder<String, Integer> chipsBuilder = ImmutableMap.builder();
+      int totalChips = 0;
+      for (int i = 0; i < size; i++) {
+        int player = seats[i];
+        idsBuilder.add(playerIds.get(player));
+        chipsBuilder.put(playerIds.get(player), stacks[player]);
+        handStartStacks[player] = stacks[player];
+        totalChips += stacks[player];
+      }
+      List<String> ids = idsBuilder.build();
+      Map<String, Integer> startingChips = chipsBuilder.build();
+      InvariantChecker invariantChecker = new InvariantChecker(
+          verifyMoves ? InvariantChecker.Mode.EXHAUSTIVE : InvariantChecker.Mode.CHEAP);
+      GameState gameState = new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY,
+          new Random(dealSeeds.nextLong()));
+      List<Operation> move = pokerLogic.getInitialMove(ids, startingChips, true);
+      makeMove(pokerLogic, gameState, move, ids.get(AbstractPokerLogicBase.DEALER_INDEX), ids,
+          startingChips);
+      String turnPlayerId = getTurnPlayerId(move);
+      PokerState lastState = null;
+      for (int moves = 1; moves < MAX_MOVES_PER_HAND; moves++) {
+        PokerState state =
+            helper.gameApiStateToPokerState(gameState.getStateForPlayerId(turnPlayerId));
+        List<InvariantChecker.Violation> violations =
+            invariantChecker.check(lastState, state, totalChips);
+        if (!violations.isEmpty()) {
+          throw new IllegalStateException("Hand on table " + tableId + " after move " + moves
+              + ": " + violations);
+        }
+        lastState = state;
+        BettingRound round = state.getCurrentRound();
+        if (round == BettingRound.END_GAME) {
+          endHand(state.getPlayerChips());
+          return;
+        }
+        String moverId = turnPlayerId;
+        if (round == BettingRound.SHOWDOWN) {
+          move = pokerLogic.doEndGameMove(state, ids);
+        } else {
+          Bot bot = bots[seats[state.getWhoseMove().ordinal()]];
+          move = bot.getMove(state).getOperations(pokerLogic, state, ids);
+          turnPlayerId = getTurnPlayerId(move);
+        }
+        makeMove(pokerLogic, gameState, move, moverId, ids, startingChips);
+      }
+      throw new IllegalStateException("Hand on table " + tableId + " didn't end after "
+          + MAX_MOVES_PER_HAND + " moves");
+    }
+
+    /** Applies a move, verifying it first if moves are verified. */
+    private void makeMove(PokerLogic pokerLogic, GameState gameState, List<Operation> move,
+        String moverId, List<String> ids, Map<String, Integer> startingChips) {
+      if (!verifyMoves) {
+        gameState.makeMove(move);
+        return;
+      }
+      GameState lastGameState = gameState.snapshot();
+      gameState.makeMove(move);
+      ImmutableList.Builder<Map<String, Object>> playersInfo = ImmutableList.builder();
+      for (String playerId : ids) {
+        playersInfo.add(ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, playerId));
+      }
+      VerifyMoveDone verifyMoveDone = pokerLogic.verify(new VerifyMove(playersInfo.build(),
+          gameState.getState(), lastGameState.getState(), move, moverId, startingChips));
+      if (verifyMoveDone.getHackerPlayerId() != null) {
+        throw new IllegalStateException("Hand on table " + tableId + ": move of " + moverId
+            + " doesn't verify: " + verifyMoveDone.getMessage() + " move=" + move);
+      }
+    }
+
+    private void endHand(List<Integer> chips) {
+      for (int i = 0; i < size; i++) {
+        stacks[seats[i]] = chips.get(i);
+        if (chips.get(i) == 0) {
+          busted++;
+        }
+      }
+      // The button moves to the next seat; busted players are removed between rounds
+      int dealer = seats[0];
+      System.arraycopy(seats, 1, seats, 0, size - 1);
+      seats[size - 1] = dealer;
+    }
+
+    private String getTurnPlayerId(List<Operation> move) {
+      for (Operation operation : move) {
+        if (operation instanceof SetTurn) {
+          return ((SetTurn) operation).getPlayerId();
+        }
+      }
+      throw new IllegalStateException("Move without SetTurn: " + move);
+    }
+
+    @Override
+    public String toString() {
+      return "table " + tableId + " " + Arrays.toString(Arrays.copyOf(seats, size));
+    }
+  }
+
+  /**
+   * Plays a tournament of random bots and prints how long it took and the cost of balancing.
+   * Usage: TournamentManager [players [maxSeats [threads]]]
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int players = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int maxSeats = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+    int threads = args.length > 2
+        ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    BlindSchedule schedule = BlindSchedule.doubling(TableConfig.DEFAULT, 12, 10);
+    TournamentManager tournament = new TournamentManager(players,
+        50 * AbstractPokerLogicBase.BIG_BLIND, maxSeats, schedule, new BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new RandomBot(random);
+          }
+        }, 42);
+    long start = System.nanoTime();
+    tournament.run(threads);
+    long elapsedNanos = System.nanoTime() - start;
+    System.out.println(players + " players, " + tournament.getRounds() + " rounds in "
+        + elapsedNanos / 1000000 + "ms; " + tournament.getPlayersMoved() + " players moved, "
+        + tournament.getTablesBroken() + " tables broken");
+    System.out.println("balancing: " + tournament.getBalancingNanos() / tournament.getRounds()
+        + "ns/round, max " + tournament.getMaxBalancingNanos() + "ns");
+  }
+}
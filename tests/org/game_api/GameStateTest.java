@@ -0,0 +1,225 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.SetVisibilityForKeyRange;
+import org.game_api.GameApi.SetVisibilityPerPlayer;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.ShuffleKeyRange;
+import org.game_api.GameApi.StateKeyRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+@RunWith(JUnit4.class)
+public class GameStateTest {
+  private final String p0 = "42";
+  private final String p1 = "43";
+  private final GameState gameState = new GameState();
+
+  @Test
+  public void testStateForPlayerId() {
+    gameState.makeMove(ImmutableList.<GameApi.Operation>of(
+        new Set("pot", 100),
+        new Set("C0", "Ah", ImmutableList.of(p0)),
+        new Set("C1", "Kd", ImmutableList.of(p1)),
+        new Set("C2", "2c", ImmutableList.<String>of())));
+    Map<String, Object> expected = Maps.newHashMap();
+    expected.put("pot", 100);
+    expected.put("C0", "Ah");
+    expected.put("C1", null);
+    expected.put("C2", null);
+    assertEquals(expected, gameState.getStateForPlayerId(p0));
+    assertEquals(expected, Maps.newHashMap(gameState.getStateForPlayerId(p0)));
+    assertTrue(gameState.getStateForPlayerId(p0).containsKey("C1"));
+    assertNull(gameState.getStateForPlayerId(p0).get("C1"));
+    assertEquals("Kd", gameState.getStateForPlayerId(p1).get("C1"));
+  }
+
+  @Test
+  public void testUnknownPlayerSeesOnlyPublicKeys() {
+    gameState.makeMove(ImmutableList.<GameApi.Operation>of(
+        new Set("pot", 100),
+        new Set("C0", "Ah", ImmutableList.of(p0))));
+    Map<String, Object> state = gameState.getStateForPlayerId(GameApi.VIEWER_ID);
+    assertEquals(100, state.get("pot"));
+    assertNull(state.get("C0"));
+  }
+
+  @Test
+  public void testSetVisibility() {
+    gameState.makeMove(new Set("C0", "Ah", ImmutableList.of(p0)));
+    gameState.makeMove(new SetVisibility("C0"));
+    assertEquals(ImmutableMap.<String, Object>of("C0", "Ah"),
+        gameState.getStateForPlayerId(p1));
+    assertTrue(gameState.isVisibleToAll("C0"));
+  }
+
+  @Test
+  public void testCopyKeepsVisibility() {
+    gameState.makeMove(new Set("C0", "Ah", ImmutableList.of(p0)));
+    GameState copy = gameState.copy();
+    copy.makeMove(new Set("C1", "Kd", ImmutableList.of(p1)));
+    assertEquals("Ah", copy.getStateForPlayerId(p0).get("C0"));
+    assertNull(copy.getStateForPlayerId(p0).get("C1"));
+    assertEquals("Kd", copy.getStateForPlayerId(p1).get("C1"));
+    assertEquals(1, gameState.getStateForPlayerId(p0).size());
+  }
+
+  @Test
+  public void testSnapshotDoesNotChange() {
+    gameState.makeMove(new Set("pot", 100));
+    GameState snapshot = gameState.snapshot();
+    Map<String, Object> view = snapshot.getStateForPlayerId(p0);
+    gameState.makeMove(ImmutableList.<GameApi.Operation>of(
+        new Set("pot", 200), new Set("C0", "Ah", ImmutableList.of(p0))));
+    assertEquals(ImmutableMap.<String, Object>of("pot", 100), view);
+    assertEquals(1, snapshot.getVersion());
+    assertEquals(ImmutableMap.<String, Object>of("pot", 200, "C0", "Ah"),
+        gameState.getStateForPlayerId(p0));
+  }
+
+  @Test
+  public void testPinnedSnapshotOutlivesDiscardedHistory() {
+    gameState.makeMove(new Set("pot", 100));
+    GameState pinned = gameState.pin();
+    gameState.makeMove(new Set("pot", 200));
+    gameState.makeMove(new Set("pot", 300));
+    gameState.discardHistoryBefore(3);
+    assertEquals(ImmutableMap.<String, Object>of("pot", 100), pinned.getStateForPlayerId(p0));
+    assertEquals(200, gameState.snapshotAt(2).getState().get("pot"));
+    pinned.unpin();
+    gameState.discardHistoryBefore(3);
+    try {
+      gameState.snapshotAt(2);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testSnapshotAt() {
+    gameState.makeMove(new Set("pot", 100));
+    gameState.makeMove(new Delete("pot"));
+    gameState.makeMove(new Set("pot", 300));
+    assertEquals(ImmutableMap.<String, Object>of(), gameState.snapshotAt(0).getState());
+    assertEquals(ImmutableMap.<String, Object>of("pot", 100), gameState.snapshotAt(1).getState());
+    assertEquals(ImmutableMap.<String, Object>of(), gameState.snapshotAt(2).getState());
+    assertEquals(ImmutableMap.<String, Object>of("pot", 300), gameState.snapshotAt(3).getState());
+  }
+
+  @Test
+  public void testDiscardHistoryBefore() {
+    gameState.makeMove(new Set("pot", 100));
+    gameState.makeMove(new Set("pot", 200));
+    gameState.makeMove(new Set("pot", 300));
+    gameState.discardHistoryBefore(2);
+    assertEquals(200, gameState.snapshotAt(2).getState().get("pot"));
+    assertEquals(300, gameState.getState().get("pot"));
+    try {
+      gameState.snapshotAt(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testCopyKeepsTokens() {
+    Map<String, Integer> tokens = ImmutableMap.of(p0, 10);
+    gameState.makeMove(new AttemptChangeTokens(tokens, tokens));
+    GameState snapshot = gameState.snapshot();
+    Map<String, Integer> newTokens = ImmutableMap.of(p0, 20);
+    gameState.makeMove(new AttemptChangeTokens(tokens, newTokens));
+    assertEquals(newTokens, gameState.copy().getPlayerIdToNumberOfTokensInPot());
+    assertEquals(tokens, snapshot.getPlayerIdToNumberOfTokensInPot());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSnapshotIsReadOnly() {
+    gameState.snapshot().makeMove(new Set("pot", 100));
+  }
+
+  @Test
+  public void testRevertTo() {
+    gameState.makeMove(new Set("pot", 100));
+    gameState.makeMove(ImmutableList.<GameApi.Operation>of(
+        new Set("pot", 200), new Set("C0", "Ah", ImmutableList.of(p0))));
+    gameState.revertTo(1);
+    assertEquals(1, gameState.getVersion());
+    assertEquals(ImmutableMap.<String, Object>of("pot", 100), gameState.getState());
+    gameState.makeMove(new Set("pot", 300));
+    assertEquals(ImmutableMap.<String, Object>of("pot", 300), gameState.getState());
+  }
+
+  @Test
+  public void testRegisteredAndUndeclaredKeys() {
+    GameState registeredState = new GameState(
+        new StateKeyRegistry(ImmutableList.of("C0", "C1", "pot")), new Random(1));
+    registeredState.makeMove(ImmutableList.<GameApi.Operation>of(
+        new Set("pot", 100),
+        new Set("other", "x"),
+        new Set("C0", "Ah", ImmutableList.of(p0)),
+        new Shuffle(ImmutableList.of("C0", "C1"))));
+    // The shuffle moved "Ah" to C0 or C1, and the other card key has no value
+    Map<String, Object> state = registeredState.getState();
+    assertEquals(3, state.size());
+    assertEquals(100, state.get("pot"));
+    assertEquals("x", state.get("other"));
+    assertTrue(state.containsValue("Ah"));
+    assertTrue(state.containsKey("C0") != state.containsKey("C1"));
+    registeredState.makeMove(new Delete("other"));
+    assertEquals(ImmutableSet.of("pot", "other"),
+        Sets.difference(Maps.newHashMap(registeredState.snapshotAt(1).getState()).keySet(),
+            ImmutableSet.of("C0", "C1")));
+    assertEquals(2, registeredState.getState().size());
+    assertEquals(registeredState.getState(), registeredState.copy().getState());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegistryRejectsDuplicateKeys() {
+    new StateKeyRegistry(ImmutableList.of("pot", "pot"));
+  }
+
+  @Test
+  public void testKeyRangeOperations() {
+    List<GameApi.Operation> deal = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      deal.add(new Set("C" + i, i));
+    }
+    deal.add(new ShuffleKeyRange("C", 0, 8));
+    deal.add(new SetVisibilityPerPlayer("C", 0, 2, ImmutableList.of(p0, p1)));
+    deal.add(new SetVisibilityForKeyRange("C", 4, 8, ImmutableList.<String>of()));
+    gameState.makeMove(deal);
+    assertEquals(ImmutableSet.of(0, 1, 2, 3, 4, 5, 6, 7),
+        ImmutableSet.copyOf(gameState.getState().values()));
+    Map<String, Object> p0State = gameState.getStateForPlayerId(p0);
+    Map<String, Object> p1State = gameState.getStateForPlayerId(p1);
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i < 2, p0State.get("C" + i) != null);
+      assertEquals(i == 2 || i == 3, p1State.get("C" + i) != null);
+    }
+    gameState.makeMove(new SetVisibilityForKeyRange("C", 4, 7));
+    assertEquals(5, Maps.filterValues(
+        gameState.getStateForPlayerId(p0), Predicates.notNull()).size());
+  }
+}
@@ -0,0 +1,144 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for the verify-once mode of {@link IteratingPlayerContainer}.
+ */
+@RunWith(JUnit4.class)
+public class IteratingPlayerContainerTest {
+
+  /** A game that accepts every move and records the states it was asked to verify. */
+  private static class RecordingGame implements Game {
+    private Container container;
+    private final List<VerifyMove> verifyMoves = Lists.newArrayList();
+
+    @Override
+    public void sendVerifyMove(VerifyMove verifyMove) {
+      verifyMoves.add(verifyMove);
+      container.sendVerifyMoveDone(new VerifyMoveDone());
+    }
+
+    @Override
+    public void sendUpdateUI(UpdateUI updateUI) {
+    }
+  }
+
+  private final RecordingGame game = new RecordingGame();
+
+  private IteratingPlayerContainer createContainer(boolean verifyOnce) {
+    IteratingPlayerContainer container = new IteratingPlayerContainer(game, 3, verifyOnce);
+    game.container = container;
+    container.updateUi(container.getPlayerIds().get(0));
+    return container;
+  }
+
+  @Test
+  public void testPerPlayerVerification() {
+    IteratingPlayerContainer container = createContainer(false);
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+    assertEquals(3, game.verifyMoves.size());
+  }
+
+  @Test
+  public void testVerifyOnceWithPublicKeys() {
+    IteratingPlayerContainer container = createContainer(true);
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 200)));
+    assertEquals(2, game.verifyMoves.size());
+    assertEquals(200, game.verifyMoves.get(1).getState().get("pot"));
+  }
+
+  @Test
+  public void testVerifyOnceSeesHiddenKeys() {
+    IteratingPlayerContainer container = createContainer(true);
+    String playerId = container.getPlayerIds().get(0);
+    container.sendMakeMove(ImmutableList.<Operation>of(
+        new Set("card", "Ah", ImmutableList.of(playerId))));
+    // The full state has the hidden key, so the move is still verified only once.
+    assertEquals(1, game.verifyMoves.size());
+    assertEquals("Ah", game.verifyMoves.get(0).getState().get("card"));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+    assertEquals(2, game.verifyMoves.size());
+  }
+
+  @Test
+  public void testVerifyOnceFallsBackWhenTheGameAnswersLater() {
+    final List<VerifyMove> verifyMoves = Lists.newArrayList();
+    IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+        verifyMoves.add(verifyMove);
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+      }
+    }, 3, true);
+    container.updateUi(container.getPlayerIds().get(0));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+    // No verdict came back, so the move is verified per player too
+    assertEquals(4, verifyMoves.size());
+  }
+
+  @Test
+  public void testMessagesDontChangeWithLaterMoves() {
+    // A game running on another thread reads, and answers, its messages after later moves
+    final List<VerifyMove> verifyMoves = Lists.newArrayList();
+    IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+        verifyMoves.add(verifyMove);
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+      }
+    }, 3, false);
+    container.updateUi(container.getPlayerIds().get(0));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 200)));
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 300)));
+    // The first VerifyMove of the second move, read two moves later
+    assertEquals(200, verifyMoves.get(3).getState().get("pot"));
+    assertEquals(100, verifyMoves.get(3).getLastState().get("pot"));
+    for (int i = 0; i < verifyMoves.size(); i++) {
+      container.sendVerifyMoveDone(new VerifyMoveDone());
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testVerifyOnceFindsHacker() {
+    final IteratingPlayerContainer[] container = new IteratingPlayerContainer[1];
+    container[0] = new IteratingPlayerContainer(new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+        container[0].sendVerifyMoveDone(
+            new VerifyMoveDone(verifyMove.getLastMovePlayerId(), "Hacker"));
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+      }
+    }, 2, true);
+    container[0].updateUi(container[0].getPlayerIds().get(0));
+    container[0].sendMakeMove(ImmutableList.<Operation>of(new Set("pot", 100)));
+  }
+}
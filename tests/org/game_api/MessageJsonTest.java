@@ -0,0 +1,133 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.GameApiJsonHelper;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.MessageJsonParser;
+import org.game_api.GameApi.MessageJsonWriter;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class MessageJsonTest {
+  private final MessageJsonWriter writer = new MessageJsonWriter();
+
+  private void assertRoundTrip(Message message) {
+    assertEquals(message, MessageJsonParser.parseMessage(writer.write(message)));
+  }
+
+  @Test
+  public void testVerifyMoveRoundTrip() {
+    Map<String, Object> state = Maps.newHashMap();
+    state.put("pot", 300);
+    state.put("C0", "Ah");
+    state.put("C1", null);
+    state.put("players", ImmutableList.of("P0", "P1"));
+    state.put("bets", ImmutableList.of(100, 200));
+    state.put("allIn", false);
+    List<Operation> lastMove = ImmutableList.<Operation>of(
+        new SetTurn("43"),
+        new Set("C0", "Ah", ImmutableList.of("42")),
+        new Shuffle(ImmutableList.of("C0", "C1")),
+        new AttemptChangeTokens(ImmutableMap.of("42", -100), ImmutableMap.of("42", 100)));
+    assertRoundTrip(new VerifyMove(
+        ImmutableList.<Map<String, Object>>of(ImmutableMap.<String, Object>of("playerId", "42")),
+        state, ImmutableMap.<String, Object>of(), lastMove, "42",
+        ImmutableMap.of("42", 100)));
+  }
+
+  @Test
+  public void testEscapedStrings() {
+    assertRoundTrip(
+        new VerifyMoveDone("42", "quote\" backslash\\ newline\n tab\t \u0001 \u00e9"));
+    assertEquals("{\"type\":\"VerifyMoveDone\",\"hackerPlayerId\":\"42\",\"message\":\"a\\\"b\"}",
+        writer.write(new VerifyMoveDone("42", "a\"b")));
+  }
+
+  @Test
+  public void testParseMap() {
+    Map<String, Object> expected = Maps.newHashMap();
+    expected.put("a", ImmutableList.of(1, -2, 2.5));
+    expected.put("b", ImmutableMap.of("c", true));
+    expected.put("d", null);
+    expected.put("e", "\u00e9\n");
+    assertEquals(expected, MessageJsonParser.parseMap(
+        " { \"a\" : [1, -2, 2.5], \"b\": {\"c\": true}, \"d\": null, \"e\": \"\\u00e9\\n\" } "));
+  }
+
+  @Test
+  public void testWholeNumbersAreIntegers() {
+    Map<String, Object> map =
+        MessageJsonParser.parseMap("{\"a\": 100, \"b\": 2.0, \"c\": 1e3, \"d\": 3000000000}");
+    assertEquals(Integer.valueOf(100), map.get("a"));
+    assertEquals(Integer.valueOf(2), map.get("b"));
+    assertEquals(Integer.valueOf(1000), map.get("c"));
+    assertEquals(Long.valueOf(3000000000L), map.get("d"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParseMapRejectsArray() {
+    MessageJsonParser.parseMap("[1, 2]");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParseMapRejectsTrailingCharacters() {
+    MessageJsonParser.parseMap("{}}");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParseMapRejectsInvalidUnicodeEscape() {
+    MessageJsonParser.parseMap("{\"a\": \"\\uZZZZ\"}");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParseMapRejectsSignedUnicodeEscape() {
+    MessageJsonParser.parseMap("{\"a\": \"\\u-fff\"}");
+  }
+
+  @Test
+  public void testHelperWritesFromSeveralThreads() throws InterruptedException {
+    final AtomicReference<String> garbled = new AtomicReference<String>();
+    List<Thread> threads = Lists.newArrayList();
+    for (int t = 0; t < 4; t++) {
+      final Message message = new SetTurn(String.valueOf(t));
+      final String expected = writer.write(message);
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            String json = GameApiJsonHelper.getJsonString(message);
+            if (!json.equals(expected)) {
+              garbled.set(json);
+            }
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(garbled.get());
+  }
+}
@@ -0,0 +1,141 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.game_api.GameApi.GameState;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.InvariantChecker.Invariant;
+import org.poker.client.InvariantChecker.Mode;
+import org.poker.client.InvariantChecker.Violation;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(JUnit4.class)
+public class InvariantCheckerTest {
+
+  private static final int TOTAL_CHIPS = 3 * 20000;
+
+  private final PokerLogic pokerLogic = new PokerLogic();
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  private final List<String> playerIds = ImmutableList.of("42", "43", "44");
+  private final Map<String, Integer> startingChips = ImmutableMap.of(
+      "42", 20000, "43", 20000, "44", 20000);
+
+  /** A ticker that advances by 10ns on every read. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      nanos += 10;
+      return nanos;
+    }
+  }
+
+  /** Returns the state after the blinds, with P0 to move, and after P0 calls. */
+  private List<PokerState> playCall() {
+    GameState gameState = new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY,
+        new Random(1));
+    gameState.makeMove(pokerLogic.getInitialMove(playerIds, startingChips, true));
+    PokerState blinds = helper.gameApiStateToPokerState(gameState.getState());
+    gameState.makeMove(pokerLogic.doCallMove(blinds, playerIds, 200));
+    return ImmutableList.of(blinds, helper.gameApiStateToPokerState(gameState.getState()));
+  }
+
+  private static PokerState withChipsAndBets(PokerState state, ImmutableList<Integer> chips,
+      ImmutableList<Integer> bets, Player whoseMove) {
+    return new PokerState(state.getPreviousMove(), state.isPreviousMoveAllIn(),
+        state.getNumberOfPlayers(), whoseMove, state.getCurrentBetter(),
+        state.getCurrentRound(), state.getCards(), state.getBoard(), state.getPlayersInHand(),
+        state.getHoleCards(), bets, chips, state.getPots(), state.isFlopDealt(),
+        state.getRake(), state.getSeats(), state.getBigBlind());
+  }
+
+  private static Invariant getOnlyInvariant(List<Violation> violations) {
+    assertEquals(violations.toString(), 1, violations.size());
+    return violations.get(0).getInvariant();
+  }
+
+  @Test
+  public void testLegalMovesPass() {
+    List<PokerState> states = playCall();
+    InvariantChecker checker = new InvariantChecker(Mode.EXHAUSTIVE);
+    assertEquals(ImmutableList.of(), checker.check(null, states.get(0), TOTAL_CHIPS));
+    assertEquals(ImmutableList.of(), checker.check(states.get(0), states.get(1), TOTAL_CHIPS));
+    for (Invariant invariant : Invariant.values()) {
+      assertEquals(0, checker.getViolations(invariant));
+    }
+    assertEquals(1, checker.getChecks(Invariant.BET_MONOTONICITY));
+    assertEquals(2, checker.getChecks(Invariant.CARD_CONSISTENCY));
+  }
+
+  @Test
+  public void testLostChipsAreReported() {
+    PokerState state = playCall().get(0);
+    PokerState leaky = withChipsAndBets(state, ImmutableList.of(20000, 19900, 19700),
+        state.getPlayerBets(), state.getWhoseMove());
+    InvariantChecker checker = new InvariantChecker(Mode.CHEAP);
+    assertEquals(Invariant.CHIP_CONSERVATION,
+        getOnlyInvariant(checker.check(null, leaky, TOTAL_CHIPS)));
+    assertEquals(1, checker.getViolations(Invariant.CHIP_CONSERVATION));
+  }
+
+  @Test
+  public void testBetTakenBackIsReported() {
+    List<PokerState> states = playCall();
+    PokerState after = states.get(1);
+    // P0 takes back 100 of its call and moves them from the pot to its stack
+    PokerState takenBack = withChipsAndBets(after, ImmutableList.of(19900, 19900, 19800),
+        ImmutableList.of(100, 100, 200), after.getWhoseMove());
+    List<Violation> violations =
+        new InvariantChecker(Mode.CHEAP).check(after, takenBack, TOTAL_CHIPS + 100);
+    assertEquals(violations.toString(), 2, violations.size());
+    for (Violation violation : violations) {
+      assertEquals(Invariant.BET_MONOTONICITY, violation.getInvariant());
+    }
+  }
+
+  @Test
+  public void testTurnOfAllInPlayerIsReported() {
+    PokerState state = playCall().get(1);
+    // P1 goes all-in without its bet being moved to the pots
+    PokerState allIn = withChipsAndBets(state, ImmutableList.of(19800, 0, 19800),
+        ImmutableList.of(200, 20000, 200), Player.P1);
+    InvariantChecker checker = new InvariantChecker(Mode.CHEAP);
+    List<Violation> violations = checker.check(null, allIn, TOTAL_CHIPS - 19900);
+    assertEquals(Invariant.TURN_VALIDITY, getOnlyInvariant(violations));
+    // The exhaustive mode also sees the pots don't hold the bet
+    checker.setMode(Mode.EXHAUSTIVE);
+    violations = checker.check(null, allIn, TOTAL_CHIPS - 19900);
+    assertEquals(violations.toString(), 2, violations.size());
+    assertEquals(Invariant.POT_CONSISTENCY, violations.get(1).getInvariant());
+  }
+
+  @Test
+  public void testTimingAndMerging() {
+    List<PokerState> states = playCall();
+    InvariantChecker checker = new InvariantChecker(Mode.CHEAP, new FakeTicker());
+    checker.check(states.get(0), states.get(1), TOTAL_CHIPS);
+    checker.check(states.get(0), states.get(1), TOTAL_CHIPS);
+    for (Invariant invariant : Invariant.values()) {
+      long expected = invariant.isExhaustive() ? 0 : 2;
+      assertEquals(expected, checker.getChecks(invariant));
+      assertEquals(10 * expected, checker.getNanos(invariant));
+    }
+    InvariantChecker merged = new InvariantChecker(Mode.CHEAP);
+    merged.add(checker);
+    merged.add(checker);
+    assertEquals(4, merged.getChecks(Invariant.TURN_VALIDITY));
+    assertEquals(40, merged.getNanos(Invariant.TURN_VALIDITY));
+    assertTrue(merged.toString().startsWith("CHIP_CONSERVATION: 4 checks, 0 violations"));
+  }
+}
@@ -0,0 +1,131 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Operation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class LegalActionsTest extends AbstractPokerLogicTestBase {
+
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+
+  private LegalActions getLegalActions(Map<String, Object> state) {
+    return LegalActions.of(helper.gameApiStateToPokerState(state));
+  }
+
+  /** Every legal move, with its smallest and largest amounts, must pass verification. */
+  private void assertLegalMovesVerify(Map<String, Object> state, String playerId) {
+    PokerState pokerState = helper.gameApiStateToPokerState(state);
+    LegalActions legalActions = LegalActions.of(pokerState);
+    for (PokerMove move : legalActions.getMoves()) {
+      switch (move) {
+      case FOLD:
+        assertVerifies(state, pokerLogic.doFoldMove(pokerState, playersIds_4_players), playerId);
+        break;
+      case CHECK:
+        assertVerifies(state, pokerLogic.doCheckMove(pokerState, playersIds_4_players),
+            playerId);
+        break;
+      case CALL:
+        assertVerifies(state, pokerLogic.doCallMove(pokerState, playersIds_4_players,
+            legalActions.getCallAmount()), playerId);
+        break;
+      case BET:
+        assertVerifies(state, pokerLogic.doBetMove(pokerState, playersIds_4_players,
+            legalActions.getMinBet()), playerId);
+        assertVerifies(state, pokerLogic.doBetMove(pokerState, playersIds_4_players,
+            legalActions.getMaxAmount()), playerId);
+        break;
+      case RAISE:
+        assertVerifies(state, pokerLogic.doRaiseMove(pokerState, playersIds_4_players,
+            legalActions.getMinRaise()), playerId);
+        assertVerifies(state, pokerLogic.doRaiseMove(pokerState, playersIds_4_players,
+            legalActions.getMaxAmount()), playerId);
+        break;
+      }
+    }
+  }
+
+  private void assertVerifies(Map<String, Object> state, List<Operation> operations,
+      String playerId) {
+    assertNull(pokerLogic.verify(move(playerId, state, operations, getPlayersInfo(4),
+        startingChips_4_player)).getHackerPlayerId());
+  }
+
+  @Test
+  public void testPreFlopFacingBigBlind() {
+    LegalActions legalActions = getLegalActions(preFlopFourPlayerFirstMoveState);
+    assertEquals(ImmutableList.of(PokerMove.FOLD, PokerMove.CALL, PokerMove.RAISE),
+        legalActions.getMoves());
+    assertEquals(200, legalActions.getCallAmount());
+    assertEquals(400, legalActions.getMinRaise());
+    assertEquals(2000, legalActions.getMaxAmount());
+    assertTrue(legalActions.isLegal(PokerMove.RAISE, 400));
+    assertFalse(legalActions.isLegal(PokerMove.RAISE, 399));
+    assertFalse(legalActions.isLegal(PokerMove.CALL, 100));
+    assertEquals(PokerMove.RAISE, legalActions.getAllInMove());
+    assertLegalMovesVerify(preFlopFourPlayerFirstMoveState, p3_id);
+  }
+
+  @Test
+  public void testFlopNoBets() {
+    LegalActions legalActions = getLegalActions(flopFourPlayerNoBetsMadeState);
+    assertEquals(ImmutableList.of(PokerMove.FOLD, PokerMove.CHECK, PokerMove.BET),
+        legalActions.getMoves());
+    assertEquals(0, legalActions.getCallAmount());
+    assertEquals(PokerLogic.BIG_BLIND, legalActions.getMinBet());
+    assertFalse(legalActions.isLegal(PokerMove.BET, PokerLogic.BIG_BLIND - 1));
+    assertEquals(PokerMove.BET, legalActions.getAllInMove());
+    assertLegalMovesVerify(flopFourPlayerNoBetsMadeState, p2_id);
+  }
+
+  @Test
+  public void testRaiseAfterRaise() {
+    LegalActions legalActions = getLegalActions(preFlopFourPlayerDealersTurnState);
+    assertEquals(600, legalActions.getCallAmount());
+    // A re-raise must make the bet at least 1200
+    assertEquals(1200, legalActions.getMinRaise());
+    assertLegalMovesVerify(preFlopFourPlayerDealersTurnState, p0_id);
+  }
+
+  @Test
+  public void testShortStackCanOnlyCallAllIn() {
+    PokerState state = helper.gameApiStateToPokerState(flopFourPlayerDealerTurnState);
+    LegalActions legalActions = LegalActions.of(new PokerState(state.getPreviousMove(),
+        state.isPreviousMoveAllIn(), state.getNumberOfPlayers(), state.getWhoseMove(),
+        state.getCurrentBetter(), state.getCurrentRound(), state.getCards(), state.getBoard(),
+        state.getPlayersInHand(), state.getHoleCards(), state.getPlayerBets(),
+        ImmutableList.of(300, 2000, 3000, 5000), state.getPots(), state.isFlopDealt(),
+        state.getRake(), state.getSeats(), state.getBigBlind()));
+    assertEquals(ImmutableList.of(PokerMove.FOLD, PokerMove.CALL), legalActions.getMoves());
+    assertEquals(500, legalActions.getAmountToCall());
+    assertEquals(300, legalActions.getCallAmount());
+    assertEquals(PokerMove.CALL, legalActions.getAllInMove());
+  }
+
+  @Test
+  public void testNoRaiseWhenEveryoneElseIsAllIn() {
+    PokerState state = helper.gameApiStateToPokerState(flopFourPlayerDealerTurnState);
+    LegalActions legalActions = LegalActions.of(new PokerState(state.getPreviousMove(),
+        state.isPreviousMoveAllIn(), state.getNumberOfPlayers(), state.getWhoseMove(),
+        state.getCurrentBetter(), state.getCurrentRound(), state.getCards(), state.getBoard(),
+        state.getPlayersInHand(), state.getHoleCards(), state.getPlayerBets(),
+        ImmutableList.of(1500, 0, 0, 0), state.getPots(), state.isFlopDealt(),
+        state.getRake(), state.getSeats(), state.getBigBlind()));
+    // No one could call a raise
+    assertEquals(ImmutableList.of(PokerMove.FOLD, PokerMove.CALL), legalActions.getMoves());
+    assertEquals(500, legalActions.getCallAmount());
+    assertEquals(PokerMove.CALL, legalActions.getAllInMove());
+  }
+}
@@ -0,0 +1,72 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.ai.OpponentStat;
+import org.poker.client.ai.OpponentStatsTable;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Tests for {@link OpponentStatsRecorder}: the moves of a session are made on a GameState
+ * and recorded with the state before each of them, as the presenter does.
+ */
+@RunWith(JUnit4.class)
+public class OpponentStatsRecorderTest extends AbstractPokerLogicTestBase {
+
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  private final OpponentStatsTable stats = new OpponentStatsTable();
+  private final OpponentStatsRecorder recorder = new OpponentStatsRecorder(stats);
+  private final GameState gameState = new GameState(new Random(1));
+
+  private void play(List<Operation> move) {
+    recorder.recordMove(playersIds_3_players, gameState.getState(), move);
+    gameState.makeMove(move);
+  }
+
+  private PokerState getPokerState() {
+    return helper.gameApiStateToPokerState(gameState.getState());
+  }
+
+  /** Deals a session and folds its first hand to the big blind, seat 2. */
+  private void playWalk() {
+    play(pokerLogic.getInitialSessionMove(playersIds_3_players,
+        ImmutableMap.of(p0_id, 2000, p1_id, 2000, p2_id, 2000), false));
+    play(pokerLogic.doFoldMove(getPokerState(), playersIds_3_players));
+    play(pokerLogic.doFoldMove(getPokerState(), playersIds_3_players));
+    play(pokerLogic.doEndGameMove(getPokerState(), playersIds_3_players));
+  }
+
+  @Test
+  public void testSeatsAreMappedToThePlayersOfASession() {
+    playWalk();
+    play(pokerLogic.getNextHandMove(getPokerState(), playersIds_3_players, false));
+    // The button moved to player 1, who sits at seat 0 and acts first
+    assertEquals(Player.P0, getPokerState().getWhoseMove());
+    play(pokerLogic.doRaiseMove(getPokerState(), playersIds_3_players,
+        3 * getPokerState().getBigBlind()));
+    assertEquals(1, stats.getCount(p1_id, OpponentStat.PRE_FLOP_RAISED));
+    assertEquals(0, stats.getCount(p0_id, OpponentStat.PRE_FLOP_RAISED));
+  }
+
+  @Test
+  public void testHandsAreCountedAtTheDeal() {
+    playWalk();
+    // The big blind played the hand, though it never moved
+    for (String playerId : playersIds_3_players) {
+      assertEquals(1, stats.getHands(playerId));
+    }
+    play(pokerLogic.getNextHandMove(getPokerState(), playersIds_3_players, false));
+    for (String playerId : playersIds_3_players) {
+      assertEquals(2, stats.getHands(playerId));
+    }
+  }
+}
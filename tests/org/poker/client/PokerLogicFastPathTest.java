@@ -0,0 +1,137 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for the fast path of {@link PokerLogic#verify(VerifyMove)}.<br>
+ * Every move is verified both with and without the fast path, and the verdicts
+ * must be the same.
+ */
+@RunWith(JUnit4.class)
+public class PokerLogicFastPathTest extends AbstractPokerLogicTestBase {
+  
+  private final PokerLogic fastPokerLogic = new PokerLogic(true);
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  
+  private PokerState getPokerState(Map<String, Object> state) {
+    return helper.gameApiStateToPokerState(state);
+  }
+  
+  private void assertBothAccept(Map<String, Object> lastState, List<Operation> lastMove,
+      String playerId, int numberOfPlayers) {
+    VerifyMove verifyMove = move(playerId, lastState, lastMove,
+        getPlayersInfo(numberOfPlayers), startingChips_4_player);
+    assertNull(pokerLogic.verify(verifyMove).getHackerPlayerId());
+    assertNull(fastPokerLogic.verify(verifyMove).getHackerPlayerId());
+  }
+  
+  private void assertBothReject(Map<String, Object> lastState, List<Operation> lastMove,
+      String playerId, int numberOfPlayers) {
+    VerifyMove verifyMove = move(playerId, lastState, lastMove,
+        getPlayersInfo(numberOfPlayers), startingChips_4_player);
+    VerifyMoveDone fullVerifyDone = pokerLogic.verify(verifyMove);
+    VerifyMoveDone fastVerifyDone = fastPokerLogic.verify(verifyMove);
+    assertEquals(playerId, fullVerifyDone.getHackerPlayerId());
+    assertEquals(playerId, fastVerifyDone.getHackerPlayerId());
+  }
+  
+  /**
+   * Replaces the value of first Set operation with the given key.
+   */
+  private List<Operation> replaceSetValue(List<Operation> operations, String key,
+      Object value) {
+    List<Operation> result = Lists.newArrayList();
+    boolean replaced = false;
+    for (Operation operation : operations) {
+      if (!replaced && operation instanceof Set && ((Set) operation).getKey().equals(key)) {
+        result.add(new Set(key, value));
+        replaced = true;
+      }
+      else {
+        result.add(operation);
+      }
+    }
+    return result;
+  }
+  
+  
+  // Tests
+  
+  @Test
+  public void testPreFlopFoldCallAndRaise() {
+    PokerState state = getPokerState(preFlopFourPlayerFirstMoveState);
+    assertBothAccept(preFlopFourPlayerFirstMoveState,
+        pokerLogic.doFoldMove(state, playersIds_4_players), p3_id, 4);
+    assertBothAccept(preFlopFourPlayerFirstMoveState,
+        pokerLogic.doCallMove(state, playersIds_4_players, 200), p3_id, 4);
+    assertBothAccept(preFlopFourPlayerFirstMoveState,
+        pokerLogic.doRaiseMove(state, playersIds_4_players, 600), p3_id, 4);
+  }
+  
+  @Test
+  public void testFlopCheckAndBet() {
+    PokerState state = getPokerState(flopFourPlayerNoBetsMadeState);
+    assertBothAccept(flopFourPlayerNoBetsMadeState,
+        pokerLogic.doCheckMove(state, playersIds_4_players), p2_id, 4);
+    assertBothAccept(flopFourPlayerNoBetsMadeState,
+        pokerLogic.doBetMove(state, playersIds_4_players, 400), p2_id, 4);
+  }
+  
+  @Test
+  public void testRoundEndingMoveFallsBack() {
+    PokerState state = getPokerState(flopFourPlayerDealerTurnState);
+    assertBothAccept(flopFourPlayerDealerTurnState,
+        pokerLogic.doCallMove(state, playersIds_4_players, 500), p0_id, 4);
+  }
+  
+  @Test
+  public void testAllInFallsBack() {
+    PokerState state = getPokerState(preFlopFourPlayerFirstMoveState);
+    assertBothAccept(preFlopFourPlayerFirstMoveState,
+        pokerLogic.doRaiseMove(state, playersIds_4_players, 2000), p3_id, 4);
+  }
+  
+  @Test
+  public void testChipsNotConserved() {
+    PokerState state = getPokerState(preFlopFourPlayerFirstMoveState);
+    List<Operation> call = pokerLogic.doCallMove(state, playersIds_4_players, 200);
+    assertBothReject(preFlopFourPlayerFirstMoveState,
+        replaceSetValue(call, PLAYER_CHIPS, ImmutableList.of(2000, 1900, 1800, 2000)),
+        p3_id, 4);
+  }
+  
+  @Test
+  public void testWrongTurn() {
+    PokerState state = getPokerState(flopFourPlayerNoBetsMadeState);
+    List<Operation> check = pokerLogic.doCheckMove(state, playersIds_4_players);
+    assertBothReject(flopFourPlayerNoBetsMadeState,
+        replaceSetValue(check, WHOSE_MOVE, P[0]), p2_id, 4);
+  }
+  
+  @Test
+  public void testRaiseByInsufficientAmount() {
+    PokerState state = getPokerState(preFlopFourPlayerFirstMoveState);
+    assertBothReject(preFlopFourPlayerFirstMoveState,
+        pokerLogic.doBetMove(getPokerState(flopFourPlayerNoBetsMadeState),
+            playersIds_4_players, 400), p3_id, 4);
+    List<Operation> raise = pokerLogic.doRaiseMove(state, playersIds_4_players, 600);
+    assertBothReject(preFlopFourPlayerFirstMoveState,
+        replaceSetValue(raise, PLAYER_BETS, ImmutableList.of(0, 100, 200, 300)), p3_id, 4);
+  }
+
+}
@@ -1,6 +1,7 @@
 package org.poker.client;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.Iterator;
 import java.util.List;
@@ -10,6 +11,7 @@ import org.game_api.GameApi;
 import org.game_api.GameApi.Operation;
 import org.game_api.GameApi.Set;
 import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.SetVisibilityPerPlayer;
 import org.game_api.GameApi.VerifyMove;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -171,5 +173,28 @@ public class PokerLogicInitialMoveTest extends AbstractPokerLogicTestBase {
         startingChips);
     assertHacker(verifyMove);
   }
+  
+  @Test
+  public void testBulkInitialMove() {
+    Map<String, Integer> startingChips = getStartingChips(2000, 2000, 2000, 2000);
+    List<Operation> initialOperations = pokerLogic.getInitialMove(
+        ImmutableList.<String>of(p0_id, p1_id, p2_id, p3_id), startingChips, true);
+    // 1 SetTurn, 12 Set, 52 Set for cards and 3 range operations
+    assertEquals(1 + 12 + 52 + 3, initialOperations.size());
+    assertNull(pokerLogic.verify(move(p0_id, emptyState, initialOperations,
+        playersInfo_4_players, startingChips)).getHackerPlayerId());
+  }
+  
+  @Test
+  public void testBulkInitialMoveWithWrongVisibility() {
+    Map<String, Integer> startingChips = getStartingChips(2000, 2000, 2000, 2000);
+    List<Operation> initialOperations = pokerLogic.getInitialMove(
+        ImmutableList.<String>of(p0_id, p1_id, p2_id, p3_id), startingChips, true);
+    // Hole cards of P1 given to P0
+    initialOperations.set(initialOperations.size() - 2, new SetVisibilityPerPlayer(
+        C, 0, 2, ImmutableList.of(p0_id, p0_id, p2_id, p3_id)));
+    assertHacker(move(p0_id, emptyState, initialOperations, playersInfo_4_players,
+        startingChips));
+  }
 
 }
@@ -0,0 +1,298 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(JUnit4.class)
+public class PokerLogicTableConfigTest {
+
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+  private final List<String> headsUpIds = ImmutableList.of("42", "43");
+  private final List<String> threePlayerIds = ImmutableList.of("42", "43", "44");
+  private final List<String> fourPlayerIds = ImmutableList.of("42", "43", "44", "45");
+
+  private static Map<String, Integer> chips(List<String> playerIds, int chips) {
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (String playerId : playerIds) {
+      builder.put(playerId, chips);
+    }
+    return builder.build();
+  }
+
+  /** A hand played through a GameState, the way the server does it. */
+  private class Hand {
+    private final PokerLogic pokerLogic;
+    private final List<String> playerIds;
+    private final GameState gameState =
+        new GameState(AbstractPokerLogicBase.STATE_KEY_REGISTRY, new Random(3));
+    private List<Operation> lastMove;
+
+    Hand(TableConfig tableConfig, List<String> playerIds, int startingChips) {
+      this(tableConfig, playerIds, chips(playerIds, startingChips));
+    }
+
+    Hand(TableConfig tableConfig, List<String> playerIds, Map<String, Integer> startingChips) {
+      this.pokerLogic = new PokerLogic(tableConfig);
+      this.playerIds = playerIds;
+      apply(pokerLogic.getInitialMove(playerIds, startingChips));
+    }
+
+    PokerState getState() {
+      return helper.gameApiStateToPokerState(gameState.getState());
+    }
+
+    void apply(List<Operation> move) {
+      lastMove = move;
+      gameState.makeMove(move);
+    }
+
+    void call() {
+      PokerState state = getState();
+      apply(pokerLogic.doCallMove(state, playerIds, LegalActions.of(state).getCallAmount()));
+    }
+
+    void check() {
+      apply(pokerLogic.doCheckMove(getState(), playerIds));
+    }
+
+    void fold() {
+      apply(pokerLogic.doFoldMove(getState(), playerIds));
+    }
+
+    /** Checks or calls until the showdown, then ends the game. */
+    void playToEnd() {
+      while (getState().getCurrentRound() != BettingRound.SHOWDOWN) {
+        if (LegalActions.of(getState()).isLegal(PokerMove.CHECK)) {
+          check();
+        } else {
+          call();
+        }
+      }
+      apply(pokerLogic.doEndGameMove(getState(), playerIds));
+    }
+  }
+
+  private static int sum(List<Integer> values) {
+    int sum = 0;
+    for (int value : values) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  @Test
+  public void testAntesAndStraddleArePosted() {
+    TableConfig config = new TableConfig(100, 200, 25, true, 0, 0);
+    Hand hand = new Hand(config, fourPlayerIds, 10000);
+    PokerState state = hand.getState();
+    assertEquals(ImmutableList.of(0, 100, 200, 400), state.getPlayerBets());
+    assertEquals(ImmutableList.of(9975, 9875, 9775, 9575), state.getPlayerChips());
+    Pot pot = state.getPots().get(0);
+    assertEquals(4 * 25 + 700, pot.getChips());
+    assertEquals(400, pot.getCurrentPotBet());
+    assertEquals(ImmutableList.of(Player.P1, Player.P2, Player.P3), pot.getPlayersInPot());
+    // The dealer acts first, after the straddler; the straddler acts last
+    assertEquals(Player.P0, state.getWhoseMove());
+    assertEquals(Player.P3, state.getCurrentBetter());
+  }
+
+  @Test
+  public void testStraddlerHasTheOption() {
+    Hand hand = new Hand(new TableConfig(100, 200, 0, true, 0, 0), fourPlayerIds, 10000);
+    hand.call();
+    hand.call();
+    hand.call();
+    PokerState state = hand.getState();
+    assertEquals(BettingRound.PRE_FLOP, state.getCurrentRound());
+    assertEquals(Player.P3, state.getWhoseMove());
+    hand.check();
+    assertEquals(BettingRound.FLOP, hand.getState().getCurrentRound());
+    assertEquals(1600, hand.getState().getPots().get(0).getChips());
+  }
+
+  @Test
+  public void testStraddleNeedsFourPlayers() {
+    Hand hand = new Hand(new TableConfig(100, 200, 0, true, 0, 0), headsUpIds, 10000);
+    assertEquals(ImmutableList.of(100, 200), hand.getState().getPlayerBets());
+    assertEquals(Player.P1, hand.getState().getCurrentBetter());
+  }
+
+  @Test
+  public void testShortStackPostsAllItHas() {
+    Hand hand = new Hand(new TableConfig(100, 200, 50, false, 0, 0), headsUpIds, 150);
+    PokerState state = hand.getState();
+    assertEquals(ImmutableList.of(100, 100), state.getPlayerBets());
+    assertEquals(ImmutableList.of(0, 0), state.getPlayerChips());
+    assertTrue(state.isPreviousMoveAllIn());
+    assertEquals(300, state.getPots().get(0).getChips());
+  }
+
+  @Test
+  public void testEveryoneAllInFromPostingGoesToTheShowdown() {
+    Hand hand = new Hand(new TableConfig(100, 200, 50, false, 0, 0), headsUpIds, 150);
+    PokerState state = hand.getState();
+    assertEquals(BettingRound.SHOWDOWN, state.getCurrentRound());
+    // The hole cards and the board are open to everyone
+    for (int i = 0; i < 9; i++) {
+      assertTrue(state.getCards().get(i).isPresent());
+    }
+    hand.apply(hand.pokerLogic.doEndGameMove(state, headsUpIds));
+    assertEquals(BettingRound.END_GAME, hand.getState().getCurrentRound());
+    assertEquals(300, sum(hand.getState().getPlayerChips()));
+  }
+
+  @Test
+  public void testFoldingAboveAShortBigBlindKeepsTheChips() {
+    // P1 posts the ante and is all-in for 8 of its big blind; only P0 can win the rest
+    Hand hand = new Hand(new TableConfig(50, 100, 20, false, 0, 0), headsUpIds,
+        ImmutableMap.of("42", 3356, "43", 28));
+    hand.fold();
+    hand.apply(hand.pokerLogic.doEndGameMove(hand.getState(), headsUpIds));
+    assertEquals(ImmutableList.of(3356 - 70, 28 + 70), hand.getState().getPlayerChips());
+  }
+
+  @Test
+  public void testShortBlindWinsOnlyUpToItsBlind() {
+    // The small blind is all-in for 50; the dealer calls 200 and the big blind checks
+    Hand hand = new Hand(new TableConfig(100, 200), threePlayerIds,
+        ImmutableMap.of("42", 10000, "43", 50, "44", 10000));
+    PokerState state = hand.getState();
+    assertEquals(ImmutableList.of(0, 50, 200), state.getPlayerBets());
+    assertEquals(Player.P0, state.getWhoseMove());
+    hand.call();
+    hand.check();
+    state = hand.getState();
+    assertEquals(BettingRound.FLOP, state.getCurrentRound());
+    assertEquals(ImmutableList.of(
+        new Pot(150, 0, ImmutableList.of(Player.P1, Player.P2, Player.P0),
+            ImmutableList.of(0, 0, 0)),
+        new Pot(300, 0, ImmutableList.of(Player.P2, Player.P0), ImmutableList.of(0, 0, 0))),
+        state.getPots());
+    hand.playToEnd();
+    state = hand.getState();
+    assertEquals(20050, sum(state.getPlayerChips()));
+    assertTrue(state.getPlayerChips().toString(), state.getPlayerChips().get(1) <= 150);
+  }
+
+  @Test
+  public void testPlayerAllInOnTheAnteCanWinTheAntes() {
+    // P3 only has the ante, so the dealer is the first to act
+    Hand hand = new Hand(new TableConfig(100, 200, 25, false, 0, 0), fourPlayerIds,
+        ImmutableMap.of("42", 10000, "43", 10000, "44", 10000, "45", 25));
+    PokerState state = hand.getState();
+    assertEquals(ImmutableList.of(0, 100, 200, 0), state.getPlayerBets());
+    assertEquals(Player.P0, state.getWhoseMove());
+    assertEquals(ImmutableList.of(
+        new Pot(100, 0, ImmutableList.of(Player.P1, Player.P2, Player.P3),
+            ImmutableList.of(0, 0, 0, 0)),
+        new Pot(300, 200, ImmutableList.of(Player.P1, Player.P2),
+            ImmutableList.of(0, 100, 200, 0))),
+        state.getPots());
+    hand.playToEnd();
+    state = hand.getState();
+    assertEquals(30025, sum(state.getPlayerChips()));
+    assertTrue(state.getPlayerChips().toString(), state.getPlayerChips().get(3) <= 100);
+  }
+
+  @Test
+  public void testRakeIsCappedAndTakenFromTheWinnings() {
+    TableConfig config = new TableConfig(100, 200, 0, false, 50, 15);
+    Hand hand = new Hand(config, headsUpIds, 10000);
+    hand.playToEnd();
+    PokerState state = hand.getState();
+    assertEquals(BettingRound.END_GAME, state.getCurrentRound());
+    assertTrue(state.isFlopDealt());
+    // 5% of 400 is 20, capped at 15
+    assertEquals(15, state.getRake());
+    assertEquals(20000 - 15, sum(state.getPlayerChips()));
+  }
+
+  @Test
+  public void testNoFlopNoRake() {
+    Hand hand = new Hand(new TableConfig(100, 200, 0, false, 50, 0), headsUpIds, 10000);
+    hand.fold();
+    hand.apply(hand.pokerLogic.doEndGameMove(hand.getState(), headsUpIds));
+    PokerState state = hand.getState();
+    assertEquals(BettingRound.END_GAME, state.getCurrentRound());
+    assertFalse(state.isFlopDealt());
+    assertEquals(0, state.getRake());
+    assertEquals(ImmutableList.of(9900, 10100), state.getPlayerChips());
+  }
+
+  @Test
+  public void testConfiguredMovesVerify() {
+    TableConfig config = new TableConfig(50, 100, 10, true, 100, 0);
+    PokerLogic verifier = new PokerLogic(config, true);
+    ImmutableList.Builder<Map<String, Object>> playersInfo = ImmutableList.builder();
+    for (String playerId : fourPlayerIds) {
+      playersInfo.add(ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, playerId));
+    }
+    Hand hand = new Hand(config, fourPlayerIds, 10000);
+    InvariantChecker checker = new InvariantChecker(InvariantChecker.Mode.EXHAUSTIVE);
+    PokerState lastState = null;
+    PokerState state = hand.getState();
+    assertEquals(ImmutableList.of(), checker.check(lastState, state, 40000));
+    while (state.getCurrentRound() != BettingRound.END_GAME) {
+      // The live state reads through to the latest version: pin the one before the move
+      Map<String, Object> lastApiState = hand.gameState.snapshot().getState();
+      String moverId = fourPlayerIds.get(state.getWhoseMove().ordinal());
+      if (state.getCurrentRound() == BettingRound.SHOWDOWN) {
+        hand.apply(hand.pokerLogic.doEndGameMove(state, fourPlayerIds));
+      } else if (LegalActions.of(state).isLegal(PokerMove.CHECK)) {
+        hand.check();
+      } else {
+        hand.call();
+      }
+      assertEquals(null, verifier.verify(new VerifyMove(playersInfo.build(),
+          hand.gameState.getState(), lastApiState, hand.lastMove, moverId,
+          chips(fourPlayerIds, 10000))).getHackerPlayerId());
+      lastState = state;
+      state = hand.getState();
+      assertEquals(ImmutableList.of(), checker.check(lastState, state, 40000));
+    }
+    assertEquals(state.getRake(), 40000 - sum(state.getPlayerChips()));
+    assertTrue(state.getRake() > 0);
+  }
+
+  @Test
+  public void testMinimumBetIsTheTablesBigBlind() {
+    Hand hand = new Hand(new TableConfig(200, 400), headsUpIds, 10000);
+    hand.call();
+    hand.check();
+    LegalActions legalActions = LegalActions.of(hand.getState());
+    assertEquals(BettingRound.FLOP, hand.getState().getCurrentRound());
+    assertEquals(400, legalActions.getMinBet());
+    assertFalse(legalActions.isLegal(PokerMove.BET, 200));
+    assertTrue(legalActions.isLegal(PokerMove.BET, 400));
+    // The default stakes don't add the key
+    Hand defaultHand = new Hand(TableConfig.DEFAULT, headsUpIds, 10000);
+    assertFalse(defaultHand.gameState.getState().containsKey("bigBlind"));
+    assertEquals(AbstractPokerLogicBase.BIG_BLIND, defaultHand.getState().getBigBlind());
+  }
+
+  @Test
+  public void testBlindScheduleDoubles() {
+    BlindSchedule schedule = BlindSchedule.doubling(new TableConfig(10, 20, 5, false, 0, 0), 3,
+        10);
+    assertEquals(new TableConfig(10, 20, 5, false, 0, 0), schedule.getConfig(9));
+    assertEquals(new TableConfig(20, 40, 10, false, 0, 0), schedule.getConfig(10));
+    assertEquals(new TableConfig(40, 80, 20, false, 0, 0), schedule.getConfig(25));
+    assertEquals(2, schedule.getLevel(1000));
+  }
+}
@@ -1,5 +1,12 @@
 package org.poker.client;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
 import org.game_api.GameApi.AttemptChangeTokens;
 import org.game_api.GameApi.EndGame;
 import org.game_api.GameApi.Operation;
@@ -16,6 +23,8 @@ import com.google.common.collect.ImmutableMap;
 
 @RunWith(JUnit4.class)
 public class PokerLogicTest extends AbstractPokerLogicTestBase {
+
+  private static final String SEATS = "seats";
   
   /**
    * P0 folds and the hand ends.<Br>
@@ -103,6 +112,135 @@ public class PokerLogicTest extends AbstractPokerLogicTestBase {
           build();
   
 
+  /**
+   * 4 way hand on Flop, P2 folded<Br>
+   * Pot amount before Flop: 2000<Br>
+   * P1 bets 500, P3 calls all-in for 300, P0 raises to 1500<Br>
+   * P1 to act, with 500 bet: 300 in the main pot and 200 in the side pot
+   */
+  private final ImmutableMap<String, Object> flopFourPlayerSidePotState =
+      ImmutableMap.<String, Object>builder().
+      put(PREVIOUS_MOVE, PokerMove.RAISE.name()).
+      put(PREVIOUS_MOVE_ALL_IN, Boolean.FALSE).
+      put(NUMBER_OF_PLAYERS, 4).
+      put(WHOSE_MOVE, P[1]).
+      put(CURRENT_BETTER, P[0]).
+      put(CURRENT_ROUND, BettingRound.FLOP.name()).
+      put(PLAYERS_IN_HAND, ImmutableList.of(P[1], P[3], P[0])).
+      put(HOLE_CARDS, ImmutableList.of(
+          ImmutableList.of(0, 1), ImmutableList.of(2, 3),
+          ImmutableList.of(4, 5), ImmutableList.of(6, 7))).
+      put(BOARD, ImmutableList.of(8, 9, 10, 11, 12)).
+      put(PLAYER_BETS, ImmutableList.of(1500, 500, 0, 300)).
+      put(PLAYER_CHIPS, ImmutableList.of(3500, 2500, 3000, 0)).
+      put(POTS, ImmutableList.of(
+          ImmutableMap.<String, Object>of(
+              CHIPS, 2900,
+              CURRENT_POT_BET, 300,
+              PLAYERS_IN_POT, ImmutableList.of(P[1], P[3], P[0]),
+              PLAYER_BETS, ImmutableList.of(300, 300, 0, 300)),
+          ImmutableMap.<String, Object>of(
+              CHIPS, 1400,
+              CURRENT_POT_BET, 1200,
+              PLAYERS_IN_POT, ImmutableList.of(P[1], P[0]),
+              PLAYER_BETS, ImmutableList.of(1200, 200, 0, 0)))).
+      build();
+
+  /**
+   * The hand of flopFourPlayerSidePotState on the Turn, after P1 called<Br>
+   * P1 to act
+   */
+  private final ImmutableMap<String, Object> turnFourPlayerSidePotState =
+      ImmutableMap.<String, Object>builder().
+      put(PREVIOUS_MOVE, PokerMove.CALL.name()).
+      put(PREVIOUS_MOVE_ALL_IN, Boolean.FALSE).
+      put(NUMBER_OF_PLAYERS, 4).
+      put(WHOSE_MOVE, P[1]).
+      put(CURRENT_BETTER, P[1]).
+      put(CURRENT_ROUND, BettingRound.TURN.name()).
+      put(PLAYERS_IN_HAND, ImmutableList.of(P[1], P[3], P[0])).
+      put(HOLE_CARDS, ImmutableList.of(
+          ImmutableList.of(0, 1), ImmutableList.of(2, 3),
+          ImmutableList.of(4, 5), ImmutableList.of(6, 7))).
+      put(BOARD, ImmutableList.of(8, 9, 10, 11, 12)).
+      put(PLAYER_BETS, ImmutableList.of(0, 0, 0, 0)).
+      put(PLAYER_CHIPS, ImmutableList.of(3500, 1500, 3000, 0)).
+      put(POTS, ImmutableList.of(
+          ImmutableMap.<String, Object>of(
+              CHIPS, 2900,
+              CURRENT_POT_BET, 0,
+              PLAYERS_IN_POT, ImmutableList.of(P[1], P[3], P[0]),
+              PLAYER_BETS, ImmutableList.of(0, 0, 0, 0)),
+          ImmutableMap.<String, Object>of(
+              CHIPS, 2400,
+              CURRENT_POT_BET, 0,
+              PLAYERS_IN_POT, ImmutableList.of(P[1], P[0]),
+              PLAYER_BETS, ImmutableList.of(0, 0, 0, 0)))).
+      build();
+
+  /**
+   * 4 way hand on Flop, P3 folded<Br>
+   * Pot amount before Flop: 2000<Br>
+   * P1 checks, P2 bets 1000, P0 calls<Br>
+   * P1 to act
+   */
+  private ImmutableMap<String, Object> getFlopCalledBetState(int p0Chips, int p1Chips,
+      int p2Chips) {
+    return ImmutableMap.<String, Object>builder().
+        put(PREVIOUS_MOVE, PokerMove.CALL.name()).
+        put(PREVIOUS_MOVE_ALL_IN, Boolean.FALSE).
+        put(NUMBER_OF_PLAYERS, 4).
+        put(WHOSE_MOVE, P[1]).
+        put(CURRENT_BETTER, P[2]).
+        put(CURRENT_ROUND, BettingRound.FLOP.name()).
+        put(PLAYERS_IN_HAND, ImmutableList.of(P[1], P[2], P[0])).
+        put(HOLE_CARDS, ImmutableList.of(
+            ImmutableList.of(0, 1), ImmutableList.of(2, 3),
+            ImmutableList.of(4, 5), ImmutableList.of(6, 7))).
+        put(BOARD, ImmutableList.of(8, 9, 10, 11, 12)).
+        put(PLAYER_BETS, ImmutableList.of(1000, 0, 1000, 0)).
+        put(PLAYER_CHIPS, ImmutableList.of(p0Chips, p1Chips, p2Chips, 3000)).
+        put(POTS, ImmutableList.of(ImmutableMap.<String, Object>of(
+            CHIPS, 4000,
+            CURRENT_POT_BET, 1000,
+            PLAYERS_IN_POT, ImmutableList.of(P[1], P[2], P[0]),
+            PLAYER_BETS, ImmutableList.of(1000, 0, 1000, 0)))).
+        build();
+  }
+
+  private PokerState getPokerState(ImmutableMap<String, Object> state) {
+    return PokerLogicHelper.getInstance().gameApiStateToPokerState(state);
+  }
+
+  /**
+   * Returns state as a hand of a session, where seat i is played by player seats[i], with
+   * the given round and stacks.
+   */
+  private ImmutableMap<String, Object> getSessionState(ImmutableMap<String, Object> state,
+      ImmutableList<Integer> seats, BettingRound currentRound, ImmutableList<Integer> chips) {
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    for (Map.Entry<String, Object> entry : state.entrySet()) {
+      if (!entry.getKey().equals(CURRENT_ROUND) && !entry.getKey().equals(PLAYER_CHIPS)) {
+        builder.put(entry);
+      }
+    }
+    return builder.
+        put(SEATS, seats).
+        put(CURRENT_ROUND, currentRound.name()).
+        put(PLAYER_CHIPS, chips).
+        build();
+  }
+
+  /** Returns the value of the first Set of key in operations, or null. */
+  private Object getSetValue(List<Operation> operations, String key) {
+    for (Operation operation : operations) {
+      if (operation instanceof Set && ((Set) operation).getKey().equals(key)) {
+        return ((Set) operation).getValue();
+      }
+    }
+    return null;
+  }
+
   // Tests
   
   @Test
@@ -140,6 +278,133 @@ public class PokerLogicTest extends AbstractPokerLogicTestBase {
     assertMoveOk(verifyMove);
   }
   
+  @Test
+  public void testCallWithSidePotsTopsUpEachPotByItsOwnBet() {
+    // P1's call takes 0 more in the main pot and 1000 more in the side pot
+    List<Operation> operations = pokerLogic.doCallMove(
+        getPokerState(flopFourPlayerSidePotState), playersIds_4_players, 1000);
+    assertEquals(ImmutableList.of(
+        ImmutableMap.<String, Object>of(
+            CHIPS, 2900,
+            CURRENT_POT_BET, 0,
+            PLAYERS_IN_POT, ImmutableList.of(P[1], P[3], P[0]),
+            PLAYER_BETS, ImmutableList.of(0, 0, 0, 0)),
+        ImmutableMap.<String, Object>of(
+            CHIPS, 2400,
+            CURRENT_POT_BET, 0,
+            PLAYERS_IN_POT, ImmutableList.of(P[1], P[0]),
+            PLAYER_BETS, ImmutableList.of(0, 0, 0, 0))),
+        getSetValue(operations, POTS));
+    assertEquals(BettingRound.TURN.name(), getSetValue(operations, CURRENT_ROUND));
+  }
+
+  @Test
+  public void testBetWithSidePotsKeepsThePlayersOfTheLowerPots() {
+    List<Operation> operations = pokerLogic.doBetMove(
+        getPokerState(turnFourPlayerSidePotState), playersIds_4_players, 500);
+    assertEquals(ImmutableList.of(
+        ImmutableMap.<String, Object>of(
+            CHIPS, 2900,
+            CURRENT_POT_BET, 0,
+            PLAYERS_IN_POT, ImmutableList.of(P[1], P[3], P[0]),
+            PLAYER_BETS, ImmutableList.of(0, 0, 0, 0)),
+        ImmutableMap.<String, Object>of(
+            CHIPS, 2900,
+            CURRENT_POT_BET, 500,
+            PLAYERS_IN_POT, ImmutableList.of(P[1], P[0]),
+            PLAYER_BETS, ImmutableList.of(0, 500, 0, 0))),
+        getSetValue(operations, POTS));
+  }
+
+  @Test
+  public void testNewRoundSkipsAPlayerWhoseCallPutItAllIn() {
+    // P1 calls all-in, so P2 acts first on the Turn
+    List<Operation> operations = pokerLogic.doCallMove(
+        getPokerState(getFlopCalledBetState(2000, 1000, 2000)), playersIds_4_players, 1000);
+    assertEquals(BettingRound.TURN.name(), getSetValue(operations, CURRENT_ROUND));
+    assertEquals(P[2], getSetValue(operations, WHOSE_MOVE));
+    assertEquals(Boolean.TRUE, getSetValue(operations, PREVIOUS_MOVE_ALL_IN));
+  }
+
+  @Test
+  public void testCallByTheLastPlayerWithChipsEndsTheBetting() {
+    // P2 bet all-in and P0 called all-in, so no one can bet after P1 calls
+    List<Operation> operations = pokerLogic.doCallMove(
+        getPokerState(getFlopCalledBetState(0, 3000, 0)), playersIds_4_players, 1000);
+    assertEquals(BettingRound.SHOWDOWN.name(), getSetValue(operations, CURRENT_ROUND));
+    assertEquals(P[1], getSetValue(operations, WHOSE_MOVE));
+  }
+
+  @Test
+  public void testEndOfASessionHandPassesTheTurnToTheNextButton() {
+    // P2 wins the pot of 4200, and everyone still has chips
+    ImmutableMap<String, Object> state = getSessionState(
+        getStateWithCards(showdownThreePlayerDealersTurnState,
+            showdownThreePlayerDealersTurncardList),
+        ImmutableList.of(0, 1, 2), BettingRound.SHOWDOWN, ImmutableList.of(1600, 1600, 1600));
+    List<Operation> operations =
+        pokerLogic.doEndGameMove(getPokerState(state), playersIds_3_players);
+    assertEquals(new SetTurn(p1_id), operations.get(0));
+    assertEquals(BettingRound.END_GAME.name(), getSetValue(operations, CURRENT_ROUND));
+    assertEquals(ImmutableList.of(1600, 1600, 1600 + 4200),
+        getSetValue(operations, PLAYER_CHIPS));
+    for (Operation operation : operations) {
+      assertFalse(operation instanceof EndGame || operation instanceof AttemptChangeTokens);
+    }
+    assertNull(pokerLogic.verify(move(p0_id, state, operations, playersInfo_3_players,
+        startingChips_3_player)).getHackerPlayerId());
+  }
+
+  @Test
+  public void testNextHandOfASessionMovesTheButton() {
+    ImmutableMap<String, Object> state = getSessionState(showdownThreePlayerDealersTurnState,
+        ImmutableList.of(0, 1, 2), BettingRound.END_GAME, ImmutableList.of(1600, 1600, 5800));
+    List<Operation> operations =
+        pokerLogic.getNextHandMove(getPokerState(state), playersIds_3_players, false);
+    // The seats start from the new button, P1
+    assertEquals(ImmutableList.of(1, 2, 0), getSetValue(operations, SEATS));
+    assertEquals(3, getSetValue(operations, NUMBER_OF_PLAYERS));
+    assertNull(pokerLogic.verify(move(p1_id, state, operations, playersInfo_3_players,
+        startingChips_3_player)).getHackerPlayerId());
+    // Dealing with the button where it was is refused
+    List<Operation> sameButton = pokerLogic.getInitialSessionMove(playersIds_3_players,
+        ImmutableMap.of(p0_id, 1600, p1_id, 1600, p2_id, 5800), false);
+    assertHacker(move(p1_id, state, sameButton, playersInfo_3_players, startingChips_3_player));
+  }
+
+  @Test
+  public void testBustedPlayerSitsOutTheNextHandOfASession() {
+    // P1 has no chips left, so the button skips it and it isn't dealt in
+    ImmutableMap<String, Object> state = getSessionState(showdownThreePlayerDealersTurnState,
+        ImmutableList.of(0, 1, 2), BettingRound.END_GAME, ImmutableList.of(1600, 0, 7400));
+    List<Operation> operations =
+        pokerLogic.getNextHandMove(getPokerState(state), playersIds_3_players, false);
+    assertEquals(ImmutableList.of(2, 0), getSetValue(operations, SEATS));
+    assertEquals(2, getSetValue(operations, NUMBER_OF_PLAYERS));
+    assertNull(pokerLogic.verify(move(p2_id, state, operations, playersInfo_3_players,
+        startingChips_3_player)).getHackerPlayerId());
+  }
+
+  @Test
+  public void testSessionEndsWhenOnePlayerHasAllTheChips() {
+    // Everyone is all-in for 1400 and seat 2, player 1, wins with four kings
+    ImmutableMap<String, Object> state = getSessionState(
+        getStateWithCards(showdownThreePlayerDealersTurnState,
+            showdownThreePlayerDealersTurncardList),
+        ImmutableList.of(2, 0, 1), BettingRound.SHOWDOWN, ImmutableList.of(0, 0, 0));
+    List<Operation> operations =
+        pokerLogic.doEndGameMove(getPokerState(state), playersIds_3_players);
+    assertEquals(new AttemptChangeTokens(
+        ImmutableMap.<String, Integer>of(p0_id, 0, p1_id, 4200, p2_id, 0),
+        ImmutableMap.<String, Integer>of(p0_id, 0, p1_id, 0, p2_id, 0)),
+        operations.get(0));
+    assertEquals(ImmutableList.of(0, 0, 4200), getSetValue(operations, PLAYER_CHIPS));
+    assertEquals(new EndGame(ImmutableMap.<String, Integer>of(p0_id, 0, p1_id, 1, p2_id, 0)),
+        operations.get(operations.size() - 1));
+    assertNull(pokerLogic.verify(move(p0_id, state, operations, playersInfo_3_players,
+        startingChips_3_player)).getHackerPlayerId());
+  }
+
   @Test
   public void testFlopToTurnTransitionWithWrongCardOpen() {
     // Player opens more board cards than necessary
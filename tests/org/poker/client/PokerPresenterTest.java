@@ -1,5 +1,7 @@
 package org.poker.client;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -20,11 +22,18 @@ import org.mockito.Mockito;
 import org.poker.client.Card.Rank;
 import org.poker.client.Card.Suit;
 import org.poker.client.PokerPresenter.View;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecision;
+import org.poker.client.ai.BotMove;
+import org.poker.client.ai.ScriptedBot;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 
 /** Tests for {@link PokerPresenter}.<br>
  * Test plan:<br>
@@ -39,7 +48,8 @@ import com.google.common.collect.Lists;
  *      - Raise<br>
  *      - All-in<br>
  * 4) Viewer's turn<br>
- * 5) End-Game scenario
+ * 5) End-Game scenario<br>
+ * 6) AI player's buy-in, end-game and bot moves
  *<P>
  * One or more of the following methods will be called in each case:<br>
  * 1) doBuyIn<br>
@@ -57,6 +67,12 @@ public class PokerPresenterTest extends AbstractPokerLogicTestBase {
   private Container mockContainer;
   
   private final String viewerId = GameApi.VIEWER_ID;
+  private final String aiId = GameApi.AI_PLAYER_ID;
+  // The AI player sits in P0's seat
+  private final ImmutableList<String> aiPlayerIds_3_players =
+      ImmutableList.<String>of(aiId, p1_id, p2_id);
+  private final ImmutableList<String> aiPlayerIds_4_players =
+      ImmutableList.<String>of(aiId, p1_id, p2_id, p3_id);
     
   @Before
   public void runBefore() {
@@ -259,8 +275,158 @@ public class PokerPresenterTest extends AbstractPokerLogicTestBase {
   
   
   
+  @Test
+  public void testBuyInForAiPlayer() {
+    Map<String, Integer> startingChips = getAiStartingChips(aiPlayerIds_3_players, 0, 0, 0);
+    pokerPresenter.updateUI(createAiUpdateUI(aiPlayerIds_3_players, aiId, "0", emptyState,
+        startingChips));
+    // The AI buys in on its own, without the view
+    verify(mockContainer).sendMakeMove(pokerLogic.getInitialBuyInMove(aiId,
+        PokerPresenter.AI_BUY_IN, startingChips));
+  }
+
+  @Test
+  public void testEndGameForAiPlayer() {
+    ImmutableMap<String, Object> apiState = getStateWithCards(
+        showdownThreePlayerDealersTurnState, showdownThreePlayerDealersTurncardList);
+    PokerState state = pokerLogicHelper.gameApiStateToPokerState(apiState);
+    pokerPresenter.updateUI(createAiUpdateUI(aiPlayerIds_3_players, aiId, aiId, apiState,
+        getAiStartingChips(aiPlayerIds_3_players, 5000, 5000, 5000)));
+    verify(mockContainer).sendMakeMove(pokerLogic.doEndGameMove(state, aiPlayerIds_3_players));
+  }
+
+  @Test
+  public void testAiPlayerMakesTheBotMove() {
+    pokerPresenter = new PokerPresenter(mockView, mockContainer,
+        new ScriptedBot(ImmutableList.of(PokerMove.RAISE)));
+    verify(mockView).setPresenter(pokerPresenter);
+    PokerState state = pokerLogicHelper.gameApiStateToPokerState(
+        flopFourPlayerDealerTurnState);
+    pokerPresenter.updateUI(createAiUpdateUI(aiPlayerIds_4_players, aiId, aiId,
+        flopFourPlayerDealerTurnState,
+        getAiStartingChips(aiPlayerIds_4_players, 5000, 5000, 5000, 5000)));
+    // The bot makes the smallest raise: to 1000, double P1's bet of 500
+    verify(mockContainer).sendMakeMove(
+        pokerLogic.doRaiseMove(state, aiPlayerIds_4_players, 1000));
+  }
+
+  @Test
+  public void testAiPlayerWaitsForItsTurn() {
+    pokerPresenter = new PokerPresenter(mockView, mockContainer,
+        new ScriptedBot(ImmutableList.of(PokerMove.RAISE)));
+    verify(mockView).setPresenter(pokerPresenter);
+    // The AI sits in P1's seat, and it is P0's turn
+    ImmutableList<String> playerIds = ImmutableList.of(p0_id, aiId, p2_id, p3_id);
+    pokerPresenter.updateUI(createAiUpdateUI(playerIds, aiId, p0_id,
+        flopFourPlayerDealerTurnState, getAiStartingChips(playerIds, 5000, 5000, 5000, 5000)));
+  }
+
+  @Test
+  public void testAnytimeAiPlayerMovesFromTheLastSlice() {
+    IncrementalScheduler scheduler = new IncrementalScheduler();
+    pokerPresenter = new PokerPresenter(mockView, mockContainer, new RefiningBot(3), scheduler);
+    verify(mockView).setPresenter(pokerPresenter);
+    PokerState state = pokerLogicHelper.gameApiStateToPokerState(
+        flopFourPlayerDealerTurnState);
+    pokerPresenter.updateUI(createAiUpdateUI(aiPlayerIds_4_players, aiId, aiId,
+        flopFourPlayerDealerTurnState,
+        getAiStartingChips(aiPlayerIds_4_players, 5000, 5000, 5000, 5000)));
+    // Nothing is decided on the UI thread before the first slice
+    verify(mockContainer, Mockito.never()).sendMakeMove(Mockito.<List<Operation>>any());
+    RepeatingCommand command = scheduler.commands.remove(0);
+    assertTrue(scheduler.commands.isEmpty());
+    assertTrue(command.execute());
+    assertTrue(command.execute());
+    verify(mockContainer, Mockito.never()).sendMakeMove(Mockito.<List<Operation>>any());
+    // The third refinement is final, so that slice makes the best move so far
+    assertFalse(command.execute());
+    verify(mockContainer).sendMakeMove(
+        pokerLogic.doRaiseMove(state, aiPlayerIds_4_players, 1500));
+  }
+  
+  
+  
   // Utility methods
   
+  /** Keeps the incremental commands for the test to run slice by slice. */
+  private static class IncrementalScheduler extends Scheduler {
+    private final List<RepeatingCommand> commands = Lists.newArrayList();
+
+    @Override
+    public void scheduleIncremental(RepeatingCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void scheduleDeferred(ScheduledCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleEntry(RepeatingCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleEntry(ScheduledCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFinally(RepeatingCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFinally(ScheduledCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFixedDelay(RepeatingCommand cmd, int delayMs) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFixedPeriod(RepeatingCommand cmd, int delayMs) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Raises by 500 more on each refinement, and is final after the given number of them.
+   */
+  private static class RefiningBot implements AnytimeBot {
+    private final int maxRefinements;
+
+    RefiningBot(int maxRefinements) {
+      this.maxRefinements = maxRefinements;
+    }
+
+    @Override
+    public BotMove getMove(PokerState state) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AnytimeDecision startDecision(PokerState state) {
+      return new AnytimeDecision() {
+        private int refinements;
+
+        @Override
+        public boolean refine() {
+          refinements++;
+          return refinements < maxRefinements;
+        }
+
+        @Override
+        public BotMove getBestMove() {
+          return BotMove.raise(refinements * 500);
+        }
+      };
+    }
+  }
+  
   private List<List<Optional<Card>>> getHoleCards(int numOfPlayers) {
     ImmutableList.Builder<List<Optional<Card>>> builder = ImmutableList.builder();
     for(int i = 0; i < numOfPlayers; i++) {
@@ -315,5 +481,29 @@ public class PokerPresenterTest extends AbstractPokerLogicTestBase {
         "0", //presenter doesn't care about last player ID
         playerIdToTokensInPot);
   }
+
+  private UpdateUI createAiUpdateUI(List<String> playerIds, String yourPlayerId,
+      String turnOfPlayerId, Map<String, Object> state,
+      Map<String, Integer> playerIdToTokensInPot) {
+    ImmutableList.Builder<Map<String, Object>> playersInfo = ImmutableList.builder();
+    for (String playerId : playerIds) {
+      playersInfo.add(ImmutableMap.<String, Object>of(PLAYER_ID, playerId));
+    }
+    return new UpdateUI(yourPlayerId,
+        playersInfo.build(),
+        state,
+        emptyState,
+        ImmutableList.<Operation>of(new SetTurn(turnOfPlayerId)),
+        "0",
+        playerIdToTokensInPot);
+  }
+
+  private Map<String, Integer> getAiStartingChips(List<String> playerIds, int... chips) {
+    Map<String, Integer> startingChips = Maps.newHashMap();
+    for (int i = 0; i < chips.length; i++) {
+      startingChips.put(playerIds.get(i), chips[i]);
+    }
+    return startingChips;
+  }
   
 }
@@ -0,0 +1,424 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class PotManagerTest {
+
+  private static final String CHIPS = "chips";
+  private static final String CURRENT_POT_BET = "currentPotBet";
+  private static final String PLAYERS_IN_POT = "playersInPot";
+  private static final String PLAYER_BETS = "playerBets";
+
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+
+  @Test
+  public void testShortAllInCallSplitsThePot() {
+    // P0 bet 1000, P1 called, P2 calls all-in for 400
+    Pot pot = new Pot(2500, 1000, ImmutableList.of(Player.P0, Player.P1, Player.P2),
+        ImmutableList.of(1000, 1000, 0));
+    PotManager potManager = new PotManager(ImmutableList.of(pot), 3);
+    potManager.callAllIn(2, 400);
+    assertEquals(ImmutableList.of(
+        ImmutableMap.<String, Object>of(CHIPS, 500 + 1200, CURRENT_POT_BET, 400,
+            PLAYERS_IN_POT, ImmutableList.of("P0", "P1", "P2"),
+            PLAYER_BETS, ImmutableList.of(400, 400, 400)),
+        ImmutableMap.<String, Object>of(CHIPS, 1200, CURRENT_POT_BET, 600,
+            PLAYERS_IN_POT, ImmutableList.of("P0", "P1"),
+            PLAYER_BETS, ImmutableList.of(600, 600, 0))),
+        potManager.getApiPots());
+  }
+
+  @Test
+  public void testAllInCallerJoinsThePotsItCovers() {
+    // P0 and P1 bet 1000 in a side pot above P2; P3 calls all-in for 700
+    Pot mainPot = new Pot(900, 300, ImmutableList.of(Player.P0, Player.P1, Player.P2),
+        ImmutableList.of(300, 300, 300, 0));
+    Pot sidePot = new Pot(1400, 700, ImmutableList.of(Player.P0, Player.P1),
+        ImmutableList.of(700, 700, 0, 0));
+    PotManager potManager = new PotManager(ImmutableList.of(mainPot, sidePot), 4);
+    potManager.callAllIn(3, 700);
+    List<Map<String, Object>> pots = potManager.getApiPots();
+    assertEquals(ImmutableList.of("P0", "P1", "P2", "P3"), pots.get(0).get(PLAYERS_IN_POT));
+    assertEquals(ImmutableList.of("P0", "P1", "P3"), pots.get(1).get(PLAYERS_IN_POT));
+    assertEquals(ImmutableList.of("P0", "P1"), pots.get(2).get(PLAYERS_IN_POT));
+    assertEquals(1200 + 1200 + 600, (Integer) pots.get(0).get(CHIPS)
+        + (Integer) pots.get(1).get(CHIPS) + (Integer) pots.get(2).get(CHIPS));
+  }
+
+  @Test
+  public void testFoldOfThePotsLastPlayerMovesItsChipsDown() {
+    Pot mainPot = new Pot(56, 8, ImmutableList.of(Player.P0, Player.P1),
+        ImmutableList.of(8, 8));
+    Pot sidePot = new Pot(42, 92, ImmutableList.of(Player.P0), ImmutableList.of(42, 0));
+    PotManager potManager = new PotManager(ImmutableList.of(mainPot, sidePot), 2);
+    assertTrue(potManager.fold(0));
+    List<Map<String, Object>> pots = potManager.getApiPots();
+    assertEquals(98, pots.get(0).get(CHIPS));
+    assertEquals(0, pots.get(1).get(CHIPS));
+  }
+
+  @Test
+  public void testMatchesLegacySplitOnRandomPots() {
+    Random random = new Random(45);
+    for (int i = 0; i < 200000; i++) {
+      int numberOfPlayers = 2 + random.nextInt(8);
+      PokerState state = createRandomState(random, numberOfPlayers);
+      int requiredBet = 0;
+      for (Pot pot : state.getPots()) {
+        requiredBet += pot.getCurrentPotBet();
+      }
+      int amount = pickAmount(random, state, requiredBet);
+      boolean newRound = random.nextBoolean();
+      PotManager potManager = new PotManager(state.getPots(), numberOfPlayers);
+      potManager.callAllIn(state.getWhoseMove().ordinal(), amount);
+      if (newRound) {
+        potManager.resetRoundBets();
+      }
+      assertEquals("case " + i, legacySplitPotsForPartialCall(state, amount, newRound),
+          potManager.getApiPots());
+    }
+  }
+
+  @Test
+  public void testAllInRaiseAddsALevelWithoutTheRaiser() {
+    // P0 bet 1000, P1 raises all-in to 3000
+    Pot pot = new Pot(1500, 1000, ImmutableList.of(Player.P0),
+        ImmutableList.of(1000, 0, 0));
+    PotManager potManager = new PotManager(ImmutableList.of(pot), 3);
+    potManager.raise(1, 2000, true);
+    assertEquals(ImmutableList.of(
+        ImmutableMap.<String, Object>of(CHIPS, 4500, CURRENT_POT_BET, 3000,
+            PLAYERS_IN_POT, ImmutableList.of("P0", "P1"),
+            PLAYER_BETS, ImmutableList.of(1000, 3000, 0)),
+        ImmutableMap.<String, Object>of(CHIPS, 0, CURRENT_POT_BET, 0,
+            PLAYERS_IN_POT, ImmutableList.of("P0"),
+            PLAYER_BETS, ImmutableList.of(0, 0, 0))),
+        potManager.getApiPots());
+  }
+
+  @Test
+  public void testMovesMatchLegacyPotsOnRandomPots() {
+    Random random = new Random(46);
+    for (int i = 0; i < 100000; i++) {
+      int numberOfPlayers = 2 + random.nextInt(8);
+      PokerState state = createRandomState(random, numberOfPlayers);
+      int seat = state.getWhoseMove().ordinal();
+      boolean newRound = random.nextBoolean();
+      boolean allIn = random.nextBoolean();
+      int amount = 100 * random.nextInt(20);
+      PotManager potManager = new PotManager(state.getPots(), numberOfPlayers);
+      List<Map<String, Object>> expected;
+      switch (i % 4) {
+        case 0:
+          potManager.call(seat);
+          if (newRound) {
+            potManager.resetRoundBets();
+          }
+          expected = legacyCall(state, newRound);
+          break;
+        case 1:
+          potManager.bet(seat, amount, allIn);
+          expected = legacyRaise(state, amount, allIn, false);
+          break;
+        case 2:
+          potManager.raise(seat, amount, allIn);
+          expected = legacyRaise(state, amount, allIn, true);
+          break;
+        default:
+          potManager.fold(seat);
+          if (newRound) {
+            potManager.resetRoundBets();
+          }
+          expected = legacyFold(state, newRound);
+          break;
+      }
+      assertEquals("case " + i, expected, potManager.getApiPots());
+    }
+  }
+
+  private PokerState createRandomState(Random random, int numberOfPlayers) {
+    List<Pot> pots = Lists.newArrayList();
+    int potCount = 1 + random.nextInt(4);
+    for (int i = 0; i < potCount; i++) {
+      boolean emptyPot = i == potCount - 1 && i > 0 && random.nextInt(4) == 0;
+      int potBet = emptyPot || random.nextInt(6) == 0 ? 0 : 100 * (1 + random.nextInt(20));
+      List<Player> players = Lists.newArrayList();
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        if (random.nextInt(4) != 0) {
+          players.add(Player.values()[seat]);
+        }
+      }
+      Collections.shuffle(players, random);
+      ImmutableList.Builder<Integer> bets = ImmutableList.builder();
+      int chips = emptyPot ? 0 : 100 * random.nextInt(30);
+      for (int seat = 0; seat < numberOfPlayers; seat++) {
+        int choice = random.nextInt(3);
+        int bet = choice == 0 ? 0 : choice == 1 ? potBet : random.nextInt(potBet + 1);
+        bets.add(bet);
+        chips += bet;
+      }
+      pots.add(new Pot(chips, potBet, ImmutableList.copyOf(players), bets.build()));
+    }
+    Player whoseMove = Player.values()[random.nextInt(numberOfPlayers)];
+    return new PokerState(PokerMove.CALL, false, numberOfPlayers, whoseMove, whoseMove,
+        BettingRound.FLOP, null, null, null, null, null, null, ImmutableList.copyOf(pots),
+        false, 0, ImmutableList.<Integer>of(), AbstractPokerLogicBase.BIG_BLIND);
+  }
+
+  /** Amounts at and around the pot boundaries, where the split changes, or random ones. */
+  private int pickAmount(Random random, PokerState state, int requiredBet) {
+    int seat = state.getWhoseMove().ordinal();
+    List<Integer> boundaries = Lists.newArrayList(0);
+    int total = 0;
+    for (Pot pot : state.getPots()) {
+      total += pot.getCurrentPotBet() - pot.getPlayerBets().get(seat);
+      boundaries.add(total);
+    }
+    int amount = random.nextBoolean()
+        ? boundaries.get(random.nextInt(boundaries.size())) + random.nextInt(3) - 1
+        : random.nextInt(requiredBet + 1);
+    return Math.max(0, Math.min(amount, requiredBet));
+  }
+
+  // The pot splitting of PokerLogic before PotManager, kept to check that it is unchanged,
+  // but for the caller joining the pots it covers, which it left out
+
+  private List<Map<String, Object>> legacySplitPotsForPartialCall(PokerState lastState,
+      int additionalAmount, boolean isNewRoundStarting) {
+    List<Map<String, Object>> pots = legacySplitPotsForPartialCallHelper(lastState,
+        additionalAmount);
+    if (isNewRoundStarting) {
+      List<Map<String, Object>> newPots = Lists.newArrayList();
+      for (Map<String, Object> pot : pots) {
+        newPots.add(ImmutableMap.<String, Object>of(
+            CHIPS, pot.get(CHIPS),
+            CURRENT_POT_BET, 0,
+            PLAYERS_IN_POT, pot.get(PLAYERS_IN_POT),
+            PLAYER_BETS, createNewList(lastState.getNumberOfPlayers(), 0)));
+      }
+      return newPots;
+    }
+    return pots;
+  }
+
+  private List<Map<String, Object>> legacySplitPotsForPartialCallHelper(PokerState lastState,
+      int additionalAmount) {
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    String player = lastState.getWhoseMove().name();
+    List<Pot> pots = lastState.getPots();
+    List<Map<String, Object>> newPots = Lists.newArrayList();
+    int remainingAmount = additionalAmount;
+    boolean potSplitDone = false;
+    for (int i = 0; i < pots.size(); i++) {
+      Pot pot = pots.get(i);
+      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
+      int requiredPotBet = pot.getCurrentPotBet();
+      int existingPotBet = pot.getPlayerBets().get(playerIndex);
+      int remainingPotBet = requiredPotBet - existingPotBet;
+      if (!potSplitDone && remainingAmount <= remainingPotBet) {
+        boolean isSplitRequired = legacyIsSplitRequired(pots, i, remainingAmount,
+            remainingPotBet);
+        int lastRoundPotChips = pot.getChips();
+        for (int playerBet : pot.getPlayerBets()) {
+          lastRoundPotChips -= playerBet;
+        }
+        int requiredPotBet1 = existingPotBet + remainingAmount;
+        int requiredPotBet2 = requiredPotBet - (remainingAmount + existingPotBet);
+        List<Integer> newPlayerBets1 = Lists.newArrayList();
+        List<Integer> newPlayerBets2 = Lists.newArrayList();
+        int chips1 = 0;
+        int chips2 = 0;
+        List<Integer> playerBets = addOrReplaceInList(
+            pot.getPlayerBets(), Integer.valueOf(existingPotBet + remainingAmount), playerIndex);
+        for (int playerBet : playerBets) {
+          int playerBet1 = playerBet > requiredPotBet1 ? requiredPotBet1 : playerBet;
+          int playerBet2 = playerBet > requiredPotBet1 ? (playerBet - requiredPotBet1) : 0;
+          newPlayerBets1.add(playerBet1);
+          newPlayerBets2.add(playerBet2);
+          chips1 += playerBet1;
+          chips2 += playerBet2;
+        }
+        newPots.add(ImmutableMap.<String, Object>of(
+            CHIPS, lastRoundPotChips + chips1,
+            CURRENT_POT_BET, requiredPotBet1,
+            PLAYERS_IN_POT, with(playersInPot, player),
+            PLAYER_BETS, newPlayerBets1));
+        if (isSplitRequired) {
+          newPots.add(ImmutableMap.<String, Object>of(
+              CHIPS, chips2,
+              CURRENT_POT_BET, requiredPotBet2,
+              PLAYERS_IN_POT, without(playersInPot, player),
+              PLAYER_BETS, newPlayerBets2));
+        }
+        potSplitDone = true;
+      } else if (potSplitDone) {
+        newPots.add(ImmutableMap.<String, Object>of(
+            CHIPS, pot.getChips(),
+            CURRENT_POT_BET, pot.getCurrentPotBet(),
+            PLAYERS_IN_POT, without(playersInPot, player),
+            PLAYER_BETS, pot.getPlayerBets()));
+      } else {
+        newPots.add(ImmutableMap.<String, Object>of(
+            CHIPS, pot.getChips() + remainingPotBet,
+            CURRENT_POT_BET, requiredPotBet,
+            PLAYERS_IN_POT, with(playersInPot, player),
+            PLAYER_BETS, addOrReplaceInList(pot.getPlayerBets(),
+                Integer.valueOf(requiredPotBet), playerIndex)));
+        remainingAmount -= remainingPotBet;
+      }
+    }
+    return newPots;
+  }
+
+  // The other pot moves of PokerLogic before PotManager
+
+  private List<Map<String, Object>> legacyCall(PokerState lastState,
+      boolean isNewRoundStarting) {
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    List<Map<String, Object>> newPots = Lists.newArrayList();
+    for (Pot pot : lastState.getPots()) {
+      int existingBet = pot.getPlayerBets().get(playerIndex);
+      List<String> newPlayersInPot = with(helper.getApiPlayerList(pot.getPlayersInPot()),
+          lastState.getWhoseMove().name());
+      newPots.add(ImmutableMap.<String, Object>of(
+          CHIPS, pot.getChips() + pot.getCurrentPotBet() - existingBet,
+          CURRENT_POT_BET, isNewRoundStarting ? 0 : pot.getCurrentPotBet(),
+          PLAYERS_IN_POT, newPlayersInPot,
+          PLAYER_BETS, isNewRoundStarting
+              ? createNewList(lastState.getNumberOfPlayers(), 0)
+              : addOrReplaceInList(pot.getPlayerBets(), pot.getCurrentPotBet(), playerIndex)));
+    }
+    return newPots;
+  }
+
+  /** The pots after a raise by raiseBy, or a bet of raiseBy if callLowerPots is false. */
+  private List<Map<String, Object>> legacyRaise(PokerState lastState, int raiseBy,
+      boolean isAllIn, boolean callLowerPots) {
+    int playerIndex = lastState.getWhoseMove().ordinal();
+    String player = lastState.getWhoseMove().name();
+    List<Pot> pots = lastState.getPots();
+    List<Map<String, Object>> newPots = Lists.newArrayList();
+    for (int i = 0; i < pots.size() - 1; i++) {
+      Pot pot = pots.get(i);
+      List<String> playersInPot = helper.getApiPlayerList(pot.getPlayersInPot());
+      if (!callLowerPots) {
+        newPots.add(ImmutableMap.<String, Object>of(
+            CHIPS, pot.getChips(),
+            CURRENT_POT_BET, pot.getCurrentPotBet(),
+            PLAYERS_IN_POT, playersInPot,
+            PLAYER_BETS, pot.getPlayerBets()));
+        continue;
+      }
+      int requiredPotBet = pot.getCurrentPotBet();
+      int existingPotBet = pot.getPlayerBets().get(playerIndex);
+      newPots.add(ImmutableMap.<String, Object>of(
+          CHIPS, pot.getChips() + (requiredPotBet - existingPotBet),
+          CURRENT_POT_BET, requiredPotBet,
+          PLAYERS_IN_POT, with(playersInPot, player),
+          PLAYER_BETS, addOrReplaceInList(pot.getPlayerBets(), requiredPotBet, playerIndex)));
+    }
+    Pot finalPot = pots.get(pots.size() - 1);
+    int requiredPotBet = finalPot.getCurrentPotBet();
+    int existingPotBet = finalPot.getPlayerBets().get(playerIndex);
+    List<String> playersInFinalPot =
+        with(helper.getApiPlayerList(finalPot.getPlayersInPot()), player);
+    newPots.add(ImmutableMap.<String, Object>of(
+        CHIPS, finalPot.getChips() + (requiredPotBet - existingPotBet) + raiseBy,
+        CURRENT_POT_BET, requiredPotBet + raiseBy,
+        PLAYERS_IN_POT, playersInFinalPot,
+        PLAYER_BETS, addOrReplaceInList(finalPot.getPlayerBets(), requiredPotBet + raiseBy,
+            playerIndex)));
+    if (isAllIn) {
+      newPots.add(ImmutableMap.<String, Object>of(
+          CHIPS, 0,
+          CURRENT_POT_BET, 0,
+          PLAYERS_IN_POT, without(playersInFinalPot, player),
+          PLAYER_BETS, createNewList(lastState.getNumberOfPlayers(), 0)));
+    }
+    return newPots;
+  }
+
+  /** The legacy fold, but for the chips of a pot left without players going down a pot. */
+  private List<Map<String, Object>> legacyFold(PokerState lastState,
+      boolean isNewRoundStarting) {
+    List<Pot> pots = lastState.getPots();
+    List<List<String>> players = Lists.newArrayList();
+    int[] chips = new int[pots.size()];
+    for (int i = 0; i < pots.size(); i++) {
+      players.add(without(helper.getApiPlayerList(pots.get(i).getPlayersInPot()),
+          lastState.getWhoseMove().name()));
+      chips[i] = pots.get(i).getChips();
+    }
+    for (int i = pots.size() - 1; i > 0; i--) {
+      if (players.get(i).isEmpty()) {
+        chips[i - 1] += chips[i];
+        chips[i] = 0;
+      }
+    }
+    List<Map<String, Object>> newPots = Lists.newArrayList();
+    for (int i = 0; i < pots.size(); i++) {
+      Pot pot = pots.get(i);
+      newPots.add(ImmutableMap.<String, Object>of(
+          CHIPS, chips[i],
+          CURRENT_POT_BET, isNewRoundStarting ? 0 : pot.getCurrentPotBet(),
+          PLAYERS_IN_POT, players.get(i),
+          PLAYER_BETS, isNewRoundStarting
+              ? createNewList(lastState.getNumberOfPlayers(), 0) : pot.getPlayerBets()));
+    }
+    return newPots;
+  }
+
+  private boolean legacyIsSplitRequired(List<Pot> pots, int index, int remainingAmount,
+      int remainingPotBet) {
+    if (remainingAmount < remainingPotBet) {
+      return true;
+    } else if (remainingAmount > remainingPotBet) {
+      return false;
+    }
+    return pots.size() - 1 == index && pots.get(index).getChips() > 0;
+  }
+
+  private static <T> ImmutableList<T> createNewList(int size, T defaultValue) {
+    ImmutableList.Builder<T> listBuilder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      listBuilder.add(defaultValue);
+    }
+    return listBuilder.build();
+  }
+
+  private static <T> ImmutableList<T> addOrReplaceInList(List<T> list, T obj, int index) {
+    return ImmutableList.<T>builder().addAll(list.subList(0, index)).add(obj)
+        .addAll(list.subList(index + 1, list.size())).build();
+  }
+
+  private static <T> ImmutableList<T> without(List<T> list, T obj) {
+    int index = list.indexOf(obj);
+    if (index == -1) {
+      return ImmutableList.copyOf(list);
+    }
+    return ImmutableList.<T>builder().addAll(list.subList(0, index))
+        .addAll(list.subList(index + 1, list.size())).build();
+  }
+
+  private static <T> ImmutableList<T> with(List<T> list, T obj) {
+    if (list.contains(obj)) {
+      return ImmutableList.copyOf(list);
+    }
+    return ImmutableList.<T>builder().addAll(list).add(obj).build();
+  }
+}
@@ -0,0 +1,54 @@
+package org.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class SeatMapTest {
+
+  @Test
+  public void testNextActiveWrapsAroundAndSkipsSeatsThatCantAct() {
+    // Seat 1 has no chips, seat 3 has folded
+    SeatMap seatMap = SeatMap.ofStacks(ImmutableList.of(100, 0, 50, 10, 20)).fold(3);
+    assertEquals(2, seatMap.getNextActive(0));
+    assertEquals(2, seatMap.getNextActive(1));
+    assertEquals(4, seatMap.getNextActive(2));
+    assertEquals(0, seatMap.getNextActive(4));
+    assertEquals(3, seatMap.getActiveCount());
+  }
+
+  @Test
+  public void testNextActiveEndsWithTheSeatItself() {
+    SeatMap seatMap = SeatMap.ofStacks(ImmutableList.of(0, 10, 0));
+    assertEquals(1, seatMap.getNextActive(1));
+    assertEquals(-1, seatMap.allIn(1).getNextActive(1));
+    assertTrue(seatMap.allIn(1).isInHand(1));
+    assertFalse(seatMap.fold(1).isInHand(1));
+  }
+
+  @Test
+  public void testPositions() {
+    assertEquals(0, SeatMap.getSmallBlindSeat(2));
+    assertEquals(1, SeatMap.getBigBlindSeat(2));
+    assertEquals(SeatMap.BUTTON, SeatMap.getUnderTheGunSeat(2, 1));
+    assertEquals(1, SeatMap.getSmallBlindSeat(6));
+    assertEquals(2, SeatMap.getBigBlindSeat(6));
+    assertEquals(0, SeatMap.getUnderTheGunSeat(3, 2));
+    assertEquals(4, SeatMap.getUnderTheGunSeat(6, SeatMap.STRADDLE));
+  }
+
+  @Test
+  public void testDistance() {
+    SeatMap seatMap = SeatMap.ofStacks(ImmutableList.of(1, 1, 1, 1));
+    assertEquals(3, seatMap.getDistance(1, 0));
+    assertEquals(0, seatMap.getDistance(2, 2));
+    assertEquals(1, seatMap.getPlayerIndex(1));
+  }
+}
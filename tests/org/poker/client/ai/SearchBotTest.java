@@ -0,0 +1,130 @@
+package org.poker.client.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicTestBase;
+import org.poker.client.LegalActions;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+
+@RunWith(JUnit4.class)
+public class SearchBotTest extends AbstractPokerLogicTestBase {
+
+  private final PokerLogicHelper helper = PokerLogicHelper.getInstance();
+
+  private PokerState getPokerState(Map<String, Object> state) {
+    return helper.gameApiStateToPokerState(state);
+  }
+
+  /** An estimator that always returns the same equity and counts how often it is asked. */
+  private static final class FixedEquityEstimator implements EquityEstimator {
+    private final double equity;
+    private int calls;
+
+    private FixedEquityEstimator(double equity) {
+      this.equity = equity;
+    }
+
+    @Override
+    public double getEquity(int[] holeCards, int[] board, int opponents, long deadlineMillis) {
+      calls++;
+      return equity;
+    }
+  }
+
+  private void assertMove(PokerMove move, int additionalAmount, BotMove botMove) {
+    assertEquals(move, botMove.getMove());
+    assertEquals(additionalAmount, botMove.getAdditionalAmount());
+  }
+
+  @Test
+  public void testSearchFoldsAHandThatCantWin() {
+    // P3 faces the big blind of 200 in a pot of 300
+    LegalActions legalActions = LegalActions.of(getPokerState(preFlopFourPlayerFirstMoveState));
+    assertMove(PokerMove.FOLD, 0, SearchBot.search(legalActions, 300, 0, 3));
+  }
+
+  @Test
+  public void testSearchGoesAllInWithAHandThatCantLose() {
+    LegalActions legalActions = LegalActions.of(getPokerState(preFlopFourPlayerFirstMoveState));
+    assertMove(PokerMove.RAISE, 2000, SearchBot.search(legalActions, 300, 1, 3));
+  }
+
+  @Test
+  public void testSearchCallsWhenThePotOddsAreRight() {
+    // Calling 200 into 300 breaks even at 40%, and 42% isn't enough to raise into 3 players
+    LegalActions legalActions = LegalActions.of(getPokerState(preFlopFourPlayerFirstMoveState));
+    assertMove(PokerMove.CALL, 200, SearchBot.search(legalActions, 300, 0.42, 3));
+  }
+
+  @Test
+  public void testSearchChecksRatherThanFoldsWhenThereIsNothingToCall() {
+    // P2 can check or bet into a pot of 2000
+    LegalActions legalActions = LegalActions.of(getPokerState(flopFourPlayerNoBetsMadeState));
+    assertMove(PokerMove.CHECK, 0, SearchBot.search(legalActions, 2000, 0, 2));
+  }
+
+  @Test
+  public void testSearchBetsWithinTheChips() {
+    LegalActions legalActions = LegalActions.of(getPokerState(flopFourPlayerNoBetsMadeState));
+    BotMove botMove = SearchBot.search(legalActions, 2000, 0.9, 2);
+    assertEquals(PokerMove.BET, botMove.getMove());
+    assertTrue(legalActions.isLegal(PokerMove.BET, botMove.getAdditionalAmount()));
+  }
+
+  @Test
+  public void testGetMoveUsesTheEstimatedEquity() {
+    PokerState state = getPokerState(getStateWithCards(preFlopFourPlayerFirstMoveState,
+        showdownThreePlayerDealersTurncardList));
+    FixedEquityEstimator sure = new FixedEquityEstimator(1);
+    assertMove(PokerMove.RAISE, 2000, new SearchBot(sure, 100).getMove(state));
+    assertEquals(1, sure.calls);
+    FixedEquityEstimator hopeless = new FixedEquityEstimator(0);
+    assertMove(PokerMove.FOLD, 0, new SearchBot(hopeless, 100).getMove(state));
+    assertEquals(1, hopeless.calls);
+  }
+
+  @Test
+  public void testGetMoveWithoutTimeToSampleUsesTheHeuristic() {
+    PokerState state = getPokerState(getStateWithCards(preFlopFourPlayerFirstMoveState,
+        showdownThreePlayerDealersTurncardList));
+    FixedEquityEstimator estimator = new FixedEquityEstimator(0);
+    new SearchBot(estimator, SearchBot.MIN_SAMPLING_MILLIS - 1).getMove(state);
+    assertEquals(0, estimator.calls);
+  }
+
+  @Test
+  public void testGetMoveWithoutItsCardsPutsNothingIn() {
+    // The states have no cards, so the player can't see its hole cards
+    FixedEquityEstimator estimator = new FixedEquityEstimator(1);
+    SearchBot searchBot = new SearchBot(estimator, 100);
+    assertMove(PokerMove.FOLD, 0, searchBot.getMove(
+        getPokerState(preFlopFourPlayerFirstMoveState)));
+    assertMove(PokerMove.CHECK, 0, searchBot.getMove(
+        getPokerState(flopFourPlayerNoBetsMadeState)));
+    assertEquals(0, estimator.calls);
+  }
+
+  @Test
+  public void testHeuristicEquityRanksPairsAboveHighCards() {
+    // Card ids are 4 * rank + suit, with deuces first
+    int[] aces = {48, 49};
+    int[] kings = {44, 45};
+    int[] sevenDeuce = {20, 1};
+    int[] noBoard = {};
+    assertTrue(SearchBot.getHeuristicEquity(aces, noBoard, 1)
+        > SearchBot.getHeuristicEquity(sevenDeuce, noBoard, 1));
+    assertTrue(SearchBot.getHeuristicEquity(aces, noBoard, 1)
+        > SearchBot.getHeuristicEquity(kings, noBoard, 1));
+    // Every extra opponent has to be beaten too
+    assertTrue(SearchBot.getHeuristicEquity(kings, noBoard, 3)
+        < SearchBot.getHeuristicEquity(kings, noBoard, 1));
+  }
+}
@@ -0,0 +1,123 @@
+package org.poker.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.Card;
+import org.poker.client.ai.MonteCarloEquityEstimator;
+
+@RunWith(JUnit4.class)
+public class HandEvaluatorTest {
+
+  /** Card ids of the given cards, e.g. "Ah", "10c", "2s". */
+  private int[] cards(String... names) {
+    int[] cards = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      for (int cardId = 0; cardId < 52; cardId++) {
+        Card card = HandEvaluator.getCard(cardId);
+        if ((card.getRank().getFirstLetter() + card.getSuit().getFirstLetterLowerCase())
+            .equals(names[i])) {
+          cards[i] = cardId;
+        }
+      }
+    }
+    return cards;
+  }
+
+  private int evaluate(String... names) {
+    return HandEvaluator.evaluate(cards(names), names.length);
+  }
+
+  @Test
+  public void testCardIds() {
+    for (int cardId = 0; cardId < 52; cardId++) {
+      assertEquals(cardId, HandEvaluator.getCardId(HandEvaluator.getCard(cardId)));
+    }
+  }
+
+  @Test
+  public void testCategories() {
+    assertEquals(HandEvaluator.STRAIGHT_FLUSH,
+        HandEvaluator.getCategory(evaluate("9h", "10h", "Jh", "Qh", "Kh", "Ks", "Kd")));
+    assertEquals(HandEvaluator.FOUR_OF_A_KIND,
+        HandEvaluator.getCategory(evaluate("9h", "9c", "9d", "9s", "Kh", "Ks", "Kd")));
+    assertEquals(HandEvaluator.FULL_HOUSE,
+        HandEvaluator.getCategory(evaluate("9h", "9c", "9d", "10s", "10h", "Ks", "Kd")));
+    assertEquals(HandEvaluator.FLUSH,
+        HandEvaluator.getCategory(evaluate("2h", "5h", "9h", "Jh", "Kh", "Ks", "Kd")));
+    assertEquals(HandEvaluator.STRAIGHT,
+        HandEvaluator.getCategory(evaluate("Ah", "2c", "3d", "4s", "5h", "Ks", "Kd")));
+    assertEquals(HandEvaluator.THREE_OF_A_KIND,
+        HandEvaluator.getCategory(evaluate("2h", "5c", "9d", "Js", "Kh", "Ks", "Kd")));
+    assertEquals(HandEvaluator.TWO_PAIR,
+        HandEvaluator.getCategory(evaluate("2h", "2c", "9d", "9s", "Kh", "Ks", "4d")));
+    assertEquals(HandEvaluator.ONE_PAIR,
+        HandEvaluator.getCategory(evaluate("2h", "3c", "9d", "Js", "Kh", "Ks", "4d")));
+    assertEquals(HandEvaluator.HIGH_CARD,
+        HandEvaluator.getCategory(evaluate("2h", "3c", "9d", "Js", "Kh", "As", "4d")));
+  }
+
+  @Test
+  public void testWheelIsTheLowestStraight() {
+    assertTrue(evaluate("Ah", "2c", "3d", "4s", "5h") < evaluate("2c", "3d", "4s", "5h", "6h"));
+    assertTrue(evaluate("Ah", "Kc", "Qd", "Js", "10h") > evaluate("9c", "Kd", "Qs", "Jh", "10h"));
+  }
+
+  @Test
+  public void testKickers() {
+    assertTrue(evaluate("Ah", "Ac", "Kd", "4s", "3h") > evaluate("Ad", "As", "Qd", "Js", "10h"));
+    assertTrue(evaluate("Kh", "Kc", "2d", "2s", "3h") > evaluate("Qd", "Qs", "Jd", "Js", "Ah"));
+    // Only the best five cards count
+    assertEquals(evaluate("Ah", "Kc", "Qd", "Js", "9h", "3c", "2d"),
+        evaluate("Ah", "Kc", "Qd", "Js", "9h", "4c", "2s"));
+  }
+
+  @Test
+  public void testSevenCardsScoreTheBestFiveCards() {
+    Random random = new Random(7);
+    int[] deck = new int[52];
+    for (int i = 0; i < 52; i++) {
+      deck[i] = i;
+    }
+    int[] five = new int[5];
+    for (int deal = 0; deal < 2000; deal++) {
+      for (int i = 0; i < 7; i++) {
+        int j = i + random.nextInt(52 - i);
+        int card = deck[j];
+        deck[j] = deck[i];
+        deck[i] = card;
+      }
+      // The 21 ways of leaving out 2 of the 7 cards
+      int best = -1;
+      for (int skip1 = 0; skip1 < 7; skip1++) {
+        for (int skip2 = skip1 + 1; skip2 < 7; skip2++) {
+          for (int i = 0, n = 0; i < 7; i++) {
+            if (i != skip1 && i != skip2) {
+              five[n++] = deck[i];
+            }
+          }
+          best = Math.max(best, HandEvaluator.evaluate(five, 5));
+        }
+      }
+      assertEquals(best, HandEvaluator.evaluate(deck, 7));
+    }
+  }
+
+  @Test
+  public void testMonteCarloEquity() {
+    Random random = new Random(11);
+    int samples = 20000;
+    // Pocket aces win about 85% heads-up, and a made royal flush always wins
+    double aces = MonteCarloEquityEstimator.simulate(cards("Ah", "Ac"), new int[0], 1, samples,
+        random) / samples;
+    assertEquals(0.85, aces, 0.02);
+    double royalFlush = MonteCarloEquityEstimator.simulate(cards("Ah", "Kh"),
+        cards("Qh", "Jh", "10h"), 3, samples, random) / samples;
+    assertEquals(1.0, royalFlush, 0.0);
+  }
+}
@@ -0,0 +1,117 @@
+package org.poker.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.BettingRound;
+
+@RunWith(JUnit4.class)
+public class HandIndexerTest {
+
+  /** Renames the suits of cards by permutation, e.g. {1, 0, 2, 3} swaps clubs and diamonds. */
+  private int[] renameSuits(int[] cards, int[] permutation) {
+    int[] renamed = new int[cards.length];
+    for (int i = 0; i < cards.length; i++) {
+      renamed[i] = (cards[i] & ~3) | permutation[cards[i] & 3];
+    }
+    return renamed;
+  }
+
+  @Test
+  public void testSizes() {
+    assertEquals(169, HandIndexer.of(BettingRound.PRE_FLOP).getSize());
+    assertEquals(1286792, HandIndexer.of(BettingRound.FLOP).getSize());
+    assertEquals(13960050, HandIndexer.of(BettingRound.TURN).getSize());
+    assertEquals(123156254, HandIndexer.of(BettingRound.RIVER).getSize());
+  }
+
+  @Test
+  public void testStartingHands() {
+    HandIndexer indexer = HandIndexer.of(BettingRound.PRE_FLOP);
+    int[] hits = new int[indexer.getSize()];
+    for (int first = 0; first < 52; first++) {
+      for (int second = first + 1; second < 52; second++) {
+        int[] holeCards = {first, second};
+        int index = indexer.index(holeCards, new int[0]);
+        hits[index]++;
+        // The hole cards' order doesn't matter
+        assertEquals(index, indexer.index(new int[] {second, first}, new int[0]));
+      }
+    }
+    for (int hit : hits) {
+      // A pair can be dealt 6 ways, a suited hand 4 and an offsuit hand 12
+      assertTrue(hit == 6 || hit == 4 || hit == 12);
+    }
+  }
+
+  @Test
+  public void testSuitRenamingKeepsTheIndex() {
+    Random random = new Random(3);
+    int[][] permutations = {{1, 0, 2, 3}, {3, 2, 1, 0}, {1, 2, 3, 0}, {2, 3, 0, 1}};
+    int[] deck = new int[52];
+    for (int i = 0; i < 52; i++) {
+      deck[i] = i;
+    }
+    for (int deal = 0; deal < 5000; deal++) {
+      for (int i = 0; i < 7; i++) {
+        int j = i + random.nextInt(52 - i);
+        int card = deck[j];
+        deck[j] = deck[i];
+        deck[i] = card;
+      }
+      int[] holeCards = {deck[0], deck[1]};
+      // The board in another order
+      int[] board = {deck[6], deck[4], deck[2], deck[5], deck[3]};
+      for (BettingRound round : new BettingRound[] {
+          BettingRound.FLOP, BettingRound.TURN, BettingRound.RIVER}) {
+        HandIndexer indexer = HandIndexer.of(round);
+        int index = indexer.index(holeCards, board);
+        assertTrue(index >= 0 && index < indexer.getSize());
+        for (int[] permutation : permutations) {
+          assertEquals(index, indexer.index(renameSuits(holeCards, permutation),
+              renameSuits(board, permutation)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFlopIndicesAreDense() {
+    HandIndexer indexer = HandIndexer.of(BettingRound.FLOP);
+    boolean[] found = new boolean[indexer.getSize()];
+    long deals = 0;
+    long multiplicities = 0;
+    int[] holeCards = new int[2];
+    int[] board = new int[3];
+    for (holeCards[0] = 0; holeCards[0] < 52; holeCards[0]++) {
+      for (holeCards[1] = holeCards[0] + 1; holeCards[1] < 52; holeCards[1]++) {
+        long used = 1L << holeCards[0] | 1L << holeCards[1];
+        for (board[0] = 0; board[0] < 52; board[0]++) {
+          for (board[1] = board[0] + 1; board[1] < 52; board[1]++) {
+            for (board[2] = board[1] + 1; board[2] < 52; board[2]++) {
+              if ((used & (1L << board[0] | 1L << board[1] | 1L << board[2])) != 0) {
+                continue;
+              }
+              deals++;
+              int index = indexer.index(holeCards, board);
+              if (!found[index]) {
+                found[index] = true;
+                multiplicities += indexer.getMultiplicity(holeCards, board);
+              }
+            }
+          }
+        }
+      }
+    }
+    for (boolean indexFound : found) {
+      assertTrue(indexFound);
+    }
+    // Each index stands for as many deals as its multiplicity says
+    assertEquals(deals, multiplicities);
+  }
+}
@@ -0,0 +1,166 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecision;
+import org.poker.client.ai.AnytimeDecisions;
+import org.poker.client.ai.BotMove;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class AnytimeSchedulerTest {
+
+  private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+  private final AnytimeScheduler scheduler = new AnytimeScheduler(executor);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** A bot whose refinements each take stepMillis and raise by one more chip. */
+  private static AnytimeBot counting(final long stepMillis, final int maxRefinements) {
+    return new AnytimeBot() {
+      @Override
+      public BotMove getMove(PokerState state) {
+        return BotMove.check();
+      }
+
+      @Override
+      public AnytimeDecision startDecision(PokerState state) {
+        return new AnytimeDecision() {
+          private volatile int refinements;
+
+          @Override
+          public boolean refine() {
+            try {
+              Thread.sleep(stepMillis);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return false;
+            }
+            refinements++;
+            return refinements < maxRefinements;
+          }
+
+          @Override
+          public BotMove getBestMove() {
+            return refinements == 0 ? BotMove.check() : BotMove.raise(refinements);
+          }
+        };
+      }
+    };
+  }
+
+  @Test
+  public void testRefinesUntilTheDeadline() {
+    long start = System.currentTimeMillis();
+    BotMove move = scheduler.decide(counting(5, Integer.MAX_VALUE), null, start + 100);
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(PokerMove.RAISE, move.getMove());
+    assertTrue(move.toString(), move.getAdditionalAmount() > 1);
+    assertTrue(elapsed + "ms", elapsed >= 100 && elapsed < 1000);
+  }
+
+  @Test
+  public void testStopsEarlyWhenTheDecisionIsFinal() {
+    long start = System.currentTimeMillis();
+    BotMove move = scheduler.decide(counting(1, 3), null, start + 10000);
+    assertEquals(3, move.getAdditionalAmount());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+  }
+
+  @Test
+  public void testSlowRefinementIsCancelled() {
+    long start = System.currentTimeMillis();
+    BotMove move = scheduler.decide(counting(60000, Integer.MAX_VALUE), null, start + 50);
+    assertEquals(PokerMove.CHECK, move.getMove());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+  }
+
+  /** Decides without blocking and returns the move the callback got. */
+  private BotMove decideAsync(AnytimeBot bot, long deadlineMillis)
+      throws InterruptedException {
+    final BlockingQueue<BotMove> moves = new LinkedBlockingQueue<BotMove>();
+    scheduler.decide(bot, null, deadlineMillis, new AnytimeScheduler.MoveCallback() {
+      @Override
+      public void onMove(BotMove move) {
+        moves.add(move);
+      }
+    });
+    BotMove move = moves.poll(5, TimeUnit.SECONDS);
+    // The callback gets exactly one move
+    Thread.sleep(20);
+    assertTrue(moves.isEmpty());
+    return move;
+  }
+
+  @Test
+  public void testAsyncRefinesUntilTheDeadline() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    BotMove move = decideAsync(counting(5, Integer.MAX_VALUE), start + 100);
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(PokerMove.RAISE, move.getMove());
+    assertTrue(move.toString(), move.getAdditionalAmount() > 1);
+    assertTrue(elapsed + "ms", elapsed >= 100 && elapsed < 1000);
+  }
+
+  @Test
+  public void testAsyncStopsEarlyWhenTheDecisionIsFinal() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    BotMove move = decideAsync(counting(1, 3), start + 10000);
+    assertEquals(3, move.getAdditionalAmount());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+  }
+
+  @Test
+  public void testAsyncSlowRefinementIsCancelled() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    BotMove move = decideAsync(counting(60000, Integer.MAX_VALUE), start + 50);
+    assertEquals(PokerMove.CHECK, move.getMove());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+  }
+
+  @Test
+  public void testAsyncReturnsBeforeTheDecision() {
+    long start = System.currentTimeMillis();
+    scheduler.decide(counting(60000, Integer.MAX_VALUE), null, start + 10000,
+        new AnytimeScheduler.MoveCallback() {
+          @Override
+          public void onMove(BotMove move) {
+          }
+        });
+    assertTrue(System.currentTimeMillis() - start < 1000);
+  }
+
+  @Test
+  public void testDeadlineFromSetTurn() {
+    List<Operation> move = ImmutableList.<Operation>of(new SetTurn("42", 30),
+        new Set("previousMove", "CALL"));
+    assertEquals(1000 + 27000, AnytimeDecisions.getDeadlineMillis(move, 1000, 200));
+    move = ImmutableList.<Operation>of(new SetTurn("42", 1));
+    assertEquals(1000 + 750, AnytimeDecisions.getDeadlineMillis(move, 1000, 200));
+    move = ImmutableList.<Operation>of(new SetTurn("42"));
+    assertEquals(1000 + 200, AnytimeDecisions.getDeadlineMillis(move, 1000, 200));
+    assertEquals(1000 + 200, AnytimeDecisions.getDeadlineMillis(null, 1000, 200));
+  }
+}
@@ -0,0 +1,169 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.GameReady;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.ManipulateState;
+import org.game_api.GameApi.ManipulationDone;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.MessageJsonParser;
+import org.game_api.GameApi.MessageJsonWriter;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.RequestManipulator;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetRandomInteger;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.SetVisibilityForKeyRange;
+import org.game_api.GameApi.SetVisibilityPerPlayer;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.ShuffleKeyRange;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class BinaryMessageCodecTest {
+
+  private final BinaryMessageCodec codec = BinaryMessageCodec.forPoker();
+
+  private final List<Operation> allOperations = ImmutableList.<Operation>of(
+      new SetTurn("43", 30),
+      new Set("C0", "Ah", ImmutableList.of("42")),
+      new Set("unknownKey", ImmutableList.of(1, -2, Integer.MIN_VALUE, Integer.MAX_VALUE)),
+      new Set("pot", ImmutableMap.of("chips", 2.5, "allIn", true, "none", "\u00e9")),
+      new SetRandomInteger("random", 3, 17),
+      new SetVisibility("C0"),
+      new SetVisibility("C1", ImmutableList.<String>of()),
+      new Delete("C2"),
+      new Shuffle(ImmutableList.of("C0", "C1", "C2")),
+      new ShuffleKeyRange("C", 0, 52),
+      new SetVisibilityForKeyRange("C", 4, 52, ImmutableList.<String>of()),
+      new SetVisibilityPerPlayer("C", 0, 2, ImmutableList.of("42", "43")),
+      new AttemptChangeTokens(ImmutableMap.of("42", -100), ImmutableMap.of("42", 100)),
+      new EndGame(ImmutableMap.of("42", 1, "43", 0)));
+
+  private final List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+      ImmutableMap.<String, Object>of("playerId", "42"),
+      ImmutableMap.<String, Object>of("playerId", "43"));
+
+  private void assertRoundTrip(Message message) {
+    assertEquals(message, codec.decode(codec.encode(message)));
+  }
+
+  @Test
+  public void testDecodesTheFirstVersion() {
+    // A move as the first version of the codec wrote it, in version 2 hand histories
+    byte[] encoded = {27, 7, 6, 22, 5, 2, 52, 51, 3, 0, 19, 89, -89, 32, 19, 94, -85, 32, 19,
+        100, 7, 1, 8, 3, 101, 3, -96, 6, 102, 3, 0, 103, 7, 2, -100, -99, 32, 21, 41, 32, 23, 42};
+    MakeMove move = new MakeMove(ImmutableList.<Operation>of(new SetTurn("43"),
+        new Set("previousMove", "CALL"), new Set("currentRound", "FLOP"),
+        new Set("pots", ImmutableList.of(ImmutableMap.of("chips", 400, "currentPotBet", 0,
+            "playersInPot", ImmutableList.of("P0", "P1")))),
+        new SetVisibility("C4"), new Delete("C5")));
+    assertEquals(move, codec.decode(encoded));
+    assertEquals(ByteBuffer.wrap(encoded), ByteBuffer.wrap(codec.encode(move)));
+  }
+
+  @Test
+  public void testOperationsRoundTrip() {
+    for (Operation operation : allOperations) {
+      assertRoundTrip(operation);
+    }
+    assertRoundTrip(new MakeMove(allOperations));
+    assertRoundTrip(new ManipulationDone(allOperations));
+  }
+
+  @Test
+  public void testMessagesRoundTrip() {
+    Map<String, Object> state = Maps.newHashMap();
+    state.put("C0", "Ah");
+    state.put("C1", null);
+    state.put("whoseMove", "P1");
+    VerifyMove verifyMove = new VerifyMove(playersInfo, state,
+        ImmutableMap.<String, Object>of(), allOperations, "42", ImmutableMap.of("42", 100));
+    assertRoundTrip(verifyMove);
+    assertRoundTrip(new UpdateUI("43", playersInfo, state,
+        ImmutableMap.<String, Object>of(), allOperations, "42", ImmutableMap.of("42", 100)));
+    assertRoundTrip(new VerifyMoveDone());
+    assertRoundTrip(new VerifyMoveDone("42", "hacker"));
+    assertRoundTrip(new GameReady());
+    assertRoundTrip(new RequestManipulator());
+    assertRoundTrip(new ManipulateState(state));
+  }
+
+  @Test
+  public void testLongsRoundTrip() {
+    for (long value : new long[] {Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L, 0L,
+        Long.MAX_VALUE, Long.MIN_VALUE}) {
+      assertRoundTrip(new Set("chips", value));
+    }
+    // JSON parses the whole numbers that don't fit an int as longs
+    Message parsed = MessageJsonParser.parseMessage(
+        new MessageJsonWriter().write(new Set("chips", 3000000000L)));
+    assertEquals(3000000000L, ((Set) parsed).getValue());
+    assertRoundTrip(parsed);
+  }
+
+  @Test
+  public void testDecodeFromBufferOfSeveralMessages() {
+    byte[] first = codec.encode(new SetTurn("42"));
+    byte[] second = codec.encode(new Delete("43"));
+    ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+    buffer.put(first).put(second).flip();
+    assertEquals(new SetTurn("42"), codec.decode(buffer));
+    assertEquals(new Delete("43"), codec.decode(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRejectsUnknownTag() {
+    codec.decode(new byte[] {42});
+  }
+
+  @Test
+  public void testPokerMessagesAreMuchSmallerThanJson() {
+    PokerLogic pokerLogic = new PokerLogic();
+    List<String> playerIds = ImmutableList.of("42", "43", "44", "45");
+    Map<String, Integer> startingChips = ImmutableMap.of("42", 2000, "43", 2000, "44", 2000,
+        "45", 2000);
+    GameState gameState = new GameState(new Random(1));
+    gameState.makeMove(pokerLogic.getInitialMove(playerIds, startingChips));
+    Map<String, Object> lastState = gameState.getState();
+    List<Operation> call = pokerLogic.doCallMove(
+        PokerLogicHelper.getInstance().gameApiStateToPokerState(lastState), playerIds, 200);
+    gameState.makeMove(call);
+
+    MakeMove makeMove = new MakeMove(call);
+    assertRoundTrip(makeMove);
+    int jsonBytes = new MessageJsonWriter().write(makeMove).length();
+    int binaryBytes = codec.encode(makeMove).length;
+    assertTrue(jsonBytes + " vs " + binaryBytes, binaryBytes * 6 <= jsonBytes);
+
+    VerifyMove verifyMove = new VerifyMove(playersInfo, gameState.getState(), lastState, call,
+        "45", ImmutableMap.<String, Integer>of());
+    assertRoundTrip(verifyMove);
+    assertTrue(codec.encode(verifyMove).length * 4
+        <= new MessageJsonWriter().write(verifyMove).length());
+  }
+}
@@ -0,0 +1,103 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicTestBase;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.ai.AnytimeBot;
+import org.poker.client.ai.AnytimeDecision;
+import org.poker.client.ai.BotMove;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class BotClientTest extends AbstractPokerLogicTestBase {
+
+  private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+  private final BlockingQueue<List<Operation>> moves = new LinkedBlockingQueue<List<Operation>>();
+  private final Container container = new Container() {
+    @Override
+    public void sendGameReady() {
+    }
+
+    @Override
+    public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
+    }
+
+    @Override
+    public void sendMakeMove(List<Operation> operations) {
+      moves.add(operations);
+    }
+  };
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** An anytime bot whose one refinement never ends, and which calls in the meantime. */
+  private static final AnytimeBot SLOW_BOT = new AnytimeBot() {
+    @Override
+    public BotMove getMove(PokerState state) {
+      throw new AssertionError("The scheduler should be used");
+    }
+
+    @Override
+    public AnytimeDecision startDecision(PokerState state) {
+      return new AnytimeDecision() {
+        @Override
+        public boolean refine() {
+          try {
+            Thread.sleep(60000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return false;
+        }
+
+        @Override
+        public BotMove getBestMove() {
+          return BotMove.call(200);
+        }
+      };
+    }
+  };
+
+  @Test
+  public void testAnytimeDecisionDoesNotHoldUpTheUpdate() throws InterruptedException {
+    BotClient botClient = new BotClient(SLOW_BOT, new AnytimeScheduler(executor));
+    botClient.setContainer(container);
+    long start = System.currentTimeMillis();
+    // P3 faces the big blind, with a second to act
+    botClient.sendUpdateUI(new UpdateUI(p3_id, getPlayersInfo(4),
+        preFlopFourPlayerFirstMoveState, emptyState,
+        ImmutableList.<Operation>of(new SetTurn(p3_id, 1)), p2_id, startingChips_4_player));
+    assertTrue(moves.isEmpty());
+    assertTrue(System.currentTimeMillis() - start < 500);
+
+    List<Operation> move = moves.poll(5, TimeUnit.SECONDS);
+    assertNotNull(move);
+    PokerState state = PokerLogicHelper.getInstance().gameApiStateToPokerState(
+        preFlopFourPlayerFirstMoveState);
+    assertEquals(pokerLogic.doCallMove(state, playersIds_4_players, 200), move);
+  }
+}
@@ -0,0 +1,66 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.PokerMove;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.ScriptedBot;
+import org.poker.server.HandSimulator.BotFactory;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class BotMatchHarnessTest {
+
+  private static final int STARTING_CHIPS = 50 * AbstractPokerLogicBase.BIG_BLIND;
+
+  private static BotFactory scripted(final PokerMove move) {
+    return new BotFactory() {
+      @Override
+      public Bot createBot(int seat, Random random) {
+        return new ScriptedBot(ImmutableList.of(move));
+      }
+    };
+  }
+
+  @Test
+  public void testDuplicateCancelsTheCards() throws InterruptedException {
+    // The same strategy in both seats of the same deal wins exactly nothing
+    BotMatchHarness harness = new BotMatchHarness(scripted(PokerMove.CALL),
+        scripted(PokerMove.CALL), STARTING_CHIPS, true, 1);
+    MatchResult result = harness.run(3, 20, 2);
+    assertEquals(result.toString(), 0, result.getErrors());
+    assertEquals(120, result.getHands());
+    assertEquals(60, result.getSamples());
+    assertEquals(0, result.getBigBlindsPer100(), 0);
+    assertEquals(0, result.getConfidenceInterval95(), 0);
+  }
+
+  @Test
+  public void testFolderLosesTheBlinds() throws InterruptedException {
+    // Folding loses the small blind in seat 0 and the big blind in seat 1
+    BotMatchHarness harness = new BotMatchHarness(scripted(PokerMove.FOLD),
+        scripted(PokerMove.CALL), STARTING_CHIPS, true, 1);
+    MatchResult result = harness.run(2, 10, 2);
+    assertEquals(result.toString(), 0, result.getErrors());
+    assertEquals(-75, result.getBigBlindsPer100(), 1e-9);
+  }
+
+  @Test
+  public void testRunsAreReproducible() throws InterruptedException {
+    BotMatchHarness harness = new BotMatchHarness(BotMatchHarness.getBotFactory("raise"),
+        BotMatchHarness.getBotFactory("random"), STARTING_CHIPS, false, 7);
+    MatchResult first = harness.run(4, 50, 2);
+    MatchResult second = harness.run(4, 50, 3);
+    assertEquals(first.toString(), 0, first.getErrors());
+    assertEquals(200, first.getHands());
+    assertEquals(first.getBigBlindsPer100(), second.getBigBlindsPer100(), 0);
+    assertEquals(first.getConfidenceInterval95(), second.getConfidenceInterval95(), 0);
+  }
+}
@@ -0,0 +1,70 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.BettingRound;
+import org.poker.client.ai.BucketTable;
+import org.poker.client.ai.CardAbstraction;
+import org.poker.client.ai.HandStrengthAbstraction;
+
+@RunWith(JUnit4.class)
+public class BucketBuilderTest {
+
+  private static final int BUCKETS = 8;
+
+  private final CardAbstraction fallback = new HandStrengthAbstraction();
+
+  // Card id = rank ordinal * 4 + suit ordinal
+  private static final int[] ACES = {12 * 4, 12 * 4 + 1};
+  private static final int[] KINGS = {11 * 4, 11 * 4 + 1};
+  private static final int[] SEVEN_TWO_OFFSUIT = {5 * 4, 0 * 4 + 1};
+
+  private byte[] buildPreFlop() throws InterruptedException {
+    return new BucketBuilder(2, 10, 200, 8, 1).build(BettingRound.PRE_FLOP, BUCKETS);
+  }
+
+  @Test
+  public void testPreFlopBucketsFollowStrength() throws InterruptedException {
+    BucketTable table = new BucketTable(new byte[][] {buildPreFlop(), null, null, null},
+        new int[] {BUCKETS, 0, 0, 0}, fallback);
+    int aces = table.getBucket(BettingRound.PRE_FLOP, ACES, new int[0]);
+    int kings = table.getBucket(BettingRound.PRE_FLOP, KINGS, new int[0]);
+    int sevenTwo = table.getBucket(BettingRound.PRE_FLOP, SEVEN_TWO_OFFSUIT, new int[0]);
+    assertEquals(BUCKETS - 1, aces);
+    assertTrue(kings >= BUCKETS - 2);
+    assertTrue(sevenTwo <= 1);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws InterruptedException, IOException {
+    byte[] preFlop = buildPreFlop();
+    BucketTable table = new BucketTable(new byte[][] {preFlop, null, null, null},
+        new int[] {BUCKETS, 0, 0, 0}, fallback);
+    File file = File.createTempFile("buckets", ".bin");
+    try {
+      BucketBuilder.save(table, file);
+      BucketTable loaded = BucketBuilder.load(file, fallback);
+      assertTrue(loaded.hasTable(BettingRound.PRE_FLOP));
+      assertFalse(loaded.hasTable(BettingRound.FLOP));
+      assertEquals(BUCKETS, loaded.getBucketCount(BettingRound.PRE_FLOP));
+      assertEquals(HandStrengthAbstraction.POST_FLOP_BUCKETS,
+          loaded.getBucketCount(BettingRound.FLOP));
+      for (int i = 0; i < preFlop.length; i++) {
+        assertEquals(preFlop[i], loaded.getTable(BettingRound.PRE_FLOP)[i]);
+      }
+      int[] board = {0, 13, 26, 39, 51};
+      assertEquals(fallback.getBucket(BettingRound.FLOP, ACES, board),
+          loaded.getBucket(BettingRound.FLOP, ACES, board));
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.CardAbstraction;
+import org.poker.client.ai.HandStrengthAbstraction;
+import org.poker.client.ai.RandomBot;
+
+@RunWith(JUnit4.class)
+public class CfrTrainerTest {
+
+  private static final int STACK = 20 * AbstractPokerLogicBase.BIG_BLIND;
+
+  private final CardAbstraction abstraction = new HandStrengthAbstraction();
+  private final File directory;
+
+  public CfrTrainerTest() throws IOException {
+    directory = Files.createTempDirectory("cfr").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private CfrTrainer train(long iterations) throws InterruptedException {
+    CfrTrainer trainer = new CfrTrainer(abstraction, STACK, 1);
+    trainer.train(iterations, 2);
+    assertEquals(iterations, trainer.getIterations());
+    return trainer;
+  }
+
+  @Test
+  public void testAverageStrategiesAreDistributions() throws InterruptedException {
+    CfrTrainer trainer = train(5000);
+    int reached = 0;
+    // The small blind's first move before the flop: it can do anything
+    int situation = CfrTrainer.getSituation(0, 0, 0);
+    for (int bucket = 0; bucket < HandStrengthAbstraction.PRE_FLOP_BUCKETS; bucket++) {
+      float[] strategy = trainer.getAverageStrategy(situation, bucket);
+      float sum = 0;
+      for (float probability : strategy) {
+        assertTrue(probability >= 0);
+        sum += probability;
+      }
+      if (sum > 0) {
+        reached++;
+        assertEquals(1, sum, 1e-4);
+      }
+    }
+    assertEquals(HandStrengthAbstraction.PRE_FLOP_BUCKETS, reached);
+    // The big blind's first move after the flop: there is nothing to fold to
+    situation = CfrTrainer.getSituation(1, 1, 0);
+    for (int bucket = 0; bucket < HandStrengthAbstraction.POST_FLOP_BUCKETS; bucket++) {
+      assertEquals(0, trainer.getAverageStrategy(situation, bucket)[CfrTrainer.FOLD], 0);
+    }
+  }
+
+  @Test
+  public void testCheckpointRoundTrip() throws InterruptedException, IOException {
+    CfrTrainer trainer = train(1000);
+    File checkpoint = new File(directory, "checkpoint");
+    trainer.saveCheckpoint(checkpoint);
+
+    CfrTrainer restored = new CfrTrainer(abstraction, STACK, 2);
+    restored.loadCheckpoint(checkpoint);
+    assertEquals(1000, restored.getIterations());
+    for (int situation = 0; situation < CfrTrainer.SITUATIONS; situation += 5) {
+      float[] expected = trainer.getAverageStrategy(situation, 3);
+      float[] actual = restored.getAverageStrategy(situation, 3);
+      for (int action = 0; action < CfrTrainer.NUM_ACTIONS; action++) {
+        assertEquals(expected[action], actual[action], 0);
+      }
+    }
+    restored.train(500, 2);
+    assertEquals(1500, restored.getIterations());
+
+    try {
+      new CfrTrainer(abstraction, 2 * STACK, 1).loadCheckpoint(checkpoint);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testExportedStrategyPlaysLegalMoves() throws InterruptedException, IOException {
+    CfrTrainer trainer = train(3000);
+    File file = new File(directory, "strategy");
+    trainer.exportStrategy(file);
+    final CfrStrategy strategy = CfrStrategy.open(file);
+    int situation = CfrTrainer.getSituation(0, 0, 0);
+    int totalWeight = 0;
+    for (int action = 0; action < CfrTrainer.NUM_ACTIONS; action++) {
+      totalWeight += strategy.getWeight(situation, 0, action);
+    }
+    assertEquals(255, totalWeight, CfrTrainer.NUM_ACTIONS);
+
+    HandSimulator simulator = new HandSimulator(2, STACK,
+        new HandSimulator.BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new CfrBot(strategy, abstraction, random, new RandomBot(random));
+          }
+        }, true, 1);
+    SimulationResult result = simulator.run(2, 50, 2);
+    assertEquals(result.toString(), 100, result.getHands());
+    assertEquals(result.toString(), 0, result.getErrors());
+    assertEquals(result.toString(), 0, result.getVerificationFailures());
+  }
+}
@@ -0,0 +1,167 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.ai.RandomBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class HandHistoryTest {
+
+  private final File directory;
+
+  public HandHistoryTest() throws IOException {
+    directory = Files.createTempDirectory("hand-history").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private HandRecord createHand(long handId) {
+    HandRecord hand = new HandRecord(handId, 1000 + handId, ImmutableList.of("42", "43"),
+        ImmutableList.of(20000, 20000));
+    List<String> cards = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      cards.add("C" + i);
+    }
+    List<Operation> deal = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      deal.add(new Set("C" + i, String.valueOf(i)));
+    }
+    deal.add(new Shuffle(cards));
+    deal.add(new SetVisibility("C0", ImmutableList.of("42")));
+    hand.addMove("42", deal);
+    hand.addMove("43", ImmutableList.<Operation>of(new Set("pot", (int) handId)));
+    return hand;
+  }
+
+  @Test
+  public void testWriteAndReplay() throws IOException {
+    try (HandHistoryWriter writer = new HandHistoryWriter(directory, 1 << 20)) {
+      for (long handId = 0; handId < 10; handId++) {
+        writer.write(createHand(handId));
+      }
+    }
+    HandHistoryReader reader = new HandHistoryReader(directory);
+    assertEquals(10, reader.getHandCount());
+    for (long handId = 0; handId < 10; handId++) {
+      HandRecord hand = reader.readHand(handId);
+      assertEquals(handId, hand.getHandId());
+      assertEquals(ImmutableList.of("42", "43"), hand.getPlayerIds());
+      assertEquals(createHand(handId).getMove(0), hand.getMove(0));
+      // The seed makes the shuffle the same as when the hand was played
+      assertEquals(createHand(handId).replay().getState(), reader.replay(handId).getState());
+    }
+    assertNull(reader.readHand(10));
+    assertEquals(10 * 13, reader.replayAll());
+  }
+
+  @Test
+  public void testSegmentsRollAndIndexCanBeRebuilt() throws IOException {
+    try (HandHistoryWriter writer = new HandHistoryWriter(directory, 1000)) {
+      for (long handId = 0; handId < 20; handId++) {
+        writer.write(createHand(handId));
+      }
+    }
+    File[] segments = directory.listFiles();
+    assertTrue(segments.length > 4);
+    // Lose an index and cut the last record of the last segment short
+    File lastSegment = HandHistoryReader.listSegments(directory).get(segments.length / 2 - 1);
+    String path = lastSegment.getPath();
+    new File(path.substring(0, path.length() - ".seg".length()) + ".idx").delete();
+    try (RandomAccessFile file = new RandomAccessFile(lastSegment, "rw")) {
+      file.setLength(file.length() - 10);
+    }
+    HandHistoryReader reader = new HandHistoryReader(directory);
+    assertEquals(19, reader.getHandCount());
+    assertNull(reader.readHand(19));
+    assertEquals(createHand(7).getMove(1), reader.readHand(7).getMove(1));
+  }
+
+  /** Keeps a copy of the last state seen by its player. */
+  private static class RecordingPlayer implements Game {
+    private final Game player;
+    private final List<Map<String, Object>> endStates = Lists.newCopyOnWriteArrayList();
+
+    RecordingPlayer(Game player) {
+      this.player = player;
+    }
+
+    @Override
+    public void sendVerifyMove(VerifyMove verifyMove) {
+    }
+
+    @Override
+    public void sendUpdateUI(UpdateUI updateUI) {
+      if ("END_GAME".equals(updateUI.getState().get("currentRound"))) {
+        endStates.add(Maps.newHashMap(updateUI.getState()));
+      }
+      player.sendUpdateUI(updateUI);
+    }
+  }
+
+  @Test
+  public void testTableServerHandsReplay() throws IOException, InterruptedException {
+    TableServer server = new TableServer(1);
+    HandHistoryWriter writer = new HandHistoryWriter(directory, 1 << 20);
+    server.setHandHistoryWriter(writer);
+    TableServer.Table table = server.createTable(4, 20000);
+    RecordingPlayer recordingPlayer = null;
+    for (int seat = 0; seat < 4; seat++) {
+      BotClient botClient = new BotClient(new RandomBot(new Random(seat)));
+      Game player = botClient;
+      if (seat == 0) {
+        player = recordingPlayer = new RecordingPlayer(botClient);
+      }
+      botClient.setContainer(table.connect(seat, player));
+    }
+    for (int hand = 1; hand <= 3; hand++) {
+      table.startHand();
+      long deadline = System.currentTimeMillis() + 20000;
+      while (table.getHandsPlayed() < hand) {
+        assertTrue("Timed out", System.currentTimeMillis() < deadline);
+        Thread.sleep(1);
+      }
+    }
+    server.shutdown();
+    writer.close();
+    assertNull(table.getLastHandHistoryError());
+    HandHistoryReader reader = new HandHistoryReader(directory);
+    assertEquals(3, reader.getHandCount());
+    for (int handId = 0; handId < 3; handId++) {
+      GameState replayed = reader.replay(handId);
+      assertEquals(recordingPlayer.endStates.get(handId),
+          Maps.newHashMap(replayed.getStateForPlayerId("42")));
+    }
+  }
+}
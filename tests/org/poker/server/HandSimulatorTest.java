@@ -0,0 +1,102 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.PokerMove;
+import org.poker.client.PokerState;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.BotMove;
+import org.poker.client.ai.RandomBot;
+import org.poker.client.ai.ScriptedBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class HandSimulatorTest {
+
+  private static final int STARTING_CHIPS = 50 * AbstractPokerLogicBase.BIG_BLIND;
+
+  private void assertAllHandsPlayedCleanly(SimulationResult result, int hands) {
+    assertEquals(result.toString(), hands, result.getHands());
+    assertEquals(result.toString(), 0, result.getErrors());
+    assertEquals(result.toString(), 0, result.getChipConservationViolations());
+    assertEquals(result.toString(), 0, result.getVerificationFailures());
+    assertTrue(result.getMoves() >= 2 * hands);
+    assertTrue(result.getMoveLatencyPercentile(50) <= result.getMoveLatencyPercentile(99));
+  }
+
+  @Test
+  public void testRandomBotsWithVerification() throws InterruptedException {
+    HandSimulator simulator = new HandSimulator(4, STARTING_CHIPS,
+        new HandSimulator.BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new RandomBot(random);
+          }
+        }, true, 1);
+    assertAllHandsPlayedCleanly(simulator.run(4, 25, 2), 100);
+  }
+
+  @Test
+  public void testScriptedBotsHeadsUp() throws InterruptedException {
+    HandSimulator simulator = new HandSimulator(2, STARTING_CHIPS,
+        new HandSimulator.BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new ScriptedBot(seat == 0
+                ? ImmutableList.of(PokerMove.RAISE, PokerMove.CALL)
+                : ImmutableList.of(PokerMove.CALL, PokerMove.BET, PokerMove.CHECK));
+          }
+        }, true, 1);
+    assertAllHandsPlayedCleanly(simulator.run(2, 20, 2), 40);
+  }
+
+  /** Plays a table of RandomBots and returns the cards each of them saw, move by move. */
+  private List<String> getCardsSeen(long seed) throws InterruptedException {
+    final List<String> cardsSeen = Lists.newArrayList();
+    HandSimulator simulator = new HandSimulator(3, STARTING_CHIPS,
+        new HandSimulator.BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            final Bot bot = new RandomBot(random);
+            return new Bot() {
+              @Override
+              public BotMove getMove(PokerState state) {
+                cardsSeen.add(state.getCards().toString());
+                return bot.getMove(state);
+              }
+            };
+          }
+        }, false, seed);
+    assertAllHandsPlayedCleanly(simulator.run(1, 5, 1), 5);
+    return cardsSeen;
+  }
+
+  @Test
+  public void testSameSeedDealsTheSameCards() throws InterruptedException {
+    assertEquals(getCardsSeen(7), getCardsSeen(7));
+  }
+
+  @Test
+  public void testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long nanos = 1; nanos <= 1000000; nanos++) {
+      histogram.record(nanos);
+    }
+    assertEquals(1000000, histogram.getTotalCount());
+    assertEquals(1000000, histogram.getMax());
+    assertEquals(500000, histogram.getPercentile(50), 500000 * 0.04);
+    assertEquals(990000, histogram.getPercentile(99), 990000 * 0.04);
+    assertEquals(1000000, histogram.getPercentile(100));
+    assertEquals(10, histogram.getPercentile(0.001));
+  }
+}
@@ -0,0 +1,71 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.ai.MonteCarloEquityEstimator;
+
+@RunWith(JUnit4.class)
+public class ParallelEquityEstimatorTest {
+
+  private static final long SEED = 42;
+  private static final int SAMPLES = 40000;
+  /** Over 4 standard errors of the difference of two estimates of SAMPLES samples. */
+  private static final double TOLERANCE = 0.015;
+
+  // Card ids are 4 * rank + suit, with deuces first
+  private static final int[] ACES = {48, 49};
+  private static final int[] SEVEN_DEUCE = {20, 1};
+  private static final int[] FLOP = {50, 33, 2};
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void assertAgreesWithSequential(int[] holeCards, int[] board, int opponents) {
+    double sequential = new MonteCarloEquityEstimator(new Random(SEED), SAMPLES)
+        .getEquity(holeCards, board, opponents, Long.MAX_VALUE);
+    double parallel = new ParallelEquityEstimator(executor, 4, SAMPLES, SEED)
+        .getEquity(holeCards, board, opponents, Long.MAX_VALUE);
+    assertEquals(sequential, parallel, TOLERANCE);
+  }
+
+  @Test
+  public void testAgreesWithSequentialPreFlop() {
+    assertAgreesWithSequential(ACES, new int[0], 1);
+    assertAgreesWithSequential(SEVEN_DEUCE, new int[0], 3);
+  }
+
+  @Test
+  public void testAgreesWithSequentialOnTheFlop() {
+    assertAgreesWithSequential(ACES, FLOP, 2);
+    assertAgreesWithSequential(SEVEN_DEUCE, FLOP, 2);
+  }
+
+  @Test
+  public void testSameSeedGivesTheSameEstimate() {
+    // Without a deadline every task runs all its samples, whatever the thread interleaving
+    double first = new ParallelEquityEstimator(executor, 4, SAMPLES, SEED)
+        .getEquity(ACES, FLOP, 2, Long.MAX_VALUE);
+    double second = new ParallelEquityEstimator(executor, 4, SAMPLES, SEED)
+        .getEquity(ACES, FLOP, 2, Long.MAX_VALUE);
+    assertEquals(first, second, 0);
+  }
+
+  @Test
+  public void testAPassedDeadlineStillRunsABatchPerTask() {
+    double equity = new ParallelEquityEstimator(executor, 4, SAMPLES, SEED)
+        .getEquity(ACES, new int[0], 1, 0);
+    assertEquals(0.85, equity, 0.1);
+  }
+}
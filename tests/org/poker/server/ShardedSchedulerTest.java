@@ -0,0 +1,131 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class ShardedSchedulerTest {
+
+  private final ShardedScheduler scheduler = new ShardedScheduler(4);
+
+  @After
+  public void tearDown() throws InterruptedException {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testTasksOfATableRunInOrderOnOneThread() throws InterruptedException {
+    int tables = 20;
+    final int tasksPerTable = 500;
+    final List<List<Integer>> runs = Lists.newArrayList();
+    final List<List<String>> threads = Lists.newArrayList();
+    final CountDownLatch done = new CountDownLatch(tables * tasksPerTable);
+    for (int table = 0; table < tables; table++) {
+      runs.add(Lists.<Integer>newArrayList());
+      threads.add(Lists.<String>newArrayList());
+    }
+    for (int task = 0; task < tasksPerTable; task++) {
+      for (int table = 0; table < tables; table++) {
+        final int tableId = table;
+        final int taskId = task;
+        scheduler.execute(tableId, new Runnable() {
+          @Override
+          public void run() {
+            runs.get(tableId).add(taskId);
+            threads.get(tableId).add(Thread.currentThread().getName());
+            done.countDown();
+          }
+        });
+      }
+    }
+    assertTrue(done.await(20, TimeUnit.SECONDS));
+    for (int table = 0; table < tables; table++) {
+      for (int task = 0; task < tasksPerTable; task++) {
+        assertEquals(task, (int) runs.get(table).get(task));
+        assertEquals(threads.get(table).get(0), threads.get(table).get(task));
+      }
+    }
+    // The last tasks may still be recording their metrics
+    Thread.sleep(100);
+    long completed = 0;
+    for (int shard = 0; shard < scheduler.getShardCount(); shard++) {
+      ShardedScheduler.ShardStats stats = scheduler.getShardStats(shard);
+      assertEquals(0, stats.getQueueDepth());
+      assertEquals(stats.getCompletedTasks(), stats.getLatency().getTotalCount());
+      completed += stats.getCompletedTasks();
+    }
+    assertEquals(tables * tasksPerTable, completed);
+  }
+
+  @Test
+  public void testShardsAreSpread() {
+    int[] tablesPerShard = new int[scheduler.getShardCount()];
+    for (int tableId = 0; tableId < 1000; tableId++) {
+      tablesPerShard[scheduler.getShard(tableId)]++;
+    }
+    for (int count : tablesPerShard) {
+      assertTrue(count > 150);
+    }
+  }
+
+  @Test
+  public void testWrappedGameInContainer() throws InterruptedException {
+    final CountDownLatch updated = new CountDownLatch(1);
+    final List<String> threadNames = Lists.newCopyOnWriteArrayList();
+    Game game = new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+        threadNames.add(Thread.currentThread().getName());
+        updated.countDown();
+      }
+    };
+    IteratingPlayerContainer container =
+        new IteratingPlayerContainer(scheduler.wrap(7, game), 2);
+    container.updateUi(container.getPlayerIds().get(0));
+    assertTrue(updated.await(5, TimeUnit.SECONDS));
+    assertEquals("shard-" + scheduler.getShard(7), threadNames.get(0));
+  }
+
+  @Test
+  public void testFailuresAreCounted() throws InterruptedException {
+    final CountDownLatch ran = new CountDownLatch(1);
+    Game hackerFinder = new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+        throw new IllegalStateException("Found a hacker");
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+        ran.countDown();
+      }
+    };
+    Game game = scheduler.wrap(3, hackerFinder);
+    game.sendVerifyMove(null);
+    // The shard goes on after the failure
+    game.sendUpdateUI(null);
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    ShardedScheduler.ShardStats stats = scheduler.getShardStats(scheduler.getShard(3));
+    assertEquals(1, stats.getFailedTasks());
+    assertEquals("Found a hacker", stats.getLastFailure().getMessage());
+  }
+}
@@ -0,0 +1,117 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BettingRound;
+import org.poker.client.PokerMove;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.OpponentStat;
+import org.poker.client.ai.ScriptedBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class StripedOpponentStatsTest {
+
+  private final File directory;
+
+  public StripedOpponentStatsTest() throws IOException {
+    directory = Files.createTempDirectory("opponent-stats").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testConcurrentAddsAreAllCounted() throws InterruptedException {
+    final StripedOpponentStats stats = new StripedOpponentStats(8, 4);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            stats.add("p" + (j % 8), OpponentStat.CALLS, 1);
+            stats.add("p" + (j % 8), OpponentStat.BETS_AND_RAISES, 2);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(8, stats.getPlayerCount());
+    for (int i = 0; i < 8; i++) {
+      assertEquals(5000, stats.getCount("p" + i, OpponentStat.CALLS));
+      assertEquals(2.0, stats.getAggressionFactor("p" + i), 0);
+    }
+    assertEquals(0, stats.getCount("nobody", OpponentStat.CALLS));
+  }
+
+  @Test
+  public void testSimulatedRaiseAndFold() throws InterruptedException {
+    HandSimulator simulator = new HandSimulator(2, 50 * AbstractPokerLogicBase.BIG_BLIND,
+        new HandSimulator.BotFactory() {
+          @Override
+          public Bot createBot(int seat, Random random) {
+            return new ScriptedBot(ImmutableList.of(seat == 0 ? PokerMove.RAISE : PokerMove.FOLD));
+          }
+        }, false, 1);
+    StripedOpponentStats stats = new StripedOpponentStats(2, 2);
+    simulator.setOpponentStats(stats);
+    simulator.run(3, 10, 2);
+    // Every table seats "42" as the small blind, who raises, and "43", who folds to it
+    assertEquals(30, stats.getHands("42"));
+    assertEquals(1.0, stats.getVpip("42"), 0);
+    assertEquals(1.0, stats.getPfr("42"), 0);
+    assertEquals(0, stats.getCount("42", OpponentStat.facedBet(BettingRound.PRE_FLOP)));
+    assertEquals(30, stats.getHands("43"));
+    assertEquals(0.0, stats.getVpip("43"), 0);
+    assertEquals(30, stats.getCount("43", OpponentStat.facedBet(BettingRound.PRE_FLOP)));
+    assertEquals(1.0, stats.getFoldToBet("43", BettingRound.PRE_FLOP), 0);
+    assertEquals(0.0, stats.getFoldToBet("43", BettingRound.FLOP), 0);
+  }
+
+  @Test
+  public void testSnapshotAndLoad() throws IOException {
+    StripedOpponentStats stats = new StripedOpponentStats(4, 2);
+    stats.add("a", OpponentStat.HANDS, 7);
+    stats.add("b", OpponentStat.FOLDED_TO_BET_RIVER, 3);
+    File file = new File(directory, "stats.bin");
+    stats.snapshot(file);
+    stats.add("a", OpponentStat.HANDS, 1);
+    stats.snapshot(file);
+
+    StripedOpponentStats loaded = new StripedOpponentStats(4, 2);
+    loaded.load(file);
+    assertEquals(8, loaded.getHands("a"));
+    assertEquals(3, loaded.getCount("b", OpponentStat.FOLDED_TO_BET_RIVER));
+    assertEquals(0, loaded.getCount("b", OpponentStat.HANDS));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCapacity() {
+    StripedOpponentStats stats = new StripedOpponentStats(1, 1);
+    stats.add("a", OpponentStat.HANDS, 1);
+    stats.add("b", OpponentStat.HANDS, 1);
+  }
+}
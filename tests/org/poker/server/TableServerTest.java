@@ -0,0 +1,223 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.InvariantChecker;
+import org.poker.client.PokerLogic;
+import org.poker.client.PokerLogicHelper;
+import org.poker.client.PokerState;
+import org.poker.client.ai.RandomBot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class TableServerTest {
+
+  private static final long TIMEOUT_MILLIS = 20000;
+
+  private final TableServer server = new TableServer(2);
+
+  @After
+  public void tearDown() throws InterruptedException {
+    server.shutdown();
+  }
+
+  private TableServer.Table createBotTable(int players, Random random) {
+    TableServer.Table table = server.createTable(players, 20000);
+    for (int seat = 0; seat < players; seat++) {
+      BotClient botClient = new BotClient(new RandomBot(new Random(random.nextLong())));
+      botClient.setContainer(table.connect(seat, botClient));
+    }
+    return table;
+  }
+
+  private void awaitHands(TableServer.Table table, int hands) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (table.getHandsPlayed() < hands) {
+      assertEquals(table.getLastRejection(), 0, table.getMovesRejected());
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testManyTablesOfBots() throws InterruptedException {
+    Random random = new Random(7);
+    List<TableServer.Table> tables = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      tables.add(createBotTable(2 + i % 8, random));
+    }
+    for (int hand = 1; hand <= 2; hand++) {
+      for (TableServer.Table table : tables) {
+        table.startHand();
+      }
+      for (TableServer.Table table : tables) {
+        awaitHands(table, hand);
+        assertFalse(table.isHandInProgress());
+      }
+    }
+    assertEquals(50, server.getTableCount());
+    long moves = 0;
+    for (TableServer.Table table : tables) {
+      moves += table.getMovesApplied();
+    }
+    assertEquals(moves, server.getMoveLatency().getTotalCount());
+  }
+
+  @Test
+  public void testInvariantsAreCheckedAfterEveryMove() throws InterruptedException {
+    server.setInvariantMode(InvariantChecker.Mode.EXHAUSTIVE);
+    TableServer.Table table = createBotTable(2, new Random(8));
+    for (int hand = 1; hand <= 5; hand++) {
+      table.startHand();
+      awaitHands(table, hand);
+    }
+    InvariantChecker stats = server.getInvariantStats();
+    assertEquals(table.getLastInvariantViolation(), 0, table.getInvariantViolations());
+    assertEquals(table.getMovesApplied(),
+        stats.getChecks(InvariantChecker.Invariant.CHIP_CONSERVATION));
+    assertEquals(table.getMovesApplied(),
+        stats.getChecks(InvariantChecker.Invariant.CARD_CONSISTENCY));
+  }
+
+  @Test
+  public void testSessionPlaysHandsUntilAPlayerHasAllTheChips() throws InterruptedException {
+    server.setInvariantMode(InvariantChecker.Mode.EXHAUSTIVE);
+    TableServer.Table table = createBotTable(4, new Random(9));
+    table.startSession();
+    assertTrue("Timed out", table.awaitGameOver(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    assertFalse(table.isHandInProgress());
+    assertEquals(table.getLastRejection(), 0, table.getMovesRejected());
+    // Every hand was dealt and verified in the same game state
+    assertTrue(String.valueOf(table.getHandsPlayed()), table.getHandsPlayed() > 1);
+    assertEquals(table.getLastInvariantViolation(), 0, table.getInvariantViolations());
+  }
+
+  /**
+   * A bot that checks, at every update, that the updates it got since its last move still
+   * read as they did when they were delivered.
+   */
+  private static class CheckingPlayer implements Game {
+    private final String playerId;
+    private final BotClient botClient;
+    private final List<UpdateUI> updates = Lists.newArrayList();
+    private final List<Map<String, Object>> states = Lists.newArrayList();
+    private final List<Map<String, Object>> lastStates = Lists.newArrayList();
+    private volatile int mostUpdatesRead;
+    private volatile String changedUpdate;
+
+    private CheckingPlayer(String playerId, BotClient botClient) {
+      this.playerId = playerId;
+      this.botClient = botClient;
+    }
+
+    @Override
+    public void sendVerifyMove(VerifyMove verifyMove) {
+      botClient.sendVerifyMove(verifyMove);
+    }
+
+    @Override
+    public void sendUpdateUI(UpdateUI updateUI) {
+      if (playerId.equals(updateUI.getLastMovePlayerId())) {
+        // Done with the updates before its move
+        updates.clear();
+        states.clear();
+        lastStates.clear();
+      }
+      updates.add(updateUI);
+      states.add(new HashMap<String, Object>(updateUI.getState()));
+      lastStates.add(new HashMap<String, Object>(updateUI.getLastState()));
+      for (int i = 0; i < updates.size(); i++) {
+        if (!states.get(i).equals(updates.get(i).getState())
+            || !lastStates.get(i).equals(updates.get(i).getLastState())) {
+          changedUpdate = "Update " + i + " of " + updates.size();
+        }
+      }
+      mostUpdatesRead = Math.max(mostUpdatesRead, updates.size());
+      botClient.sendUpdateUI(updateUI);
+    }
+  }
+
+  @Test
+  public void testUpdatesCanBeReadAfterLaterMoves() throws InterruptedException {
+    TableServer.Table table = createBotTable(4, new Random(10));
+    BotClient botClient = new BotClient(new RandomBot(new Random(11)));
+    CheckingPlayer player = new CheckingPlayer(table.getPlayerIds().get(0), botClient);
+    botClient.setContainer(table.connect(0, player));
+    // Until the player reads an update after two more moves
+    for (int hand = 1; hand <= 20 && player.mostUpdatesRead < 3; hand++) {
+      table.startHand();
+      assertTrue("Timed out", table.awaitGameOver(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+    assertTrue(String.valueOf(player.mostUpdatesRead), player.mostUpdatesRead >= 3);
+    assertNull(player.changedUpdate);
+  }
+
+  /** A player that records its updates and never moves on its own. */
+  private static class RecordingPlayer implements Game {
+    private final List<UpdateUI> updates = Lists.newCopyOnWriteArrayList();
+
+    @Override
+    public void sendVerifyMove(VerifyMove verifyMove) {
+    }
+
+    @Override
+    public void sendUpdateUI(UpdateUI updateUI) {
+      updates.add(updateUI);
+    }
+  }
+
+  @Test
+  public void testIllegalMoveIsRejected() throws InterruptedException {
+    TableServer.Table table = server.createTable(3, 20000);
+    RecordingPlayer dealer = new RecordingPlayer();
+    Container container = table.connect(0, dealer);
+    table.startHand();
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (dealer.updates.isEmpty()) {
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+    // With 3 players the dealer acts first; passing the turn directly is not a legal move.
+    container.sendMakeMove(ImmutableList.<Operation>of(new Set("whoseMove", "P1")));
+    while (table.getMovesRejected() == 0) {
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+    assertNotNull(table.getLastRejection());
+    assertEquals(1, table.getMovesApplied());
+    assertEquals(1, dealer.updates.size());
+    assertTrue(table.isHandInProgress());
+    // The rejected move was undone, so the dealer's legal move still applies to its update
+    UpdateUI update = dealer.updates.get(0);
+    PokerState state =
+        PokerLogicHelper.getInstance().gameApiStateToPokerState(update.getState());
+    container.sendMakeMove(new PokerLogic().doFoldMove(state, update.getPlayerIds()));
+    while (table.getMovesApplied() < 2) {
+      assertEquals(table.getLastRejection(), 1, table.getMovesRejected());
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+}
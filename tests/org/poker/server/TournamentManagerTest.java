@@ -0,0 +1,137 @@
+package org.poker.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.poker.client.AbstractPokerLogicBase;
+import org.poker.client.BlindSchedule;
+import org.poker.client.PokerMove;
+import org.poker.client.TableConfig;
+import org.poker.client.ai.Bot;
+import org.poker.client.ai.RandomBot;
+import org.poker.client.ai.ScriptedBot;
+import org.poker.server.HandSimulator.BotFactory;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class TournamentManagerTest {
+
+  private static final int STARTING_CHIPS = 20 * AbstractPokerLogicBase.BIG_BLIND;
+  private static final BlindSchedule SCHEDULE =
+      BlindSchedule.doubling(TableConfig.DEFAULT, 8, 5);
+
+  private static final BotFactory RANDOM_BOTS = new BotFactory() {
+    @Override
+    public Bot createBot(int seat, Random random) {
+      return new RandomBot(random);
+    }
+  };
+
+  private static int[] getPlaces(TournamentManager tournament, int players) {
+    int[] places = new int[players];
+    for (int player = 0; player < players; player++) {
+      places[player] = tournament.getPlace(player);
+    }
+    return places;
+  }
+
+  @Test
+  public void testTablesStayBalanced() throws InterruptedException {
+    int players = 200;
+    TournamentManager tournament =
+        new TournamentManager(players, STARTING_CHIPS, 9, SCHEDULE, RANDOM_BOTS, 1);
+    assertEquals(23, tournament.getTableCount());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      while (!tournament.isFinished()) {
+        tournament.playRound(executor);
+        List<Integer> sizes = tournament.getTableSizes();
+        assertTrue(sizes.toString(), Collections.max(sizes) - Collections.min(sizes) <= 1);
+        assertEquals((tournament.getPlayersLeft() + 8) / 9, tournament.getTableCount());
+        int chips = 0;
+        for (int player = 0; player < players; player++) {
+          chips += tournament.getStack(player);
+          assertEquals(tournament.getStack(player) == 0, tournament.getPlace(player) > 1);
+        }
+        assertEquals(players * STARTING_CHIPS, chips);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // Every place is taken once, and the winner has all the chips
+    int[] places = getPlaces(tournament, players);
+    boolean[] taken = new boolean[players + 1];
+    for (int player = 0; player < players; player++) {
+      assertTrue(places[player] > 0 && !taken[places[player]]);
+      taken[places[player]] = true;
+      if (places[player] == 1) {
+        assertEquals(players * STARTING_CHIPS, tournament.getStack(player));
+      }
+    }
+    assertTrue(tournament.getTablesBroken() >= 22);
+  }
+
+  @Test
+  public void testResultDoesntDependOnThreads() throws InterruptedException {
+    TournamentManager first =
+        new TournamentManager(60, STARTING_CHIPS, 6, SCHEDULE, RANDOM_BOTS, 7);
+    first.run(1);
+    TournamentManager second =
+        new TournamentManager(60, STARTING_CHIPS, 6, SCHEDULE, RANDOM_BOTS, 7);
+    second.run(3);
+    assertArrayEquals(getPlaces(first, 60), getPlaces(second, 60));
+    assertEquals(first.getRounds(), second.getRounds());
+    assertEquals(first.getPlayersMoved(), second.getPlayersMoved());
+  }
+
+  @Test
+  public void testBlindsGoUpEveryLevel() throws InterruptedException {
+    BotFactory callers = new BotFactory() {
+      @Override
+      public Bot createBot(int seat, Random random) {
+        return new ScriptedBot(ImmutableList.of(PokerMove.CALL));
+      }
+    };
+    TournamentManager tournament =
+        new TournamentManager(8, 100 * STARTING_CHIPS, 4, SCHEDULE, callers, 3);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int round = 0; round < 12 && !tournament.isFinished(); round++) {
+        assertEquals(Math.min(round / 5, 7), tournament.getLevel());
+        tournament.playRound(executor);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(12, tournament.getRounds());
+  }
+
+  @Test
+  public void testBotMovesVerifyAtEveryLevel() throws InterruptedException {
+    // Levels of 2 rounds, so the bets of the random bots are checked against rising blinds
+    TournamentManager tournament = new TournamentManager(30, STARTING_CHIPS, 6,
+        BlindSchedule.doubling(TableConfig.DEFAULT, 8, 2), RANDOM_BOTS, 11);
+    tournament.setVerifyMoves(true);
+    tournament.run(2);
+    assertTrue(tournament.getLevel() > 2);
+    assertEquals(1, tournament.getPlayersLeft());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRakedLevelsAreRefused() {
+    new TournamentManager(20, STARTING_CHIPS, 9,
+        new BlindSchedule(ImmutableList.of(new TableConfig(100, 200, 0, false, 50, 0)), 10),
+        RANDOM_BOTS, 1);
+  }
+}